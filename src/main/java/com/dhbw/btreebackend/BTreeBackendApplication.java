@@ -1,6 +1,12 @@
 package com.dhbw.btreebackend;
 
+import com.dhbw.btreebackend.btreeimplementation.AdaptiveRadixTree;
 import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OffHeapBTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator;
+import com.dhbw.btreebackend.btreeimplementation.ShardedBTree;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -16,11 +22,47 @@ public class BTreeBackendApplication {
     public static final int DEFAULT_ORDER = 5;
     /**
      * This Bean provides the BTree with a default order of 5 and injects it to the other classes.
-     * @return BTree: The BTree itself.
+     * If the property 'btree.shards' is greater than 1, a ShardedBTree with that number of range partitions is
+     * provided instead, which allows concurrent writers but cannot be visualised as a single tree.
+     * If the property 'btree.engine' is 'art', an AdaptiveRadixTree is provided instead, if it is 'offheap', an
+     * OffHeapBTree storing its nodes outside the heap, with bit-packed leaves if 'btree.offheap.packed-leaves' is true.
+     * Neither can be visualised. Shards only apply to the default engine 'btree'.
+     * If the property 'btree.page-cache.pages' is greater than 0, the node accesses are recorded in a
+     * PageCacheSimulator of that many pages with the policy 'btree.page-cache.policy' (LRU, CLOCK or TWO_Q). Only the
+     * engine 'btree' has nodes whose accesses can be recorded, so a page cache together with another engine is
+     * rejected at startup.
+     * @param engine: The engine storing the keys, 'btree' by default.
+     * @param packedLeaves: Whether the engine 'offheap' stores its leaves bit-packed, false by default.
+     * @param shards: The number of range partitions, 1 by default.
+     * @param pageCachePages: The number of pages of the simulated page cache, 0 (none) by default.
+     * @param pageCachePolicy: The replacement policy of the simulated page cache, LRU by default.
+     * @return OrderedIntIndex: The BTree or the engine replacing it.
      */
     @Bean
-    public BTree bTree () {
-        return new BTree(DEFAULT_ORDER);
+    public OrderedIntIndex bTree (@Value("${btree.engine:btree}") String engine,
+                                  @Value("${btree.offheap.packed-leaves:false}") boolean packedLeaves,
+                                  @Value("${btree.shards:1}") int shards,
+                                  @Value("${btree.page-cache.pages:0}") int pageCachePages,
+                                  @Value("${btree.page-cache.policy:LRU}") PageCacheSimulator.Policy pageCachePolicy) {
+        OrderedIntIndex bTree;
+        if ("art".equals(engine)) {
+            bTree = new AdaptiveRadixTree(DEFAULT_ORDER);
+        } else if ("offheap".equals(engine)) {
+            bTree = new OffHeapBTree(DEFAULT_ORDER, packedLeaves);
+        } else if (!"btree".equals(engine)) {
+            throw new IllegalArgumentException("Unknown btree.engine: " + engine);
+        } else if (shards > 1) {
+            bTree = new ShardedBTree(DEFAULT_ORDER, shards);
+        } else {
+            bTree = new BTree(DEFAULT_ORDER);
+        }
+        if (pageCachePages > 0) {
+            if (!(bTree instanceof BTree)) {
+                throw new IllegalArgumentException("btree.page-cache.pages requires btree.engine=btree, not " + engine);
+            }
+            ((BTree) bTree).setPageCache(new PageCacheSimulator(pageCachePages, pageCachePolicy));
+        }
+        return bTree;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,127 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.btreeimplementation.BEpsilonTree;
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+
+import java.util.Random;
+
+/**
+ * Benchmark comparing BTree with BEpsilonTree under a write-dominated load.
+ * For every order it inserts the same random keys into a BTree and into BEpsilonTrees with growing buffer capacities
+ * and reports the node accesses and the average latency per insert, followed by the nodes accessed and the average
+ * latency of a random lookup of a contained key.
+ * Node accesses of the BTree are the root-to-leaf path of every insert plus the nodes created by splits, those of the
+ * BEpsilonTree are counted by the tree itself (the root for every insert, the child for every batch moved down and the
+ * nodes created or removed by splits and merges).
+ *
+ * Run with: java -cp target/classes com.dhbw.btreebackend.benchmark.BEpsilonTreeBenchmark [numberOfKeys]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BEpsilonTreeBenchmark {
+    private static final int DEFAULT_NUMBER_OF_KEYS = 1_000_000;
+    private static final int LOOKUPS = 1_000_000;
+    private static final int[] ORDERS = {16, 64};
+    private static final int[] BUFFER_CAPACITIES_PER_CHILD = {1, 4, 16};
+
+    public static void main(String[] args) {
+        int numberOfKeys = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_KEYS;
+        int[] keys = createKeys(numberOfKeys);
+        System.out.printf("%-8s %6s %8s %16s %12s %16s %12s%n", "tree", "order", "buffer", "accesses/insert",
+                "ns/insert", "accesses/lookup", "ns/lookup");
+        for(int order : ORDERS) {
+            BTree bTree = new BTree(order);
+            long bTreeAccesses = 0;
+            for(int key : keys) {
+                bTreeAccesses += bTree.searchElement(key).getCosts();
+                bTree.insertElement(key);
+            }
+            bTreeAccesses += bTree.getStatistics().getNumberOfNodes();
+            double[] lookups = measureLookups(bTree, keys);
+            System.out.printf("%-8s %6d %8s %16.2f %12.1f %16.2f %12.1f%n", "btree", order, "-",
+                    bTreeAccesses / (double) keys.length, measureInserts(order, 0, keys), lookups[0], lookups[1]);
+            for(int capacityPerChild : BUFFER_CAPACITIES_PER_CHILD) {
+                int bufferCapacity = capacityPerChild * order;
+                BEpsilonTree bEpsilonTree = new BEpsilonTree(order, bufferCapacity);
+                double nanosPerInsert = measureInserts(order, bufferCapacity, keys);
+                for(int key : keys) {
+                    bEpsilonTree.insertElement(key);
+                }
+                lookups = measureLookups(bEpsilonTree, keys);
+                System.out.printf("%-8s %6d %8d %16.2f %12.1f %16.2f %12.1f%n", "bepsilon", order, bufferCapacity,
+                        bEpsilonTree.getNodeAccesses() / (double) keys.length, nanosPerInsert, lookups[0], lookups[1]);
+            }
+        }
+    }
+
+    /**
+     * Create uniformly distributed random keys.
+     * @param numberOfKeys number of keys to create.
+     * @return the keys.
+     */
+    private static int[] createKeys(int numberOfKeys) {
+        Random random = new Random(42);
+        int[] keys = new int[numberOfKeys];
+        for(int i = 0; i < numberOfKeys; ++i) {
+            keys[i] = random.nextInt();
+        }
+        return keys;
+    }
+
+    /**
+     * Measure the average latency of inserting the keys into a new tree after a warm-up round. The node accesses are
+     * counted in a separate round, so counting does not distort the latency.
+     * @param order order of the tree.
+     * @param bufferCapacity buffer capacity of a BEpsilonTree, 0 for a BTree.
+     * @param keys the keys to insert.
+     * @return average nanoseconds per insert.
+     */
+    private static double measureInserts(int order, int bufferCapacity, int[] keys) {
+        double nanosPerInsert = 0;
+        for(int round = 0; round < 2; ++round) {
+            long start;
+            if(bufferCapacity == 0) {
+                BTree bTree = new BTree(order);
+                start = System.nanoTime();
+                for(int key : keys) {
+                    bTree.insertElement(key);
+                }
+            } else {
+                BEpsilonTree bEpsilonTree = new BEpsilonTree(order, bufferCapacity);
+                start = System.nanoTime();
+                for(int key : keys) {
+                    bEpsilonTree.insertElement(key);
+                }
+            }
+            nanosPerInsert = (System.nanoTime() - start) / (double) keys.length;
+        }
+        return nanosPerInsert;
+    }
+
+    /**
+     * Measure the average nodes accessed and latency of looking up random contained keys.
+     * @param bTree the tree to search.
+     * @param keys the keys contained in the tree.
+     * @return average nodes accessed and nanoseconds per lookup.
+     */
+    private static double[] measureLookups(BTree bTree, int[] keys) {
+        Random random = new Random(7);
+        long costs = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS; ++i) {
+            costs += bTree.searchElement(keys[random.nextInt(keys.length)]).getCosts();
+        }
+        return new double[] {costs / (double) LOOKUPS, (System.nanoTime() - start) / (double) LOOKUPS};
+    }
+
+    private static double[] measureLookups(BEpsilonTree bEpsilonTree, int[] keys) {
+        Random random = new Random(7);
+        long costs = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS; ++i) {
+            costs += bEpsilonTree.searchElement(keys[random.nextInt(keys.length)]).getCosts();
+        }
+        return new double[] {costs / (double) LOOKUPS, (System.nanoTime() - start) / (double) LOOKUPS};
+    }
+}
@@ -0,0 +1,273 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.BTreeBackendApplication;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.metrics.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the REST layer.
+ * Starts the application on a random local port, optionally preloads the tree and drives the endpoints POST /api,
+ * POST /api/search, POST /api/random and DELETE /api with a number of concurrent clients. Every client sends one
+ * request at a time and waits for its response (closed loop). Requests are only measured after the warm-up.
+ * Writes the configuration, the throughput and the latency distribution per operation to a report file and stdout.
+ *
+ * Options (all optional, as --name=value):
+ *      concurrency     number of concurrent clients (8)
+ *      warmup          warm-up in seconds (5)
+ *      duration        measured time in seconds (30)
+ *      mix             weights of the operations (insert:30,search:50,random:5,delete:15)
+ *      distribution    key distribution: uniform, sequential or hotspot, where 80% of the requests use 20% of the
+ *                      keys (uniform)
+ *      keys            size of the key space (10000)
+ *      preload         number of keys inserted into the tree before the test, bypassing HTTP (5000)
+ *      batch           keys per insert or delete request (1)
+ *      steps           whether inserts and deletes request the JSON-representation of every step; without them the
+ *                      server coalesces the mutations of concurrent requests (true)
+ *      report          path of the report file (loadtest-report.txt)
+ * All other options, e.g. --btree.shards=8, are passed to the application.
+ *
+ * Run with: java -cp target/btreebackend-0.0.1-SNAPSHOT.jar -Dloader.main=com.dhbw.btreebackend.benchmark.HttpLoadTest
+ *      org.springframework.boot.loader.PropertiesLauncher [options]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class HttpLoadTest {
+    private static final String[] OPERATIONS = {"insert", "search", "random", "delete"};
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> applicationArguments = new ArrayList<>();
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    private final AtomicInteger sequentialKey = new AtomicInteger();
+    private final int[] weights = new int[OPERATIONS.length];
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private String baseUrl;
+    private volatile boolean measuring;
+
+    public static void main(String[] args) throws Exception {
+        new HttpLoadTest(args).run();
+    }
+
+    private HttpLoadTest(String[] args) {
+        this.options.put("concurrency", "8");
+        this.options.put("warmup", "5");
+        this.options.put("duration", "30");
+        this.options.put("mix", "insert:30,search:50,random:5,delete:15");
+        this.options.put("distribution", "uniform");
+        this.options.put("keys", "10000");
+        this.options.put("preload", "5000");
+        this.options.put("batch", "1");
+        this.options.put("steps", "true");
+        this.options.put("report", "loadtest-report.txt");
+        for(String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if(option.length == 2 && this.options.containsKey(option[0])) {
+                this.options.put(option[0], option[1]);
+            } else {
+                this.applicationArguments.add(arg);
+            }
+        }
+        for(String mixEntry : this.options.get("mix").split(",")) {
+            String[] weight = mixEntry.split(":");
+            for(int i = 0; i < OPERATIONS.length; ++i) {
+                if(OPERATIONS[i].equals(weight[0].trim())) {
+                    this.weights[i] = Integer.parseInt(weight[1].trim());
+                }
+            }
+        }
+        for(String operation : OPERATIONS) {
+            this.latencies.put(operation, new Histogram());
+            this.errors.put(operation, new AtomicLong());
+        }
+    }
+
+    /**
+     * Start the application, preload the tree, run warm-up and measurement and write the report.
+     */
+    private void run() throws Exception {
+        this.applicationArguments.add("--server.port=0");
+        ConfigurableApplicationContext context = SpringApplication.run(BTreeBackendApplication.class,
+                this.applicationArguments.toArray(new String[0]));
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            this.baseUrl = "http://localhost:" + port + "/api";
+            OrderedIntIndex bTree = context.getBean(OrderedIntIndex.class);
+            int keySpace = getIntOption("keys");
+            for(int i = 0; i < getIntOption("preload"); ++i) {
+                bTree.insertElement(ThreadLocalRandom.current().nextInt(keySpace));
+            }
+
+            int concurrency = getIntOption("concurrency");
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(getIntOption("warmup"));
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(getIntOption("duration"));
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            for(int i = 0; i < concurrency; ++i) {
+                clients.execute(() -> runClient(end));
+            }
+            while(System.nanoTime() < warmupEnd) {
+                Thread.sleep(10);
+            }
+            this.measuring = true;
+            clients.shutdown();
+            clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writeReport(bTree);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Send requests until the given time, choosing the operation of every request by the weights of the mix.
+     * @param end System.nanoTime() at which to stop.
+     */
+    private void runClient(long end) {
+        int totalWeight = 0;
+        for(int weight : this.weights) {
+            totalWeight += weight;
+        }
+        while(System.nanoTime() < end) {
+            int choice = ThreadLocalRandom.current().nextInt(totalWeight);
+            int operation = 0;
+            while(choice >= this.weights[operation]) {
+                choice -= this.weights[operation++];
+            }
+            sendRequest(OPERATIONS[operation]);
+        }
+    }
+
+    /**
+     * Send a single request of the given operation and record its latency if the measurement has started.
+     * @param operation name of the operation.
+     */
+    private void sendRequest(String operation) {
+        HttpRequest.Builder request = HttpRequest.newBuilder().header("Content-Type", "application/json");
+        boolean steps = Boolean.parseBoolean(this.options.get("steps"));
+        URI mutationUri = URI.create(this.baseUrl + (steps ? "" : "?steps=false"));
+        switch(operation) {
+            case "insert":
+                request.uri(mutationUri).POST(HttpRequest.BodyPublishers.ofString(nextKeys()));
+                break;
+            case "search":
+                request.uri(URI.create(this.baseUrl + "/search"))
+                        .POST(HttpRequest.BodyPublishers.ofString(String.valueOf(nextKey())));
+                break;
+            case "random":
+                request.uri(URI.create(this.baseUrl + "/random"))
+                        .POST(HttpRequest.BodyPublishers.ofString("[0," + getIntOption("batch") + ","
+                                + (getIntOption("keys") - 1) + "]"));
+                break;
+            default:
+                request.uri(mutationUri).method("DELETE", HttpRequest.BodyPublishers.ofString(nextKeys()));
+        }
+        boolean measured = this.measuring;
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = this.httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            if(response.statusCode() != 200 && measured) {
+                this.errors.get(operation).incrementAndGet();
+            }
+        } catch(IOException e) {
+            if(measured) {
+                this.errors.get(operation).incrementAndGet();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if(measured) {
+            this.latencies.get(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get the next key of the configured distribution.
+     * @return the key.
+     */
+    private int nextKey() {
+        int keySpace = getIntOption("keys");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch(this.options.get("distribution")) {
+            case "sequential":
+                return Math.floorMod(this.sequentialKey.getAndIncrement(), keySpace);
+            case "hotspot":
+                int hotKeys = Math.max(1, keySpace / 5);
+                if(hotKeys == keySpace || random.nextInt(10) < 8) {
+                    return random.nextInt(hotKeys);
+                }
+                return hotKeys + random.nextInt(keySpace - hotKeys);
+            default:
+                return random.nextInt(keySpace);
+        }
+    }
+
+    /**
+     * Get a JSON array of as many keys as configured by the option batch.
+     * @return the JSON array.
+     */
+    private String nextKeys() {
+        StringBuilder keys = new StringBuilder("[");
+        for(int i = 0; i < getIntOption("batch"); ++i) {
+            keys.append((i > 0) ? "," : "").append(nextKey());
+        }
+        return keys.append("]").toString();
+    }
+
+    /**
+     * Write the configuration, throughput and latency distribution of every operation to the report file and stdout.
+     * @param bTree the tree of the application, to report the number of keys after the test.
+     */
+    private void writeReport(OrderedIntIndex bTree) throws IOException {
+        StringWriter report = new StringWriter();
+        PrintWriter out = new PrintWriter(report);
+        double seconds = getIntOption("duration");
+        out.printf("HTTP load test %s%n", LocalDateTime.now());
+        this.options.forEach((name, value) -> out.printf("%-13s %s%n", name, value));
+        out.printf("%-13s %s%n", "application", String.join(" ", this.applicationArguments));
+        out.printf("%-13s %d%n%n", "keys after", bTree.getElementKeysInRange(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        out.printf("%-8s %10s %10s %8s %10s %10s %10s %10s %10s %10s%n", "op", "requests", "req/s", "errors",
+                "mean ms", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        long totalRequests = 0;
+        for(String operation : OPERATIONS) {
+            Histogram histogram = this.latencies.get(operation);
+            totalRequests += histogram.getTotalCount();
+            out.printf("%-8s %10d %10.1f %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n", operation,
+                    histogram.getTotalCount(), histogram.getTotalCount() / seconds, this.errors.get(operation).get(),
+                    histogram.getMean() / 1e6, histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(90) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+        }
+        out.printf("%-8s %10d %10.1f%n", "total", totalRequests, totalRequests / seconds);
+        out.flush();
+        Files.writeString(Paths.get(this.options.get("report")), report.toString());
+        System.out.print(report);
+    }
+
+    private int getIntOption(String name) {
+        return Integer.parseInt(this.options.get(name));
+    }
+}
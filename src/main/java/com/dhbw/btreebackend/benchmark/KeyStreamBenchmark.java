@@ -0,0 +1,83 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark comparing aggregations over all keys of a BTree read through getAllElementKeysOrderedAscending(), which
+ * copies the keys into an ArrayList of Integers first, with the stream of BTree.keys(), sequential and parallel.
+ * For a BTree of order 64 holding the given number of random keys it reports the average time of a sum, a histogram
+ * of the keys in 16 buckets and a filter counting the keys divisible by 7. The parallel stream runs on the common
+ * ForkJoinPool, so its speedup is limited by the number of processors, which is printed as well.
+ *
+ * Run with: java -Xmx8g -cp target/classes com.dhbw.btreebackend.benchmark.KeyStreamBenchmark [numberOfKeys]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class KeyStreamBenchmark {
+    private static final int DEFAULT_NUMBER_OF_KEYS = 10_000_000;
+    private static final int ORDER = 64;
+    private static final int ROUNDS = 5;
+    private static final int BUCKETS = 16;
+
+    public static void main(String[] args) {
+        int numberOfKeys = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_KEYS;
+        BTree bTree = new BTree(ORDER);
+        Random random = new Random(42);
+        for(int i = 0; i < numberOfKeys; ++i) {
+            bTree.insertElement(random.nextInt());
+        }
+        System.out.printf("%d keys, %d processors%n", bTree.getStatistics().getNumberOfKeys(),
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %12s %12s %12s%n", "source", "ms/sum", "ms/histogram", "ms/filter");
+        run("list", () -> bTree.getAllElementKeysOrderedAscending().stream().mapToInt(Integer::intValue));
+        run("keys", bTree::keys);
+        run("parallel", () -> bTree.keys().parallel());
+    }
+
+    /**
+     * Measure the aggregations on streams of one source and print a line of results.
+     * @param source name of the source.
+     * @param streamSupplier creates a new stream of all keys.
+     */
+    private static void run(String source, StreamSupplier streamSupplier) {
+        double sum = measure(() -> (int) streamSupplier.get().asLongStream().sum());
+        double histogram = measure(() -> streamSupplier.get().collect(() -> new long[BUCKETS],
+                (buckets, key) -> ++buckets[(key >>> 28) & (BUCKETS - 1)],
+                (buckets, other) -> {
+                    for(int i = 0; i < BUCKETS; ++i) {
+                        buckets[i] += other[i];
+                    }
+                }).length);
+        double filter = measure(() -> (int) streamSupplier.get().filter(key -> key % 7 == 0).count());
+        System.out.printf("%-10s %12.1f %12.1f %12.1f%n", source, sum, histogram, filter);
+    }
+
+    /**
+     * Run the aggregation ROUNDS times and return the average time of all rounds but the first, which warms up.
+     * @param aggregation the aggregation.
+     * @return average milliseconds per aggregation.
+     */
+    private static double measure(IntSupplier aggregation) {
+        long total = 0;
+        for(int round = 0; round < ROUNDS; ++round) {
+            long start = System.nanoTime();
+            aggregation.getAsInt();
+            if(round > 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / (ROUNDS - 1) / 1e6;
+    }
+
+    /**
+     * Creates a new stream of all keys for every aggregation, as a stream can only be consumed once.
+     */
+    private interface StreamSupplier {
+        IntStream get();
+    }
+}
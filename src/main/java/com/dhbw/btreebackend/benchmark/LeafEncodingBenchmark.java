@@ -0,0 +1,100 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.btreeimplementation.OffHeapBTree;
+
+import java.util.Random;
+
+/**
+ * Benchmark comparing the packed and the unpacked leaf format of OffHeapBTree.
+ * For every combination of key distribution and order it builds both trees from the same keys and reports the
+ * occupied off-heap bytes per key and the average latency of a random lookup.
+ *
+ * Run with: java -cp target/classes com.dhbw.btreebackend.benchmark.LeafEncodingBenchmark [numberOfKeys]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class LeafEncodingBenchmark {
+    private static final int DEFAULT_NUMBER_OF_KEYS = 1_000_000;
+    private static final int LOOKUPS = 2_000_000;
+    private static final int[] ORDERS = {5, 32, 128};
+
+    public static void main(String[] args) {
+        int numberOfKeys = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_KEYS;
+        System.out.printf("%-10s %6s %8s %12s %12s%n", "keys", "order", "format", "bytes/key", "ns/lookup");
+        for(String distribution : new String[] {"dense", "clustered", "random"}) {
+            int[] keys = createKeys(distribution, numberOfKeys);
+            for(int order : ORDERS) {
+                for(boolean packedLeaves : new boolean[] {false, true}) {
+                    OffHeapBTree tree = new OffHeapBTree(order, packedLeaves);
+                    for(int key : keys) {
+                        tree.insertElement(key);
+                    }
+                    System.out.printf("%-10s %6d %8s %12.2f %12.1f%n", distribution, order,
+                            packedLeaves ? "packed" : "int", tree.getUsedBytesPerKey(), measureLookups(tree, keys));
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the keys to insert, shuffled so the trees are not built by purely sequential inserts.
+     * dense: 0 .. n-1, clustered: runs of 64 consecutive keys with random gaps of up to 4096 between runs,
+     * random: uniformly distributed ints.
+     * @param distribution name of the distribution.
+     * @param numberOfKeys number of keys to create.
+     * @return the keys.
+     */
+    private static int[] createKeys(String distribution, int numberOfKeys) {
+        Random random = new Random(42);
+        int[] keys = new int[numberOfKeys];
+        int next = 0;
+        for(int i = 0; i < numberOfKeys; ++i) {
+            switch(distribution) {
+                case "dense":
+                    keys[i] = i;
+                    break;
+                case "clustered":
+                    next += (i % 64 == 0) ? 1 + random.nextInt(4096) : 1;
+                    keys[i] = next;
+                    break;
+                default:
+                    keys[i] = random.nextInt();
+            }
+        }
+        for(int i = numberOfKeys - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    /**
+     * Measure the average latency of looking up random contained keys after a warm-up round.
+     * @param tree the tree to search.
+     * @param keys the keys contained in the tree.
+     * @return average nanoseconds per lookup.
+     */
+    private static double measureLookups(OffHeapBTree tree, int[] keys) {
+        lookupRandomKeys(tree, keys, new Random(7));
+        long start = System.nanoTime();
+        int found = lookupRandomKeys(tree, keys, new Random(7));
+        long elapsed = System.nanoTime() - start;
+        if(found != LOOKUPS) {
+            throw new IllegalStateException("Contained keys were not found.");
+        }
+        return elapsed / (double) LOOKUPS;
+    }
+
+    private static int lookupRandomKeys(OffHeapBTree tree, int[] keys, Random random) {
+        int found = 0;
+        for(int i = 0; i < LOOKUPS; ++i) {
+            if(tree.searchElement(keys[random.nextInt(keys.length)]).isFound()) {
+                ++found;
+            }
+        }
+        return found;
+    }
+}
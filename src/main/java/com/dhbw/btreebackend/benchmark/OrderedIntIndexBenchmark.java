@@ -0,0 +1,118 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.btreeimplementation.AdaptiveRadixTree;
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark comparing the engines behind OrderedIntIndex: BTrees of a small and a large order and the
+ * AdaptiveRadixTree.
+ * For dense keys (0 to n - 1 in random order) and uniformly distributed random keys it inserts the keys into a new
+ * index and reports the average latency per insert, followed by the nodes accessed and the average latency of a random
+ * lookup of a contained key and of a range query over 100 consecutive keys of the dense key space.
+ * Every index is only used through the interface, so the numbers show what switching 'btree.engine' changes.
+ *
+ * Run with: java -cp target/classes com.dhbw.btreebackend.benchmark.OrderedIntIndexBenchmark [numberOfKeys]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class OrderedIntIndexBenchmark {
+    private static final int DEFAULT_NUMBER_OF_KEYS = 1_000_000;
+    private static final int LOOKUPS = 1_000_000;
+    private static final int RANGE_QUERIES = 100_000;
+    private static final int RANGE_WIDTH = 100;
+
+    public static void main(String[] args) {
+        int numberOfKeys = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_KEYS;
+        System.out.printf("%-7s %-8s %12s %16s %12s %12s%n", "keys", "engine", "ns/insert", "accesses/lookup",
+                "ns/lookup", "ns/range");
+        for(String distribution : new String[] {"dense", "random"}) {
+            int[] keys = createKeys(numberOfKeys, distribution.equals("dense"));
+            run(distribution, "btree-5", () -> new BTree(5), keys);
+            run(distribution, "btree-64", () -> new BTree(64), keys);
+            run(distribution, "art", () -> new AdaptiveRadixTree(5), keys);
+        }
+    }
+
+    /**
+     * Measure one engine and print a line of results.
+     * @param distribution name of the key distribution.
+     * @param engine name of the engine.
+     * @param indexSupplier creates a new, empty index of the engine.
+     * @param keys the keys to insert.
+     */
+    private static void run(String distribution, String engine, Supplier<OrderedIntIndex> indexSupplier, int[] keys) {
+        OrderedIntIndex index = null;
+        double nanosPerInsert = 0;
+        for(int round = 0; round < 2; ++round) {
+            index = indexSupplier.get();
+            long start = System.nanoTime();
+            for(int key : keys) {
+                index.insertElement(key);
+            }
+            nanosPerInsert = (System.nanoTime() - start) / (double) keys.length;
+        }
+        double[] lookups = measureLookups(index, keys);
+        System.out.printf("%-7s %-8s %12.1f %16.2f %12.1f %12.1f%n", distribution, engine, nanosPerInsert, lookups[0],
+                lookups[1], measureRangeQueries(index, keys.length));
+    }
+
+    /**
+     * Create dense keys in random order or uniformly distributed random keys.
+     * @param numberOfKeys number of keys to create.
+     * @param dense true for the keys 0 to numberOfKeys - 1, false for random keys.
+     * @return the keys.
+     */
+    private static int[] createKeys(int numberOfKeys, boolean dense) {
+        Random random = new Random(42);
+        int[] keys = new int[numberOfKeys];
+        for(int i = 0; i < numberOfKeys; ++i) {
+            keys[i] = dense ? i : random.nextInt();
+        }
+        if(dense) {
+            for(int i = numberOfKeys - 1; i > 0; --i) {
+                int j = random.nextInt(i + 1);
+                int key = keys[i];
+                keys[i] = keys[j];
+                keys[j] = key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Measure the average nodes accessed and latency of looking up random contained keys.
+     * @param index the index to search.
+     * @param keys the keys contained in the index.
+     * @return average nodes accessed and nanoseconds per lookup.
+     */
+    private static double[] measureLookups(OrderedIntIndex index, int[] keys) {
+        Random random = new Random(7);
+        long costs = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS; ++i) {
+            costs += index.searchElement(keys[random.nextInt(keys.length)]).getCosts();
+        }
+        return new double[] {costs / (double) LOOKUPS, (System.nanoTime() - start) / (double) LOOKUPS};
+    }
+
+    /**
+     * Measure the average latency of range queries over RANGE_WIDTH consecutive keys between 0 and numberOfKeys.
+     * @param index the index to query.
+     * @param numberOfKeys upper end of the key space queried.
+     * @return average nanoseconds per range query.
+     */
+    private static double measureRangeQueries(OrderedIntIndex index, int numberOfKeys) {
+        Random random = new Random(11);
+        long start = System.nanoTime();
+        for(int i = 0; i < RANGE_QUERIES; ++i) {
+            int lowerBound = random.nextInt(numberOfKeys);
+            index.getElementKeysInRange(lowerBound, lowerBound + RANGE_WIDTH - 1);
+        }
+        return (System.nanoTime() - start) / (double) RANGE_QUERIES;
+    }
+}
@@ -0,0 +1,187 @@
+package com.dhbw.btreebackend.benchmark;
+
+import com.dhbw.btreebackend.btreeimplementation.AdaptiveRadixTree;
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Benchmark comparing BTrees used as priority queue with java.util.TreeSet and a binary heap (java.util.PriorityQueue).
+ * The first half of a random permutation of distinct keys is loaded, then every key of the second half is inserted
+ * right after removing the smallest key ('hold' operations, keeping the size constant), and finally all keys are
+ * removed in ascending order ('drain'). It reports the average latency per hold and per removal while draining.
+ * For the BTrees the removal is measured twice: with pollFirst(), which removes the key right from the leftmost leaf,
+ * and with first() followed by deleteElement(int), which searches for the key from the root again.
+ *
+ * Run with: java -cp target/classes com.dhbw.btreebackend.benchmark.PriorityQueueBenchmark [numberOfKeys]
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class PriorityQueueBenchmark {
+    private static final int DEFAULT_NUMBER_OF_KEYS = 1_000_000;
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) {
+        int numberOfKeys = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_KEYS;
+        int[] keys = createKeys(2 * numberOfKeys);
+        System.out.printf("%-9s %-20s %12s %12s%n", "keys", "queue", "ns/hold", "ns/drain");
+        for(int order : new int[] {5, 64}) {
+            run(numberOfKeys, "btree-" + order + " pollFirst", new BTreeQueue(order, true), keys);
+            run(numberOfKeys, "btree-" + order + " delete", new BTreeQueue(order, false), keys);
+        }
+        run(numberOfKeys, "art pollFirst", new Queue() {
+            private OrderedIntIndex tree;
+
+            @Override
+            public void clear() {
+                this.tree = new AdaptiveRadixTree(5);
+            }
+
+            @Override
+            public void add(int key) {
+                this.tree.insertElement(key);
+            }
+
+            @Override
+            public int poll() {
+                return this.tree.pollFirst();
+            }
+        }, keys);
+        run(numberOfKeys, "treeset", new Queue() {
+            private TreeSet<Integer> set;
+
+            @Override
+            public void clear() {
+                this.set = new TreeSet<>();
+            }
+
+            @Override
+            public void add(int key) {
+                this.set.add(key);
+            }
+
+            @Override
+            public int poll() {
+                return this.set.pollFirst();
+            }
+        }, keys);
+        run(numberOfKeys, "heap", new Queue() {
+            private PriorityQueue<Integer> heap;
+
+            @Override
+            public void clear() {
+                this.heap = new PriorityQueue<>();
+            }
+
+            @Override
+            public void add(int key) {
+                this.heap.add(key);
+            }
+
+            @Override
+            public int poll() {
+                return this.heap.poll();
+            }
+        }, keys);
+    }
+
+    /**
+     * Measure one queue and print a line of results. The last of ROUNDS runs is reported, the ones before warm up.
+     * @param numberOfKeys number of keys loaded before the holds.
+     * @param name name of the queue.
+     * @param queue the queue.
+     * @param keys 2 * numberOfKeys distinct keys.
+     */
+    private static void run(int numberOfKeys, String name, Queue queue, int[] keys) {
+        double nanosPerHold = 0;
+        double nanosPerDrain = 0;
+        for(int round = 0; round < ROUNDS; ++round) {
+            queue.clear();
+            for(int i = 0; i < numberOfKeys; ++i) {
+                queue.add(keys[i]);
+            }
+            long start = System.nanoTime();
+            for(int i = numberOfKeys; i < keys.length; ++i) {
+                queue.poll();
+                queue.add(keys[i]);
+            }
+            nanosPerHold = (System.nanoTime() - start) / (double) numberOfKeys;
+            start = System.nanoTime();
+            for(int i = 0; i < numberOfKeys; ++i) {
+                queue.poll();
+            }
+            nanosPerDrain = (System.nanoTime() - start) / (double) numberOfKeys;
+        }
+        System.out.printf("%-9d %-20s %12.1f %12.1f%n", numberOfKeys, name, nanosPerHold, nanosPerDrain);
+    }
+
+    /**
+     * Create a random permutation of distinct keys, spread over the whole int range.
+     * @param numberOfKeys number of keys to create.
+     * @return the keys.
+     */
+    private static int[] createKeys(int numberOfKeys) {
+        Random random = new Random(42);
+        int[] keys = new int[numberOfKeys];
+        int spacing = (int) Math.max(1, (1L << 32) / numberOfKeys);
+        for(int i = 0; i < numberOfKeys; ++i) {
+            keys[i] = (int) (Integer.MIN_VALUE + (long) i * spacing + random.nextInt(spacing));
+        }
+        for(int i = numberOfKeys - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * The operations of a min-priority queue of distinct int keys.
+     */
+    private interface Queue {
+        void clear();
+
+        void add(int key);
+
+        int poll();
+    }
+
+    /**
+     * A BTree used as priority queue, removing the smallest key either with pollFirst() or by searching for it.
+     */
+    private static final class BTreeQueue implements Queue {
+        private final int order;
+        private final boolean pollFirst;
+        private BTree tree;
+
+        private BTreeQueue(int order, boolean pollFirst) {
+            this.order = order;
+            this.pollFirst = pollFirst;
+        }
+
+        @Override
+        public void clear() {
+            this.tree = new BTree(this.order);
+        }
+
+        @Override
+        public void add(int key) {
+            this.tree.insertElement(key);
+        }
+
+        @Override
+        public int poll() {
+            if(this.pollFirst) {
+                return this.tree.pollFirst();
+            }
+            int key = this.tree.first();
+            this.tree.deleteElement(key);
+            return key;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Base class of the engines implementing OrderedIntIndex.
+ * Contains the list of BTreeMutationListeners and the methods notifying them, so every engine reports its mutations
+ *      the same way.
+ * Offers batch searches, which sort the keys and search them in ascending order by searchSortedElements, and the
+ *      loading of snapshots, which are read by readSnapshot and reported to the listeners afterwards.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public abstract class AbstractOrderedIntIndex implements OrderedIntIndex {
+    private final List<BTreeMutationListener> mutationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Search for all given keys, sorted ascending, so engines can share the work of neighbouring keys.
+     * @param elementKeys the keys to search for, in any order and possibly containing duplicates.
+     * @return BTreeBatchSearchResult containing a BTreeSearchResult per given key in the given order, with the same
+     *         costs as searchElement(int) would report, and the number of nodes accessed for all keys together.
+     */
+    @Override
+    public BTreeBatchSearchResult searchElements(int[] elementKeys) {
+        int[] sortedKeys = elementKeys.clone();
+        Arrays.sort(sortedKeys);
+        BTreeSearchResult[] sortedResults = new BTreeSearchResult[sortedKeys.length];
+        int nodesAccessed = searchSortedElements(sortedKeys, sortedResults);
+        BTreeSearchResult[] results = new BTreeSearchResult[elementKeys.length];
+        for(int i = 0; i < elementKeys.length; ++i) {
+            results[i] = sortedResults[Arrays.binarySearch(sortedKeys, elementKeys[i])];
+        }
+        return new BTreeBatchSearchResult(results, nodesAccessed);
+    }
+
+    /**
+     * Search for the given keys ordered ascending, one after another. Engines whose searches can share the nodes on
+     * the common path of neighbouring keys override this.
+     * @param sortedKeys the keys to search for, ordered ascending.
+     * @param results array to store the BTreeSearchResult of every key in, at the index of the key.
+     * @return the number of nodes accessed for all keys together.
+     */
+    protected int searchSortedElements(int[] sortedKeys, BTreeSearchResult[] results) {
+        int nodesAccessed = 0;
+        for(int i = 0; i < sortedKeys.length; ++i) {
+            results[i] = searchElement(sortedKeys[i]);
+            nodesAccessed += results[i].getCosts();
+        }
+        return nodesAccessed;
+    }
+
+    /**
+     * Replace the content of the index with the binary snapshot in the given buffer and notify the mutation listeners.
+     * @param buffer the buffer containing the snapshot, e.g. a memory-mapped file.
+     * @throws IOException if the buffer does not contain a valid snapshot. The index is left unchanged in that case.
+     */
+    @Override
+    public void loadSnapshot(ByteBuffer buffer) throws IOException {
+        readSnapshot(buffer);
+        notifySnapshotLoaded();
+    }
+
+    /**
+     * Read the binary snapshot in the given buffer and replace the content of the index with it.
+     * @param buffer the buffer containing the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot. The index is left unchanged in that case.
+     */
+    protected abstract void readSnapshot(ByteBuffer buffer) throws IOException;
+
+    @Override
+    public void addMutationListener(BTreeMutationListener listener) {
+        this.mutationListeners.add(listener);
+    }
+
+    @Override
+    public void removeMutationListener(BTreeMutationListener listener) {
+        this.mutationListeners.remove(listener);
+    }
+
+    /**
+     * Notify the mutation listeners that an element was inserted.
+     * @param elementKey the inserted key.
+     */
+    protected void notifyElementInserted(int elementKey) {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.elementInserted(elementKey);
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that an element was deleted.
+     * @param elementKey the deleted key.
+     */
+    protected void notifyElementDeleted(int elementKey) {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.elementDeleted(elementKey);
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that a range of keys was deleted.
+     * @param lowerBound smallest deleted key (inclusive).
+     * @param upperBound greatest deleted key (inclusive).
+     */
+    protected void notifyRangeDeleted(int lowerBound, int upperBound) {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.rangeDeleted(lowerBound, upperBound);
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that the order was changed.
+     * @param order the new order.
+     */
+    protected void notifyOrderChanged(int order) {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.orderChanged(order);
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that the index was cleared.
+     */
+    protected void notifyCleared() {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.cleared();
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that a snapshot was loaded.
+     */
+    protected void notifySnapshotLoaded() {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.snapshotLoaded();
+        }
+    }
+
+    /**
+     * Notify the mutation listeners that the structure of the index changed while its keys did not.
+     */
+    protected void notifyCompacted() {
+        for(BTreeMutationListener listener : this.mutationListeners) {
+            listener.compacted();
+        }
+    }
+}
@@ -0,0 +1,859 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import com.dhbw.btreebackend.BTreeBackendApplication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A class representing an adaptive radix tree (ART) over int keys, used as engine in place of a BTree.
+ * A key is mapped to an unsigned int by flipping its sign bit, which keeps the order, and split into 4 bytes, the most
+ *      significant byte first. Inner nodes branch on the byte of their depth and adapt their size to the number of
+ *      children like the Node4, Node16, Node48 and Node256 of the original ART: a ListNode keeps up to 4 or 16 sorted
+ *      key bytes next to its children, an IndexedNode up to 48 children addressed by a 256-entry index, a DirectNode
+ *      an array of 256 children. Nodes grow into the next size when they are full and shrink when they are far below
+ *      it.
+ * A subtree holding a single key is stored as a Leaf directly in the slot of the first byte that distinguishes it from
+ *      its neighbours (lazy expansion), so sparse keys do not create chains of inner nodes. Removing the second last
+ *      key of an inner node replaces the node by its remaining leaf.
+ * A search accesses at most 4 inner nodes and a leaf, each by a single array lookup or a scan of at most 16 bytes,
+ *      independent of the number of keys.
+ *
+ * Implements OrderedIntIndex, so it can be used as engine wherever no BTree nodes are needed. Search results contain
+ *      no location, as there are no BTree nodes. The order is kept only to be written to snapshots.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class AdaptiveRadixTree extends AbstractOrderedIntIndex {
+    private static final int BYTES = 4;
+
+    private int order;
+    private Object root;
+    private long numberOfKeys;
+    private long numberOfInnerNodes;
+
+    public AdaptiveRadixTree(int order) {
+        this.order = order;
+    }
+
+    /**
+     * Search for the given key, descending by its bytes until reaching a leaf or an empty slot.
+     * @param elementKey the key to search for.
+     * @return BTreeSearchResult containing whether the key was found and the number of nodes accessed.
+     */
+    @Override
+    public BTreeSearchResult searchElement(int elementKey) {
+        BTreeSearchResult searchResult = new BTreeSearchResult();
+        Object node = this.root;
+        int costs = 0;
+        for(int depth = 0; node instanceof InnerNode; ++depth) {
+            ++costs;
+            node = ((InnerNode) node).getChild(getByte(elementKey, depth));
+        }
+        if(node != null) {
+            ++costs;
+            searchResult.setFound(((Leaf) node).key == elementKey);
+        }
+        searchResult.setCosts(costs);
+        return searchResult;
+    }
+
+    /**
+     * Insert the given key and notify the mutation listeners if it was inserted.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the tree already contains it.
+     */
+    @Override
+    public boolean insertElement(int elementKey) {
+        long keysBefore = this.numberOfKeys;
+        this.root = insert(this.root, elementKey, 0);
+        if(this.numberOfKeys > keysBefore) {
+            notifyElementInserted(elementKey);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Insert the key into the subtree in the given slot.
+     *  An empty slot gets a new leaf.
+     *  A leaf with another key is replaced by a new inner node holding both leaves, below further inner nodes for every
+     *      byte both keys share.
+     *  An inner node inserts the key into the slot of the key's byte, growing into the next size if it is full.
+     * @param node the content of the slot, null if it is empty.
+     * @param elementKey the key to insert.
+     * @param depth depth of the slot, i.e. the index of the byte its content branches on.
+     * @return the new content of the slot.
+     */
+    private Object insert(Object node, int elementKey, int depth) {
+        if(node == null) {
+            ++this.numberOfKeys;
+            return new Leaf(elementKey);
+        }
+        if(node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            if(leaf.key == elementKey) {
+                return leaf;
+            }
+            InnerNode innerNode = new ListNode(4);
+            ++this.numberOfInnerNodes;
+            int leafByte = getByte(leaf.key, depth);
+            int keyByte = getByte(elementKey, depth);
+            if(leafByte == keyByte) {
+                return innerNode.addChild(leafByte, insert(leaf, elementKey, depth + 1));
+            }
+            ++this.numberOfKeys;
+            return innerNode.addChild(leafByte, leaf).addChild(keyByte, new Leaf(elementKey));
+        }
+        InnerNode innerNode = (InnerNode) node;
+        int keyByte = getByte(elementKey, depth);
+        Object child = innerNode.getChild(keyByte);
+        if(child == null) {
+            ++this.numberOfKeys;
+            return innerNode.addChild(keyByte, new Leaf(elementKey));
+        }
+        Object newChild = insert(child, elementKey, depth + 1);
+        if(newChild != child) {
+            innerNode.setChild(keyByte, newChild);
+        }
+        return innerNode;
+    }
+
+    /**
+     * Delete the given key and notify the mutation listeners if it was deleted.
+     * @param elementKey the key to delete.
+     * @return true if the key was found and deleted, false if the tree does not contain it.
+     */
+    @Override
+    public boolean deleteElement(int elementKey) {
+        if(deleteKey(elementKey)) {
+            notifyElementDeleted(elementKey);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean deleteKey(int elementKey) {
+        long keysBefore = this.numberOfKeys;
+        this.root = delete(this.root, elementKey, 0);
+        return this.numberOfKeys < keysBefore;
+    }
+
+    /**
+     * Delete the key from the subtree in the given slot.
+     *  A leaf with the key is removed.
+     *  An inner node deletes the key from the slot of the key's byte and shrinks if it is far below its size. If only
+     *      a leaf is left, the leaf replaces the node; if nothing is left, the slot becomes empty.
+     * @param node the content of the slot, null if it is empty.
+     * @param elementKey the key to delete.
+     * @param depth depth of the slot.
+     * @return the new content of the slot.
+     */
+    private Object delete(Object node, int elementKey, int depth) {
+        if(node == null) {
+            return null;
+        }
+        if(node instanceof Leaf) {
+            if(((Leaf) node).key == elementKey) {
+                --this.numberOfKeys;
+                return null;
+            }
+            return node;
+        }
+        InnerNode innerNode = (InnerNode) node;
+        int keyByte = getByte(elementKey, depth);
+        Object child = innerNode.getChild(keyByte);
+        if(child == null) {
+            return innerNode;
+        }
+        Object newChild = delete(child, elementKey, depth + 1);
+        if(newChild == child) {
+            return innerNode;
+        }
+        if(newChild == null) {
+            innerNode = innerNode.removeChild(keyByte);
+        } else {
+            innerNode.setChild(keyByte, newChild);
+        }
+        if(innerNode.numberOfChildren == 0) {
+            --this.numberOfInnerNodes;
+            return null;
+        }
+        if(innerNode.numberOfChildren == 1) {
+            Object onlyChild = innerNode.getChild(innerNode.getNextKeyByte(0));
+            if(onlyChild instanceof Leaf) {
+                --this.numberOfInnerNodes;
+                return onlyChild;
+            }
+        }
+        return innerNode;
+    }
+
+    /**
+     * Get the smallest key by descending along the smallest key byte of every inner node.
+     * @return the smallest key, null if the tree is empty.
+     */
+    @Override
+    public Integer first() {
+        Leaf leaf = getOutermostLeaf(true);
+        return (leaf != null) ? leaf.key : null;
+    }
+
+    /**
+     * Get the greatest key by descending along the greatest key byte of every inner node.
+     * @return the greatest key, null if the tree is empty.
+     */
+    @Override
+    public Integer last() {
+        Leaf leaf = getOutermostLeaf(false);
+        return (leaf != null) ? leaf.key : null;
+    }
+
+    /**
+     * Delete the smallest key and notify the mutation listeners.
+     * @return the deleted key, null if the tree is empty.
+     */
+    @Override
+    public Integer pollFirst() {
+        Integer elementKey = first();
+        if(elementKey != null) {
+            deleteElement(elementKey);
+        }
+        return elementKey;
+    }
+
+    /**
+     * Delete the greatest key and notify the mutation listeners.
+     * @return the deleted key, null if the tree is empty.
+     */
+    @Override
+    public Integer pollLast() {
+        Integer elementKey = last();
+        if(elementKey != null) {
+            deleteElement(elementKey);
+        }
+        return elementKey;
+    }
+
+    /**
+     * Get the leaf of the smallest or greatest key. As there are at most 4 inner nodes on the way, this takes constant
+     * time without keeping a reference to the leaf, which every insert and delete would have to maintain.
+     * @param smallest true for the leaf of the smallest key, false for the greatest.
+     * @return the leaf, null if the tree is empty.
+     */
+    private Leaf getOutermostLeaf(boolean smallest) {
+        Object node = this.root;
+        while(node instanceof InnerNode) {
+            InnerNode innerNode = (InnerNode) node;
+            node = innerNode.getChild(smallest ? innerNode.getNextKeyByte(0) : innerNode.getPreviousKeyByte(255));
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Delete all keys in the given range one by one and notify the mutation listeners if any key was deleted.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted keys.
+     */
+    @Override
+    public int deleteRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = getElementKeysInRange(lowerBound, upperBound);
+        for(int elementKey : keys) {
+            deleteKey(elementKey);
+        }
+        if(!keys.isEmpty()) {
+            notifyRangeDeleted(lowerBound, upperBound);
+        }
+        return keys.size();
+    }
+
+    /**
+     * Get all keys in the given range ordered ascending, visiting only the children whose key range overlaps it.
+     * @param lowerBound smallest key to return (inclusive).
+     * @param upperBound greatest key to return (inclusive).
+     * @return the contained keys in [lowerBound, upperBound] ordered ascending, empty if the tree is empty.
+     */
+    @Override
+    public ArrayList<Integer> getElementKeysInRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = new ArrayList<>();
+        if(this.root != null && lowerBound <= upperBound) {
+            addElementKeysInRange(this.root, 0, 0, toUnsigned(lowerBound), toUnsigned(upperBound), keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Add the keys of the subtree in the given slot that lie in the given range, ordered ascending.
+     * @param node the content of the slot.
+     * @param depth depth of the slot.
+     * @param prefix the unsigned value of the bytes leading to the slot, all following bytes 0.
+     * @param lowerBound smallest unsigned key to add.
+     * @param upperBound greatest unsigned key to add.
+     * @param keys list to add the keys to.
+     */
+    private static void addElementKeysInRange(Object node, int depth, long prefix, long lowerBound, long upperBound,
+                                              List<Integer> keys) {
+        if(node instanceof Leaf) {
+            long key = toUnsigned(((Leaf) node).key);
+            if(key >= lowerBound && key <= upperBound) {
+                keys.add(((Leaf) node).key);
+            }
+            return;
+        }
+        InnerNode innerNode = (InnerNode) node;
+        int shift = 8 * (BYTES - 1 - depth);
+        int firstKeyByte = (lowerBound > prefix) ? (int) Math.min(255, (lowerBound - prefix) >>> shift) : 0;
+        for(int keyByte = innerNode.getNextKeyByte(firstKeyByte); keyByte >= 0;
+            keyByte = innerNode.getNextKeyByte(keyByte + 1)) {
+            long childPrefix = prefix | ((long) keyByte << shift);
+            if(childPrefix > upperBound) {
+                break;
+            }
+            if((childPrefix | ((1L << shift) - 1)) >= lowerBound) {
+                addElementKeysInRange(innerNode.getChild(keyByte), depth + 1, childPrefix, lowerBound, upperBound, keys);
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Integer> getAllElementKeysOrderedAscending() {
+        return getElementKeysInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a stream of all keys ordered ascending, read lazily from the nodes. The stream is backed by a KeySpliterator
+     * splitting the key bytes of the inner nodes, so parallel() aggregations traverse disjoint subtrees on different
+     * threads. The tree must not be modified while the stream is consumed.
+     * @return the keys ordered ascending, sized exactly as long as the stream is not split.
+     */
+    @Override
+    public IntStream keys() {
+        if(this.root == null) {
+            return IntStream.empty();
+        }
+        if(this.root instanceof Leaf) {
+            return IntStream.of(((Leaf) this.root).key);
+        }
+        return StreamSupport.intStream(new KeySpliterator((InnerNode) this.root, 0, 256, this.numberOfKeys, true),
+                false);
+    }
+
+    /**
+     * Clear the tree and reset the order to default 5. Notify the mutation listeners.
+     */
+    @Override
+    public void clear() {
+        this.root = null;
+        this.numberOfKeys = 0;
+        this.numberOfInnerNodes = 0;
+        this.order = BTreeBackendApplication.DEFAULT_ORDER;
+        notifyCleared();
+    }
+
+    /**
+     * Set the order written to snapshots and notify the mutation listeners. The tree itself does not depend on it.
+     * @param order new order to set.
+     */
+    @Override
+    public void setOrder(int order) {
+        this.order = order;
+        notifyOrderChanged(order);
+    }
+
+    /**
+     * Write a binary snapshot of the keys. As there are no BTree nodes, the keys are streamed in order into a BTree of
+     * the shape of SortedKeysLayout with the order of this tree, so no temporary BTree is built.
+     * @param out the stream to write to. It is flushed but not closed.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void writeSnapshot(OutputStream out) throws IOException {
+        BTreeSnapshot.writeSortedKeys(this::keys, (int) this.numberOfKeys, this.order, out);
+    }
+
+    /**
+     * Read the keys of the snapshot without building its nodes, take over its order and insert the keys.
+     * @param buffer the buffer containing the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot. The tree is left unchanged in that case.
+     */
+    @Override
+    protected void readSnapshot(ByteBuffer buffer) throws IOException {
+        BTreeSnapshot.SortedKeys snapshot = BTreeSnapshot.readSortedKeys(buffer);
+        this.root = null;
+        this.numberOfKeys = 0;
+        this.numberOfInnerNodes = 0;
+        this.order = snapshot.getOrder();
+        for(int key : snapshot.getKeys()) {
+            this.root = insert(this.root, key, 0);
+        }
+    }
+
+    /**
+     * Get the statistics of the tree. A radix tree has no levels in the sense of a BTree, so all inner nodes and leaves
+     * are reported as nodes on a single level holding all keys.
+     * @return the statistics.
+     */
+    @Override
+    public BTreeStatistics getStatistics() {
+        BTreeStatistics statistics = new BTreeStatistics();
+        statistics.reset(this.order);
+        if(this.root != null) {
+            statistics.addNodes(0, this.numberOfInnerNodes + this.numberOfKeys);
+            statistics.addKeys(0, this.numberOfKeys);
+        }
+        return statistics;
+    }
+
+    @Override
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Map the key to an unsigned value with the same order by flipping its sign bit.
+     * @param elementKey the key.
+     * @return the unsigned value between 0 and 2^32 - 1.
+     */
+    private static long toUnsigned(int elementKey) {
+        return (elementKey ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Get the byte of the key a node of the given depth branches on.
+     * @param elementKey the key.
+     * @param depth depth of the node, 0 for the most significant byte.
+     * @return the byte between 0 and 255.
+     */
+    private static int getByte(int elementKey, int depth) {
+        return ((elementKey ^ Integer.MIN_VALUE) >>> (8 * (BYTES - 1 - depth))) & 0xFF;
+    }
+
+    /**
+     * A leaf holding a single key.
+     */
+    private static final class Leaf {
+        private final int key;
+
+        private Leaf(int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * An inner node branching on one byte of the keys. Its children are Leafs or InnerNodes.
+     * Methods changing the number of children return the node to use afterwards, which is a node of another size if
+     * the node had to grow or shrink.
+     */
+    private abstract static class InnerNode {
+        protected int numberOfChildren;
+
+        /**
+         * Get the child for the given key byte.
+         * @param keyByte the key byte.
+         * @return the child, null if there is none.
+         */
+        abstract Object getChild(int keyByte);
+
+        /**
+         * Replace the existing child for the given key byte.
+         * @param keyByte the key byte.
+         * @param child the new child.
+         */
+        abstract void setChild(int keyByte, Object child);
+
+        /**
+         * Add a child for a key byte that has none yet.
+         * @param keyByte the key byte.
+         * @param child the child.
+         * @return this node, or a larger node holding all children if this node was full.
+         */
+        abstract InnerNode addChild(int keyByte, Object child);
+
+        /**
+         * Remove the existing child for the given key byte.
+         * @param keyByte the key byte.
+         * @return this node, or a smaller node holding all remaining children.
+         */
+        abstract InnerNode removeChild(int keyByte);
+
+        /**
+         * Get the smallest key byte with a child that is not smaller than the given one.
+         * @param fromKeyByte the key byte to start at.
+         * @return the key byte, -1 if there is none.
+         */
+        abstract int getNextKeyByte(int fromKeyByte);
+
+        /**
+         * Get the greatest key byte with a child that is not greater than the given one.
+         * @param fromKeyByte the key byte to start at.
+         * @return the key byte, -1 if there is none.
+         */
+        abstract int getPreviousKeyByte(int fromKeyByte);
+
+        /**
+         * Add all children of this node to the given node.
+         * @param target the node to add the children to.
+         * @return the target node.
+         */
+        InnerNode copyChildrenTo(InnerNode target) {
+            for(int keyByte = getNextKeyByte(0); keyByte >= 0; keyByte = getNextKeyByte(keyByte + 1)) {
+                target = target.addChild(keyByte, getChild(keyByte));
+            }
+            return target;
+        }
+    }
+
+    /**
+     * An inner node for up to 4 or 16 children (Node4 and Node16 of the ART), keeping the key bytes ordered ascending
+     * next to the children.
+     */
+    private static final class ListNode extends InnerNode {
+        private final byte[] keyBytes;
+        private final Object[] children;
+
+        private ListNode(int capacity) {
+            this.keyBytes = new byte[capacity];
+            this.children = new Object[capacity];
+        }
+
+        private int indexOf(int keyByte) {
+            for(int i = 0; i < this.numberOfChildren; ++i) {
+                int current = this.keyBytes[i] & 0xFF;
+                if(current >= keyByte) {
+                    return (current == keyByte) ? i : -i - 1;
+                }
+            }
+            return -this.numberOfChildren - 1;
+        }
+
+        @Override
+        Object getChild(int keyByte) {
+            int index = indexOf(keyByte);
+            return (index >= 0) ? this.children[index] : null;
+        }
+
+        @Override
+        void setChild(int keyByte, Object child) {
+            this.children[indexOf(keyByte)] = child;
+        }
+
+        @Override
+        InnerNode addChild(int keyByte, Object child) {
+            if(this.numberOfChildren == this.keyBytes.length) {
+                InnerNode larger = (this.keyBytes.length == 4) ? new ListNode(16) : new IndexedNode();
+                return copyChildrenTo(larger).addChild(keyByte, child);
+            }
+            int index = -indexOf(keyByte) - 1;
+            System.arraycopy(this.keyBytes, index, this.keyBytes, index + 1, this.numberOfChildren - index);
+            System.arraycopy(this.children, index, this.children, index + 1, this.numberOfChildren - index);
+            this.keyBytes[index] = (byte) keyByte;
+            this.children[index] = child;
+            ++this.numberOfChildren;
+            return this;
+        }
+
+        @Override
+        InnerNode removeChild(int keyByte) {
+            int index = indexOf(keyByte);
+            System.arraycopy(this.keyBytes, index + 1, this.keyBytes, index, this.numberOfChildren - index - 1);
+            System.arraycopy(this.children, index + 1, this.children, index, this.numberOfChildren - index - 1);
+            this.children[--this.numberOfChildren] = null;
+            if(this.keyBytes.length == 16 && this.numberOfChildren <= 3) {
+                return copyChildrenTo(new ListNode(4));
+            }
+            return this;
+        }
+
+        @Override
+        int getNextKeyByte(int fromKeyByte) {
+            for(int i = 0; i < this.numberOfChildren; ++i) {
+                if((this.keyBytes[i] & 0xFF) >= fromKeyByte) {
+                    return this.keyBytes[i] & 0xFF;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int getPreviousKeyByte(int fromKeyByte) {
+            for(int i = this.numberOfChildren - 1; i >= 0; --i) {
+                if((this.keyBytes[i] & 0xFF) <= fromKeyByte) {
+                    return this.keyBytes[i] & 0xFF;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * An inner node for up to 48 children (Node48 of the ART), addressed by an index holding the slot of every key
+     * byte plus one, 0 for none.
+     */
+    private static final class IndexedNode extends InnerNode {
+        private static final int CAPACITY = 48;
+
+        private final byte[] index = new byte[256];
+        private final Object[] children = new Object[CAPACITY];
+
+        @Override
+        Object getChild(int keyByte) {
+            int slot = this.index[keyByte];
+            return (slot != 0) ? this.children[slot - 1] : null;
+        }
+
+        @Override
+        void setChild(int keyByte, Object child) {
+            this.children[this.index[keyByte] - 1] = child;
+        }
+
+        @Override
+        InnerNode addChild(int keyByte, Object child) {
+            if(this.numberOfChildren == CAPACITY) {
+                return copyChildrenTo(new DirectNode()).addChild(keyByte, child);
+            }
+            int slot = 0;
+            while(this.children[slot] != null) {
+                ++slot;
+            }
+            this.children[slot] = child;
+            this.index[keyByte] = (byte) (slot + 1);
+            ++this.numberOfChildren;
+            return this;
+        }
+
+        @Override
+        InnerNode removeChild(int keyByte) {
+            this.children[this.index[keyByte] - 1] = null;
+            this.index[keyByte] = 0;
+            --this.numberOfChildren;
+            if(this.numberOfChildren <= 12) {
+                return copyChildrenTo(new ListNode(16));
+            }
+            return this;
+        }
+
+        @Override
+        int getNextKeyByte(int fromKeyByte) {
+            for(int keyByte = fromKeyByte; keyByte < 256; ++keyByte) {
+                if(this.index[keyByte] != 0) {
+                    return keyByte;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int getPreviousKeyByte(int fromKeyByte) {
+            for(int keyByte = fromKeyByte; keyByte >= 0; --keyByte) {
+                if(this.index[keyByte] != 0) {
+                    return keyByte;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * An inner node for up to 256 children (Node256 of the ART), addressed directly by the key byte.
+     */
+    private static final class DirectNode extends InnerNode {
+        private final Object[] children = new Object[256];
+
+        @Override
+        Object getChild(int keyByte) {
+            return this.children[keyByte];
+        }
+
+        @Override
+        void setChild(int keyByte, Object child) {
+            this.children[keyByte] = child;
+        }
+
+        @Override
+        InnerNode addChild(int keyByte, Object child) {
+            this.children[keyByte] = child;
+            ++this.numberOfChildren;
+            return this;
+        }
+
+        @Override
+        InnerNode removeChild(int keyByte) {
+            this.children[keyByte] = null;
+            --this.numberOfChildren;
+            if(this.numberOfChildren <= 37) {
+                return copyChildrenTo(new IndexedNode());
+            }
+            return this;
+        }
+
+        @Override
+        int getNextKeyByte(int fromKeyByte) {
+            for(int keyByte = fromKeyByte; keyByte < 256; ++keyByte) {
+                if(this.children[keyByte] != null) {
+                    return keyByte;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int getPreviousKeyByte(int fromKeyByte) {
+            for(int keyByte = fromKeyByte; keyByte >= 0; --keyByte) {
+                if(this.children[keyByte] != null) {
+                    return keyByte;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A Spliterator over the keys in the children of an inner node whose key bytes lie in [from, to).
+     * Splitting divides the key bytes between the smallest and the greatest remaining child in the middle. If a single
+     *      inner node is left, the spliterator descends into it first. While a child is traversed key by key, it is
+     *      held by a spliterator of its own, which is handed out as prefix by the next split.
+     * Sizes are estimated by dividing the estimate of a node evenly among its children.
+     */
+    private static final class KeySpliterator implements Spliterator.OfInt {
+        private static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL;
+
+        private InnerNode node;
+        private int from;
+        private int to;
+        private KeySpliterator current;
+        private double estimate;
+        private boolean exact;
+
+        private KeySpliterator(InnerNode node, int from, int to, double estimate, boolean exact) {
+            this.node = node;
+            this.from = from;
+            this.to = to;
+            this.estimate = estimate;
+            this.exact = exact;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while(true) {
+                if(this.current != null) {
+                    if(this.current.tryAdvance(action)) {
+                        return countAdvance();
+                    }
+                    this.current = null;
+                }
+                int keyByte = this.node.getNextKeyByte(this.from);
+                if(keyByte < 0 || keyByte >= this.to) {
+                    this.from = this.to;
+                    return false;
+                }
+                this.from = keyByte + 1;
+                Object child = this.node.getChild(keyByte);
+                if(child instanceof Leaf) {
+                    action.accept(((Leaf) child).key);
+                    return countAdvance();
+                }
+                this.current = new KeySpliterator((InnerNode) child, 0, 256, getChildEstimate(), false);
+            }
+        }
+
+        private boolean countAdvance() {
+            if(this.exact) {
+                --this.estimate;
+            }
+            return true;
+        }
+
+        private double getChildEstimate() {
+            return this.estimate / Math.max(1, this.node.numberOfChildren);
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if(this.current != null) {
+                this.current.forEachRemaining(action);
+                this.current = null;
+            }
+            for(int keyByte = this.node.getNextKeyByte(this.from); keyByte >= 0 && keyByte < this.to;
+                keyByte = this.node.getNextKeyByte(keyByte + 1)) {
+                forEachKey(this.node.getChild(keyByte), action);
+            }
+            this.from = this.to;
+            this.estimate = 0;
+        }
+
+        /**
+         * Pass all keys of the subtree in a slot to the action, ordered ascending.
+         * @param node the content of the slot.
+         * @param action the action.
+         */
+        private static void forEachKey(Object node, IntConsumer action) {
+            if(node instanceof Leaf) {
+                action.accept(((Leaf) node).key);
+                return;
+            }
+            InnerNode innerNode = (InnerNode) node;
+            for(int keyByte = innerNode.getNextKeyByte(0); keyByte >= 0;
+                keyByte = innerNode.getNextKeyByte(keyByte + 1)) {
+                forEachKey(innerNode.getChild(keyByte), action);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            if(this.current != null) {
+                KeySpliterator prefix = this.current;
+                this.current = null;
+                this.estimate = Math.max(0, this.estimate - prefix.estimate);
+                this.exact = false;
+                return prefix;
+            }
+            while(true) {
+                int first = (this.from < this.to) ? this.node.getNextKeyByte(this.from) : -1;
+                if(first < 0 || first >= this.to) {
+                    return null;
+                }
+                int last = this.node.getPreviousKeyByte(this.to - 1);
+                if(first < last) {
+                    int middle = (first + last + 1) / 2;
+                    KeySpliterator prefix = new KeySpliterator(this.node, this.from, middle, this.estimate / 2, false);
+                    this.from = middle;
+                    this.estimate -= prefix.estimate;
+                    this.exact = false;
+                    return prefix;
+                }
+                Object child = this.node.getChild(first);
+                if(child instanceof Leaf) {
+                    return null;
+                }
+                this.node = (InnerNode) child;
+                this.from = 0;
+                this.to = 256;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) Math.ceil(this.estimate);
+        }
+
+        @Override
+        public int characteristics() {
+            return this.exact ? CHARACTERISTICS | SIZED : CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
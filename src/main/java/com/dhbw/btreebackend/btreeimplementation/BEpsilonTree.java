@@ -0,0 +1,484 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A class representing a write-optimized B^epsilon-tree.
+ * Contains the order of the tree: an inner node has at most 'order' children, a leaf at most order - 1 keys, and every
+ *      node except the root has at least elementMin keys respectively elementMin + 1 children, exactly like BTree.
+ * Contains the capacity of the message buffers of the inner nodes.
+ * Contains a reference to the root node and the number of nodes accessed by inserts and deletes so far.
+ *
+ * An insert or delete does not descend to a leaf. It is added as a message to the buffer of the root, replacing an
+ *      older message for the same key. Only if the buffer holds more than bufferCapacity messages, the messages for the
+ *      child receiving the most of them are moved down in one batch: into the buffer of an inner child, which is
+ *      flushed the same way if it overflows, or applied to a leaf child, which is split into as many leaves as needed.
+ *      Children left with too many or too few keys are split respectively merged with a neighbour afterwards. A batch
+ *      of k messages therefore costs a single access of the child instead of k root-to-leaf paths.
+ * Messages further up are always newer than messages further down, so a search returns the first message for its key
+ *      found on the way from the root to the leaf, or whether the leaf contains the key if there is none.
+ * The tree does not know whether a key is contained without searching for it, so inserts and deletes are blind and
+ *      do not report whether they changed anything.
+ *
+ * Offers public access methods to insert, delete or search for element keys, to clear the tree, to get all element
+ *      keys ordered ascending, to flush all buffers and to enquire its shape and the number of node accesses.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BEpsilonTree {
+    private static final int DEFAULT_BUFFER_CAPACITY_PER_CHILD = 4;
+
+    private final int order;
+    private final int elementsMax;
+    private final int elementMin;
+    private final int bufferCapacity;
+    private BufferedNode root;
+    private long nodeAccesses;
+
+    /**
+     * A constructor using a buffer capacity of DEFAULT_BUFFER_CAPACITY_PER_CHILD messages per child.
+     * @param order order of the tree, at least 3.
+     */
+    public BEpsilonTree(int order) {
+        this(order, DEFAULT_BUFFER_CAPACITY_PER_CHILD * order);
+    }
+
+    /**
+     * A constructor choosing the capacity of the message buffers.
+     * @param order order of the tree, at least 3.
+     * @param bufferCapacity maximum number of messages an inner node buffers before flushing, at least 1.
+     */
+    public BEpsilonTree(int order, int bufferCapacity) {
+        if(order < 3 || bufferCapacity < 1) {
+            throw new IllegalArgumentException("order must be at least 3 and bufferCapacity at least 1");
+        }
+        this.order = order;
+        this.elementsMax = order - 1;
+        this.elementMin = (order / 2 + ((order % 2 == 0) ? 0 : 1)) - 1;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Search for the given key. On the way down, the buffer of every inner node is consulted first.
+     * @param elementKey the key to search for.
+     * @return BTreeSearchResult object containing information on whether the element was found and how many nodes had
+     *         to be accessed. As the tree does not use Node objects, location and element are always null.
+     */
+    public BTreeSearchResult searchElement(int elementKey) {
+        BTreeSearchResult searchResult = new BTreeSearchResult();
+        BufferedNode inspectedNode = this.root;
+        int costs = 0;
+        while(inspectedNode != null) {
+            ++costs;
+            if(inspectedNode.isLeaf()) {
+                searchResult.setFound(Collections.binarySearch(inspectedNode.keys, elementKey) >= 0);
+                break;
+            }
+            Boolean message = inspectedNode.buffer.get(elementKey);
+            if(message != null) {
+                searchResult.setFound(message);
+                break;
+            }
+            inspectedNode = inspectedNode.children.get(inspectedNode.getChildIndex(elementKey));
+        }
+        searchResult.setCosts(costs);
+        return searchResult;
+    }
+
+    /**
+     * Insert the given key. The key is buffered in the root and reaches its leaf with a later flush.
+     * @param elementKey the key to insert.
+     */
+    public void insertElement(int elementKey) {
+        putMessage(elementKey, true);
+    }
+
+    /**
+     * Delete the given key. The delete is buffered in the root and reaches its leaf with a later flush.
+     * @param elementKey the key to delete.
+     */
+    public void deleteElement(int elementKey) {
+        putMessage(elementKey, false);
+    }
+
+    /**
+     * Add a message to the root, or apply it directly if the root is a leaf, and rebalance the root afterwards.
+     * @param elementKey the key of the message.
+     * @param insert true for an insert, false for a delete.
+     */
+    private void putMessage(int elementKey, boolean insert) {
+        if(this.root == null) {
+            if(!insert) {
+                return;
+            }
+            this.root = new BufferedNode(false);
+        }
+        ++this.nodeAccesses;
+        if(this.root.isLeaf()) {
+            SortedMap<Integer, Boolean> message = new TreeMap<>();
+            message.put(elementKey, insert);
+            applyToLeaf(this.root, message);
+        } else {
+            this.root.buffer.put(elementKey, insert);
+        }
+        fixRoot();
+    }
+
+    /**
+     * Move all buffered messages down to the leaves, so every key is stored in its leaf afterwards.
+     */
+    public void flush() {
+        if(this.root != null) {
+            flushCompletely(this.root);
+            fixRoot();
+        }
+    }
+
+    /**
+     * Empty the buffers of all inner nodes of the subtree top-down and rebalance the children afterwards.
+     * @param node root of the subtree.
+     */
+    private void flushCompletely(BufferedNode node) {
+        if(node.isLeaf()) {
+            return;
+        }
+        while(!node.buffer.isEmpty()) {
+            flushLargestBatch(node);
+        }
+        for(int i = 0; i < node.children.size(); ++i) {
+            flushCompletely(node.children.get(i));
+        }
+        for(int i = node.children.size() - 1; i >= 0; --i) {
+            fixChild(node, Math.min(i, node.children.size() - 1));
+        }
+    }
+
+    /**
+     * Rebalance the root until none of the following applies:
+     *  The root is a leaf without keys: the tree is empty.
+     *  The root buffers too many messages: flush it.
+     *  The root has too many keys or children: add a new root above it and split the old root.
+     *  The root is an inner node with a single child: move its messages to the child, which becomes the new root.
+     */
+    private void fixRoot() {
+        while(this.root != null) {
+            if(this.root.isLeaf() && this.root.keys.isEmpty()) {
+                this.root = null;
+            } else if(!this.root.isLeaf() && this.root.buffer.size() > this.bufferCapacity) {
+                flushLargestBatch(this.root);
+            } else if(this.root.size() > this.elementsMax) {
+                BufferedNode newRoot = new BufferedNode(true);
+                newRoot.children.add(this.root);
+                this.root = newRoot;
+                ++this.nodeAccesses;
+                split(newRoot, 0);
+            } else if(!this.root.isLeaf() && this.root.keys.isEmpty()) {
+                BufferedNode child = this.root.children.get(0);
+                ++this.nodeAccesses;
+                if(child.isLeaf()) {
+                    applyToLeaf(child, this.root.buffer);
+                } else {
+                    child.buffer.putAll(this.root.buffer);
+                }
+                this.root = child;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move the messages for the child receiving most of them from the buffer of the given node to that child and
+     * rebalance the child afterwards. The node itself may be left with too many or too few children, which its parent
+     * has to rebalance.
+     * @param node an inner node with a non-empty buffer.
+     */
+    private void flushLargestBatch(BufferedNode node) {
+        int[] messagesPerChild = new int[node.children.size()];
+        int childIndex = 0;
+        int largest = 0;
+        for(int elementKey : node.buffer.keySet()) {
+            while(childIndex < node.keys.size() && elementKey >= node.keys.get(childIndex)) {
+                ++childIndex;
+            }
+            if(++messagesPerChild[childIndex] > messagesPerChild[largest]) {
+                largest = childIndex;
+            }
+        }
+        SortedMap<Integer, Boolean> batch = node.getBufferOfChild(largest);
+        BufferedNode child = node.children.get(largest);
+        ++this.nodeAccesses;
+        if(child.isLeaf()) {
+            applyToLeaf(child, batch);
+        } else {
+            child.buffer.putAll(batch);
+        }
+        batch.clear();
+        fixChild(node, largest);
+    }
+
+    /**
+     * Apply the given messages to a leaf: add the keys of inserts and remove the keys of deletes. The leaf may be left
+     * with too many or too few keys.
+     * @param leaf the leaf.
+     * @param messages the messages, all of them for keys in the range of the leaf.
+     */
+    private static void applyToLeaf(BufferedNode leaf, SortedMap<Integer, Boolean> messages) {
+        ArrayList<Integer> keys = new ArrayList<>(leaf.keys.size() + messages.size());
+        int i = 0;
+        for(Map.Entry<Integer, Boolean> message : messages.entrySet()) {
+            int elementKey = message.getKey();
+            while(i < leaf.keys.size() && leaf.keys.get(i) < elementKey) {
+                keys.add(leaf.keys.get(i++));
+            }
+            if(i < leaf.keys.size() && leaf.keys.get(i) == elementKey) {
+                ++i;
+            }
+            if(message.getValue()) {
+                keys.add(elementKey);
+            }
+        }
+        keys.addAll(leaf.keys.subList(i, leaf.keys.size()));
+        leaf.keys = keys;
+    }
+
+    /**
+     * Rebalance the child with the given index after messages were moved to it:
+     *  If it is an inner node buffering too many messages, flush it first.
+     *  If it has too many keys (or children), split it.
+     *  If it has too few and the parent has another child, merge it with its left neighbour (or right neighbour if it
+     *      has no left one) and rebalance the merged node again, which splits it if it got too large.
+     * @param parent the parent of the child.
+     * @param index index of the child.
+     */
+    private void fixChild(BufferedNode parent, int index) {
+        BufferedNode child = parent.children.get(index);
+        if(!child.isLeaf() && child.buffer.size() > this.bufferCapacity) {
+            flushLargestBatch(child);
+            fixChild(parent, index);
+        } else if(child.size() > this.elementsMax) {
+            split(parent, index);
+        } else if(child.size() < this.elementMin && parent.children.size() > 1) {
+            fixChild(parent, merge(parent, index));
+        }
+    }
+
+    /**
+     * Split the child with the given index into as few nodes as possible that do not exceed the maximum size, with
+     * sizes as equal as possible. For a leaf, the smallest key of every new leaf is added to the parent as separator.
+     * For an inner node, the keys between the new nodes move up to the parent, and the buffer is divided accordingly.
+     * @param parent the parent of the child.
+     * @param index index of the child.
+     */
+    private void split(BufferedNode parent, int index) {
+        BufferedNode child = parent.children.remove(index);
+        int size = child.isLeaf() ? child.keys.size() : child.children.size();
+        int maxSize = child.isLeaf() ? this.elementsMax : this.order;
+        int parts = (size + maxSize - 1) / maxSize;
+        for(int part = 0; part < parts; ++part) {
+            int from = (int) ((long) size * part / parts);
+            int to = (int) ((long) size * (part + 1) / parts);
+            BufferedNode newNode = new BufferedNode(!child.isLeaf());
+            if(child.isLeaf()) {
+                newNode.keys.addAll(child.keys.subList(from, to));
+            } else {
+                newNode.keys.addAll(child.keys.subList(from, to - 1));
+                newNode.children.addAll(child.children.subList(from, to));
+                SortedMap<Integer, Boolean> buffer = child.buffer;
+                if(from > 0) {
+                    buffer = buffer.tailMap(child.keys.get(from - 1));
+                }
+                if(to < size) {
+                    buffer = buffer.headMap(child.keys.get(to - 1));
+                }
+                newNode.buffer.putAll(buffer);
+            }
+            if(part > 0) {
+                parent.keys.add(index + part - 1, child.isLeaf() ? newNode.keys.get(0) : child.keys.get(from - 1));
+                ++this.nodeAccesses;
+            }
+            parent.children.add(index + part, newNode);
+        }
+    }
+
+    /**
+     * Merge the child with the given index with its left neighbour, or with its right neighbour if it has no left one.
+     * The separator between both is removed from the parent; for inner nodes it moves down between their keys and the
+     * buffers are combined, as they hold messages for disjoint ranges. A node with a single child cannot rebalance
+     * that child, so the two children next to the separator are rebalanced once they have neighbours.
+     * @param parent the parent of the child.
+     * @param index index of the child.
+     * @return the index of the merged node.
+     */
+    private int merge(BufferedNode parent, int index) {
+        int leftIndex = (index > 0) ? index - 1 : index;
+        BufferedNode left = parent.children.get(leftIndex);
+        BufferedNode right = parent.children.remove(leftIndex + 1);
+        int separator = parent.keys.remove(leftIndex);
+        ++this.nodeAccesses;
+        if(left.isLeaf()) {
+            left.keys.addAll(right.keys);
+        } else {
+            int boundary = left.children.size();
+            left.keys.add(separator);
+            left.keys.addAll(right.keys);
+            left.children.addAll(right.children);
+            left.buffer.putAll(right.buffer);
+            fixChild(left, boundary);
+            fixChild(left, boundary - 1);
+        }
+        return leftIndex;
+    }
+
+    /**
+     * Clear the tree by setting its root to null.
+     */
+    public void clear() {
+        this.root = null;
+    }
+
+    /**
+     * Get all keys contained in the tree ordered ascending, taking the buffered messages into account. The buffers
+     * are not flushed.
+     * @return all contained keys ordered ascending.
+     */
+    public ArrayList<Integer> getAllElementKeysOrderedAscending() {
+        TreeSet<Integer> keys = new TreeSet<>();
+        if(this.root != null) {
+            addElementKeysOfSubtree(this.root, keys);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Add the keys of all leaves of the subtree and then apply the messages of its inner nodes, deepest first, as the
+     * messages of a node are newer than those of its descendants.
+     * @param node root of the subtree.
+     * @param keys the set to add the keys to.
+     */
+    private static void addElementKeysOfSubtree(BufferedNode node, TreeSet<Integer> keys) {
+        if(node.isLeaf()) {
+            keys.addAll(node.keys);
+            return;
+        }
+        for(BufferedNode child : node.children) {
+            addElementKeysOfSubtree(child, keys);
+        }
+        for(Map.Entry<Integer, Boolean> message : node.buffer.entrySet()) {
+            if(message.getValue()) {
+                keys.add(message.getKey());
+            } else {
+                keys.remove(message.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get the number of messages buffered in all inner nodes.
+     * @return number of buffered messages.
+     */
+    public long getNumberOfBufferedMessages() {
+        return (this.root != null) ? countBufferedMessages(this.root) : 0;
+    }
+
+    private static long countBufferedMessages(BufferedNode node) {
+        if(node.isLeaf()) {
+            return 0;
+        }
+        long messages = node.buffer.size();
+        for(BufferedNode child : node.children) {
+            messages += countBufferedMessages(child);
+        }
+        return messages;
+    }
+
+    /**
+     * Get the height of the tree, 0 if it is empty.
+     * @return number of levels.
+     */
+    public int getHeight() {
+        int height = 0;
+        for(BufferedNode node = this.root; node != null; node = node.isLeaf() ? null : node.children.get(0)) {
+            ++height;
+        }
+        return height;
+    }
+
+    /**
+     * Get the number of nodes accessed by inserts, deletes and flushes so far: the root for every message, the child
+     * for every batch moved down and every node created by a split or removed by a merge.
+     * @return number of node accesses.
+     */
+    public long getNodeAccesses() {
+        return this.nodeAccesses;
+    }
+
+    /* Standard getters */
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    public int getBufferCapacity() {
+        return this.bufferCapacity;
+    }
+
+    /**
+     * A node of the tree.
+     * Contains its keys ordered ascending. For an inner node these are the separators: child i holds the keys k with
+     *      keys[i - 1] <= k < keys[i] (the first and the last child are unbounded to the outside).
+     * Contains the children and the buffer of pending messages (key to true for an insert, false for a delete) of an
+     *      inner node, both null for a leaf.
+     */
+    private static final class BufferedNode {
+        private List<Integer> keys = new ArrayList<>();
+        private final List<BufferedNode> children;
+        private final TreeMap<Integer, Boolean> buffer;
+
+        private BufferedNode(boolean inner) {
+            this.children = inner ? new ArrayList<>() : null;
+            this.buffer = inner ? new TreeMap<>() : null;
+        }
+
+        private boolean isLeaf() {
+            return this.children == null;
+        }
+
+        /**
+         * Get the size compared to the minimum and maximum: the number of keys of a leaf, the number of separators of
+         * an inner node.
+         * @return the size.
+         */
+        private int size() {
+            return this.keys.size();
+        }
+
+        private int getChildIndex(int elementKey) {
+            int index = Collections.binarySearch(this.keys, elementKey);
+            return (index >= 0) ? index + 1 : -index - 1;
+        }
+
+        /**
+         * Get a view of the messages of the buffer for the child with the given index. Clearing it removes them.
+         * @param index index of the child.
+         * @return the messages for keys in the range of the child.
+         */
+        private SortedMap<Integer, Boolean> getBufferOfChild(int index) {
+            SortedMap<Integer, Boolean> messages = this.buffer;
+            if(index > 0) {
+                messages = messages.tailMap(this.keys.get(index - 1));
+            }
+            if(index < this.keys.size()) {
+                messages = messages.headMap(this.keys.get(index));
+            }
+            return messages;
+        }
+    }
+}
@@ -2,27 +2,79 @@ package com.dhbw.btreebackend.btreeimplementation;
 
 import com.dhbw.btreebackend.BTreeBackendApplication;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * A class representing a BTree.
  * Contains the order of the BTree.
  * Contains a reference to the BTree's root node.
+ * Contains references to the leftmost and the rightmost leaf, which hold the smallest and the greatest key. They are
+ *      kept up to date by splits and merges, which are the only operations creating or removing leaves, and determined
+ *      again from the root after range deletes and rebuilds. This makes first() and last() O(1) and lets pollFirst()
+ *      and pollLast() remove the key right from the leaf without searching for it, so the BTree can serve as priority
+ *      queue.
  * Contains elementsMax indicating the maximum number of elements a node can contain.
  * Contains elementsMin indicating the minimum number of elements a node has to contain.
+ * Notifies the BTreeMutationListeners of AbstractOrderedIntIndex after every successful public mutation.
+ * Contains BTreeStatistics with the number of nodes and keys per level, updated on every insert, split, delete,
+ *      rotation, merge and range delete, so the shape of the BTree is known without walking it.
+ * Contains a flag 'relaxedDeletes'. If set, deleting a key from a leaf does not rebalance the BTree as long as the leaf
+ *      keeps at least one element, so a delete never cascades merges and rotations up to the root. Leaves that fall
+ *      below elementMin this way are recorded in 'underfullNodes' and rebalanced later by compact(int), in portions of
+ *      a given number of steps. Meanwhile searches stay correct, as removing a key from a leaf keeps all keys in order
+ *      and leaves all separators in place. Inner nodes are only changed by splits, rotations and merges, so they keep
+ *      at least elementMin elements, and every leaf keeps at least one: a BTree of height h therefore still contains
+ *      at least 2 * (elementMin + 1)^(h - 2) keys, so its height is bounded like that of a balanced BTree whose leaves
+ *      hold a single element. Deletes alone never increase the height.
+ * Contains an optional PageCacheSimulator. If set, the nodes accessed by searches, inserts and deletes are recorded in
+ *      it as page accesses, with the nodes changed by an insert or delete as writes, so the I/O of the BTree can be
+ *      modeled for a buffer cache of a given size. Batch searches, range deletes, compaction and rebuilds are not
+ *      recorded.
+ * Contains an optional StructuralEventRing. If set, every split, rotation, merge, change of the root and node left
+ *      without elements holding a phantomRef is published into it as a record of primitive values, so the rebalancing
+ *      of the BTree can be traced. Without a ring, publishing is a single check and allocates nothing.
+ * Contains an optional NodeChangeListener. If set, every node changed or removed by an insert, delete, split, rotation,
+ *      merge or range delete is passed to it, so the changes can be pushed without comparing the whole tree. Without
+ *      it, reporting is a single check as well. Rebuilds are not reported node by node.
  *
- * Offers public access methods to insert, delete or search for element keys, to access or set the BTree's order and
- *      root, to clear the BTree, and to get all element keys ordered ascending.
+ * Offers public access methods to insert, delete or search for element keys, to search for several keys at once in a
+ *      single traversal, to delete ranges of keys, to access or remove the smallest and greatest key, to access or set
+ *      the BTree's order and root, to clear the BTree, to get all element keys ordered ascending or as a stream that
+ *      can be split for parallel processing, to write and load binary snapshots and to register mutation listeners.
+ *      Insert, delete, search, range and snapshot export form the OrderedIntIndex shared with the other engines.
  * Contains private methods to balance the tree after insertion or deletion of elements.
  *
  * @author Julian Stein
  * @version 0.9
  */
-public class BTree {
+public class BTree extends AbstractOrderedIntIndex {
     private int order;
     private Node root;
+    private Node leftmostLeaf;
+    private Node rightmostLeaf;
     private int elementsMax;
     private int elementMin;
+    private final BTreeStatistics statistics = new BTreeStatistics();
+    private boolean relaxedDeletes;
+    private final Set<Node> underfullNodes = new LinkedHashSet<>();
+    private PageCacheSimulator pageCache;
+    private PageCacheSimulator.Operation cacheOperation;
+    private StructuralEventRing eventRing;
+    private NodeChangeListener nodeChangeListener;
 
     public BTree(int order) {
         setOrder(order);
@@ -37,12 +89,26 @@ public class BTree {
      *         the references.
      */
     public BTreeSearchResult searchElement(int elementKey) {
+        if(this.pageCache != null) {
+            this.pageCache.countOperation(PageCacheSimulator.Operation.SEARCH);
+        }
+        return findElement(elementKey, PageCacheSimulator.Operation.SEARCH);
+    }
+
+    /**
+     * Search for the location of given key, recording the inspected nodes in the page cache for the given operation.
+     * @param elementKey the key to search for.
+     * @param operation the operation to record the accesses for, null to record none.
+     * @return BTreeSearchResult object as returned by searchElement(int).
+     */
+    private BTreeSearchResult findElement(int elementKey, PageCacheSimulator.Operation operation) {
         if(this.root == null) {
             return new BTreeSearchResult();
         }
         Node inspectedNode = this.root;
         int costs = 1;
         while(true) {
+            accessNode(inspectedNode, false, operation);
             Element elementWithKeyInInspectedNode = inspectedNode.getElementWithKey(elementKey);
             if(elementWithKeyInInspectedNode != null) {     // inspected node contains key
                 return new BTreeSearchResult(inspectedNode, elementWithKeyInInspectedNode, costs);
@@ -55,22 +121,125 @@ public class BTree {
         }
     }
 
+    /**
+     * Search for the locations of the given keys ordered ascending in a single traversal. All keys routed into the same
+     * subtree form a contiguous run, so the nodes on their common path are inspected only once.
+     * @param sortedKeys the keys to search for, ordered ascending.
+     * @param results array to store the BTreeSearchResult of every key in, at the index of the key.
+     * @return the number of nodes inspected.
+     */
+    @Override
+    protected int searchSortedElements(int[] sortedKeys, BTreeSearchResult[] results) {
+        if(this.root == null) {
+            Arrays.fill(results, new BTreeSearchResult());
+            return 0;
+        }
+        return searchSortedElementsInSubtree(this.root, sortedKeys, 0, sortedKeys.length, 1, results);
+    }
+
+    /**
+     * Search for the keys sortedKeys[from] to sortedKeys[to - 1] in the subtree of the given node.
+     * Walks the keys and the node's elements simultaneously: keys smaller than an element are searched in its left
+     *      subtree, keys equal to it are found, keys greater than the greatest element are searched in its right
+     *      subtree. Keys reaching a leaf without being found terminate there.
+     * @param node root of the subtree.
+     * @param sortedKeys the keys, ordered ascending.
+     * @param from index of the first key to search (inclusive).
+     * @param to index of the last key to search (exclusive).
+     * @param costs number of nodes inspected from the root of the BTree down to the given node.
+     * @param results array to store the BTreeSearchResult of every key in.
+     * @return the number of nodes inspected in the subtree.
+     */
+    private static int searchSortedElementsInSubtree(Node node, int[] sortedKeys, int from, int to, int costs,
+                                                     BTreeSearchResult[] results) {
+        int nodesAccessed = 1;
+        int index = from;
+        for(Element element : node.getElements()) {
+            int start = index;
+            while(index < to && sortedKeys[index] < element.getKey()) {
+                ++index;
+            }
+            if(index > start) {
+                nodesAccessed += searchSortedElementsInChild(node, element.getLeftNode(), sortedKeys, start, index,
+                        costs, results);
+            }
+            while(index < to && sortedKeys[index] == element.getKey()) {
+                results[index++] = new BTreeSearchResult(node, element, costs);
+            }
+        }
+        if(index < to) {
+            nodesAccessed += searchSortedElementsInChild(node, node.getGreatestElement().getRightNode(), sortedKeys,
+                    index, to, costs, results);
+        }
+        return nodesAccessed;
+    }
+
+    /**
+     * Continue the search for the keys sortedKeys[from] to sortedKeys[to - 1] in the given child, or terminate it if
+     *      the parent is a leaf.
+     * @param parent the node inspected last.
+     * @param child the child of parent the keys are routed to, null if parent is a leaf.
+     * @param sortedKeys the keys, ordered ascending.
+     * @param from index of the first key to search (inclusive).
+     * @param to index of the last key to search (exclusive).
+     * @param costs number of nodes inspected from the root of the BTree down to parent.
+     * @param results array to store the BTreeSearchResult of every key in.
+     * @return the number of nodes inspected in the subtree of the child.
+     */
+    private static int searchSortedElementsInChild(Node parent, Node child, int[] sortedKeys, int from, int to,
+                                                   int costs, BTreeSearchResult[] results) {
+        if(parent.isLeaf()) {
+            for(int i = from; i < to; ++i) {
+                results[i] = new BTreeSearchResult(parent, null, costs);
+            }
+            return 0;
+        }
+        return searchSortedElementsInSubtree(child, sortedKeys, from, to, costs + 1, results);
+    }
+
+    /**
+     * Insert a new element with the given key into the BTree and notify the mutation listeners if it was inserted.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the BTree already contains it.
+     */
+    public boolean insertElement(int elementKey) {
+        startCacheOperation(PageCacheSimulator.Operation.INSERT);
+        boolean inserted = insertKey(elementKey);
+        this.cacheOperation = null;
+        if(inserted) {
+            notifyElementInserted(elementKey);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Insert a new element with the given key into the BTree.
      * If the tree is empty create a new root node and add te new element to it.
      * Otherwise search for insert position and insert new element the normal way.
      * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the BTree already contains it.
      */
-    public boolean insertElement(int elementKey) {
+    private boolean insertKey(int elementKey) {
         if(root == null) {
             this.root = new Node(null);
             this.root.addElement(new Element(elementKey));
+            this.leftmostLeaf = this.root;
+            this.rightmostLeaf = this.root;
+            accessNode(this.root, true, this.cacheOperation);
+            changeNode(this.root);
+            this.statistics.addNodes(0, 1);
+            this.statistics.addKeys(0, 1);
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), this.root, 0);
             return true;
         } else {
-            BTreeSearchResult insertPosition = searchElement(elementKey);
+            BTreeSearchResult insertPosition = findElement(elementKey, this.cacheOperation);
             if(!insertPosition.isFound()) {
                 insertPosition.getLocation().addElement(new Element(elementKey));
-                checkOverflow(insertPosition.getLocation());
+                accessNode(insertPosition.getLocation(), true, this.cacheOperation);
+                changeNode(insertPosition.getLocation());
+                this.statistics.addKeys(0, 1);
+                checkOverflow(insertPosition.getLocation(), 0);
                 return true;
             }
             return false;
@@ -82,31 +251,42 @@ public class BTree {
      * If so, split the node and recursively call checkOverflow with parent node until a node without an overflow is
      * reached or the root was processed.
      * @param inspectedNode the node to check.
+     * @param level level of the node counted from the leaves.
      */
-    private void checkOverflow(Node inspectedNode) {
+    private void checkOverflow(Node inspectedNode, int level) {
         if(inspectedNode != null && inspectedNode.getNumberOfElements() > this.elementsMax) {
-            Node parentNode = splitNode(inspectedNode);
-            checkOverflow(parentNode);
+            Node parentNode = splitNode(inspectedNode, level);
+            checkOverflow(parentNode, level + 1);
         }
     }
 
     /**
      * Split the given node into two new nodes. Create a new root if necessary.
+     * The smaller half stays in the given node, so if the rightmost leaf is split, its new right half becomes the
+     *      rightmost leaf.
+     * Update the statistics: the level of the node gains a node and loses the split element to the level above.
+     * Publish the split, and the new root if one was created.
      * @param toSplit the node to split.
+     * @param level level of the node counted from the leaves.
      * @return the parent node of the split node. Might be a newly created root.
      */
-    private Node splitNode(Node toSplit) {
+    private Node splitNode(Node toSplit, int level) {
         int splitIndex = (toSplit.getNumberOfElements() / 2);
         Element splitElement = toSplit.getElements().get(splitIndex);
         Node parentNode;
-        if(toSplit == this.root) {
+        boolean newRoot = toSplit == this.root;
+        if(newRoot) {
             parentNode = new Node(null);
             this.root = parentNode;
+            this.statistics.addNodes(level + 1, 1);
         } else {
             parentNode = toSplit.getParentNode();
         }
         Node rightNode = new Node(parentNode, toSplit.getGreaterSplitSublistOfElements(splitIndex));
         rightNode.setChildrenParent();
+        if(toSplit == this.rightmostLeaf) {
+            this.rightmostLeaf = rightNode;
+        }
         splitElement.setRightNode(rightNode);
 
         toSplit.setParentNode(parentNode);
@@ -114,26 +294,399 @@ public class BTree {
         splitElement.setLeftNode(toSplit);
 
         parentNode.addElement(splitElement);
+        accessNode(rightNode, true, this.cacheOperation);
+        accessNode(parentNode, true, this.cacheOperation);
+        changeNode(toSplit);
+        changeNode(rightNode);
+        changeNode(parentNode);
+        this.statistics.addNodes(level, 1);
+        this.statistics.addKeys(level, -1);
+        this.statistics.addKeys(level + 1, 1);
+        publishEvent(StructuralEventRing.Type.SPLIT, level, toSplit, splitElement.getKey());
+        if(newRoot) {
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), parentNode, 0);
+        }
         return parentNode;
     }
 
+    /**
+     * Delete the element with the given key and notify the mutation listeners if it was deleted.
+     * @param elementKey the elementKey to delete.
+     * @return true, if the elementKey was found and deleted, false if the BTree does not contain the elementKey.
+     */
+    public boolean deleteElement(int elementKey) {
+        startCacheOperation(PageCacheSimulator.Operation.DELETE);
+        boolean deleted = deleteKey(elementKey);
+        this.cacheOperation = null;
+        if(deleted) {
+            notifyElementDeleted(elementKey);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Check whether the BTree contains the given element. If so, delete it and initiate underflow-check on leaf element
      * where delete calls ended.
+     * If deletes are relaxed and the leaf still contains elements, skip the underflow-check and record the leaf if it
+     * has fewer than elementMin elements. An empty leaf is always rebalanced, as an inner node without elements in its
+     * left subtree could not provide a predecessor when one of its own elements is deleted.
      * @param elementKey the elementKey to delete.
      * @return true, if the elementKey was found and deleted, false if the BTree does not contain the elementKey.
      */
-    public boolean deleteElement(int elementKey) {
-        BTreeSearchResult bTreeSearchResult = searchElement(elementKey);
+    private boolean deleteKey(int elementKey) {
+        BTreeSearchResult bTreeSearchResult = findElement(elementKey, this.cacheOperation);
         if(bTreeSearchResult.isFound()) {
+            if(this.pageCache != null && !bTreeSearchResult.getLocation().isLeaf()) {
+                for(Node node = bTreeSearchResult.getElement().getLeftNode(); node != null;
+                    node = node.isLeaf() ? null : node.getGreatestElement().getRightNode()) {
+                    accessNode(node, false, this.cacheOperation);      // path to the replacement
+                }
+            }
             Node balancingStart = bTreeSearchResult.getLocation().deleteElement(bTreeSearchResult.getElement());
-            checkUnderflow(balancingStart);
+            accessNode(bTreeSearchResult.getLocation(), true, this.cacheOperation);
+            accessNode(balancingStart, true, this.cacheOperation);
+            changeNode(bTreeSearchResult.getLocation());
+            changeNode(balancingStart);
+            rebalanceLeaf(balancingStart);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Count the key removed from the given leaf and initiate the underflow-check on it, or record it if deletes are
+     * relaxed, see deleteKey(int).
+     * @param balancingStart the leaf a key was removed from.
+     */
+    private void rebalanceLeaf(Node balancingStart) {
+        this.statistics.addKeys(0, -1);
+        if(!this.relaxedDeletes || balancingStart == this.root || balancingStart.getNumberOfElements() == 0) {
+            checkUnderflow(balancingStart, 0);
+        }
+        if(this.relaxedDeletes && isUnderfull(balancingStart)) {
+            this.underfullNodes.add(balancingStart);
+        }
+    }
+
+    /**
+     * Get the smallest key, which is the first element of the leftmost leaf.
+     * @return the smallest key, null if the BTree is empty.
+     */
+    public Integer first() {
+        return (this.leftmostLeaf != null) ? this.leftmostLeaf.getSmallestElement().getKey() : null;
+    }
+
+    /**
+     * Get the greatest key, which is the last element of the rightmost leaf.
+     * @return the greatest key, null if the BTree is empty.
+     */
+    public Integer last() {
+        return (this.rightmostLeaf != null) ? this.rightmostLeaf.getGreatestElement().getKey() : null;
+    }
+
+    /**
+     * Delete the smallest key and notify the mutation listeners.
+     * The key is removed right from the leftmost leaf, so unlike deleteElement(int) no search is needed and no
+     * predecessor has to be moved up, only the leaf may have to be rebalanced.
+     * @return the deleted key, null if the BTree is empty.
+     */
+    public Integer pollFirst() {
+        return pollLeaf(this.leftmostLeaf, true);
+    }
+
+    /**
+     * Delete the greatest key and notify the mutation listeners, see pollFirst().
+     * @return the deleted key, null if the BTree is empty.
+     */
+    public Integer pollLast() {
+        return pollLeaf(this.rightmostLeaf, false);
+    }
+
+    /**
+     * Remove the smallest or greatest element of the given leaf, rebalance the leaf and notify the mutation listeners.
+     * The deletion is recorded in the page cache with the leaf as the only node accessed on the way down.
+     * @param leaf the leftmost or rightmost leaf, null if the BTree is empty.
+     * @param smallest true to remove the smallest element, false to remove the greatest.
+     * @return the deleted key, null if the leaf is null.
+     */
+    private Integer pollLeaf(Node leaf, boolean smallest) {
+        if(leaf == null) {
+            return null;
+        }
+        startCacheOperation(PageCacheSimulator.Operation.DELETE);
+        Element element = smallest ? leaf.getSmallestElement() : leaf.getGreatestElement();
+        leaf.dropElement(element);
+        accessNode(leaf, true, this.cacheOperation);
+        changeNode(leaf);
+        rebalanceLeaf(leaf);
+        this.cacheOperation = null;
+        notifyElementDeleted(element.getKey());
+        return element.getKey();
+    }
+
+    /**
+     * Determine the leftmost and the rightmost leaf by descending from the root along the outermost children.
+     * Used after operations that replace or drop nodes in bulk instead of splitting and merging them one by one.
+     */
+    private void findBoundaryLeaves() {
+        this.leftmostLeaf = this.root;
+        this.rightmostLeaf = this.root;
+        while(this.leftmostLeaf != null && !this.leftmostLeaf.isLeaf()) {
+            this.leftmostLeaf = this.leftmostLeaf.getChild(0);
+        }
+        while(this.rightmostLeaf != null && !this.rightmostLeaf.isLeaf()) {
+            this.rightmostLeaf = this.rightmostLeaf.getChild(this.rightmostLeaf.getNumberOfElements());
+        }
+    }
+
+    /**
+     * Delete all elements with keys in the given range and notify the mutation listeners if any element was deleted.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted elements.
+     */
+    public int deleteRange(int lowerBound, int upperBound) {
+        int deleted = deleteKeysInRange(lowerBound, upperBound);
+        if(deleted > 0) {
+            findBoundaryLeaves();
+            notifyRangeDeleted(lowerBound, upperBound);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete all elements with keys in the given range without deleting them one by one:
+     * 1. Descend from the root as long as the range lies within a single child. At the first node containing keys of
+     *      the range, drop these keys and all children between them in one step, as the subtrees of these children lie
+     *      completely within the range. Keep the first of these keys as separator between the child containing the
+     *      lower bound and the child containing the upper bound. Trim the two boundary paths below in the same way:
+     *      On the path of the lower bound drop all keys >= lowerBound together with the children to their right, on the
+     *      path of the upper bound drop all keys <= upperBound together with the children to their left. Internal
+     *      nodes left with zero elements keep their remaining child as phantomRef.
+     * 2. Rebalance the boundary paths, see rebalanceBoundaryPaths(int, int).
+     * 3. Delete the kept separator the normal way.
+     * If the range lies within a single leaf, only the keys of that leaf are removed before rebalancing.
+     * For order 2 nodes may be empty anyway, so the keys are deleted one by one.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted elements.
+     */
+    private int deleteKeysInRange(int lowerBound, int upperBound) {
+        if(this.root == null || lowerBound > upperBound) {
+            return 0;
+        }
+        if(this.elementMin == 0) {
+            int deleted = 0;
+            for(int key : getElementKeysInRange(lowerBound, upperBound)) {
+                deleted += deleteKey(key) ? 1 : 0;
+            }
+            return deleted;
+        }
+        Node inspectedNode = this.root;
+        int level = this.statistics.getHeight() - 1;
+        int first = inspectedNode.getNumberOfElementsSmallerThan(lowerBound);
+        int last = getNumberOfElementsNotGreaterThan(inspectedNode, upperBound) - 1;
+        while(first > last) {         // no key of the range in the inspected node --> descend
+            if(inspectedNode.isLeaf()) {
+                return 0;
+            }
+            inspectedNode = inspectedNode.getChild(first);
+            --level;
+            first = inspectedNode.getNumberOfElementsSmallerThan(lowerBound);
+            last = getNumberOfElementsNotGreaterThan(inspectedNode, upperBound) - 1;
+        }
+        List<Element> elements = inspectedNode.getElements();
+        int deleted;
+        Element separator = null;
+        if(inspectedNode.isLeaf()) {
+            deleted = last - first + 1;
+            elements.subList(first, last + 1).clear();
+            changeNode(inspectedNode);
+            this.statistics.addKeys(level, -deleted);
+        } else {
+            separator = elements.get(first);
+            deleted = last - first;
+            for(int i = first + 1; i <= last; ++i) {
+                deleted += dropSubtree(elements.get(i).getLeftNode(), level - 1);
+            }
+            this.statistics.addKeys(level, first - last);
+            separator.setRightNode(elements.get(last).getRightNode());
+            elements.subList(first + 1, last + 1).clear();
+            changeNode(inspectedNode);
+            deleted += trimKeysFrom(separator.getLeftNode(), lowerBound, level - 1);
+            deleted += trimKeysUpTo(separator.getRightNode(), upperBound, level - 1);
+        }
+        rebalanceBoundaryPaths(lowerBound, upperBound);
+        if(separator != null) {
+            deleteKey(separator.getKey());
+            ++deleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * Drop all keys >= lowerBound from the subtree with the given root, which contains no key greater than the range.
+     * On every level drop these keys and the children to their right and descend into the remaining rightmost child.
+     * @param subtreeRoot root of the subtree to trim.
+     * @param lowerBound smallest key to drop.
+     * @param level level of subtreeRoot counted from the leaves.
+     * @return the number of dropped elements.
+     */
+    private int trimKeysFrom(Node subtreeRoot, int lowerBound, int level) {
+        int deleted = 0;
+        for(Node inspectedNode = subtreeRoot; inspectedNode != null; --level) {
+            List<Element> elements = inspectedNode.getElements();
+            int first = inspectedNode.getNumberOfElementsSmallerThan(lowerBound);
+            Node next = null;
+            if(!inspectedNode.isLeaf()) {
+                for(int i = first; i < elements.size(); ++i) {
+                    deleted += dropSubtree(elements.get(i).getRightNode(), level - 1);
+                }
+                next = inspectedNode.getChild(first);
+                if(first == 0) {
+                    inspectedNode.setPhantomRef(next);
+                }
+            }
+            deleted += elements.size() - first;
+            this.statistics.addKeys(level, first - elements.size());
+            elements.subList(first, elements.size()).clear();
+            changeNode(inspectedNode);
+            if(first == 0 && next != null) {
+                publishEvent(StructuralEventRing.Type.PHANTOM_REF, level, inspectedNode, 0);
+            }
+            inspectedNode = next;
+        }
+        return deleted;
+    }
+
+    /**
+     * Drop all keys <= upperBound from the subtree with the given root, which contains no key smaller than the range.
+     * On every level drop these keys and the children to their left and descend into the remaining leftmost child.
+     * @param subtreeRoot root of the subtree to trim.
+     * @param upperBound greatest key to drop.
+     * @param level level of subtreeRoot counted from the leaves.
+     * @return the number of dropped elements.
+     */
+    private int trimKeysUpTo(Node subtreeRoot, int upperBound, int level) {
+        int deleted = 0;
+        for(Node inspectedNode = subtreeRoot; inspectedNode != null; --level) {
+            List<Element> elements = inspectedNode.getElements();
+            int count = getNumberOfElementsNotGreaterThan(inspectedNode, upperBound);
+            Node next = null;
+            if(!inspectedNode.isLeaf()) {
+                for(int i = 0; i < count; ++i) {
+                    deleted += dropSubtree(elements.get(i).getLeftNode(), level - 1);
+                }
+                next = inspectedNode.getChild(count);
+                if(count == elements.size()) {
+                    inspectedNode.setPhantomRef(next);
+                }
+            }
+            deleted += count;
+            this.statistics.addKeys(level, -count);
+            elements.subList(0, count).clear();
+            changeNode(inspectedNode);
+            if(elements.isEmpty() && next != null) {
+                publishEvent(StructuralEventRing.Type.PHANTOM_REF, level, inspectedNode, 0);
+            }
+            inspectedNode = next;
+        }
+        return deleted;
+    }
+
+    /**
+     * Rebalance the BTree after the boundary paths of a range have been trimmed. Only nodes on the search paths of the
+     * bounds can have an underflow, so repeatedly:
+     *  Get the deepest node with an underflow on these paths. If its parent has zero elements, inspect the parent
+     *      instead until reaching a node whose parent has elements, as a node without neighbours cannot be balanced.
+     *  If that node is the root, it has zero elements: replace it by its phantomRef, the BTree gets lower by one level.
+     *  Otherwise perform a single rotation or merge using checkUnderflow(Node).
+     * Stop when no node on the paths has an underflow.
+     * @param lowerBound lower bound of the deleted range.
+     * @param upperBound upper bound of the deleted range.
+     */
+    private void rebalanceBoundaryPaths(int lowerBound, int upperBound) {
+        while(true) {
+            Node underflowNode = getDeepestUnderflowNodeOnPaths(lowerBound, upperBound);
+            if(underflowNode == null) {
+                return;
+            }
+            while(underflowNode != this.root && underflowNode.getParentNode().getNumberOfElements() == 0) {
+                underflowNode = underflowNode.getParentNode();
+            }
+            if(underflowNode == this.root) {
+                this.statistics.addNodes(this.statistics.getHeight() - 1, -1);
+                removeNode(this.root);
+                this.root = this.root.getPhantomRef();
+                if(this.root != null) {
+                    this.root.setParentNode(null);
+                }
+                publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), this.root, 0);
+            } else {
+                checkUnderflow(underflowNode, getLevel(underflowNode));
+            }
+        }
+    }
+
+    /**
+     * Get the level of the given node counted from the leaves, by counting its ancestors.
+     * @param node a node of the BTree.
+     * @return the level of the node.
+     */
+    private int getLevel(Node node) {
+        int depth = 0;
+        for(Node ancestor = node; ancestor != this.root; ancestor = ancestor.getParentNode()) {
+            ++depth;
+        }
+        return this.statistics.getHeight() - 1 - depth;
+    }
+
+    /**
+     * Get the deepest node with an underflow on the path of the lower bound (descending left of keys equal to it) or
+     * on the path of the upper bound (descending right of keys equal to it). The root only counts as underflow if it
+     * has zero elements.
+     * @param lowerBound lower bound of the deleted range.
+     * @param upperBound upper bound of the deleted range.
+     * @return the deepest node with an underflow, null if there is none.
+     */
+    private Node getDeepestUnderflowNodeOnPaths(int lowerBound, int upperBound) {
+        Node deepest = null;
+        int deepestLevel = -1;
+        for(int path = 0; path < 2; ++path) {
+            int level = 0;
+            Node inspectedNode = this.root;
+            while(inspectedNode != null) {
+                int numberOfElements = inspectedNode.getNumberOfElements();
+                if((numberOfElements == 0 || (inspectedNode != this.root && numberOfElements < this.elementMin))
+                        && level > deepestLevel) {
+                    deepest = inspectedNode;
+                    deepestLevel = level;
+                }
+                if(numberOfElements != 0 && inspectedNode.isLeaf()) {
+                    break;
+                }
+                inspectedNode = inspectedNode.getChild((path == 0) ?
+                        inspectedNode.getNumberOfElementsSmallerThan(lowerBound) :
+                        getNumberOfElementsNotGreaterThan(inspectedNode, upperBound));
+                ++level;
+            }
+        }
+        return deepest;
+    }
+
+    /**
+     * Get the number of elements of the given node with a key smaller than or equal to the given key.
+     * @param node the node to inspect.
+     * @param elementKey the key to compare with.
+     * @return number of elements with a key <= elementKey.
+     */
+    private static int getNumberOfElementsNotGreaterThan(Node node, int elementKey) {
+        return (elementKey == Integer.MAX_VALUE) ? node.getNumberOfElements() :
+                node.getNumberOfElementsSmallerThan(elementKey + 1);
+    }
+
     /**
      * Check whether an underflow occured in the given node.
      * If so and the given node is not the BTree's root,
@@ -145,28 +698,40 @@ public class BTree {
      *      If the node has two neighbours, merge the node into his left neighbour.
      * If the node given node the root and has no elements left, set the BTree's root to null. The BTree is now empty.
      * @param inspectedNode the node to check.
+     * @param level level of the node counted from the leaves.
      */
-    private void checkUnderflow(Node inspectedNode) {
+    private void checkUnderflow(Node inspectedNode, int level) {
         if(inspectedNode != this.root && inspectedNode.getNumberOfElements() < this.elementMin) {
             Element[] neighbourSeparators = inspectedNode.getNeighbourSeparators();
             Node leftNeighbour = neighbourSeparators[0] != null ? neighbourSeparators[0].getLeftNode() : null;
             Node rightNeighbour = neighbourSeparators[1] != null ? neighbourSeparators[1].getRightNode() : null;
+            accessNode(leftNeighbour, false, this.cacheOperation);
+            if(leftNeighbour == null || leftNeighbour.getNumberOfElements() <= elementMin) {
+                accessNode(rightNeighbour, false, this.cacheOperation);
+            }
             if(leftNeighbour != null && leftNeighbour.getNumberOfElements() > elementMin) {
                 // has left neighbour and left neighbour has more than minimum number of elements --> rotate right
-                rotateRight(leftNeighbour, inspectedNode);
+                rotateRight(leftNeighbour, inspectedNode, level);
             } else if(rightNeighbour != null && rightNeighbour.getNumberOfElements() > elementMin) {
                 // has right neighbour and right neighbour has more than minimum number of elements --> rotate left
-                rotateLeft(inspectedNode, rightNeighbour);
+                rotateLeft(inspectedNode, rightNeighbour, level);
             } else if(leftNeighbour != null) {
                 // has left neighbour --> merge into left neighbour
-                mergeRightIntoLeftNode(leftNeighbour, inspectedNode, neighbourSeparators[0], neighbourSeparators[1]);
+                mergeRightIntoLeftNode(leftNeighbour, inspectedNode, neighbourSeparators[0], neighbourSeparators[1],
+                        level);
             } else if(rightNeighbour != null) {
                 // has right neighbour --> merge into right neighbour
-                mergeLeftIntoRightNode(inspectedNode, rightNeighbour, neighbourSeparators[1], neighbourSeparators[0]);
+                mergeLeftIntoRightNode(inspectedNode, rightNeighbour, neighbourSeparators[1], neighbourSeparators[0],
+                        level);
             }
         } else if(inspectedNode == this.root && inspectedNode.getNumberOfElements() < 1) {
             // no elements left in root at this point --> last element was deleted --> BTree is empty
+            removeNode(this.root);
             this.root = null;
+            this.leftmostLeaf = null;
+            this.rightmostLeaf = null;
+            this.statistics.addNodes(level, -1);
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, 0, null, 0);
         }
     }
 
@@ -181,8 +746,9 @@ public class BTree {
      * After finishing the rotation the BTree is balanced.
      * @param left the left node to move away elements from.
      * @param right the right node to move elements to (node with underflow).
+     * @param level level of the two nodes counted from the leaves.
      */
-    private void rotateRight(Node left, Node right) {
+    private void rotateRight(Node left, Node right, int level) {
         Node parentNode = left.getParentNode();
         Element separator = parentNode.getSeparatorElementForChildNodes(left, right);
         if(separator != null) {     // always true because of the way parameters have been determined
@@ -198,6 +764,12 @@ public class BTree {
             right.setChildrenParent();
             parentNode.replaceElement(separator, greatestOfLeft);
             left.dropElement(greatestOfLeft);
+            accessNode(left, true, this.cacheOperation);
+            accessNode(parentNode, true, this.cacheOperation);
+            changeNode(left);
+            changeNode(right);
+            changeNode(parentNode);
+            publishEvent(StructuralEventRing.Type.ROTATE_RIGHT, level, right, separator.getKey());
         }
     }
 
@@ -212,8 +784,9 @@ public class BTree {
      * After finishing the rotation the BTree is balanced.
      * @param left the left node to move elements to (node with underflow).
      * @param right the right node to move elements away from.
+     * @param level level of the two nodes counted from the leaves.
      */
-    private void rotateLeft(Node left, Node right) {
+    private void rotateLeft(Node left, Node right, int level) {
         Node parentNode = left.getParentNode();
         Element separator = parentNode.getSeparatorElementForChildNodes(left, right);
         if(separator != null) {     // always true because of the way parameters have been determined
@@ -229,6 +802,12 @@ public class BTree {
             left.setChildrenParent();
             parentNode.replaceElement(separator, smallestOfRight);
             right.dropElement(smallestOfRight);
+            accessNode(right, true, this.cacheOperation);
+            accessNode(parentNode, true, this.cacheOperation);
+            changeNode(left);
+            changeNode(right);
+            changeNode(parentNode);
+            publishEvent(StructuralEventRing.Type.ROTATE_LEFT, level, left, separator.getKey());
         }
     }
 
@@ -242,8 +821,11 @@ public class BTree {
      *          left child reference to the merge result as the previous left child no longer exists after the merge.
      *      Doing so, check the right node for a phantomRef if it contains no elements and use
      *          it the as the former separators new right child node. Set the right node's phantomRef to null afterwards.
+     *      Do the same for the left node and the former separator's left child node, as after a range delete the left
+     *          node can have zero elements as well.
      * Adjust the left node's (old and) new children's parentNode references to reference the left node.
      *
+     * If the right node was the rightmost leaf, the left node becomes the rightmost leaf.
      * If the parentNode of the two nodes is the root and is left with zero elements after the merge, the merge result
      *      becomes the root of the BTree.
      * If the parentNode of the two nodes is not the root:
@@ -254,9 +836,10 @@ public class BTree {
      * @param separator the element separating the given left and right node in the parent node.
      * @param separatorsRightNeighbourElement the right neighbour element of the separator in the parent node. Can be
      *          null if the right node has no right neighbour.
+     * @param level level of the two nodes counted from the leaves.
      */
     private void mergeRightIntoLeftNode(Node left, Node right,
-                                        Element separator, Element separatorsRightNeighbourElement) {
+                                        Element separator, Element separatorsRightNeighbourElement, int level) {
         Node parentNode = left.getParentNode();
         if(separator != null) {     // always true because of the way parameters have been determined, however check included
             Element greatestOfLeft = left.getGreatestElement();
@@ -264,21 +847,38 @@ public class BTree {
             if(separatorsRightNeighbourElement != null) {
                 separatorsRightNeighbourElement.setLeftNode(left);
             }
-            separator.setLeftNode(greatestOfLeft.getRightNode());
+            separator.setLeftNode((greatestOfLeft != null) ? greatestOfLeft.getRightNode() : left.getPhantomRef());
             separator.setRightNode((smallestOfRight != null) ? smallestOfRight.getLeftNode() : right.getPhantomRef());
+            left.setPhantomRef(null);
             right.setPhantomRef(null);
             left.appendElement(separator);
             left.appendElements(right.getElements());
             left.setChildrenParent();
+            if(right == this.rightmostLeaf) {
+                this.rightmostLeaf = left;
+            }
             parentNode.dropElement(separator);
+            accessNode(left, true, this.cacheOperation);
+            accessNode(parentNode, true, this.cacheOperation);
+            changeNode(left);
+            changeNode(parentNode);
+            removeNode(right);
+            this.statistics.addNodes(level, -1);
+            this.statistics.addKeys(level, 1);
+            this.statistics.addKeys(level + 1, -1);
+            publishEvent(StructuralEventRing.Type.MERGE, level, left, separator.getKey());
 
             if(parentNode == this.root && parentNode.getNumberOfElements() == 0) {
+                removeNode(this.root);
                 this.root = left;
+                this.statistics.addNodes(level + 1, -1);
+                publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), left, 0);
             } else if(parentNode != this.root){
                 if(parentNode.getNumberOfElements() == 0) {
                     parentNode.setPhantomRef(left);
+                    publishEvent(StructuralEventRing.Type.PHANTOM_REF, level + 1, parentNode, separator.getKey());
                 }
-                checkUnderflow(parentNode);
+                checkUnderflow(parentNode, level + 1);
             }
         }
     }
@@ -293,8 +893,11 @@ public class BTree {
      *          right child reference to the merge result as the previous right child no longer exists after the merge.
      *      Doing so, check the left node for a phantomRef if it contains no elements and use
      *          it the as the former separators new left child node. Set the left node's phantomRef to null afterwards.
+     *      Do the same for the right node and the former separator's right child node, as after a range delete the
+     *          right node can have zero elements as well.
      * Adjust the right node's (old and) new children's parentNode references to reference the right node.
      *
+     * If the left node was the leftmost leaf, the right node becomes the leftmost leaf.
      * If the parentNode of the two nodes is the root and is left with zero elements after the merge, the merge result
      *      becomes the root of the BTree.
      * If the parentNode of the two nodes is not the root:
@@ -309,9 +912,10 @@ public class BTree {
      * In the current balancing-implementation @param separatorsLeftNeighbourElement will always be null as this merge-
      * method will only get called if the left node has no left neighbour. However, for completeness and to keep the
      * possibility to switch things around the function has been implemented completely.
+     * @param level level of the two nodes counted from the leaves.
      */
     private void mergeLeftIntoRightNode(Node left, Node right,
-                                        Element separator, Element separatorsLeftNeighbourElement) {
+                                        Element separator, Element separatorsLeftNeighbourElement, int level) {
         Node parentNode = left.getParentNode();
         if(separator != null) {     // always true because of the way parameters have been determined, however check included
             Element greatestOfLeft = left.getGreatestElement();
@@ -320,66 +924,580 @@ public class BTree {
                 separatorsLeftNeighbourElement.setRightNode(right);
             }
             separator.setLeftNode((greatestOfLeft != null) ? greatestOfLeft.getRightNode() : left.getPhantomRef());
-            separator.setRightNode(smallestOfRight.getLeftNode());
+            separator.setRightNode((smallestOfRight != null) ? smallestOfRight.getLeftNode() : right.getPhantomRef());
             left.setPhantomRef(null);
+            right.setPhantomRef(null);
             right.prependElement(separator);
             right.prependElements(left.getElements());
             right.setChildrenParent();
+            if(left == this.leftmostLeaf) {
+                this.leftmostLeaf = right;
+            }
             parentNode.dropElement(separator);
+            accessNode(right, true, this.cacheOperation);
+            accessNode(parentNode, true, this.cacheOperation);
+            changeNode(right);
+            changeNode(parentNode);
+            removeNode(left);
+            this.statistics.addNodes(level, -1);
+            this.statistics.addKeys(level, 1);
+            this.statistics.addKeys(level + 1, -1);
+            publishEvent(StructuralEventRing.Type.MERGE, level, right, separator.getKey());
 
             if(parentNode == this.root && parentNode.getNumberOfElements() == 0) {
+                removeNode(this.root);
                 this.root = right;
+                this.statistics.addNodes(level + 1, -1);
+                publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), right, 0);
             } else if(parentNode != this.root){
                 if(parentNode.getNumberOfElements() == 0) {
                     parentNode.setPhantomRef(right);
+                    publishEvent(StructuralEventRing.Type.PHANTOM_REF, level + 1, parentNode, separator.getKey());
                 }
-                checkUnderflow(parentNode);
+                checkUnderflow(parentNode, level + 1);
+            }
+        }
+    }
+
+    /**
+     * Rebalance the leaves recorded by relaxed deletes, performing at most the given number of rotations or merges.
+     * Recorded leaves that were merged away or removed by a range delete in the meantime, or that got enough elements
+     * again by inserts, are dropped without a step. A merge can continue up to the root just like a delete in strict
+     * mode, which counts as one step. Notify the mutation listeners if any step was performed, as the structure of the
+     * BTree changed although its keys did not.
+     * @param budget maximum number of rotations and merges to perform.
+     * @return the number of rotations and merges performed.
+     */
+    public int compact(int budget) {
+        int steps = 0;
+        Iterator<Node> iterator = this.underfullNodes.iterator();
+        while(steps < budget && iterator.hasNext()) {
+            Node node = iterator.next();
+            while(steps < budget && isUnderfull(node)) {
+                checkUnderflow(node, 0);
+                ++steps;
+            }
+            if(!isUnderfull(node)) {
+                iterator.remove();
+            }
+        }
+        if(steps > 0) {
+            notifyCompacted();
+        }
+        return steps;
+    }
+
+    /**
+     * Check whether the given node is still part of the BTree, is not the root and has fewer than elementMin elements.
+     * A node is part of the BTree if every node on the way up to the root is a child of its parent. The parent
+     * reference of the root itself is not checked, as it is not reset when the root is replaced by its only child.
+     * @param node the node to check.
+     * @return true if the node has to be rebalanced.
+     */
+    private boolean isUnderfull(Node node) {
+        if(node == this.root || node.getNumberOfElements() >= this.elementMin) {
+            return false;
+        }
+        for(Node child = node; child != this.root; child = child.getParentNode()) {
+            Node parent = child.getParentNode();
+            if(parent == null || parent.getChild(parent.getNumberOfElementsSmallerThan(child.getNumberOfElements() > 0 ?
+                    child.getSmallestElement().getKey() : Integer.MIN_VALUE)) != child) {
+                return false;
             }
         }
+        return true;
     }
 
     /**
-     * Clear the BTree by setting its root to null and reset order to default 5.
+     * Clear the BTree by setting its root to null and reset order to default 5. Notify the mutation listeners.
      */
     public void clear() {
-        this.root = null;
-        this.setOrder(BTreeBackendApplication.DEFAULT_ORDER);
+        if(this.root != null) {
+            this.root = null;
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, 0, null, 0);
+        }
+        rebuild(BTreeBackendApplication.DEFAULT_ORDER);
+        notifyCleared();
     }
 
     /**
      * Get all keys contained in the BTree ordered ascending.
-     * @return all contained keys ordered ascending.
+     * @return all contained keys ordered ascending, empty if the BTree is empty.
      */
     public ArrayList<Integer> getAllElementKeysOrderedAscending() {
+        if(this.root == null) {
+            return new ArrayList<>();
+        }
         return this.root.getAllElementKeysOfSubtreeOrderedAscending();
     }
 
     /**
-     * Set this.order and calculate and set this.elementsMax and this.elementsMin based on order.
-     * Clear the BTree's root and insert all previously contained element keys in a loop.
+     * Get all keys contained in the BTree that lie in the given range, ordered ascending.
+     * @param lowerBound smallest key to return (inclusive).
+     * @param upperBound greatest key to return (inclusive).
+     * @return the contained keys in [lowerBound, upperBound] ordered ascending, empty if the BTree is empty.
+     */
+    public ArrayList<Integer> getElementKeysInRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = new ArrayList<>();
+        if(this.root != null && lowerBound <= upperBound) {
+            this.root.addElementKeysOfSubtreeInRange(lowerBound, upperBound, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Get a stream of all keys ordered ascending, read lazily from the nodes instead of being copied into a list first.
+     * The stream is backed by a KeySpliterator splitting on subtree boundaries, so parallel() aggregations traverse
+     * disjoint subtrees on different threads. The size of a subtree is estimated from the statistics as the average
+     * number of keys below a node of its level. The BTree must not be modified while the stream is consumed.
+     * @return the keys ordered ascending, sized exactly as long as the stream is not split.
+     */
+    public IntStream keys() {
+        if(this.root == null) {
+            return IntStream.empty();
+        }
+        int height = this.statistics.getHeight();
+        double[] keysPerSubtree = new double[height];
+        long keysUpToLevel = 0;
+        for(int level = 0; level < height; ++level) {
+            keysUpToLevel += this.statistics.getKeysOnLevel(level);
+            keysPerSubtree[level] = keysUpToLevel / (double) Math.max(1, this.statistics.getNodesOnLevel(level));
+        }
+        return StreamSupport.intStream(new KeySpliterator(this.root, height - 1, keysPerSubtree,
+                this.statistics.getNumberOfKeys()), false);
+    }
+
+    /**
+     * Rebuild the BTree with the given order and notify the mutation listeners.
      * @param order new order to set.
      */
     public void setOrder(int order) {
+        rebuild(order);
+        notifyOrderChanged(order);
+    }
+
+    /**
+     * Write a binary snapshot of the BTree to the given stream. See BTreeSnapshot for the format.
+     * @param out the stream to write to. It is flushed but not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        BTreeSnapshot.write(this.root, this.order, out);
+    }
+
+    /**
+     * Read the binary snapshot in the given buffer and replace the content of the BTree with it. The nodes are rebuilt
+     * directly from the snapshot, so no element is inserted and no node is split.
+     * @param buffer the buffer containing the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot. The BTree is left unchanged in that case.
+     */
+    @Override
+    protected void readSnapshot(ByteBuffer buffer) throws IOException {
+        replaceWithSnapshot(BTreeSnapshot.read(buffer));
+    }
+
+    /**
+     * Set the order of the snapshot and use its root as root of the BTree.
+     * A snapshot written with relaxed deletes may contain underfull leaves. Record them, and rebalance them right away
+     * if deletes are not relaxed.
+     * @param snapshot the snapshot to use.
+     */
+    protected void replaceWithSnapshot(BTreeSnapshot snapshot) {
+        this.root = null;
+        rebuild(snapshot.getOrder());
+        this.root = snapshot.getRoot();
+        this.statistics.addSubtree(this.root, snapshot.getHeight() - 1, 1);
+        if(this.root != null) {
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, this.statistics.getHeight(), this.root, 0);
+        }
+        findBoundaryLeaves();
+        recordUnderfullLeaves(this.root);
+        if(!this.relaxedDeletes) {
+            compact(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Record all leaves with fewer than elementMin elements in the subtree with the given root, except the root itself.
+     * @param subtreeRoot root of the subtree, null for none.
+     */
+    private void recordUnderfullLeaves(Node subtreeRoot) {
+        if(subtreeRoot == null || subtreeRoot.isLeaf()) {
+            return;
+        }
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        nodes.push(subtreeRoot);
+        while(!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            for(int i = 0; i <= node.getNumberOfElements(); ++i) {
+                Node child = node.getChild(i);
+                if(!child.isLeaf()) {
+                    nodes.push(child);
+                } else if(child.getNumberOfElements() < this.elementMin) {
+                    this.underfullNodes.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set this.order and calculate and set this.elementsMax and this.elementsMin based on order.
+     * Clear the BTree's root and insert all previously contained element keys in a loop. The nodes changed by these
+     * inserts are not reported to the NodeChangeListener, as all nodes are replaced anyway.
+     * @param order new order to set.
+     */
+    protected void rebuild(int order) {
+        NodeChangeListener listener = this.nodeChangeListener;
+        this.nodeChangeListener = null;
         ArrayList<Integer> keys = new ArrayList<>();
         if(this.root != null) {
             keys = getAllElementKeysOrderedAscending();
             this.root = null;
+            publishEvent(StructuralEventRing.Type.ROOT_CHANGE, 0, null, 0);
         }
+        this.leftmostLeaf = null;
+        this.rightmostLeaf = null;
         this.order = order;
         this.elementsMax = order - 1;
         this.elementMin = (order / 2 + ((order % 2 == 0) ? 0 : 1)) - 1;
+        this.statistics.reset(order);
+        this.underfullNodes.clear();
         for(int key : keys) {
-            this.insertElement(key);
+            this.insertKey(key);
+        }
+        this.nodeChangeListener = listener;
+        if(this.pageCache != null) {
+            this.pageCache.invalidate();
+        }
+    }
+
+    /**
+     * Count an operation in the page cache and record the following accesses of insertKey and deleteKey for it.
+     * @param operation the operation.
+     */
+    private void startCacheOperation(PageCacheSimulator.Operation operation) {
+        if(this.pageCache != null) {
+            this.pageCache.countOperation(operation);
+            this.cacheOperation = operation;
         }
     }
 
+    /**
+     * Record an access of the given node in the page cache, if there is one.
+     * @param node the accessed node, null for none.
+     * @param write true if the node was changed.
+     * @param operation the operation to record the access for, null to record none.
+     */
+    private void accessNode(Node node, boolean write, PageCacheSimulator.Operation operation) {
+        if(this.pageCache != null && node != null && operation != null) {
+            this.pageCache.access(node, write, operation);
+        }
+    }
+
+    /**
+     * Publish a structural event into the event ring, if there is one.
+     * @param type type of the event.
+     * @param level level of the node counted from the leaves, for ROOT_CHANGE the height of the BTree afterwards.
+     * @param node the node the event happened to, null for none.
+     * @param key the key moved by the event, 0 if it moved none.
+     */
+    private void publishEvent(StructuralEventRing.Type type, int level, Node node, int key) {
+        if(this.eventRing != null) {
+            this.eventRing.publish(type, level, node, key);
+        }
+    }
+
+    /**
+     * Report a changed or created node to the NodeChangeListener, if there is one.
+     * @param node the changed node.
+     */
+    private void changeNode(Node node) {
+        if(this.nodeChangeListener != null) {
+            this.nodeChangeListener.nodeChanged(node);
+        }
+    }
+
+    /**
+     * Report a node removed from the BTree to the NodeChangeListener, if there is one.
+     * @param node the removed node.
+     */
+    private void removeNode(Node node) {
+        if(this.nodeChangeListener != null) {
+            this.nodeChangeListener.nodeRemoved(node);
+        }
+    }
+
+    /**
+     * Remove the subtree with the given root from the statistics and report all of its nodes as removed to the
+     * NodeChangeListener. The subtree is only walked a second time if there is a listener.
+     * @param subtreeRoot root of the dropped subtree.
+     * @param level level of subtreeRoot counted from the leaves.
+     * @return number of keys in the subtree. A subtree holds fewer keys than Integer.MAX_VALUE, as deleteRange(int, int)
+     *      counts the deleted keys as int as well.
+     */
+    private int dropSubtree(Node subtreeRoot, int level) {
+        if(this.nodeChangeListener != null && subtreeRoot != null) {
+            ArrayDeque<Node> nodes = new ArrayDeque<>();
+            nodes.push(subtreeRoot);
+            while(!nodes.isEmpty()) {
+                Node node = nodes.pop();
+                this.nodeChangeListener.nodeRemoved(node);
+                for(int i = 0; i <= node.getNumberOfElements(); ++i) {
+                    Node child = node.getChild(i);
+                    if(child != null) {
+                        nodes.push(child);
+                    }
+                }
+            }
+        }
+        return (int) this.statistics.addSubtree(subtreeRoot, level, -1);
+    }
+
     /* Standard getters and setters */
 
+    /**
+     * Get a copy of the incrementally maintained statistics of the BTree. Does not walk the tree.
+     * @return the statistics.
+     */
+    public BTreeStatistics getStatistics() {
+        return this.statistics.copy();
+    }
+
     public int getOrder() {
         return this.order;
     }
 
+    public boolean isRelaxedDeletes() {
+        return this.relaxedDeletes;
+    }
+
+    /**
+     * Enable or disable relaxed deletes. Disabling them rebalances all recorded leaves at once, so the BTree is
+     * balanced again afterwards.
+     * @param relaxedDeletes true to skip rebalancing on deletes until compact(int) is called.
+     */
+    public void setRelaxedDeletes(boolean relaxedDeletes) {
+        this.relaxedDeletes = relaxedDeletes;
+        if(!relaxedDeletes) {
+            compact(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Get the number of leaves recorded by relaxed deletes that were not compacted yet. Includes leaves that no longer
+     * need to be rebalanced, which are dropped by the next call of compact(int).
+     * @return number of recorded leaves.
+     */
+    public int getPendingCompactions() {
+        return this.underfullNodes.size();
+    }
+
+    public PageCacheSimulator getPageCache() {
+        return this.pageCache;
+    }
+
+    /**
+     * Set the page cache to record the node accesses of searches, inserts and deletes in.
+     * @param pageCache the page cache, null to stop recording.
+     */
+    public void setPageCache(PageCacheSimulator pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    public StructuralEventRing getStructuralEventRing() {
+        return this.eventRing;
+    }
+
+    /**
+     * Set the ring to publish the structural events in.
+     * @param eventRing the ring, null to stop publishing.
+     */
+    public void setStructuralEventRing(StructuralEventRing eventRing) {
+        this.eventRing = eventRing;
+    }
+
+    public NodeChangeListener getNodeChangeListener() {
+        return this.nodeChangeListener;
+    }
+
+    /**
+     * Set the listener to report the changed and removed nodes to.
+     * @param nodeChangeListener the listener, null to stop reporting.
+     */
+    public void setNodeChangeListener(NodeChangeListener nodeChangeListener) {
+        this.nodeChangeListener = nodeChangeListener;
+    }
+
     public Node getRoot() {
         return this.root;
     }
+
+    /**
+     * A Spliterator over the keys of a part of a node: the positions [position, end) of the node in key order. A leaf
+     *      with n elements has the positions 0 to n - 1, one per element. An inner node with n elements has the
+     *      positions 0 to 2n: even positions stand for the subtree of child position / 2, odd positions for the element
+     *      (position - 1) / 2 separating two children.
+     * Splitting halves the remaining positions. If a single subtree is left, the spliterator descends into it first,
+     *      so the BTree is split on subtree boundaries from the root down. While a subtree is traversed element by
+     *      element, it is held by a spliterator of its own, which is handed out as prefix by the next split.
+     * forEachRemaining walks the subtrees recursively without creating a spliterator per node.
+     */
+    private static final class KeySpliterator implements Spliterator.OfInt {
+        private static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL;
+
+        private final double[] keysPerSubtree;
+        private Node node;
+        private int level;
+        private int position;
+        private int end;
+        private KeySpliterator current;
+        private long exactSize;
+
+        /**
+         * A constructor for a spliterator over all keys of the subtree with the given root.
+         * @param node root of the subtree.
+         * @param level level of the node counted from the leaves.
+         * @param keysPerSubtree estimated number of keys of a subtree per level of its root.
+         * @param exactSize the exact number of keys of the subtree, -1 if unknown.
+         */
+        private KeySpliterator(Node node, int level, double[] keysPerSubtree, long exactSize) {
+            this(node, level, 0, getNumberOfPositions(node), keysPerSubtree);
+            this.exactSize = exactSize;
+        }
+
+        private KeySpliterator(Node node, int level, int position, int end, double[] keysPerSubtree) {
+            this.node = node;
+            this.level = level;
+            this.position = position;
+            this.end = end;
+            this.keysPerSubtree = keysPerSubtree;
+            this.exactSize = -1;
+        }
+
+        private static int getNumberOfPositions(Node node) {
+            return node.isLeaf() ? node.getNumberOfElements() : 2 * node.getNumberOfElements() + 1;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while(true) {
+                if(this.current != null) {
+                    if(this.current.tryAdvance(action)) {
+                        return countAdvance();
+                    }
+                    this.current = null;
+                }
+                if(this.position >= this.end) {
+                    return false;
+                }
+                if(this.node.isLeaf() || this.position % 2 == 1) {
+                    int index = this.node.isLeaf() ? this.position : this.position / 2;
+                    ++this.position;
+                    action.accept(this.node.getElements().get(index).getKey());
+                    return countAdvance();
+                }
+                this.current = new KeySpliterator(this.node.getChild(this.position / 2), this.level - 1,
+                        this.keysPerSubtree, -1);
+                ++this.position;
+            }
+        }
+
+        private boolean countAdvance() {
+            if(this.exactSize > 0) {
+                --this.exactSize;
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if(this.current != null) {
+                this.current.forEachRemaining(action);
+                this.current = null;
+            }
+            List<Element> elements = this.node.getElements();
+            boolean leaf = this.node.isLeaf();
+            for(int i = this.position; i < this.end; ++i) {
+                if(leaf) {
+                    action.accept(elements.get(i).getKey());
+                } else if(i % 2 == 1) {
+                    action.accept(elements.get(i / 2).getKey());
+                } else {
+                    forEachKey(this.node.getChild(i / 2), action);
+                }
+            }
+            this.position = this.end;
+            this.exactSize = (this.exactSize >= 0) ? 0 : -1;
+        }
+
+        /**
+         * Pass all keys of the subtree with the given root to the action, ordered ascending.
+         * @param subtreeRoot root of the subtree.
+         * @param action the action.
+         */
+        private static void forEachKey(Node subtreeRoot, IntConsumer action) {
+            if(subtreeRoot.isLeaf()) {
+                for(Element element : subtreeRoot.getElements()) {
+                    action.accept(element.getKey());
+                }
+                return;
+            }
+            for(Element element : subtreeRoot.getElements()) {
+                forEachKey(element.getLeftNode(), action);
+                action.accept(element.getKey());
+            }
+            forEachKey(subtreeRoot.getGreatestElement().getRightNode(), action);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            if(this.current != null) {
+                KeySpliterator prefix = this.current;
+                this.current = null;
+                this.exactSize = -1;
+                return prefix;
+            }
+            while(this.end - this.position == 1 && !this.node.isLeaf() && this.position % 2 == 0) {
+                this.node = this.node.getChild(this.position / 2);
+                --this.level;
+                this.position = 0;
+                this.end = getNumberOfPositions(this.node);
+            }
+            if(this.end - this.position < 2) {
+                return null;
+            }
+            int middle = this.position + (this.end - this.position) / 2;
+            KeySpliterator prefix = new KeySpliterator(this.node, this.level, this.position, middle,
+                    this.keysPerSubtree);
+            this.position = middle;
+            this.exactSize = -1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            if(this.exactSize >= 0) {
+                return this.exactSize;
+            }
+            double size = (this.current != null) ? this.current.estimateSize() : 0;
+            if(this.node.isLeaf()) {
+                size += this.end - this.position;
+            } else {
+                int children = (this.end + 1) / 2 - (this.position + 1) / 2;
+                size += children * this.keysPerSubtree[Math.max(0, this.level - 1)] +
+                        (this.end - this.position - children);
+            }
+            return (long) Math.ceil(size);
+        }
+
+        @Override
+        public int characteristics() {
+            return (this.exactSize >= 0) ? CHARACTERISTICS | SIZED : CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
 }
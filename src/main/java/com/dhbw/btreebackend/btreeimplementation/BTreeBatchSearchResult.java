@@ -0,0 +1,34 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+/**
+ * Class used to transfer the result of searching for several element keys in a B-Tree at once.
+ * Contains a BTreeSearchResult per searched key, in the order the keys were given. Their costs are the same as if every
+ *      key was searched on its own.
+ * Contains an integer 'nodesAccessed' indicating how many nodes were actually inspected, as keys sharing a path from
+ *      the root inspect its nodes only once.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BTreeBatchSearchResult {
+    private final BTreeSearchResult[] results;
+    private final int nodesAccessed;
+
+    /**
+     * Constructor for a new BTreeBatchSearchResult.
+     * @param results the result per searched key, in the order the keys were given.
+     * @param nodesAccessed number of nodes inspected for all keys together.
+     */
+    public BTreeBatchSearchResult(BTreeSearchResult[] results, int nodesAccessed) {
+        this.results = results;
+        this.nodesAccessed = nodesAccessed;
+    }
+
+    public BTreeSearchResult[] getResults() {
+        return results;
+    }
+
+    public int getNodesAccessed() {
+        return nodesAccessed;
+    }
+}
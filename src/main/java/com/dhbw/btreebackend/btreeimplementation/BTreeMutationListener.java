@@ -0,0 +1,54 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+/**
+ * Interface for classes that want to observe the logical changes of a BTree, e.g. to replicate them.
+ * Methods are called on the mutating thread right after a successful mutation, in the order the mutations were applied.
+ * Changes caused internally by a mutation (e.g. re-inserting all keys when the order changes) are not reported
+ * separately. Rebalancing deferred by relaxed deletes is reported on its own, as it happens after the deletes.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public interface BTreeMutationListener {
+
+    /**
+     * Called after a key was inserted.
+     * @param elementKey the inserted key.
+     */
+    void elementInserted(int elementKey);
+
+    /**
+     * Called after a key was deleted.
+     * @param elementKey the deleted key.
+     */
+    void elementDeleted(int elementKey);
+
+    /**
+     * Called after all keys in a range were deleted. Only called if at least one key was deleted.
+     * @param lowerBound smallest deleted key (inclusive).
+     * @param upperBound greatest deleted key (inclusive).
+     */
+    void rangeDeleted(int lowerBound, int upperBound);
+
+    /**
+     * Called after the BTree was rebuilt with a new order.
+     * @param order the new order.
+     */
+    void orderChanged(int order);
+
+    /**
+     * Called after the BTree was cleared and its order was reset to the default.
+     */
+    void cleared();
+
+    /**
+     * Called after the content of the BTree was replaced by a snapshot.
+     */
+    void snapshotLoaded();
+
+    /**
+     * Called after leaves left underfull by relaxed deletes were rebalanced. The keys did not change, but the nodes
+     * did.
+     */
+    void compacted();
+}
@@ -0,0 +1,430 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * This class reads and writes the binary snapshot format of a BTree.
+ * A snapshot stores the nodes themselves instead of the keys, so it can be loaded without a single insert or split.
+ *
+ * Layout (all numbers are big-endian ints):
+ * - Header: MAGIC, VERSION, order, number of keys, height (0 for an empty tree).
+ * - Nodes in level-order, i.e. the root, then all nodes of the second level from left to right and so on. Every node
+ *      is written as its number of keys followed by its keys ordered ascending.
+ * The child references are implicit: the nodes of a level are the children of the nodes of the level above in the same
+ * order, every node with n keys owning the next n + 1 nodes. The nodes of the last level are leaves.
+ *
+ * Writing streams the tree out level by level, only holding the nodes of one level in memory. Reading is linear in the
+ * size of the snapshot and works on any ByteBuffer, e.g. a memory-mapped file.
+ *
+ * Engines without BTree nodes write their keys in the shape of SortedKeysLayout: the keys are streamed twice in
+ * ascending order, once to collect the separators stored in the inner nodes and once to write the leaves, so only the
+ * separators are held in memory. Such engines read a snapshot as keys ordered ascending instead of nodes, and BTrees
+ * can be built from a slice of them in the same shape.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BTreeSnapshot {
+    public static final int MAGIC = 0x42545331;     // "BTS1"
+    public static final int VERSION = 1;
+
+    private final int order;
+    private final int numberOfKeys;
+    private final int height;
+    private final Node root;
+
+    private BTreeSnapshot(int order, int numberOfKeys, int height, Node root) {
+        this.order = order;
+        this.numberOfKeys = numberOfKeys;
+        this.height = height;
+        this.root = root;
+    }
+
+    /**
+     * Write the tree with the given root and order to the given stream. The stream is flushed but not closed.
+     * @param root root node of the tree, null for an empty tree.
+     * @param order order of the tree.
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Node root, int order, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        int height = 0;
+        for(Node node = root; node != null; node = node.isLeaf() ? null : node.getSmallestElement().getLeftNode()) {
+            ++height;
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(order);
+        out.writeInt(root != null ? root.getNumberOfElementsInSubtree() : 0);
+        out.writeInt(height);
+        if(root != null) {
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(root);
+            while(!queue.isEmpty()) {
+                Node node = queue.poll();
+                List<Element> elements = node.getElements();
+                out.writeInt(elements.size());
+                for(Element element : elements) {
+                    out.writeInt(element.getKey());
+                }
+                if(!node.isLeaf()) {
+                    for(Element element : elements) {
+                        queue.add(element.getLeftNode());
+                    }
+                    queue.add(node.getGreatestElement().getRightNode());
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the given keys as a tree of the given order in the shape of SortedKeysLayout. The stream is flushed but not
+     * closed.
+     * @param keys supplier of the keys ordered ascending, called twice. Both streams must contain the same keys.
+     * @param numberOfKeys number of keys.
+     * @param order order of the tree.
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing fails.
+     * @throws IllegalStateException if a stream does not contain numberOfKeys keys.
+     */
+    public static void writeSortedKeys(Supplier<IntStream> keys, int numberOfKeys, int order,
+                                       OutputStream outputStream) throws IOException {
+        SortedKeysLayout layout = new SortedKeysLayout(numberOfKeys, order);
+        int leaves = (numberOfKeys > 0) ? layout.getNumberOfLeaves() : 0;
+        int[] separators = new int[Math.max(0, leaves - 1)];
+        PrimitiveIterator.OfInt iterator = keys.get().iterator();
+        for(int leaf = 0; leaf < leaves; ++leaf) {
+            for(int i = layout.getNumberOfKeys(layout.getHeight() - 1, leaf); i > 0; --i) {
+                nextKey(iterator);
+            }
+            if(leaf < separators.length) {
+                separators[leaf] = nextKey(iterator);
+            }
+        }
+        checkExhausted(iterator);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(order);
+        out.writeInt(numberOfKeys);
+        out.writeInt(layout.getHeight());
+        for(int depth = 0; depth < layout.getHeight() - 1; ++depth) {
+            for(int node = 0; node < layout.getNodesOnLevel(depth); ++node) {
+                int numberOfElements = layout.getNumberOfKeys(depth, node);
+                out.writeInt(numberOfElements);
+                for(int i = 0; i < numberOfElements; ++i) {
+                    out.writeInt(separators[layout.getSeparator(depth, node, i)]);
+                }
+            }
+        }
+        iterator = keys.get().iterator();
+        for(int leaf = 0; leaf < leaves; ++leaf) {
+            int numberOfElements = layout.getNumberOfKeys(layout.getHeight() - 1, leaf);
+            out.writeInt(numberOfElements);
+            for(int i = 0; i < numberOfElements; ++i) {
+                out.writeInt(nextKey(iterator));
+            }
+            if(leaf < separators.length) {
+                nextKey(iterator);
+            }
+        }
+        checkExhausted(iterator);
+        out.flush();
+    }
+
+    private static int nextKey(PrimitiveIterator.OfInt iterator) {
+        if(!iterator.hasNext()) {
+            throw new IllegalStateException("Fewer keys than announced");
+        }
+        return iterator.nextInt();
+    }
+
+    private static void checkExhausted(PrimitiveIterator.OfInt iterator) {
+        if(iterator.hasNext()) {
+            throw new IllegalStateException("More keys than announced");
+        }
+    }
+
+    /**
+     * Build the nodes of a tree of the given order holding the given keys in the shape of SortedKeysLayout, so no key
+     * is inserted and no node is split.
+     * @param keys array containing the keys ordered ascending.
+     * @param from index of the first key (inclusive).
+     * @param to index after the last key (exclusive).
+     * @param order order of the tree.
+     * @return the snapshot containing the order and the root of the tree.
+     */
+    public static BTreeSnapshot ofSortedKeys(int[] keys, int from, int to, int order) {
+        SortedKeysLayout layout = new SortedKeysLayout(to - from, order);
+        if(layout.getHeight() == 0) {
+            return new BTreeSnapshot(order, 0, 0, null);
+        }
+        Node root = createNode(layout, keys, from, 0, 0, null);
+        List<Node> level = List.of(root);
+        for(int depth = 1; depth < layout.getHeight(); ++depth) {
+            List<Node> nextLevel = new ArrayList<>(layout.getNodesOnLevel(depth));
+            for(Node parent : level) {
+                List<Element> elements = parent.getElements();
+                for(int i = 0; i <= elements.size(); ++i) {
+                    Node child = createNode(layout, keys, from, depth, nextLevel.size(), parent);
+                    if(i < elements.size()) {
+                        elements.get(i).setLeftNode(child);
+                    }
+                    if(i > 0) {
+                        elements.get(i - 1).setRightNode(child);
+                    }
+                    nextLevel.add(child);
+                }
+            }
+            level = nextLevel;
+        }
+        return new BTreeSnapshot(order, to - from, layout.getHeight(), root);
+    }
+
+    /**
+     * Create a node of SortedKeysLayout with its keys.
+     * @param layout the layout.
+     * @param keys array containing the keys ordered ascending.
+     * @param from index of the key of rank 0.
+     * @param depth depth of the node.
+     * @param node index of the node within its level.
+     * @param parentNode parent of the node, null for the root.
+     * @return the node without child references.
+     */
+    private static Node createNode(SortedKeysLayout layout, int[] keys, int from, int depth, int node,
+                                   Node parentNode) {
+        Node newNode = new Node(parentNode);
+        List<Element> elements = newNode.getElements();
+        int numberOfElements = layout.getNumberOfKeys(depth, node);
+        boolean leaf = depth == layout.getHeight() - 1;
+        for(int i = 0; i < numberOfElements; ++i) {
+            int rank = leaf ? layout.getFirstRankOfLeaf(node) + i :
+                    layout.getRankOfSeparator(layout.getSeparator(depth, node, i));
+            elements.add(new Element(keys[from + rank]));
+        }
+        return newNode;
+    }
+
+    /**
+     * Read a snapshot from the given buffer, starting at its current position, as keys ordered ascending, without
+     * building its nodes. The nodes of every level are read into one array and walked in order afterwards.
+     * Checks that the header is valid, every node holds between 1 and order - 1 keys, all keys are ordered ascending,
+     * the number of keys matches the header and no bytes are left over.
+     * @param buffer the buffer to read from, big-endian.
+     * @return the order and the keys of the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot.
+     */
+    public static SortedKeys readSortedKeys(ByteBuffer buffer) throws IOException {
+        try {
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("No BTree snapshot of version " + VERSION);
+            }
+            int order = buffer.getInt();
+            int numberOfKeys = buffer.getInt();
+            int height = buffer.getInt();
+            if(order < 2 || numberOfKeys < 0 || height < 0 || (height == 0) != (numberOfKeys == 0) ||
+                    height > numberOfKeys || numberOfKeys > buffer.remaining() / Integer.BYTES) {
+                throw new IOException("Invalid BTree snapshot header");
+            }
+            int[] levelKeys = new int[numberOfKeys];
+            int[][] keyStarts = new int[height][];
+            int keysRead = 0;
+            int nodes = 1;
+            for(int depth = 0; depth < height; ++depth) {
+                if(nodes > buffer.remaining() / Integer.BYTES) {
+                    throw new IOException("BTree snapshot is truncated");
+                }
+                keyStarts[depth] = new int[nodes + 1];
+                int keysOnLevel = 0;
+                for(int node = 0; node < nodes; ++node) {
+                    int numberOfElements = buffer.getInt();
+                    if(numberOfElements < 1 || numberOfElements > order - 1 ||
+                            numberOfElements > numberOfKeys - keysRead) {
+                        throw new IOException("Invalid number of keys in BTree snapshot node: " + numberOfElements);
+                    }
+                    keyStarts[depth][node] = keysRead;
+                    for(int i = 0; i < numberOfElements; ++i) {
+                        levelKeys[keysRead++] = buffer.getInt();
+                    }
+                    keysOnLevel += numberOfElements;
+                }
+                keyStarts[depth][nodes] = keysRead;
+                nodes += keysOnLevel;
+            }
+            if(keysRead != numberOfKeys || buffer.hasRemaining()) {
+                throw new IOException("BTree snapshot does not match its header");
+            }
+            int[] keys = new int[numberOfKeys];
+            if(height > 0 && addKeysInOrder(levelKeys, keyStarts, 0, 0, keys, 0) != numberOfKeys) {
+                throw new IOException("BTree snapshot does not match its header");
+            }
+            return new SortedKeys(order, keys);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("BTree snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * Add the keys of the subtree of a node read by readSortedKeys to the given array in order. The children of the
+     * node with index j on a level are the nodes of the level below starting at the number of keys of the nodes left
+     * of it plus j.
+     * @param levelKeys the keys of all levels.
+     * @param keyStarts for every level, the index of the first key of every node in levelKeys.
+     * @param depth depth of the node.
+     * @param node index of the node within its level.
+     * @param keys array to add the keys to.
+     * @param position index to add the first key at.
+     * @return index after the last key added.
+     * @throws IOException if the keys are not ordered ascending.
+     */
+    private static int addKeysInOrder(int[] levelKeys, int[][] keyStarts, int depth, int node, int[] keys,
+                                      int position) throws IOException {
+        int start = keyStarts[depth][node];
+        int end = keyStarts[depth][node + 1];
+        boolean leaf = depth == keyStarts.length - 1;
+        int firstChild = start - keyStarts[depth][0] + node;
+        for(int i = start; i <= end; ++i) {
+            if(!leaf) {
+                position = addKeysInOrder(levelKeys, keyStarts, depth + 1, firstChild + i - start, keys, position);
+            }
+            if(i < end) {
+                if(position > 0 && levelKeys[i] <= keys[position - 1]) {
+                    throw new IOException("Keys of BTree snapshot are not ordered ascending");
+                }
+                keys[position++] = levelKeys[i];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Read a snapshot from the given buffer, starting at its current position, and rebuild its nodes.
+     * Checks that the header is valid, every node holds between 1 and order - 1 keys ordered ascending, the number of
+     * keys matches the header and no bytes are left over.
+     * @param buffer the buffer to read from, big-endian.
+     * @return the snapshot containing the order and the rebuilt root of the tree.
+     * @throws IOException if the buffer does not contain a valid snapshot.
+     */
+    public static BTreeSnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("No BTree snapshot of version " + VERSION);
+            }
+            int order = buffer.getInt();
+            int numberOfKeys = buffer.getInt();
+            int height = buffer.getInt();
+            if(order < 2 || numberOfKeys < 0 || height < 0 || (height == 0) != (numberOfKeys == 0)) {
+                throw new IOException("Invalid BTree snapshot header");
+            }
+            Node root = null;
+            int keysRead = 0;
+            if(height > 0) {
+                root = readNode(buffer, null, order);
+                keysRead = root.getNumberOfElements();
+                List<Node> level = List.of(root);
+                for(int depth = 1; depth < height; ++depth) {
+                    List<Node> nextLevel = new ArrayList<>(level.size() * order);
+                    for(Node parent : level) {
+                        List<Element> elements = parent.getElements();
+                        for(int i = 0; i <= elements.size(); ++i) {
+                            Node child = readNode(buffer, parent, order);
+                            keysRead += child.getNumberOfElements();
+                            if(i < elements.size()) {
+                                elements.get(i).setLeftNode(child);
+                            }
+                            if(i > 0) {
+                                elements.get(i - 1).setRightNode(child);
+                            }
+                            nextLevel.add(child);
+                        }
+                    }
+                    level = nextLevel;
+                }
+            }
+            if(keysRead != numberOfKeys || buffer.hasRemaining()) {
+                throw new IOException("BTree snapshot does not match its header");
+            }
+            return new BTreeSnapshot(order, numberOfKeys, height, root);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("BTree snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * Read a single node and its keys.
+     * @param buffer the buffer to read from.
+     * @param parentNode parent of the node, null for the root.
+     * @param order order of the tree.
+     * @return the node without child references.
+     * @throws IOException if the number of keys is out of bounds or the keys are not ordered ascending.
+     */
+    private static Node readNode(ByteBuffer buffer, Node parentNode, int order) throws IOException {
+        int numberOfElements = buffer.getInt();
+        if(numberOfElements < 1 || numberOfElements > order - 1) {
+            throw new IOException("Invalid number of keys in BTree snapshot node: " + numberOfElements);
+        }
+        Node node = new Node(parentNode);
+        List<Element> elements = node.getElements();
+        for(int i = 0; i < numberOfElements; ++i) {
+            int key = buffer.getInt();
+            if(i > 0 && key <= elements.get(i - 1).getKey()) {
+                throw new IOException("Keys of BTree snapshot node are not ordered ascending");
+            }
+            elements.add(new Element(key));
+        }
+        return node;
+    }
+
+    /* Standard getters */
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    public int getNumberOfKeys() {
+        return this.numberOfKeys;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public Node getRoot() {
+        return this.root;
+    }
+
+    /**
+     * The content of a snapshot read as keys: the order and the keys ordered ascending.
+     */
+    public static class SortedKeys {
+        private final int order;
+        private final int[] keys;
+
+        private SortedKeys(int order, int[] keys) {
+            this.order = order;
+            this.keys = keys;
+        }
+
+        public int getOrder() {
+            return this.order;
+        }
+
+        public int[] getKeys() {
+            return this.keys;
+        }
+    }
+}
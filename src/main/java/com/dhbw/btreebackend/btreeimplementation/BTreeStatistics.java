@@ -0,0 +1,210 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A class holding the shape statistics of a BTree, maintained incrementally by the BTree on every change.
+ * Contains the number of nodes and keys per level. Levels are counted from the leaves, so level 0 are the leaves and
+ *      level height - 1 is the root; splitting the root only adds a level on top and keeps all other levels.
+ * Contains the total number of nodes and keys and the order, to calculate fill factors and the estimated heap size.
+ *
+ * Offers package-private methods for the BTree to add or remove nodes and keys on a level, and public getters that
+ * do not walk the tree. Nodes left with zero keys by a range delete count as nodes until they are merged away.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BTreeStatistics {
+    /*
+     * Estimated shallow sizes on a 64-bit JVM with compressed references:
+     * Node (header, 4 references) 32 + UUID 32 + ArrayList 24 + array header 16 bytes, plus 4 bytes per array slot.
+     * Element (header, int, 2 references) 24 bytes.
+     */
+    private static final long NODE_BYTES = 32 + 32 + 24 + 16;
+    private static final long ARRAY_SLOT_BYTES = 4;
+    private static final int DEFAULT_ARRAY_CAPACITY = 10;
+    private static final long ELEMENT_BYTES = 24;
+
+    private int order;
+    private int height;
+    private long[] nodesPerLevel = new long[8];
+    private long[] keysPerLevel = new long[8];
+    private long numberOfNodes;
+    private long numberOfKeys;
+
+    /**
+     * Reset the statistics to those of an empty BTree with the given order.
+     * @param order order of the BTree.
+     */
+    void reset(int order) {
+        this.order = order;
+        this.height = 0;
+        Arrays.fill(this.nodesPerLevel, 0);
+        Arrays.fill(this.keysPerLevel, 0);
+        this.numberOfNodes = 0;
+        this.numberOfKeys = 0;
+    }
+
+    /**
+     * Add nodes to a level. The height grows if the level did not exist yet and shrinks if the top level has no nodes
+     * left.
+     * @param level level counted from the leaves.
+     * @param delta number of nodes to add, negative to remove nodes.
+     */
+    void addNodes(int level, long delta) {
+        ensureLevel(level);
+        this.nodesPerLevel[level] += delta;
+        this.numberOfNodes += delta;
+        while(this.height > 0 && this.nodesPerLevel[this.height - 1] == 0) {
+            --this.height;
+        }
+    }
+
+    /**
+     * Add keys to a level.
+     * @param level level counted from the leaves.
+     * @param delta number of keys to add, negative to remove keys.
+     */
+    void addKeys(int level, long delta) {
+        ensureLevel(level);
+        this.keysPerLevel[level] += delta;
+        this.numberOfKeys += delta;
+    }
+
+    /**
+     * Add or remove all nodes and keys of the subtree with the given root.
+     * @param subtreeRoot root of the subtree, null for none.
+     * @param level level of subtreeRoot counted from the leaves.
+     * @param sign 1 to add the subtree, -1 to remove it.
+     * @return the number of keys in the subtree.
+     */
+    long addSubtree(Node subtreeRoot, int level, int sign) {
+        long keys = 0;
+        if(subtreeRoot == null) {
+            return keys;
+        }
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> levels = new ArrayDeque<>();
+        nodes.push(subtreeRoot);
+        levels.push(level);
+        while(!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int nodeLevel = levels.pop();
+            addNodes(nodeLevel, sign);
+            addKeys(nodeLevel, (long) sign * node.getNumberOfElements());
+            keys += node.getNumberOfElements();
+            if(nodeLevel > 0) {
+                for(int i = 0; i <= node.getNumberOfElements(); ++i) {
+                    Node child = node.getChild(i);
+                    if(child != null) {
+                        nodes.push(child);
+                        levels.push(nodeLevel - 1);
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Add the statistics of another BTree with the same order, aligning the levels at the leaves.
+     * @param other the statistics to add.
+     */
+    void addAll(BTreeStatistics other) {
+        for(int level = 0; level < other.height; ++level) {
+            addNodes(level, other.nodesPerLevel[level]);
+            addKeys(level, other.keysPerLevel[level]);
+        }
+    }
+
+    /**
+     * Create a copy that is not changed by later changes of the BTree.
+     * @return the copy.
+     */
+    BTreeStatistics copy() {
+        BTreeStatistics copy = new BTreeStatistics();
+        copy.order = this.order;
+        copy.height = this.height;
+        copy.nodesPerLevel = this.nodesPerLevel.clone();
+        copy.keysPerLevel = this.keysPerLevel.clone();
+        copy.numberOfNodes = this.numberOfNodes;
+        copy.numberOfKeys = this.numberOfKeys;
+        return copy;
+    }
+
+    private void ensureLevel(int level) {
+        if(level >= this.nodesPerLevel.length) {
+            int length = Math.max(level + 1, 2 * this.nodesPerLevel.length);
+            this.nodesPerLevel = Arrays.copyOf(this.nodesPerLevel, length);
+            this.keysPerLevel = Arrays.copyOf(this.keysPerLevel, length);
+        }
+        this.height = Math.max(this.height, level + 1);
+    }
+
+    /**
+     * Get the fill factor of a level, i.e. its keys divided by the maximum number of keys its nodes can hold.
+     * @param level level counted from the leaves.
+     * @return the fill factor between 0 and 1, 0 if the level has no nodes.
+     */
+    public double getFillFactor(int level) {
+        return getFillFactor(getNodesOnLevel(level), getKeysOnLevel(level));
+    }
+
+    /**
+     * Get the fill factor of the whole BTree.
+     * @return the fill factor between 0 and 1, 0 if the BTree is empty.
+     */
+    public double getFillFactor() {
+        return getFillFactor(this.numberOfNodes, this.numberOfKeys);
+    }
+
+    private double getFillFactor(long nodes, long keys) {
+        return (nodes == 0) ? 0 : (double) keys / (nodes * (long) (this.order - 1));
+    }
+
+    /**
+     * Get the estimated number of bytes the nodes and elements of the BTree occupy on the heap.
+     * @return the estimated heap size in bytes.
+     */
+    public long getEstimatedHeapBytes() {
+        long nodeBytes = NODE_BYTES + ARRAY_SLOT_BYTES * Math.max(DEFAULT_ARRAY_CAPACITY, this.order);
+        return this.numberOfNodes * nodeBytes + this.numberOfKeys * ELEMENT_BYTES;
+    }
+
+    /**
+     * Get the number of nodes on a level.
+     * @param level level counted from the leaves.
+     * @return number of nodes, 0 if the level does not exist.
+     */
+    public long getNodesOnLevel(int level) {
+        return (level >= 0 && level < this.height) ? this.nodesPerLevel[level] : 0;
+    }
+
+    /**
+     * Get the number of keys on a level.
+     * @param level level counted from the leaves.
+     * @return number of keys, 0 if the level does not exist.
+     */
+    public long getKeysOnLevel(int level) {
+        return (level >= 0 && level < this.height) ? this.keysPerLevel[level] : 0;
+    }
+
+    /* Standard getters */
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public long getNumberOfNodes() {
+        return this.numberOfNodes;
+    }
+
+    public long getNumberOfKeys() {
+        return this.numberOfKeys;
+    }
+}
@@ -0,0 +1,280 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Class used to transfer a window of a BTree to a client that can only show a few levels or a horizontal slice of it.
+ * Contains the nodes between the depths 'fromDepth' and 'toDepth' (the root has depth 0) whose key range overlaps
+ *      [lowerBound, upperBound], ordered by depth and from the left, as copies, so the window can be written after
+ *      the BTree has been released.
+ * Contains for every node the number of its children not in the window, i.e. the collapsed subtrees.
+ * Contains a flag 'truncated' and the key 'nextKey' to continue with if a level of the window held more than 'width'
+ *      nodes and only the first 'width' were taken.
+ * Contains an integer 'nodesVisited' indicating how many nodes were inspected, which depends on the window only: the
+ *      nodes above 'fromDepth' overlapping the range, at most 'width' per level, and the nodes of the window.
+ *
+ * Offers static methods to create a window by key range or around a node given by its UUID.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BTreeView {
+    private final int height;
+    private final int fromDepth;
+    private final int toDepth;
+    private final int lowerBound;
+    private final int upperBound;
+    private final List<ViewNode> nodes;
+    private final boolean truncated;
+    private final int nextKey;
+    private final int nodesVisited;
+
+    private BTreeView(int height, int fromDepth, int toDepth, int lowerBound, int upperBound, List<ViewNode> nodes,
+                      boolean truncated, int nextKey, int nodesVisited) {
+        this.height = height;
+        this.fromDepth = fromDepth;
+        this.toDepth = toDepth;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.nodes = nodes;
+        this.truncated = truncated;
+        this.nextKey = nextKey;
+        this.nodesVisited = nodesVisited;
+    }
+
+    /**
+     * Create the window of the given depths and key range.
+     * Walks the BTree level by level from the root, keeping only the children overlapping the range: the child between
+     *      the elements with the keys a and b covers the keys greater than a and smaller than b, the first and last
+     *      child are open to the left and right. Every level is cut after 'width' nodes, so the nodes cut from a level
+     *      could only lead to nodes right of the ones kept on the levels below.
+     * @param bTree the BTree to create the window of.
+     * @param fromDepth depth of the first level of the window, 0 for the root.
+     * @param toDepth depth of the last level of the window (inclusive).
+     * @param lowerBound smallest key of the range (inclusive).
+     * @param upperBound greatest key of the range (inclusive).
+     * @param width maximum number of nodes per level, at least 1.
+     * @return the window, without nodes if the BTree has no root, the range is empty or the depths exceed the height.
+     */
+    public static BTreeView ofKeyRange(BTree bTree, int fromDepth, int toDepth, int lowerBound, int upperBound,
+                                       int width) {
+        Node root = bTree.getRoot();
+        int height = getHeight(root);
+        List<ViewNode> nodes = new ArrayList<>();
+        if(root == null || lowerBound > upperBound || fromDepth > toDepth) {
+            return new BTreeView(height, fromDepth, toDepth, lowerBound, upperBound, nodes, false, 0, 0);
+        }
+
+        List<Frontier> level = new ArrayList<>();
+        level.add(new Frontier(root, (long) Integer.MIN_VALUE - 1, (long) Integer.MAX_VALUE + 1, null));
+        boolean truncated = false;
+        long nextKey = Long.MAX_VALUE;
+        int nodesVisited = 0;
+        for(int depth = 0; depth <= toDepth && !level.isEmpty(); ++depth) {
+            if(level.size() > width) {
+                truncated = true;
+                nextKey = Math.min(nextKey, level.get(width).lowerBound + 1);
+                for(Frontier cut : level.subList(width, level.size())) {
+                    if(cut.parent != null) {
+                        ++cut.parent.collapsedChildren;
+                    }
+                }
+                level = level.subList(0, width);
+            }
+            nodesVisited += level.size();
+            boolean visible = depth >= fromDepth;
+            boolean expanded = depth < toDepth;
+            List<Frontier> nextLevel = new ArrayList<>();
+            for(Frontier frontier : level) {
+                Node node = frontier.node;
+                ViewNode viewNode = null;
+                if(visible) {
+                    viewNode = new ViewNode(node, depth);
+                    nodes.add(viewNode);
+                }
+                if(node.isLeaf()) {
+                    continue;
+                }
+                List<Element> elements = node.getElements();
+                for(int i = 0; i <= elements.size(); ++i) {
+                    long childLowerBound = (i == 0) ? frontier.lowerBound : elements.get(i - 1).getKey();
+                    long childUpperBound = (i == elements.size()) ? frontier.upperBound : elements.get(i).getKey();
+                    if(expanded && childLowerBound < upperBound && childUpperBound > lowerBound) {
+                        nextLevel.add(new Frontier(node.getChild(i), childLowerBound, childUpperBound, viewNode));
+                    } else if(viewNode != null) {
+                        ++viewNode.collapsedChildren;
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return new BTreeView(height, fromDepth, toDepth, lowerBound, upperBound, nodes, truncated,
+                truncated ? (int) nextKey : 0, nodesVisited);
+    }
+
+    /**
+     * Create the window of the subtree of the node with the given UUID, i.e. of the key range this node covers.
+     * The node is searched on the path to one of its keys, as the BTree has no index of its nodes by UUID, so the
+     *      node is found in the height of the BTree instead of its size.
+     * @param bTree the BTree to create the window of.
+     * @param anchor UUID of the node.
+     * @param anchorKey a key of the node or of its subtree.
+     * @param fromDepthOffset depth of the first level of the window, relative to the node.
+     * @param toDepthOffset depth of the last level of the window (inclusive), relative to the node.
+     * @param width maximum number of nodes per level, at least 1.
+     * @return the window, null if there is no node with the given UUID on the path to the given key.
+     */
+    public static BTreeView ofSubtree(BTree bTree, UUID anchor, int anchorKey, int fromDepthOffset, int toDepthOffset,
+                                      int width) {
+        int lowerBound = Integer.MIN_VALUE;
+        int upperBound = Integer.MAX_VALUE;
+        Node node = bTree.getRoot();
+        for(int depth = 0; node != null && !node.getElements().isEmpty(); ++depth) {
+            if(node.getUuid().equals(anchor)) {
+                return ofKeyRange(bTree, Math.max(0, depth + fromDepthOffset), Math.max(0, depth + toDepthOffset),
+                        lowerBound, upperBound, width);
+            }
+            if(node.isLeaf()) {
+                break;
+            }
+            int index = node.getNumberOfElementsSmallerThan(anchorKey);
+            if(index < node.getNumberOfElements() && node.getElements().get(index).getKey() == anchorKey) {
+                break;
+            }
+            if(index > 0) {
+                lowerBound = node.getElements().get(index - 1).getKey() + 1;
+            }
+            if(index < node.getNumberOfElements()) {
+                upperBound = node.getElements().get(index).getKey() - 1;
+            }
+            node = node.getChild(index);
+        }
+        return null;
+    }
+
+    /**
+     * Get the height of the subtree of the given node by following the most left children.
+     * @param root root of the subtree, may be null.
+     * @return the number of levels, 0 if root is null.
+     */
+    private static int getHeight(Node root) {
+        int height = 0;
+        for(Node node = root; node != null; node = node.isLeaf() ? null : node.getChild(0)) {
+            ++height;
+        }
+        return height;
+    }
+
+    /* Standard getters */
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFromDepth() {
+        return fromDepth;
+    }
+
+    public int getToDepth() {
+        return toDepth;
+    }
+
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    public int getUpperBound() {
+        return upperBound;
+    }
+
+    public List<ViewNode> getNodes() {
+        return nodes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the key to continue with as lowerBound to get the nodes right of the cut. Only valid if truncated.
+     * @return the key right after the greatest key covered by the last node kept on the cut level.
+     */
+    public int getNextKey() {
+        return nextKey;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * A node on a level of the walk together with the key range it covers, given by the keys of the separating
+     * elements (exclusive), and its parent in the window.
+     */
+    private static final class Frontier {
+        private final Node node;
+        private final long lowerBound;
+        private final long upperBound;
+        private final ViewNode parent;
+
+        private Frontier(Node node, long lowerBound, long upperBound, ViewNode parent) {
+            this.node = node;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Class representing a copy of a node in the window.
+     * Contains the UUID, the depth and the keys of the node, and the UUIDs of its children if it is no leaf.
+     * Contains the number of children not in the window, whose subtrees are collapsed.
+     */
+    public static class ViewNode {
+        private final UUID uuid;
+        private final int depth;
+        private final int[] keys;
+        private final UUID[] children;
+        private int collapsedChildren;
+
+        private ViewNode(Node node, int depth) {
+            List<Element> elements = node.getElements();
+            this.uuid = node.getUuid();
+            this.depth = depth;
+            this.keys = new int[elements.size()];
+            for(int i = 0; i < this.keys.length; ++i) {
+                this.keys[i] = elements.get(i).getKey();
+            }
+            if(node.isLeaf()) {
+                this.children = new UUID[0];
+            } else {
+                this.children = new UUID[elements.size() + 1];
+                for(int i = 0; i < this.children.length; ++i) {
+                    this.children[i] = node.getChild(i).getUuid();
+                }
+            }
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public UUID[] getChildren() {
+            return children;
+        }
+
+        public int getCollapsedChildren() {
+            return collapsedChildren;
+        }
+    }
+}
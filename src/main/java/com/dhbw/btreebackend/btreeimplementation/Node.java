@@ -48,12 +48,14 @@ public class Node {
     }
 
     /**
-     * Get a sublist of this node's elements from index 0 (inclusive) up to index splitIndex(exclusive).
+     * Get a copy of this node's elements from index 0 (inclusive) up to index splitIndex(exclusive).
+     * A copy instead of a view, as the split node keeps the list: a node split again and again would otherwise hold a
+     * view of a view of ... its first list, and every access to its elements would pass through all of them.
      * @param splitIndex integer indicating the upper bound (exclusive).
      * @return list of elements.
      */
     public List<Element> getSmallerSplitSublistOfElements(int splitIndex) {
-        return this.elements.subList(0, splitIndex);
+        return new ArrayList<>(this.elements.subList(0, splitIndex));
     }
 
     /**
@@ -332,6 +334,32 @@ public class Node {
         }
     }
 
+    /**
+     * Add all element keys of the subtree with this node as its root node that lie in the given range to the given list,
+     * ordered ascending.
+     * Children whose key range lies completely outside of [lowerBound, upperBound] are skipped, so only the subtrees
+     * overlapping the range are visited.
+     * @param lowerBound smallest key to add (inclusive).
+     * @param upperBound greatest key to add (inclusive).
+     * @param keys the list to add the keys to.
+     */
+    public void addElementKeysOfSubtreeInRange(int lowerBound, int upperBound, List<Integer> keys) {
+        boolean leaf = isLeaf();
+        for(Element element : this.elements) {
+            if(!leaf && lowerBound < element.getKey()) {
+                element.getLeftNode().addElementKeysOfSubtreeInRange(lowerBound, upperBound, keys);
+            }
+            if(element.getKey() > upperBound) {
+                return;
+            } else if(element.getKey() >= lowerBound) {
+                keys.add(element.getKey());
+            }
+        }
+        if(!leaf) {
+            getGreatestElement().getRightNode().addElementKeysOfSubtreeInRange(lowerBound, upperBound, keys);
+        }
+    }
+
     /**
      * Get the element of this node with the smallest key.
      * @return the element containing the smallest key, null if this node has no elements.
@@ -356,6 +384,50 @@ public class Node {
         return this.elements.size();
     }
 
+    /**
+     * Count the elements of the subtree with this node as its root node without collecting their keys.
+     * @return number of elements in the subtree.
+     */
+    public int getNumberOfElementsInSubtree() {
+        int numberOfElements = getNumberOfElements();
+        if(!isLeaf()) {
+            for(Element element : this.elements) {
+                numberOfElements += element.getLeftNode().getNumberOfElementsInSubtree();
+            }
+            numberOfElements += getGreatestElement().getRightNode().getNumberOfElementsInSubtree();
+        }
+        return numberOfElements;
+    }
+
+    /**
+     * Get the number of elements of this node with a key smaller than the given key, which is also the index of the
+     * child whose subtree the key would be located in.
+     * @param elementKey the key to compare with.
+     * @return number of elements with a smaller key.
+     */
+    public int getNumberOfElementsSmallerThan(int elementKey) {
+        int index = 0;
+        while(index < this.elements.size() && this.elements.get(index).getKey() < elementKey) {
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Get the child node at the given index, i.e. the left child of the element at that index or the right child of
+     * the greatest element if the index equals the number of elements.
+     * If this node has no elements, return its phantomRef.
+     * @param index index of the child, between 0 and getNumberOfElements().
+     * @return the child node, null if this node is a leaf.
+     */
+    public Node getChild(int index) {
+        if(this.elements.isEmpty()) {
+            return this.phantomRef;
+        }
+        return (index < this.elements.size()) ?
+                this.elements.get(index).getLeftNode() : getGreatestElement().getRightNode();
+    }
+
     /* Standard getters and setters */
 
     public List<Element> getElements() {
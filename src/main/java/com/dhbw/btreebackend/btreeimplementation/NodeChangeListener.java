@@ -0,0 +1,27 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+/**
+ * Interface for classes that want to know which nodes of a BTree changed, e.g. to push the changed nodes to clients
+ * instead of the whole tree. Unlike a BTreeMutationListener, which is told the logical change, it is passed every node
+ * whose elements or children were changed by an insert, delete, split, rotation, merge or range delete, and every node
+ * that was removed from the BTree. A node may be reported several times. Nodes replaced by a rebuild (order change,
+ * clear or snapshot load) are not reported, the mutation listeners are told about the rebuild instead.
+ * Methods are called on the mutating thread while the mutation is applied, so they must not access the BTree.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public interface NodeChangeListener {
+
+    /**
+     * Called after the elements or children of a node changed, or after a node was created.
+     * @param node the changed node.
+     */
+    void nodeChanged(Node node);
+
+    /**
+     * Called after a node was removed from the BTree, e.g. merged into its neighbour or dropped by a range delete.
+     * @param node the removed node.
+     */
+    void nodeRemoved(Node node);
+}
@@ -0,0 +1,1082 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import com.dhbw.btreebackend.BTreeBackendApplication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A class representing a BTree whose nodes are stored off-heap.
+ * Contains the order of the BTree and elementsMax / elementMin derived from it exactly like BTree.
+ * Contains a SlabAllocator holding one fixed-size record per node and the address of the root record.
+ * Contains the number of keys and the height of the BTree.
+ *
+ * A node record consists of int fields only:
+ *      [COUNT] number of keys, [LEAF] 1 if the node is a leaf, 0 otherwise,
+ *      [KEYS .. KEYS + elementsMax] the keys ordered ascending (one spare slot to hold an overflow before splitting),
+ *      [childrenOffset .. childrenOffset + elementsMax + 1] the addresses of the child records.
+ * As nodes do not store a reference to their parent node, insert and delete remember the path from the root in
+ *      pathNodes and pathIndices (the node and the index of the child taken) and balance along that path.
+ *
+ * Optionally leaves are stored compressed ('packed leaves'): the smallest key of a leaf is stored as BASE and every key
+ *      as its unsigned delta to BASE, bit-packed with a fixed width of 4, 8, 16 or 32 bits. Each width has its own
+ *      SlabAllocator of correspondingly small records, the width class is stored in the upper bits of a leaf's address.
+ *      Searching decodes single keys in place, so binary search works on packed leaves without unpacking them.
+ *      Every other change of a packed leaf (insert, delete, split, rotation, merge) unpacks it into leafBuffer and packs
+ *      it again, moving the leaf to another width class and re-linking it from its parent if the span of its keys
+ *      requires it.
+ *
+ * Splits, rotations and merges follow the same rules as BTree, so both classes build trees of the same shape for the
+ *      same sequence of operations. No Node, Element or UUID objects are created, which keeps the whole index out of
+ *      the garbage collector's view. The tree is not durable.
+ *
+ * Implements OrderedIntIndex, so it can be used as engine wherever no BTree nodes are needed. Search results contain
+ *      no location, as nodes are no objects. Snapshots are written and read as sorted keys, so they can be exchanged
+ *      with the other engines.
+ *
+ * Offers public access methods to insert, delete or search for element keys, to access, delete or read the smallest
+ *      and greatest keys and ranges of keys, to access or set the BTree's order, to clear the BTree, to stream all
+ *      element keys ordered ascending and to enquire the memory in use.
+ *
+ * @author Julian Stein
+ * @version 1.1
+ */
+public class OffHeapBTree extends AbstractOrderedIntIndex {
+    private static final int COUNT = 0;
+    private static final int LEAF = 1;
+    private static final int KEYS = 2;
+    private static final int BASE = 2;
+    private static final int PACKED = 3;
+    private static final int[] PACKED_WIDTHS = {4, 8, 16, 32};
+    private static final int CLASS_SHIFT = 28;
+    private static final int RECORD_MASK = (1 << CLASS_SHIFT) - 1;
+
+    private final boolean packedLeaves;
+    private int order;
+    private int elementsMax;
+    private int elementMin;
+    private int childrenOffset;
+    private SlabAllocator[] slabs;
+    private int root = SlabAllocator.NIL;
+    private int height;
+    private long numberOfKeys;
+    private int[] pathNodes = new int[16];
+    private int[] pathIndices = new int[16];
+    private int[] leafBuffer;
+
+    public OffHeapBTree(int order) {
+        this(order, false);
+    }
+
+    /**
+     * A constructor choosing the leaf format.
+     * @param order order of the BTree.
+     * @param packedLeaves true to store leaves as bit-packed deltas, false to store every key as a full int.
+     */
+    public OffHeapBTree(int order, boolean packedLeaves) {
+        this.packedLeaves = packedLeaves;
+        setOrder(order);
+    }
+
+    /**
+     * Search for the location of given key.
+     * @param elementKey the key to search for.
+     * @return BTreeSearchResult object containing information on whether the element was found and how many nodes had
+     *         to be accessed. As nodes are no objects, location and element of the result are always null.
+     */
+    @Override
+    public BTreeSearchResult searchElement(int elementKey) {
+        BTreeSearchResult searchResult = new BTreeSearchResult();
+        if(this.root == SlabAllocator.NIL) {
+            return searchResult;
+        }
+        int inspectedNode = this.root;
+        int costs = 1;
+        while(true) {
+            int index = findIndex(inspectedNode, elementKey);
+            if(index >= 0 || isLeaf(inspectedNode)) {
+                searchResult.setFound(index >= 0);
+                searchResult.setCosts(costs);
+                return searchResult;
+            }
+            inspectedNode = getChild(inspectedNode, -index - 1);
+            ++costs;
+        }
+    }
+
+    /**
+     * Insert a new element with the given key into the BTree and notify the mutation listeners if it was inserted.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the BTree already contains it.
+     */
+    @Override
+    public boolean insertElement(int elementKey) {
+        if(!insertKey(elementKey)) {
+            return false;
+        }
+        notifyElementInserted(elementKey);
+        return true;
+    }
+
+    /**
+     * Insert a new element with the given key into the BTree without notifying the mutation listeners.
+     * If the tree is empty create a new root leaf holding the key.
+     * Otherwise descend to the insert position remembering the path, insert the key into the leaf and split nodes
+     *      along the path as long as they overflow.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the BTree already contains it.
+     */
+    private boolean insertKey(int elementKey) {
+        if(this.root == SlabAllocator.NIL) {
+            this.leafBuffer[0] = elementKey;
+            this.root = newLeaf(this.leafBuffer, 0, 1);
+            this.height = 1;
+            this.numberOfKeys = 1;
+            return true;
+        }
+        int depth = 0;
+        int inspectedNode = this.root;
+        int position;
+        while(true) {
+            int index = findIndex(inspectedNode, elementKey);
+            if(index >= 0) {
+                return false;
+            }
+            position = -index - 1;
+            rememberPath(depth, inspectedNode, position);
+            if(isLeaf(inspectedNode)) {
+                break;
+            }
+            inspectedNode = getChild(inspectedNode, position);
+            ++depth;
+        }
+        if(isPacked(inspectedNode)) {
+            int count = unpackLeaf(inspectedNode, this.leafBuffer, 0);
+            System.arraycopy(this.leafBuffer, position, this.leafBuffer, position + 1, count - position);
+            this.leafBuffer[position] = elementKey;
+            inspectedNode = repackLeaf(inspectedNode, this.leafBuffer, 0, count + 1);
+            relinkFromParent(depth, inspectedNode);
+        } else {
+            insertKeyAndRightChild(inspectedNode, position, elementKey, SlabAllocator.NIL);
+        }
+        ++this.numberOfKeys;
+        checkOverflow(inspectedNode, depth);
+        return true;
+    }
+
+    /**
+     * Split the given node and its ancestors on the remembered path as long as they overflow.
+     * The split element is the element at index numberOfElements / 2 just like in BTree.
+     * Create a new root if the root itself is split.
+     * @param inspectedNode the node to check.
+     * @param depth depth of the node, 0 being the root.
+     */
+    private void checkOverflow(int inspectedNode, int depth) {
+        while(getCount(inspectedNode) > this.elementsMax) {
+            int count = getCount(inspectedNode);
+            int splitIndex = count / 2;
+            int splitKey;
+            int rightNode;
+            if(isPacked(inspectedNode)) {
+                unpackLeaf(inspectedNode, this.leafBuffer, 0);
+                splitKey = this.leafBuffer[splitIndex];
+                rightNode = newLeaf(this.leafBuffer, splitIndex + 1, count - splitIndex - 1);
+                inspectedNode = repackLeaf(inspectedNode, this.leafBuffer, 0, splitIndex);
+                relinkFromParent(depth, inspectedNode);
+            } else {
+                splitKey = getKey(inspectedNode, splitIndex);
+                rightNode = newNode(isLeaf(inspectedNode));
+                int rightCount = count - splitIndex - 1;
+                copyFields(inspectedNode, KEYS + splitIndex + 1, rightNode, KEYS, rightCount);
+                if(!isLeaf(inspectedNode)) {
+                    copyFields(inspectedNode, this.childrenOffset + splitIndex + 1,
+                            rightNode, this.childrenOffset, rightCount + 1);
+                }
+                setCount(rightNode, rightCount);
+                setCount(inspectedNode, splitIndex);
+            }
+
+            if(depth == 0) {
+                int newRoot = newNode(false);
+                setKey(newRoot, 0, splitKey);
+                setChild(newRoot, 0, inspectedNode);
+                setChild(newRoot, 1, rightNode);
+                setCount(newRoot, 1);
+                this.root = newRoot;
+                ++this.height;
+                return;
+            }
+            --depth;
+            inspectedNode = this.pathNodes[depth];
+            insertKeyAndRightChild(inspectedNode, this.pathIndices[depth], splitKey, rightNode);
+        }
+    }
+
+    /**
+     * Check whether the BTree contains the given element. If so, delete it and notify the mutation listeners.
+     * @param elementKey the elementKey to delete.
+     * @return true, if the elementKey was found and deleted, false if the BTree does not contain the elementKey.
+     */
+    @Override
+    public boolean deleteElement(int elementKey) {
+        if(!deleteKey(elementKey)) {
+            return false;
+        }
+        notifyElementDeleted(elementKey);
+        return true;
+    }
+
+    /**
+     * Check whether the BTree contains the given element. If so, delete it and balance the BTree along the path to the
+     * leaf where the delete ended. The mutation listeners are not notified.
+     * Deleting from an internal node replaces the key with the greatest key of its left subtree, just like BTree.
+     * @param elementKey the elementKey to delete.
+     * @return true, if the elementKey was found and deleted, false if the BTree does not contain the elementKey.
+     */
+    private boolean deleteKey(int elementKey) {
+        if(this.root == SlabAllocator.NIL) {
+            return false;
+        }
+        int depth = 0;
+        int inspectedNode = this.root;
+        int index;
+        while(true) {
+            index = findIndex(inspectedNode, elementKey);
+            if(index >= 0) {
+                break;
+            } else if(isLeaf(inspectedNode)) {
+                return false;
+            }
+            rememberPath(depth, inspectedNode, -index - 1);
+            inspectedNode = getChild(inspectedNode, -index - 1);
+            ++depth;
+        }
+        if(isPacked(inspectedNode)) {
+            int count = unpackLeaf(inspectedNode, this.leafBuffer, 0);
+            System.arraycopy(this.leafBuffer, index + 1, this.leafBuffer, index, count - index - 1);
+            inspectedNode = repackLeaf(inspectedNode, this.leafBuffer, 0, count - 1);
+            relinkFromParent(depth, inspectedNode);
+        } else if(isLeaf(inspectedNode)) {
+            removeKeyAndRightChild(inspectedNode, index);
+        } else {
+            rememberPath(depth, inspectedNode, index);
+            int leaf = getChild(inspectedNode, index);
+            ++depth;
+            while(!isLeaf(leaf)) {
+                rememberPath(depth, leaf, getCount(leaf));
+                leaf = getChild(leaf, getCount(leaf));
+                ++depth;
+            }
+            // dropping the greatest key keeps a packed leaf valid as its base does not change
+            setKey(inspectedNode, index, getKey(leaf, getCount(leaf) - 1));
+            setCount(leaf, getCount(leaf) - 1);
+            inspectedNode = leaf;
+        }
+        --this.numberOfKeys;
+        checkUnderflow(inspectedNode, depth);
+        return true;
+    }
+
+    /**
+     * Balance the given node and its ancestors on the remembered path as long as they underflow.
+     * Use the same preference as BTree: rotate right using the left neighbour, rotate left using the right
+     *      neighbour, merge into the left neighbour, merge the right neighbour into the node.
+     * If the root is left without elements, its only child becomes the new root or the BTree is empty.
+     * @param inspectedNode the node to check.
+     * @param depth depth of the node, 0 being the root.
+     */
+    private void checkUnderflow(int inspectedNode, int depth) {
+        while(true) {
+            if(depth == 0) {
+                if(getCount(inspectedNode) == 0) {
+                    this.root = isLeaf(inspectedNode) ? SlabAllocator.NIL : getChild(inspectedNode, 0);
+                    --this.height;
+                    freeNode(inspectedNode);
+                }
+                return;
+            } else if(getCount(inspectedNode) >= this.elementMin) {
+                return;
+            }
+            int parentNode = this.pathNodes[depth - 1];
+            int position = this.pathIndices[depth - 1];
+            int leftNeighbour = (position > 0) ? getChild(parentNode, position - 1) : SlabAllocator.NIL;
+            int rightNeighbour = (position < getCount(parentNode)) ?
+                    getChild(parentNode, position + 1) : SlabAllocator.NIL;
+            if(leftNeighbour != SlabAllocator.NIL && getCount(leftNeighbour) > this.elementMin) {
+                rotateRight(parentNode, position - 1, leftNeighbour, inspectedNode);
+                return;
+            } else if(rightNeighbour != SlabAllocator.NIL && getCount(rightNeighbour) > this.elementMin) {
+                rotateLeft(parentNode, position, inspectedNode, rightNeighbour);
+                return;
+            } else if(leftNeighbour != SlabAllocator.NIL) {
+                mergeRightIntoLeftNode(parentNode, position - 1, leftNeighbour, inspectedNode);
+            } else if(rightNeighbour != SlabAllocator.NIL) {
+                mergeRightIntoLeftNode(parentNode, position, inspectedNode, rightNeighbour);
+            }
+            inspectedNode = parentNode;
+            --depth;
+        }
+    }
+
+    /**
+     * Move the separator to the left edge of the right node and the greatest key of the left node to the separator's
+     * position. The right child of the moved key becomes the first child of the right node.
+     * @param parentNode the parent of both nodes.
+     * @param separatorIndex index of the separator in the parent node.
+     * @param left the left node to move away elements from.
+     * @param right the right node to move elements to (node with underflow).
+     */
+    private void rotateRight(int parentNode, int separatorIndex, int left, int right) {
+        int leftCount = getCount(left);
+        int rightCount = getCount(right);
+        if(isPacked(right)) {
+            unpackLeaf(right, this.leafBuffer, 1);
+            this.leafBuffer[0] = getKey(parentNode, separatorIndex);
+            setChild(parentNode, separatorIndex + 1, repackLeaf(right, this.leafBuffer, 0, rightCount + 1));
+        } else {
+            copyFields(right, KEYS, right, KEYS + 1, rightCount);
+            setKey(right, 0, getKey(parentNode, separatorIndex));
+            if(!isLeaf(right)) {
+                copyFields(right, this.childrenOffset, right, this.childrenOffset + 1, rightCount + 1);
+                setChild(right, 0, getChild(left, leftCount));
+            }
+            setCount(right, rightCount + 1);
+        }
+        setKey(parentNode, separatorIndex, getKey(left, leftCount - 1));
+        setCount(left, leftCount - 1);
+    }
+
+    /**
+     * Move the separator to the right edge of the left node and the smallest key of the right node to the separator's
+     * position. The left child of the moved key becomes the last child of the left node.
+     * @param parentNode the parent of both nodes.
+     * @param separatorIndex index of the separator in the parent node.
+     * @param left the left node to move elements to (node with underflow).
+     * @param right the right node to move elements away from.
+     */
+    private void rotateLeft(int parentNode, int separatorIndex, int left, int right) {
+        int leftCount = getCount(left);
+        int rightCount = getCount(right);
+        if(isPacked(left)) {
+            unpackLeaf(left, this.leafBuffer, 0);
+            this.leafBuffer[leftCount] = getKey(parentNode, separatorIndex);
+            setChild(parentNode, separatorIndex, repackLeaf(left, this.leafBuffer, 0, leftCount + 1));
+            setKey(parentNode, separatorIndex, getKey(right, 0));
+            unpackLeaf(right, this.leafBuffer, 0);
+            setChild(parentNode, separatorIndex + 1, repackLeaf(right, this.leafBuffer, 1, rightCount - 1));
+            return;
+        }
+        setKey(left, leftCount, getKey(parentNode, separatorIndex));
+        if(!isLeaf(left)) {
+            setChild(left, leftCount + 1, getChild(right, 0));
+            copyFields(right, this.childrenOffset + 1, right, this.childrenOffset, rightCount);
+        }
+        setCount(left, leftCount + 1);
+        setKey(parentNode, separatorIndex, getKey(right, 0));
+        copyFields(right, KEYS + 1, right, KEYS, rightCount - 1);
+        setCount(right, rightCount - 1);
+    }
+
+    /**
+     * Merge the given right node into the given left node moving down and sandwiching the separator.
+     * Remove the separator and the right node from the parent node and free the right node's record.
+     * @param parentNode the parent of both nodes.
+     * @param separatorIndex index of the separator in the parent node.
+     * @param left the node to merge the right node into.
+     * @param right the node to merge into the left node.
+     */
+    private void mergeRightIntoLeftNode(int parentNode, int separatorIndex, int left, int right) {
+        int leftCount = getCount(left);
+        int rightCount = getCount(right);
+        if(isPacked(left)) {
+            unpackLeaf(left, this.leafBuffer, 0);
+            this.leafBuffer[leftCount] = getKey(parentNode, separatorIndex);
+            unpackLeaf(right, this.leafBuffer, leftCount + 1);
+            setChild(parentNode, separatorIndex,
+                    repackLeaf(left, this.leafBuffer, 0, leftCount + rightCount + 1));
+        } else {
+            setKey(left, leftCount, getKey(parentNode, separatorIndex));
+            copyFields(right, KEYS, left, KEYS + leftCount + 1, rightCount);
+            if(!isLeaf(left)) {
+                copyFields(right, this.childrenOffset, left, this.childrenOffset + leftCount + 1, rightCount + 1);
+            }
+            setCount(left, leftCount + rightCount + 1);
+        }
+        removeKeyAndRightChild(parentNode, separatorIndex);
+        freeNode(right);
+    }
+
+    /**
+     * Insert a key at the given index of a node and the given child to its right, shifting greater keys and children.
+     * Only used for unpacked nodes.
+     * @param node the node to insert into.
+     * @param index the index the key will have.
+     * @param key the key to insert.
+     * @param rightChild the child to insert right of the key, ignored for leaves.
+     */
+    private void insertKeyAndRightChild(int node, int index, int key, int rightChild) {
+        int count = getCount(node);
+        copyFields(node, KEYS + index, node, KEYS + index + 1, count - index);
+        setKey(node, index, key);
+        if(!isLeaf(node)) {
+            copyFields(node, this.childrenOffset + index + 1, node, this.childrenOffset + index + 2, count - index);
+            setChild(node, index + 1, rightChild);
+        }
+        setCount(node, count + 1);
+    }
+
+    /**
+     * Remove the key at the given index of a node and the child to its right, shifting greater keys and children.
+     * Only used for unpacked nodes.
+     * @param node the node to remove from.
+     * @param index the index of the key to remove.
+     */
+    private void removeKeyAndRightChild(int node, int index) {
+        int count = getCount(node);
+        copyFields(node, KEYS + index + 1, node, KEYS + index, count - index - 1);
+        if(!isLeaf(node)) {
+            copyFields(node, this.childrenOffset + index + 2, node, this.childrenOffset + index + 1, count - index - 1);
+        }
+        setCount(node, count - 1);
+    }
+
+    /**
+     * Binary search for the given key in a node.
+     * @param node the node to search.
+     * @param key the key to search for.
+     * @return the index of the key if the node contains it, otherwise (-(insertion point) - 1). The insertion point
+     *         is also the index of the child whose subtree would contain the key.
+     */
+    private int findIndex(int node, int key) {
+        int low = 0;
+        int high = getCount(node) - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleKey = getKey(node, middle);
+            if(middleKey < key) {
+                low = middle + 1;
+            } else if(middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Remember the node at the given depth of the current path and the index of the child taken from it.
+     * @param depth the depth of the node.
+     * @param node the node.
+     * @param childIndex the index of the child taken.
+     */
+    private void rememberPath(int depth, int node, int childIndex) {
+        if(depth == this.pathNodes.length) {
+            this.pathNodes = Arrays.copyOf(this.pathNodes, depth * 2);
+            this.pathIndices = Arrays.copyOf(this.pathIndices, depth * 2);
+        }
+        this.pathNodes[depth] = node;
+        this.pathIndices[depth] = childIndex;
+    }
+
+    /**
+     * Let the parent of the node at the given depth on the remembered path (or the BTree's root) reference the given
+     * node. Necessary after a packed leaf moved to another width class.
+     * @param depth depth of the node, 0 being the root.
+     * @param node the (possibly moved) node.
+     */
+    private void relinkFromParent(int depth, int node) {
+        if(depth == 0) {
+            this.root = node;
+        } else {
+            setChild(this.pathNodes[depth - 1], this.pathIndices[depth - 1], node);
+        }
+    }
+
+    /**
+     * Create a new leaf holding the given keys, packed if packed leaves are enabled.
+     * @param keys array holding the keys ordered ascending.
+     * @param from index of the first key.
+     * @param count number of keys.
+     * @return the address of the new leaf.
+     */
+    private int newLeaf(int[] keys, int from, int count) {
+        if(this.packedLeaves) {
+            return packLeaf(allocatePackedLeaf(getWidthClass(keys, from, count)), keys, from, count);
+        }
+        int leaf = newNode(true);
+        for(int i = 0; i < count; ++i) {
+            setKey(leaf, i, keys[from + i]);
+        }
+        setCount(leaf, count);
+        return leaf;
+    }
+
+    /**
+     * Replace the keys of a packed leaf with the given keys. If the span of the keys requires another width class,
+     * the leaf is moved to a record of that class and the old record is freed.
+     * @param leaf the address of the leaf.
+     * @param keys array holding the keys ordered ascending.
+     * @param from index of the first key.
+     * @param count number of keys.
+     * @return the address of the leaf, which differs from the given address if the leaf was moved.
+     */
+    private int repackLeaf(int leaf, int[] keys, int from, int count) {
+        int widthClass = getWidthClass(keys, from, count);
+        if(widthClass == (leaf >>> CLASS_SHIFT)) {
+            return packLeaf(leaf, keys, from, count);
+        }
+        freeNode(leaf);
+        return packLeaf(allocatePackedLeaf(widthClass), keys, from, count);
+    }
+
+    /**
+     * Write the given keys into a packed leaf record as BASE followed by the bit-packed deltas.
+     * @param leaf the address of the leaf.
+     * @param keys array holding the keys ordered ascending.
+     * @param from index of the first key.
+     * @param count number of keys.
+     * @return the address of the leaf.
+     */
+    private int packLeaf(int leaf, int[] keys, int from, int count) {
+        int width = PACKED_WIDTHS[(leaf >>> CLASS_SHIFT) - 1];
+        int deltasPerField = 32 / width;
+        int base = (count > 0) ? keys[from] : 0;
+        setField(leaf, COUNT, count);
+        setField(leaf, BASE, base);
+        for(int field = 0; field * deltasPerField < count; ++field) {
+            int bits = 0;
+            for(int i = 0; i < deltasPerField && field * deltasPerField + i < count; ++i) {
+                bits |= (keys[from + field * deltasPerField + i] - base) << (i * width);
+            }
+            setField(leaf, PACKED + field, bits);
+        }
+        return leaf;
+    }
+
+    /**
+     * Write the keys of a packed leaf into the given array.
+     * @param leaf the address of the leaf.
+     * @param target array to write to.
+     * @param offset index of the first key in the target array.
+     * @return the number of keys written.
+     */
+    private int unpackLeaf(int leaf, int[] target, int offset) {
+        int count = getCount(leaf);
+        for(int i = 0; i < count; ++i) {
+            target[offset + i] = getKey(leaf, i);
+        }
+        return count;
+    }
+
+    /**
+     * Get the index of the smallest width class able to hold the deltas of the given keys.
+     * @param keys array holding the keys ordered ascending.
+     * @param from index of the first key.
+     * @param count number of keys.
+     * @return width class, 1 being the narrowest.
+     */
+    private int getWidthClass(int[] keys, int from, int count) {
+        long span = (count > 1) ? (long) keys[from + count - 1] - keys[from] : 0;
+        for(int widthClass = 1; widthClass < PACKED_WIDTHS.length; ++widthClass) {
+            if(span < (1L << PACKED_WIDTHS[widthClass - 1])) {
+                return widthClass;
+            }
+        }
+        return PACKED_WIDTHS.length;
+    }
+
+    private int allocatePackedLeaf(int widthClass) {
+        int leaf = toAddress(widthClass, this.slabs[widthClass].allocate());
+        setField(leaf, LEAF, 1);
+        return leaf;
+    }
+
+    private int newNode(boolean leaf) {
+        int node = toAddress(0, this.slabs[0].allocate());
+        setCount(node, 0);
+        setField(node, LEAF, leaf ? 1 : 0);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        this.slabs[node >>> CLASS_SHIFT].free(node & RECORD_MASK);
+    }
+
+    private int toAddress(int widthClass, int record) {
+        if(record > RECORD_MASK) {
+            throw new IllegalStateException("Too many nodes for off-heap addressing.");
+        }
+        return (widthClass << CLASS_SHIFT) | record;
+    }
+
+    private boolean isPacked(int node) {
+        return (node >>> CLASS_SHIFT) != 0;
+    }
+
+    private boolean isLeaf(int node) {
+        return getField(node, LEAF) == 1;
+    }
+
+    private int getCount(int node) {
+        return getField(node, COUNT);
+    }
+
+    private void setCount(int node, int count) {
+        setField(node, COUNT, count);
+    }
+
+    /**
+     * Get the key at the given index of a node. Keys of packed leaves are decoded in place.
+     * @param node the node.
+     * @param index the index of the key.
+     * @return the key.
+     */
+    private int getKey(int node, int index) {
+        int widthClass = node >>> CLASS_SHIFT;
+        if(widthClass == 0) {
+            return getField(node, KEYS + index);
+        }
+        int width = PACKED_WIDTHS[widthClass - 1];
+        int deltasPerField = 32 / width;
+        int bits = getField(node, PACKED + index / deltasPerField) >>> ((index % deltasPerField) * width);
+        return getField(node, BASE) + ((width == 32) ? bits : (bits & ((1 << width) - 1)));
+    }
+
+    private void setKey(int node, int index, int key) {
+        setField(node, KEYS + index, key);
+    }
+
+    private int getChild(int node, int index) {
+        return getField(node, this.childrenOffset + index);
+    }
+
+    private void setChild(int node, int index, int child) {
+        setField(node, this.childrenOffset + index, child);
+    }
+
+    private int getField(int node, int field) {
+        return this.slabs[node >>> CLASS_SHIFT].getInt(node & RECORD_MASK, field);
+    }
+
+    private void setField(int node, int field, int value) {
+        this.slabs[node >>> CLASS_SHIFT].putInt(node & RECORD_MASK, field, value);
+    }
+
+    private void copyFields(int sourceNode, int sourceField, int targetNode, int targetField, int length) {
+        this.slabs[0].copyInts(sourceNode, sourceField, targetNode, targetField, length);
+    }
+
+    /**
+     * Get the smallest key by descending along the first child of every node.
+     * @return the smallest key, null if the BTree is empty.
+     */
+    @Override
+    public Integer first() {
+        if(this.root == SlabAllocator.NIL) {
+            return null;
+        }
+        int inspectedNode = this.root;
+        while(!isLeaf(inspectedNode)) {
+            inspectedNode = getChild(inspectedNode, 0);
+        }
+        return getKey(inspectedNode, 0);
+    }
+
+    /**
+     * Get the greatest key by descending along the last child of every node.
+     * @return the greatest key, null if the BTree is empty.
+     */
+    @Override
+    public Integer last() {
+        if(this.root == SlabAllocator.NIL) {
+            return null;
+        }
+        int inspectedNode = this.root;
+        while(!isLeaf(inspectedNode)) {
+            inspectedNode = getChild(inspectedNode, getCount(inspectedNode));
+        }
+        return getKey(inspectedNode, getCount(inspectedNode) - 1);
+    }
+
+    /**
+     * Delete the smallest key and notify the mutation listeners.
+     * @return the deleted key, null if the BTree is empty.
+     */
+    @Override
+    public Integer pollFirst() {
+        Integer elementKey = first();
+        if(elementKey != null) {
+            deleteElement(elementKey);
+        }
+        return elementKey;
+    }
+
+    /**
+     * Delete the greatest key and notify the mutation listeners.
+     * @return the deleted key, null if the BTree is empty.
+     */
+    @Override
+    public Integer pollLast() {
+        Integer elementKey = last();
+        if(elementKey != null) {
+            deleteElement(elementKey);
+        }
+        return elementKey;
+    }
+
+    /**
+     * Delete all keys in the given range one after another and notify the mutation listeners once if any key was
+     * deleted. Every freed node record is put on the free list of its SlabAllocator and reused by later inserts.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted keys.
+     */
+    @Override
+    public int deleteRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = getElementKeysInRange(lowerBound, upperBound);
+        for(int elementKey : keys) {
+            deleteKey(elementKey);
+        }
+        if(!keys.isEmpty()) {
+            notifyRangeDeleted(lowerBound, upperBound);
+        }
+        return keys.size();
+    }
+
+    /**
+     * Get all keys in the given range ordered ascending, descending only into children whose keys can lie in it.
+     * @param lowerBound smallest key to return (inclusive).
+     * @param upperBound greatest key to return (inclusive).
+     * @return the contained keys in [lowerBound, upperBound] ordered ascending, empty if the BTree is empty.
+     */
+    @Override
+    public ArrayList<Integer> getElementKeysInRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = new ArrayList<>();
+        if(this.root != SlabAllocator.NIL && lowerBound <= upperBound) {
+            addElementKeysInRange(this.root, lowerBound, upperBound, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Add the keys of the subtree with the given root that lie in the given range, ordered ascending.
+     * @param node root of the subtree.
+     * @param lowerBound smallest key to add (inclusive).
+     * @param upperBound greatest key to add (inclusive).
+     * @param keys list to add the keys to.
+     */
+    private void addElementKeysInRange(int node, int lowerBound, int upperBound, ArrayList<Integer> keys) {
+        int count = getCount(node);
+        int index = findIndex(node, lowerBound);
+        int start = (index >= 0) ? index : -index - 1;
+        for(int i = start; i <= count; ++i) {
+            // the child left of a key equal to lowerBound only holds smaller keys
+            if(!isLeaf(node) && (i > start || index < 0)) {
+                addElementKeysInRange(getChild(node, i), lowerBound, upperBound, keys);
+            }
+            if(i == count || getKey(node, i) > upperBound) {
+                return;
+            }
+            keys.add(getKey(node, i));
+        }
+    }
+
+    /**
+     * Clear the BTree by releasing all slabs and reset order to default 5. Notify the mutation listeners.
+     */
+    @Override
+    public void clear() {
+        rebuild(BTreeBackendApplication.DEFAULT_ORDER, new int[0]);
+        notifyCleared();
+    }
+
+    /**
+     * Get all keys contained in the BTree ordered ascending.
+     * @return all contained keys ordered ascending.
+     */
+    @Override
+    public ArrayList<Integer> getAllElementKeysOrderedAscending() {
+        ArrayList<Integer> keys = new ArrayList<>();
+        for(int key : getAllElementKeys()) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Get all keys contained in the BTree ordered ascending without boxing them.
+     * @return array of all contained keys ordered ascending.
+     */
+    private int[] getAllElementKeys() {
+        int[] keys = new int[(int) this.numberOfKeys];
+        if(this.root != SlabAllocator.NIL) {
+            collectKeys(this.root, keys, 0);
+        }
+        return keys;
+    }
+
+    /**
+     * Write all keys of the subtree with the given root into the target array in ascending order.
+     * @param node root of the subtree.
+     * @param target array to write to.
+     * @param offset index of the first key in the target array.
+     * @return index behind the last key written.
+     */
+    private int collectKeys(int node, int[] target, int offset) {
+        int count = getCount(node);
+        if(isLeaf(node)) {
+            for(int i = 0; i < count; ++i) {
+                target[offset++] = getKey(node, i);
+            }
+        } else {
+            for(int i = 0; i < count; ++i) {
+                offset = collectKeys(getChild(node, i), target, offset);
+                target[offset++] = getKey(node, i);
+            }
+            offset = collectKeys(getChild(node, count), target, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Get a stream of all keys ordered ascending, read lazily from the slabs by a KeyIterator. The stream is split for
+     * parallel processing in batches of keys copied out of the iterator.
+     * @return the keys ordered ascending.
+     */
+    @Override
+    public IntStream keys() {
+        return StreamSupport.intStream(Spliterators.spliterator(new KeyIterator(), this.numberOfKeys,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Write a binary snapshot of the keys, streamed in ascending order without copying them. See BTreeSnapshot.
+     * @param out the stream to write to. It is flushed but not closed.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void writeSnapshot(OutputStream out) throws IOException {
+        BTreeSnapshot.writeSortedKeys(this::keys, (int) this.numberOfKeys, this.order, out);
+    }
+
+    /**
+     * Read the keys of the snapshot without building its nodes, take over its order and insert the keys into new
+     * slabs.
+     * @param buffer the buffer containing the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot. The BTree is left unchanged in that case.
+     */
+    @Override
+    protected void readSnapshot(ByteBuffer buffer) throws IOException {
+        BTreeSnapshot.SortedKeys snapshot = BTreeSnapshot.readSortedKeys(buffer);
+        rebuild(snapshot.getOrder(), snapshot.getKeys());
+    }
+
+    /**
+     * Set the order and rebuild the BTree with records of the new size. Notify the mutation listeners.
+     * @param order new order to set.
+     */
+    @Override
+    public void setOrder(int order) {
+        rebuild(order, (this.root != SlabAllocator.NIL) ? getAllElementKeys() : new int[0]);
+        notifyOrderChanged(order);
+    }
+
+    /**
+     * Set this.order and calculate and set this.elementsMax and this.elementsMin based on order.
+     * Release all slabs, create new allocators for the new record sizes and insert the given keys in a loop.
+     * @param order new order to set.
+     * @param keys the keys the BTree holds afterwards.
+     */
+    private void rebuild(int order, int[] keys) {
+        this.order = order;
+        this.elementsMax = order - 1;
+        this.elementMin = (order / 2 + ((order % 2 == 0) ? 0 : 1)) - 1;
+        this.childrenOffset = KEYS + this.elementsMax + 1;
+        this.leafBuffer = new int[this.elementsMax + 2];
+        if(this.slabs != null) {
+            for(SlabAllocator slab : this.slabs) {
+                slab.clear();
+            }
+        }
+        this.slabs = new SlabAllocator[this.packedLeaves ? PACKED_WIDTHS.length + 1 : 1];
+        this.slabs[0] = new SlabAllocator((this.childrenOffset + this.elementsMax + 2) * Integer.BYTES);
+        for(int widthClass = 1; widthClass < this.slabs.length; ++widthClass) {
+            int packedFields = ((this.elementsMax + 1) * PACKED_WIDTHS[widthClass - 1] + 31) / 32;
+            this.slabs[widthClass] = new SlabAllocator((PACKED + packedFields) * Integer.BYTES);
+        }
+        this.root = SlabAllocator.NIL;
+        this.height = 0;
+        this.numberOfKeys = 0;
+        for(int key : keys) {
+            this.insertKey(key);
+        }
+    }
+
+    /**
+     * Get the statistics of the BTree by walking all nodes. Levels are counted from the leaves like in BTree.
+     * @return the statistics.
+     */
+    @Override
+    public BTreeStatistics getStatistics() {
+        BTreeStatistics statistics = new BTreeStatistics();
+        statistics.reset(this.order);
+        if(this.root != SlabAllocator.NIL) {
+            addStatistics(this.root, this.height - 1, statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Add the nodes and keys of the subtree with the given root to the statistics.
+     * @param node root of the subtree.
+     * @param level level of the node counted from the leaves.
+     * @param statistics the statistics to add to.
+     */
+    private void addStatistics(int node, int level, BTreeStatistics statistics) {
+        int count = getCount(node);
+        statistics.addNodes(level, 1);
+        statistics.addKeys(level, count);
+        if(!isLeaf(node)) {
+            for(int i = 0; i <= count; ++i) {
+                addStatistics(getChild(node, i), level - 1, statistics);
+            }
+        }
+    }
+
+    /**
+     * Get the number of off-heap bytes reserved for the BTree divided by the number of keys.
+     * @return reserved bytes per key, 0 if the BTree is empty.
+     */
+    public double getBytesPerKey() {
+        return (this.numberOfKeys == 0) ? 0 : (double) getAllocatedBytes() / this.numberOfKeys;
+    }
+
+    /**
+     * Get the number of off-heap bytes occupied by live nodes divided by the number of keys.
+     * @return occupied bytes per key, 0 if the BTree is empty.
+     */
+    public double getUsedBytesPerKey() {
+        return (this.numberOfKeys == 0) ? 0 : (double) getUsedBytes() / this.numberOfKeys;
+    }
+
+    /**
+     * Get the number of off-heap bytes reserved by the slabs of all record classes.
+     * @return reserved bytes.
+     */
+    public long getAllocatedBytes() {
+        long allocatedBytes = 0;
+        for(SlabAllocator slab : this.slabs) {
+            allocatedBytes += slab.getAllocatedBytes();
+        }
+        return allocatedBytes;
+    }
+
+    /**
+     * Get the number of off-heap bytes occupied by live nodes of all record classes.
+     * @return occupied bytes.
+     */
+    public long getUsedBytes() {
+        long usedBytes = 0;
+        for(SlabAllocator slab : this.slabs) {
+            usedBytes += slab.getUsedBytes();
+        }
+        return usedBytes;
+    }
+
+    /**
+     * Get the number of live nodes of all record classes.
+     * @return number of nodes.
+     */
+    public int getNumberOfNodes() {
+        int numberOfNodes = 0;
+        for(SlabAllocator slab : this.slabs) {
+            numberOfNodes += slab.getLiveRecords();
+        }
+        return numberOfNodes;
+    }
+
+    /* Standard getters */
+
+    @Override
+    public int getOrder() {
+        return this.order;
+    }
+
+    public boolean hasPackedLeaves() {
+        return this.packedLeaves;
+    }
+
+    public long getNumberOfKeys() {
+        return this.numberOfKeys;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Iterator over the keys of the BTree in ascending order. Keeps the path from the root to the current node and the
+     * index of the next key in every node of it, so it reads one key at a time from the slabs without copying them.
+     * The BTree must not be modified while iterating.
+     */
+    private class KeyIterator implements PrimitiveIterator.OfInt {
+        private int[] nodes = new int[Math.max(1, height)];
+        private int[] indices = new int[Math.max(1, height)];
+        private int depth = -1;
+
+        private KeyIterator() {
+            if(root != SlabAllocator.NIL) {
+                descendToFirstKey(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if(this.depth < 0) {
+                throw new NoSuchElementException();
+            }
+            int node = this.nodes[this.depth];
+            int index = this.indices[this.depth]++;
+            int key = getKey(node, index);
+            if(!isLeaf(node)) {
+                descendToFirstKey(getChild(node, index + 1));
+            } else {
+                while(this.depth >= 0 && this.indices[this.depth] == getCount(this.nodes[this.depth])) {
+                    --this.depth;
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Push the given node and the leftmost path below it, each positioned at its first key.
+         * @param node the node to start at.
+         */
+        private void descendToFirstKey(int node) {
+            while(true) {
+                ++this.depth;
+                this.nodes[this.depth] = node;
+                this.indices[this.depth] = 0;
+                if(isLeaf(node)) {
+                    return;
+                }
+                node = getChild(node, 0);
+            }
+        }
+    }
+}
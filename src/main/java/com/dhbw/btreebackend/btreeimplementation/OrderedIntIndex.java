@@ -0,0 +1,158 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Interface for the engines storing the ordered set of int keys, e.g. BTree, AdaptiveRadixTree or OffHeapBTree.
+ * Covers the operations every engine offers the same way: inserting, deleting and searching for keys with the costs of
+ * the search, accessing and removing the smallest and the greatest key, reading and deleting ranges of keys in
+ * ascending order, streaming all keys, clearing the index, changing its order, exporting and loading binary snapshots
+ * in the format of BTreeSnapshot, so snapshots can be exchanged between engines, reporting its statistics and
+ * notifying BTreeMutationListeners of every successful mutation.
+ * Features that depend on BTree nodes (the nodes themselves, relaxed deletes, the page cache, structural events and
+ * node change reports) are only offered by BTree. Users of an OrderedIntIndex check for them with instanceof.
+ * Implementations are not thread-safe unless stated otherwise.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public interface OrderedIntIndex {
+
+    /**
+     * Insert the given key.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the index already contains it.
+     */
+    boolean insertElement(int elementKey);
+
+    /**
+     * Delete the given key.
+     * @param elementKey the key to delete.
+     * @return true if the key was found and deleted, false if the index does not contain it.
+     */
+    boolean deleteElement(int elementKey);
+
+    /**
+     * Search for the given key.
+     * @param elementKey the key to search for.
+     * @return BTreeSearchResult containing whether the key was found and the number of nodes accessed. Engines without
+     *         BTree nodes return null as location and element.
+     */
+    BTreeSearchResult searchElement(int elementKey);
+
+    /**
+     * Search for all given keys.
+     * @param elementKeys the keys to search for, in any order and possibly containing duplicates.
+     * @return BTreeBatchSearchResult containing a BTreeSearchResult per given key in the given order and the number of
+     *         nodes accessed for all keys together.
+     */
+    BTreeBatchSearchResult searchElements(int[] elementKeys);
+
+    /**
+     * Get the smallest key.
+     * @return the smallest key, null if the index is empty.
+     */
+    Integer first();
+
+    /**
+     * Get the greatest key.
+     * @return the greatest key, null if the index is empty.
+     */
+    Integer last();
+
+    /**
+     * Delete the smallest key.
+     * @return the deleted key, null if the index is empty.
+     */
+    Integer pollFirst();
+
+    /**
+     * Delete the greatest key.
+     * @return the deleted key, null if the index is empty.
+     */
+    Integer pollLast();
+
+    /**
+     * Delete all keys in the given range.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted keys.
+     */
+    int deleteRange(int lowerBound, int upperBound);
+
+    /**
+     * Get all keys in the given range, ordered ascending.
+     * @param lowerBound smallest key to return (inclusive).
+     * @param upperBound greatest key to return (inclusive).
+     * @return the contained keys in [lowerBound, upperBound] ordered ascending.
+     */
+    List<Integer> getElementKeysInRange(int lowerBound, int upperBound);
+
+    /**
+     * Get all keys ordered ascending.
+     * @return all contained keys ordered ascending.
+     */
+    List<Integer> getAllElementKeysOrderedAscending();
+
+    /**
+     * Get a stream of all keys ordered ascending, read lazily from the index instead of being copied into a list. The
+     * stream can be split for parallel processing. The index must not be modified while the stream is consumed.
+     * @return the keys ordered ascending.
+     */
+    IntStream keys();
+
+    /**
+     * Write a binary snapshot of the keys to the given stream. See BTreeSnapshot for the format.
+     * @param out the stream to write to. It is flushed but not closed.
+     * @throws IOException if writing fails.
+     */
+    void writeSnapshot(OutputStream out) throws IOException;
+
+    /**
+     * Replace the keys and the order of the index with the binary snapshot in the given buffer.
+     * @param buffer the buffer containing the snapshot, e.g. a memory-mapped file.
+     * @throws IOException if the buffer does not contain a valid snapshot. The index is left unchanged in that case.
+     */
+    void loadSnapshot(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Remove all keys and reset the order to default 5.
+     */
+    void clear();
+
+    /**
+     * Get the order, i.e. the maximum number of children of a node. Engines without BTree nodes keep it only to write
+     * it to snapshots.
+     * @return the order.
+     */
+    int getOrder();
+
+    /**
+     * Change the order, rebuilding the index if its layout depends on it.
+     * @param order new order to set.
+     */
+    void setOrder(int order);
+
+    /**
+     * Get the statistics of the index, i.e. the number of nodes and keys per level.
+     * @return a copy of the statistics.
+     */
+    BTreeStatistics getStatistics();
+
+    /**
+     * Register a listener to be notified after every successful insert, delete, range delete, order change, clear and
+     * snapshot load. Listeners are called on the mutating thread after the mutation has been applied.
+     * @param listener the listener to add.
+     */
+    void addMutationListener(BTreeMutationListener listener);
+
+    /**
+     * Remove a previously registered mutation listener.
+     * @param listener the listener to remove.
+     */
+    void removeMutationListener(BTreeMutationListener listener);
+}
@@ -0,0 +1,573 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A class simulating a buffer cache of a fixed number of pages over the node accesses of a BTree, as if every node was
+ * a page on disk.
+ * Contains the replacement policy deciding which page to evict if a missing page has to be loaded into a full cache:
+ *  LRU: evict the least recently used page.
+ *  CLOCK: approximate LRU with a reference bit per page, which is set on every access. A hand moves over the pages in a
+ *      circle, clearing set bits, and evicts the first page whose bit is already clear.
+ *  TWO_Q: keep pages accessed once in a FIFO queue A1in of a quarter of the capacity and remember the pages evicted
+ *      from it in a ghost queue A1out of half the capacity, without their content. Only a page accessed again while
+ *      it is remembered enters the main LRU queue Am, so a scan of pages accessed once cannot evict the hot pages.
+ * Contains the statistics per operation (search, insert, delete): the number of operations, node accesses, hits and
+ *      misses and the number of write-backs. A page becomes dirty when its node is changed and is written back when it
+ *      is evicted. The modeled I/O of an operation is the number of misses (page reads) plus the write-backs it caused.
+ * The simulation only counts; nodes stay in memory regardless of the cache.
+ *
+ * Searches record their accesses concurrently to each other, and the shards of a ShardedBTree are written in
+ *      parallel. So accesses are not applied to the cache by the accessing thread, which would serialize all of them on
+ *      one lock for every node visited. Instead every thread appends its accesses to one of a power of two of stripes,
+ *      chosen by its thread id, under the lock of that stripe, which is uncontended unless two threads share a stripe.
+ *      A thread finding its stripe full drains all stripes: while holding the drain lock, it swaps the buffer of every
+ *      stripe for an empty one and applies the taken accesses to the cache, so the cache and the statistics are only
+ *      changed by a single consumer at a time. Readers of the statistics drain first, so they see every access recorded
+ *      before. The accesses of one thread are applied in their order; accesses of different threads are applied stripe
+ *      by stripe, which is one of their possible orders, as they were concurrent.
+ *      The cost per access is therefore one uncontended lock and two array stores, plus the application to the cache
+ *      once per STRIPE_CAPACITY accesses of a stripe. Operations are counted in LongAdders.
+ *
+ * Offers methods for the BTree to count operations and record accesses, and public methods to get and reset the
+ *      statistics.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class PageCacheSimulator {
+    static final int STRIPE_CAPACITY = 256;
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final int capacity;
+    private final Policy policy;
+    private final Cache cache;
+    private final Map<Operation, OperationStatistics> statistics = new EnumMap<>(Operation.class);
+    private final LongAdder[] operationCounts = new LongAdder[OPERATIONS.length];
+    private final Stripe[] stripes;
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    public PageCacheSimulator(int capacity, Policy policy) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        switch(policy) {
+            case LRU:
+                this.cache = new LruCache(capacity);
+                break;
+            case CLOCK:
+                this.cache = new ClockCache(capacity);
+                break;
+            default:
+                this.cache = new TwoQueueCache(capacity);
+        }
+        for(Operation operation : OPERATIONS) {
+            this.statistics.put(operation, new OperationStatistics());
+            this.operationCounts[operation.ordinal()] = new LongAdder();
+        }
+        // a power of two of at least twice the processors, so a thread id is mapped to its stripe by a mask
+        int numberOfStripes = Integer.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1) << 1;
+        this.stripes = new Stripe[numberOfStripes];
+        for(int i = 0; i < numberOfStripes; ++i) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Count an operation of the given type.
+     * @param operation the type of the operation.
+     */
+    void countOperation(Operation operation) {
+        this.operationCounts[operation.ordinal()].increment();
+    }
+
+    /**
+     * Record an access of the given page by an operation of the given type. The access is appended to the stripe of
+     * the current thread and applied to the cache by the next drain.
+     * @param page the page, i.e. the node accessed.
+     * @param write true if the node is changed by the access.
+     * @param operation the type of the operation.
+     */
+    void access(Object page, boolean write, Operation operation) {
+        Stripe stripe = this.stripes[(int) Thread.currentThread().getId() & (this.stripes.length - 1)];
+        while(!stripe.offer(page, write, operation)) {
+            drain();
+        }
+    }
+
+    /**
+     * Apply the accesses recorded in all stripes to the cache, waiting for a drain of another thread to finish first.
+     */
+    private void drain() {
+        this.drainLock.lock();
+        try {
+            drainStripes();
+        } finally {
+            this.drainLock.unlock();
+        }
+    }
+
+    /**
+     * Take the recorded accesses of every stripe and apply them to the cache. Must be called holding the drain lock.
+     */
+    private void drainStripes() {
+        for(Stripe stripe : this.stripes) {
+            int size = stripe.swap();
+            Object[] pages = stripe.drainedPages;
+            byte[] accesses = stripe.drainedAccesses;
+            for(int i = 0; i < size; ++i) {
+                apply(pages[i], (accesses[i] & 1) != 0, OPERATIONS[accesses[i] >>> 1]);
+                pages[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Apply an access of the given page to the cache and count its result. Must be called holding the drain lock.
+     * @param page the page, i.e. the node accessed.
+     * @param write true if the node is changed by the access.
+     * @param operation the type of the operation.
+     */
+    private void apply(Object page, boolean write, Operation operation) {
+        OperationStatistics operationStatistics = this.statistics.get(operation);
+        ++operationStatistics.accesses;
+        int result = this.cache.access(page, write);
+        if(result == Cache.HIT) {
+            ++operationStatistics.hits;
+        } else {
+            ++operationStatistics.misses;
+            if(result == Cache.MISS_WITH_WRITE_BACK) {
+                ++operationStatistics.writeBacks;
+            }
+        }
+    }
+
+    /**
+     * Drop all pages without writing them back, e.g. after the BTree was rebuilt and all its nodes were replaced. The
+     * accesses recorded before are applied first, so they are counted. The statistics are kept.
+     */
+    void invalidate() {
+        this.drainLock.lock();
+        try {
+            drainStripes();
+            this.cache.clear();
+        } finally {
+            this.drainLock.unlock();
+        }
+    }
+
+    /**
+     * Get a copy of the statistics of the given type of operations, including all accesses recorded before.
+     * @param operation the type of the operations.
+     * @return the statistics.
+     */
+    public OperationStatistics getStatistics(Operation operation) {
+        this.drainLock.lock();
+        try {
+            drainStripes();
+            OperationStatistics copy = this.statistics.get(operation).copy();
+            copy.operations = this.operationCounts[operation.ordinal()].sum();
+            return copy;
+        } finally {
+            this.drainLock.unlock();
+        }
+    }
+
+    /**
+     * Get the statistics of all operations together, including all accesses recorded before.
+     * @return the sums of the statistics of all types of operations.
+     */
+    public OperationStatistics getTotalStatistics() {
+        OperationStatistics total = new OperationStatistics();
+        for(Operation operation : OPERATIONS) {
+            OperationStatistics operationStatistics = getStatistics(operation);
+            total.operations += operationStatistics.operations;
+            total.accesses += operationStatistics.accesses;
+            total.hits += operationStatistics.hits;
+            total.misses += operationStatistics.misses;
+            total.writeBacks += operationStatistics.writeBacks;
+        }
+        return total;
+    }
+
+    /**
+     * Reset the statistics of all operations. The accesses recorded before are applied to the cache without being
+     * counted, and the cached pages are kept, so the cache stays warm.
+     */
+    public void resetStatistics() {
+        this.drainLock.lock();
+        try {
+            drainStripes();
+            for(Operation operation : OPERATIONS) {
+                this.statistics.put(operation, new OperationStatistics());
+                this.operationCounts[operation.ordinal()].reset();
+            }
+        } finally {
+            this.drainLock.unlock();
+        }
+    }
+
+    /* Standard getters */
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public Policy getPolicy() {
+        return this.policy;
+    }
+
+    public int getResidentPages() {
+        this.drainLock.lock();
+        try {
+            drainStripes();
+            return this.cache.size();
+        } finally {
+            this.drainLock.unlock();
+        }
+    }
+
+    /**
+     * A buffer of accesses recorded by the threads mapped to it, guarded by its own monitor.
+     * Contains the pages and, per page, the ordinal of the operation shifted left by one with the write flag in the
+     * lowest bit. A second pair of arrays holds the accesses taken by the last drain, so the buffers are swapped
+     * instead of copied. Only the thread holding the drain lock swaps and reads the drained arrays.
+     */
+    private static final class Stripe {
+        private Object[] pages = new Object[STRIPE_CAPACITY];
+        private byte[] accesses = new byte[STRIPE_CAPACITY];
+        private Object[] drainedPages = new Object[STRIPE_CAPACITY];
+        private byte[] drainedAccesses = new byte[STRIPE_CAPACITY];
+        private int size;
+
+        /**
+         * Append an access if there is room for it.
+         * @param page the page accessed.
+         * @param write true if the node is changed by the access.
+         * @param operation the type of the operation.
+         * @return true if the access was appended, false if the stripe is full and has to be drained first.
+         */
+        synchronized boolean offer(Object page, boolean write, Operation operation) {
+            if(this.size == STRIPE_CAPACITY) {
+                return false;
+            }
+            this.pages[this.size] = page;
+            this.accesses[this.size] = (byte) ((operation.ordinal() << 1) | (write ? 1 : 0));
+            ++this.size;
+            return true;
+        }
+
+        /**
+         * Exchange the buffer with the drained one, which the last drain has emptied.
+         * @return the number of accesses now in drainedPages and drainedAccesses.
+         */
+        synchronized int swap() {
+            Object[] fullPages = this.pages;
+            byte[] fullAccesses = this.accesses;
+            this.pages = this.drainedPages;
+            this.accesses = this.drainedAccesses;
+            this.drainedPages = fullPages;
+            this.drainedAccesses = fullAccesses;
+            int drained = this.size;
+            this.size = 0;
+            return drained;
+        }
+    }
+
+    /**
+     * The replacement policies.
+     */
+    public enum Policy {
+        LRU, CLOCK, TWO_Q
+    }
+
+    /**
+     * The types of operations accesses are recorded for.
+     */
+    public enum Operation {
+        SEARCH, INSERT, DELETE
+    }
+
+    /**
+     * The accesses of a type of operations.
+     */
+    public static class OperationStatistics {
+        private long operations;
+        private long accesses;
+        private long hits;
+        private long misses;
+        private long writeBacks;
+
+        private OperationStatistics copy() {
+            OperationStatistics copy = new OperationStatistics();
+            copy.operations = this.operations;
+            copy.accesses = this.accesses;
+            copy.hits = this.hits;
+            copy.misses = this.misses;
+            copy.writeBacks = this.writeBacks;
+            return copy;
+        }
+
+        /**
+         * Get the share of accesses that were misses.
+         * @return the miss rate between 0 and 1, 0 if there were no accesses.
+         */
+        public double getMissRate() {
+            return (this.accesses > 0) ? this.misses / (double) this.accesses : 0;
+        }
+
+        /**
+         * Get the modeled I/O, i.e. the pages read on misses plus the pages written back on evictions.
+         * @return the number of page reads and writes.
+         */
+        public long getModeledIo() {
+            return this.misses + this.writeBacks;
+        }
+
+        /**
+         * Get the average modeled I/O per operation.
+         * @return the modeled I/O divided by the number of operations, 0 if there were no operations.
+         */
+        public double getModeledIoPerOperation() {
+            return (this.operations > 0) ? getModeledIo() / (double) this.operations : 0;
+        }
+
+        /* Standard getters */
+
+        public long getOperations() {
+            return this.operations;
+        }
+
+        public long getAccesses() {
+            return this.accesses;
+        }
+
+        public long getHits() {
+            return this.hits;
+        }
+
+        public long getMisses() {
+            return this.misses;
+        }
+
+        public long getWriteBacks() {
+            return this.writeBacks;
+        }
+    }
+
+    /**
+     * The pages held by a replacement policy. Pages are compared by identity, as Node does not override equals.
+     */
+    private abstract static class Cache {
+        static final int HIT = 0;
+        static final int MISS = 1;
+        static final int MISS_WITH_WRITE_BACK = 2;
+
+        protected final int capacity;
+
+        Cache(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Access the given page, loading it and evicting another page if it is missing.
+         * @param page the page.
+         * @param write true to mark the page dirty.
+         * @return HIT, MISS or MISS_WITH_WRITE_BACK if a dirty page was evicted.
+         */
+        abstract int access(Object page, boolean write);
+
+        abstract int size();
+
+        abstract void clear();
+    }
+
+    /**
+     * LRU: a LinkedHashMap in access order from the page to its dirty flag, the eldest entry is evicted.
+     */
+    private static final class LruCache extends Cache {
+        private final LinkedHashMap<Object, Boolean> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+        LruCache(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        int access(Object page, boolean write) {
+            Boolean dirty = this.pages.get(page);
+            if(dirty != null) {
+                if(write && !dirty) {
+                    this.pages.put(page, true);
+                }
+                return HIT;
+            }
+            boolean writeBack = false;
+            if(this.pages.size() == this.capacity) {
+                Iterator<Boolean> eldest = this.pages.values().iterator();
+                writeBack = eldest.next();
+                eldest.remove();
+            }
+            this.pages.put(page, write);
+            return writeBack ? MISS_WITH_WRITE_BACK : MISS;
+        }
+
+        @Override
+        int size() {
+            return this.pages.size();
+        }
+
+        @Override
+        void clear() {
+            this.pages.clear();
+        }
+    }
+
+    /**
+     * CLOCK: the pages in a circular array of frames with a reference bit and a dirty flag each, and a map from the
+     * page to its frame.
+     */
+    private static final class ClockCache extends Cache {
+        private final Object[] frames;
+        private final boolean[] referenced;
+        private final boolean[] dirty;
+        private final HashMap<Object, Integer> frameOfPage = new HashMap<>();
+        private int hand;
+
+        ClockCache(int capacity) {
+            super(capacity);
+            this.frames = new Object[capacity];
+            this.referenced = new boolean[capacity];
+            this.dirty = new boolean[capacity];
+        }
+
+        @Override
+        int access(Object page, boolean write) {
+            Integer frame = this.frameOfPage.get(page);
+            if(frame != null) {
+                this.referenced[frame] = true;
+                this.dirty[frame] |= write;
+                return HIT;
+            }
+            boolean writeBack = false;
+            int freeFrame;
+            if(this.frameOfPage.size() < this.capacity) {
+                freeFrame = this.frameOfPage.size();
+            } else {
+                while(this.referenced[this.hand]) {
+                    this.referenced[this.hand] = false;
+                    this.hand = (this.hand + 1) % this.capacity;
+                }
+                freeFrame = this.hand;
+                writeBack = this.dirty[freeFrame];
+                this.frameOfPage.remove(this.frames[freeFrame]);
+                this.hand = (this.hand + 1) % this.capacity;
+            }
+            this.frames[freeFrame] = page;
+            this.referenced[freeFrame] = true;
+            this.dirty[freeFrame] = write;
+            this.frameOfPage.put(page, freeFrame);
+            return writeBack ? MISS_WITH_WRITE_BACK : MISS;
+        }
+
+        @Override
+        int size() {
+            return this.frameOfPage.size();
+        }
+
+        @Override
+        void clear() {
+            this.frameOfPage.clear();
+            Arrays.fill(this.frames, null);
+            this.hand = 0;
+        }
+    }
+
+    /**
+     * 2Q: the FIFO queue A1in and the LRU queue Am as LinkedHashMaps from the page to its dirty flag, in insertion and
+     * access order respectively, and the ghost queue A1out as LinkedHashSet of the pages only.
+     */
+    private static final class TwoQueueCache extends Cache {
+        private final int inCapacity;
+        private final int outCapacity;
+        private final LinkedHashMap<Object, Boolean> in = new LinkedHashMap<>();
+        private final LinkedHashSet<Object> out = new LinkedHashSet<>();
+        private final LinkedHashMap<Object, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+
+        TwoQueueCache(int capacity) {
+            super(capacity);
+            this.inCapacity = Math.max(1, capacity / 4);
+            this.outCapacity = Math.max(1, capacity / 2);
+        }
+
+        @Override
+        int access(Object page, boolean write) {
+            Boolean dirty = this.main.get(page);
+            if(dirty != null) {
+                if(write && !dirty) {
+                    this.main.put(page, true);
+                }
+                return HIT;
+            }
+            dirty = this.in.get(page);
+            if(dirty != null) {        // stays at its position in the FIFO queue
+                if(write && !dirty) {
+                    this.in.put(page, true);
+                }
+                return HIT;
+            }
+            boolean writeBack = (this.in.size() + this.main.size() == this.capacity) && evict();
+            if(this.out.remove(page)) {
+                this.main.put(page, write);
+            } else {
+                this.in.put(page, write);
+            }
+            return writeBack ? MISS_WITH_WRITE_BACK : MISS;
+        }
+
+        /**
+         * Free a page: the oldest page of A1in if A1in exceeds its capacity or Am is empty, remembering it in A1out,
+         * otherwise the least recently used page of Am.
+         * @return true if the evicted page was dirty.
+         */
+        private boolean evict() {
+            if(this.in.size() > this.inCapacity || this.main.isEmpty()) {
+                Iterator<Map.Entry<Object, Boolean>> oldest = this.in.entrySet().iterator();
+                Map.Entry<Object, Boolean> entry = oldest.next();
+                oldest.remove();
+                this.out.add(entry.getKey());
+                if(this.out.size() > this.outCapacity) {
+                    Iterator<Object> oldestRemembered = this.out.iterator();
+                    oldestRemembered.next();
+                    oldestRemembered.remove();
+                }
+                return entry.getValue();
+            }
+            Iterator<Boolean> eldest = this.main.values().iterator();
+            boolean dirty = eldest.next();
+            eldest.remove();
+            return dirty;
+        }
+
+        @Override
+        int size() {
+            return this.in.size() + this.main.size();
+        }
+
+        @Override
+        void clear() {
+            this.in.clear();
+            this.out.clear();
+            this.main.clear();
+        }
+    }
+}
@@ -0,0 +1,716 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * A class representing a BTree split into range partitions ('shards') to allow concurrent writers.
+ * Contains an array of BTrees, each of them holding the keys of one range partition and guarded by its own
+ *      ReadWriteLock, so writers working on different shards do not block each other.
+ * Contains the split points separating the shards: shard i holds all keys k with
+ *      splitPoints[i - 1] <= k < splitPoints[i] (the first and the last shard are unbounded to the outside).
+ * Contains a routing lock. Every operation holds it shared while it uses the split points. Rebalancing holds it
+ *      exclusively while it moves keys between shards and replaces the split points.
+ * Contains the number of keys per shard to detect skew. If an insert leaves a shard with more than SKEW_FACTOR times
+ *      the average number of keys (and at least MIN_KEYS_TO_REBALANCE keys), the split points are recalculated so every
+ *      shard holds the same number of keys and all shards are rebuilt.
+ *
+ * Mutation listeners are notified while the lock of the affected shard is held, so mutations of the same key are
+ *      reported in the order they were applied.
+ *
+ * Extends BTree so it can be used wherever a BTree is expected. The inherited root is never used: getRoot() returns
+ *      null, as there is no single root node. Tree representations therefore check for a ShardedBTree by
+ *      BTreeColumns.getSingleTree() and leave the tree out or reject the request. All other public methods of BTree
+ *      are overridden to delegate to the shards, except searchElements(int[]), which delegates through the overridden
+ *      searchSortedElements.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class ShardedBTree extends BTree {
+    private static final double SKEW_FACTOR = 2.0;
+    private static final long MIN_KEYS_TO_REBALANCE = 1024;
+
+    private final ReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private final BTree[] shards;
+    private final ReadWriteLock[] shardLocks;
+    private final AtomicLongArray shardSizes;
+    private final AtomicLong numberOfKeys = new AtomicLong();
+    private int[] splitPoints;
+
+    /**
+     * A constructor splitting the range of non-negative keys evenly into the given number of shards.
+     * Negative keys are routed to the first shard until the first rebalancing.
+     * @param order order of every shard.
+     * @param numberOfShards number of range partitions, at least 1.
+     */
+    public ShardedBTree(int order, int numberOfShards) {
+        super(order);
+        this.shards = new BTree[numberOfShards];
+        this.shardLocks = new ReadWriteLock[numberOfShards];
+        this.shardSizes = new AtomicLongArray(numberOfShards);
+        this.splitPoints = new int[numberOfShards - 1];
+        for(int i = 0; i < numberOfShards; ++i) {
+            this.shards[i] = new BTree(order);
+            this.shardLocks[i] = new ReentrantReadWriteLock();
+            if(i > 0) {
+                this.splitPoints[i - 1] = (int) ((long) Integer.MAX_VALUE * i / numberOfShards);
+            }
+        }
+    }
+
+    /**
+     * Search for the location of given key in the shard responsible for it.
+     * @param elementKey the key to search for.
+     * @return BTreeSearchResult of the responsible shard. Costs only count the nodes of that shard.
+     */
+    @Override
+    public BTreeSearchResult searchElement(int elementKey) {
+        this.routingLock.readLock().lock();
+        try {
+            int shard = getShardIndex(elementKey);
+            this.shardLocks[shard].readLock().lock();
+            try {
+                return this.shards[shard].searchElement(elementKey);
+            } finally {
+                this.shardLocks[shard].readLock().unlock();
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search for the locations of the given keys, routing every contiguous run of keys belonging to the same shard to
+     * that shard as a single batch.
+     * @param sortedKeys the keys to search for, ordered ascending.
+     * @param results array to store the BTreeSearchResult of every key in, at the index of the key.
+     * @return the number of nodes inspected in all shards. Costs only count the nodes of the responsible shard.
+     */
+    @Override
+    protected int searchSortedElements(int[] sortedKeys, BTreeSearchResult[] results) {
+        int nodesAccessed = 0;
+        this.routingLock.readLock().lock();
+        try {
+            int from = 0;
+            while(from < sortedKeys.length) {
+                int shard = getShardIndex(sortedKeys[from]);
+                int to = from + 1;
+                while(to < sortedKeys.length && getShardIndex(sortedKeys[to]) == shard) {
+                    ++to;
+                }
+                BTreeSearchResult[] shardResults = new BTreeSearchResult[to - from];
+                this.shardLocks[shard].readLock().lock();
+                try {
+                    nodesAccessed += this.shards[shard].searchSortedElements(
+                            Arrays.copyOfRange(sortedKeys, from, to), shardResults);
+                } finally {
+                    this.shardLocks[shard].readLock().unlock();
+                }
+                System.arraycopy(shardResults, 0, results, from, shardResults.length);
+                from = to;
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return nodesAccessed;
+    }
+
+    /**
+     * Insert a new element with the given key into the shard responsible for it.
+     * Rebalance the shards afterwards if the shard became skewed.
+     * @param elementKey the key to insert.
+     * @return true if the key was inserted, false if the BTree already contains it.
+     */
+    @Override
+    public boolean insertElement(int elementKey) {
+        boolean inserted;
+        boolean skewed = false;
+        this.routingLock.readLock().lock();
+        try {
+            int shard = getShardIndex(elementKey);
+            this.shardLocks[shard].writeLock().lock();
+            try {
+                inserted = this.shards[shard].insertElement(elementKey);
+                if(inserted) {
+                    notifyElementInserted(elementKey);
+                }
+            } finally {
+                this.shardLocks[shard].writeLock().unlock();
+            }
+            if(inserted) {
+                long shardSize = this.shardSizes.incrementAndGet(shard);
+                long averageSize = this.numberOfKeys.incrementAndGet() / this.shards.length;
+                skewed = shardSize >= MIN_KEYS_TO_REBALANCE && shardSize > SKEW_FACTOR * averageSize;
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        if(skewed) {
+            rebalance();
+        }
+        return inserted;
+    }
+
+    /**
+     * Delete the element with the given key from the shard responsible for it.
+     * @param elementKey the elementKey to delete.
+     * @return true, if the elementKey was found and deleted, false if the BTree does not contain the elementKey.
+     */
+    @Override
+    public boolean deleteElement(int elementKey) {
+        this.routingLock.readLock().lock();
+        try {
+            int shard = getShardIndex(elementKey);
+            boolean deleted;
+            this.shardLocks[shard].writeLock().lock();
+            try {
+                deleted = this.shards[shard].deleteElement(elementKey);
+                if(deleted) {
+                    notifyElementDeleted(elementKey);
+                }
+            } finally {
+                this.shardLocks[shard].writeLock().unlock();
+            }
+            if(deleted) {
+                this.shardSizes.decrementAndGet(shard);
+                this.numberOfKeys.decrementAndGet();
+            }
+            return deleted;
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Delete all keys in the given range from the overlapping shards, one shard after another.
+     * @param lowerBound smallest key to delete (inclusive).
+     * @param upperBound greatest key to delete (inclusive).
+     * @return the number of deleted keys.
+     */
+    @Override
+    public int deleteRange(int lowerBound, int upperBound) {
+        if(lowerBound > upperBound) {
+            return 0;
+        }
+        int deleted = 0;
+        this.routingLock.readLock().lock();
+        try {
+            int lastShard = getShardIndex(upperBound);
+            for(int shard = getShardIndex(lowerBound); shard <= lastShard; ++shard) {
+                int deletedFromShard;
+                this.shardLocks[shard].writeLock().lock();
+                try {
+                    deletedFromShard = this.shards[shard].deleteRange(lowerBound, upperBound);
+                } finally {
+                    this.shardLocks[shard].writeLock().unlock();
+                }
+                this.shardSizes.addAndGet(shard, -deletedFromShard);
+                this.numberOfKeys.addAndGet(-deletedFromShard);
+                deleted += deletedFromShard;
+            }
+            if(deleted > 0) {
+                notifyRangeDeleted(lowerBound, upperBound);
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return deleted;
+    }
+
+    /**
+     * Get the smallest key, which is the smallest key of the first shard that is not empty.
+     * @return the smallest key, null if all shards are empty.
+     */
+    @Override
+    public Integer first() {
+        return getOutermostKey(true, false);
+    }
+
+    /**
+     * Get the greatest key, which is the greatest key of the last shard that is not empty.
+     * @return the greatest key, null if all shards are empty.
+     */
+    @Override
+    public Integer last() {
+        return getOutermostKey(false, false);
+    }
+
+    /**
+     * Delete the smallest key from the first shard that is not empty.
+     * @return the deleted key, null if all shards are empty.
+     */
+    @Override
+    public Integer pollFirst() {
+        return getOutermostKey(true, true);
+    }
+
+    /**
+     * Delete the greatest key from the last shard that is not empty.
+     * @return the deleted key, null if all shards are empty.
+     */
+    @Override
+    public Integer pollLast() {
+        return getOutermostKey(false, true);
+    }
+
+    /**
+     * Get or delete the smallest or greatest key by asking the shards from the outside in until one is not empty. As
+     * the shards are range partitions, its outermost key is the outermost key of all shards.
+     * @param smallest true for the smallest key, false for the greatest.
+     * @param delete true to delete the key, holding the lock of the shard exclusively.
+     * @return the key, null if all shards are empty.
+     */
+    private Integer getOutermostKey(boolean smallest, boolean delete) {
+        this.routingLock.readLock().lock();
+        try {
+            for(int i = 0; i < this.shards.length; ++i) {
+                int shard = smallest ? i : this.shards.length - 1 - i;
+                Lock shardLock = delete ? this.shardLocks[shard].writeLock() : this.shardLocks[shard].readLock();
+                Integer key;
+                shardLock.lock();
+                try {
+                    if(!delete) {
+                        key = smallest ? this.shards[shard].first() : this.shards[shard].last();
+                    } else {
+                        key = smallest ? this.shards[shard].pollFirst() : this.shards[shard].pollLast();
+                        if(key != null) {
+                            notifyElementDeleted(key);
+                        }
+                    }
+                } finally {
+                    shardLock.unlock();
+                }
+                if(key != null) {
+                    if(delete) {
+                        this.shardSizes.decrementAndGet(shard);
+                        this.numberOfKeys.decrementAndGet();
+                    }
+                    return key;
+                }
+            }
+            return null;
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recalculate the split points so that every shard holds the same number of keys and rebuild all shards.
+     * Does nothing if the shards are no longer skewed once the routing lock has been acquired, e.g. because another
+     * writer rebalanced in the meantime.
+     */
+    public void rebalance() {
+        this.routingLock.writeLock().lock();
+        try {
+            if(!isSkewed()) {
+                return;
+            }
+            redistribute(keys().toArray(), getOrder());
+        } finally {
+            this.routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recalculate the split points so that every shard holds the same number of the given keys and rebuild all shards
+     * with the given order. Every shard is built from its slice of the keys in the shape of SortedKeysLayout, without
+     * inserting them. The split points are kept if there are no keys. The page cache is handed to the new shards only
+     * after they are built and is emptied. Requires the routing lock to be held exclusively.
+     * @param keys all keys to distribute, ordered ascending.
+     * @param order order of the rebuilt shards.
+     */
+    private void redistribute(int[] keys, int order) {
+        int numberOfShards = this.shards.length;
+        if(keys.length > 0) {
+            for(int i = 1; i < numberOfShards; ++i) {
+                this.splitPoints[i - 1] = keys[(int) ((long) keys.length * i / numberOfShards)];
+            }
+        }
+        int from = 0;
+        for(int i = 0; i < numberOfShards; ++i) {
+            int to = from;
+            while(to < keys.length && getShardIndex(keys[to]) == i) {
+                ++to;
+            }
+            this.shards[i] = new BTree(order);
+            this.shards[i].setRelaxedDeletes(isRelaxedDeletes());
+            this.shards[i].replaceWithSnapshot(BTreeSnapshot.ofSortedKeys(keys, from, to, order));
+            this.shardSizes.set(i, to - from);
+            from = to;
+        }
+        this.numberOfKeys.set(keys.length);
+        for(BTree shard : this.shards) {
+            shard.setPageCache(getPageCache());
+            shard.setStructuralEventRing(getStructuralEventRing());
+        }
+        if(getPageCache() != null) {
+            getPageCache().invalidate();
+        }
+    }
+
+    /**
+     * Check whether the largest shard holds more than SKEW_FACTOR times the average number of keys.
+     * @return true if the shards are skewed.
+     */
+    private boolean isSkewed() {
+        long averageSize = this.numberOfKeys.get() / this.shards.length;
+        for(int i = 0; i < this.shards.length; ++i) {
+            long shardSize = this.shardSizes.get(i);
+            if(shardSize >= MIN_KEYS_TO_REBALANCE && shardSize > SKEW_FACTOR * averageSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the index of the shard responsible for the given key, i.e. the number of split points <= key.
+     * @param elementKey the key to route.
+     * @return index of the shard.
+     */
+    private int getShardIndex(int elementKey) {
+        int index = Arrays.binarySearch(this.splitPoints, elementKey);
+        return (index >= 0) ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Get all keys in the given range by scanning the overlapping shards one after another. As the shards are range
+     * partitions, appending their results keeps the keys ordered ascending.
+     * @param lowerBound smallest key to return (inclusive).
+     * @param upperBound greatest key to return (inclusive).
+     * @return the contained keys in [lowerBound, upperBound] ordered ascending.
+     */
+    @Override
+    public ArrayList<Integer> getElementKeysInRange(int lowerBound, int upperBound) {
+        ArrayList<Integer> keys = new ArrayList<>();
+        if(lowerBound > upperBound) {
+            return keys;
+        }
+        this.routingLock.readLock().lock();
+        try {
+            int lastShard = getShardIndex(upperBound);
+            for(int shard = getShardIndex(lowerBound); shard <= lastShard; ++shard) {
+                this.shardLocks[shard].readLock().lock();
+                try {
+                    keys.addAll(this.shards[shard].getElementKeysInRange(lowerBound, upperBound));
+                } finally {
+                    this.shardLocks[shard].readLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return keys;
+    }
+
+    /**
+     * Get all keys contained in any shard ordered ascending.
+     * @return all contained keys ordered ascending.
+     */
+    @Override
+    public ArrayList<Integer> getAllElementKeysOrderedAscending() {
+        return getElementKeysInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a stream of the keys of all shards ordered ascending, concatenating the streams of the shards as a balanced
+     * tree, so a parallel stream is split between the shards first and within each shard afterwards. The streams are
+     * read lazily without holding any lock, so the shards must not be modified or rebalanced while the stream is
+     * consumed.
+     * @return the keys ordered ascending.
+     */
+    @Override
+    public IntStream keys() {
+        return concatenateKeys(0, this.shards.length);
+    }
+
+    /**
+     * Concatenate the key streams of the shards from (inclusive) to to (exclusive) as a balanced tree.
+     * @param from index of the first shard.
+     * @param to index after the last shard.
+     * @return the keys of the shards ordered ascending.
+     */
+    private IntStream concatenateKeys(int from, int to) {
+        if(to - from == 1) {
+            return this.shards[from].keys();
+        }
+        int middle = (from + to) >>> 1;
+        return IntStream.concat(concatenateKeys(from, middle), concatenateKeys(middle, to));
+    }
+
+    /**
+     * Set the order of every shard, which rebuilds them.
+     * During construction the shards do not exist yet, so only the inherited order is set.
+     * @param order new order to set.
+     */
+    @Override
+    public void setOrder(int order) {
+        if(this.shards == null) {
+            super.setOrder(order);
+            return;
+        }
+        this.routingLock.writeLock().lock();
+        try {
+            super.setOrder(order);
+            for(BTree shard : this.shards) {
+                shard.setOrder(order);
+            }
+        } finally {
+            this.routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clear all shards and reset their order to default 5. The split points are kept.
+     */
+    @Override
+    public void clear() {
+        this.routingLock.writeLock().lock();
+        try {
+            super.clear();
+            for(int i = 0; i < this.shards.length; ++i) {
+                this.shards[i].clear();
+                this.shardSizes.set(i, 0);
+            }
+            this.numberOfKeys.set(0);
+        } finally {
+            this.routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Enable or disable relaxed deletes in every shard.
+     * @param relaxedDeletes true to skip rebalancing on deletes until compact(int) is called.
+     */
+    @Override
+    public void setRelaxedDeletes(boolean relaxedDeletes) {
+        this.routingLock.readLock().lock();
+        try {
+            super.setRelaxedDeletes(relaxedDeletes);
+            for(int shard = 0; shard < this.shards.length; ++shard) {
+                this.shardLocks[shard].writeLock().lock();
+                try {
+                    this.shards[shard].setRelaxedDeletes(relaxedDeletes);
+                } finally {
+                    this.shardLocks[shard].writeLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Publish the structural events of all shards in the given ring, which is shared by them. The levels of the events
+     * are those within a shard.
+     * @param eventRing the ring, null to stop publishing.
+     */
+    @Override
+    public void setStructuralEventRing(StructuralEventRing eventRing) {
+        this.routingLock.readLock().lock();
+        try {
+            super.setStructuralEventRing(eventRing);
+            for(int shard = 0; shard < this.shards.length; ++shard) {
+                this.shardLocks[shard].writeLock().lock();
+                try {
+                    this.shards[shard].setStructuralEventRing(eventRing);
+                } finally {
+                    this.shardLocks[shard].writeLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the node accesses of all shards in the given page cache, which is shared by them.
+     * @param pageCache the page cache, null to stop recording.
+     */
+    @Override
+    public void setPageCache(PageCacheSimulator pageCache) {
+        this.routingLock.readLock().lock();
+        try {
+            super.setPageCache(pageCache);
+            for(int shard = 0; shard < this.shards.length; ++shard) {
+                this.shardLocks[shard].writeLock().lock();
+                try {
+                    this.shards[shard].setPageCache(pageCache);
+                } finally {
+                    this.shardLocks[shard].writeLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compact the shards one after another, each with the part of the budget the previous shards left over.
+     * @param budget maximum number of rotations and merges to perform in all shards together.
+     * @return the number of rotations and merges performed.
+     */
+    @Override
+    public int compact(int budget) {
+        int steps = 0;
+        this.routingLock.readLock().lock();
+        try {
+            for(int shard = 0; shard < this.shards.length && steps < budget; ++shard) {
+                this.shardLocks[shard].writeLock().lock();
+                try {
+                    steps += this.shards[shard].compact(budget - steps);
+                } finally {
+                    this.shardLocks[shard].writeLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return steps;
+    }
+
+    /**
+     * Get the number of leaves recorded by relaxed deletes in all shards.
+     * @return number of recorded leaves.
+     */
+    @Override
+    public int getPendingCompactions() {
+        int pending = 0;
+        this.routingLock.readLock().lock();
+        try {
+            for(int shard = 0; shard < this.shards.length; ++shard) {
+                this.shardLocks[shard].readLock().lock();
+                try {
+                    pending += this.shards[shard].getPendingCompactions();
+                } finally {
+                    this.shardLocks[shard].readLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return pending;
+    }
+
+    /**
+     * Write a binary snapshot of all shards as one BTree. As there is no single root node, the keys of the shards are
+     * streamed in order into a BTree of the shape of SortedKeysLayout, so no temporary BTree is built. The shards must
+     * not be modified while the snapshot is written.
+     * @param out the stream to write to. It is flushed but not closed.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void writeSnapshot(OutputStream out) throws IOException {
+        this.routingLock.readLock().lock();
+        try {
+            BTreeSnapshot.writeSortedKeys(this::keys, (int) this.numberOfKeys.get(), getOrder(), out);
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the keys of the snapshot without building its nodes and distribute them evenly over the shards, which are
+     * built from their slice of the keys with the snapshot's order.
+     * @param buffer the buffer containing the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot. The shards are left unchanged in that case.
+     */
+    @Override
+    protected void readSnapshot(ByteBuffer buffer) throws IOException {
+        BTreeSnapshot.SortedKeys snapshot = BTreeSnapshot.readSortedKeys(buffer);
+        this.routingLock.writeLock().lock();
+        try {
+            rebuild(snapshot.getOrder());
+            redistribute(snapshot.getKeys(), snapshot.getOrder());
+        } finally {
+            this.routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A snapshot is read by readSnapshot(ByteBuffer) without building its nodes. Snapshots given as nodes are
+     * distributed over the shards the same way.
+     * @param snapshot the snapshot to use.
+     */
+    @Override
+    protected void replaceWithSnapshot(BTreeSnapshot snapshot) {
+        int[] keys = (snapshot.getRoot() != null) ? snapshot.getRoot().getAllElementKeysOfSubtreeOrderedAscending().
+                stream().mapToInt(Integer::intValue).toArray() : new int[0];
+        this.routingLock.writeLock().lock();
+        try {
+            rebuild(snapshot.getOrder());
+            redistribute(keys, snapshot.getOrder());
+        } finally {
+            this.routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the statistics of all shards added up, with their levels aligned at the leaves.
+     * @return the combined statistics.
+     */
+    @Override
+    public BTreeStatistics getStatistics() {
+        BTreeStatistics statistics = new BTreeStatistics();
+        statistics.reset(getOrder());
+        this.routingLock.readLock().lock();
+        try {
+            for(int shard = 0; shard < this.shards.length; ++shard) {
+                this.shardLocks[shard].readLock().lock();
+                try {
+                    statistics.addAll(this.shards[shard].getStatistics());
+                } finally {
+                    this.shardLocks[shard].readLock().unlock();
+                }
+            }
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+        return statistics;
+    }
+
+    /**
+     * A sharded BTree has no single root node. A synthetic root above the shard roots is not built, as it would need
+     * separator elements that are no keys of the tree and would change with every root change of a shard.
+     * @return null.
+     */
+    @Override
+    public Node getRoot() {
+        return null;
+    }
+
+    /**
+     * Get the number of keys held by every shard.
+     * @return array of key counts, indexed like the shards.
+     */
+    public long[] getShardSizes() {
+        long[] sizes = new long[this.shards.length];
+        for(int i = 0; i < sizes.length; ++i) {
+            sizes[i] = this.shardSizes.get(i);
+        }
+        return sizes;
+    }
+
+    /**
+     * Get a copy of the split points separating the shards.
+     * @return the split points ordered ascending.
+     */
+    public int[] getSplitPoints() {
+        this.routingLock.readLock().lock();
+        try {
+            return this.splitPoints.clone();
+        } finally {
+            this.routingLock.readLock().unlock();
+        }
+    }
+}
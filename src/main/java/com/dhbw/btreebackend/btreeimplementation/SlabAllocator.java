@@ -0,0 +1,167 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class managing fixed-size records in off-heap memory.
+ * Contains a list of direct ByteBuffers ('slabs'), each of them holding recordsPerSlab records of recordBytes bytes.
+ * Contains the address of the next record that has never been handed out and the head of a free list of reclaimed
+ *      records. The free list is threaded through the first int of every reclaimed record, so it lives off-heap as well.
+ *
+ * Records are addressed by an int. The slab of a record is address / recordsPerSlab, its byte offset inside that slab
+ *      is (address % recordsPerSlab) * recordBytes. Fields of a record are addressed by their int index.
+ *
+ * Offers methods to allocate and free records, to read, write and copy int fields of records and to enquire the amount
+ *      of memory in use.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class SlabAllocator {
+    public static final int NIL = -1;
+    private static final int DEFAULT_SLAB_BYTES = 1 << 20;
+
+    private final int recordBytes;
+    private final int recordsPerSlab;
+    private final List<ByteBuffer> slabs;
+    private int nextUnusedRecord;
+    private int freeListHead;
+    private int freeRecords;
+
+    /**
+     * A constructor using the default slab size of 1 MiB.
+     * @param recordBytes size of a single record in bytes, has to be a multiple of 4.
+     */
+    public SlabAllocator(int recordBytes) {
+        this(recordBytes, DEFAULT_SLAB_BYTES);
+    }
+
+    /**
+     * A constructor using the given record and slab sizes.
+     * @param recordBytes size of a single record in bytes, has to be a multiple of 4.
+     * @param slabBytes requested size of a single slab in bytes. A slab holds at least one record.
+     */
+    public SlabAllocator(int recordBytes, int slabBytes) {
+        this.recordBytes = recordBytes;
+        this.recordsPerSlab = Math.max(1, slabBytes / recordBytes);
+        this.slabs = new ArrayList<>();
+        clear();
+    }
+
+    /**
+     * Hand out a record. Reuse the head of the free list if there is one, otherwise take the next unused record and
+     * allocate a new slab if the existing slabs are exhausted.
+     * The content of the returned record is undefined.
+     * @return the address of the record.
+     */
+    public int allocate() {
+        if(this.freeListHead != NIL) {
+            int address = this.freeListHead;
+            this.freeListHead = getInt(address, 0);
+            --this.freeRecords;
+            return address;
+        }
+        if(this.nextUnusedRecord == this.slabs.size() * this.recordsPerSlab) {
+            this.slabs.add(ByteBuffer.allocateDirect(this.recordsPerSlab * this.recordBytes)
+                    .order(ByteOrder.nativeOrder()));
+        }
+        return this.nextUnusedRecord++;
+    }
+
+    /**
+     * Put the given record on the free list so it can be handed out again.
+     * @param address the address of the record to free.
+     */
+    public void free(int address) {
+        putInt(address, 0, this.freeListHead);
+        this.freeListHead = address;
+        ++this.freeRecords;
+    }
+
+    /**
+     * Drop all slabs. The direct buffers are released once their on-heap handles are collected.
+     */
+    public void clear() {
+        this.slabs.clear();
+        this.nextUnusedRecord = 0;
+        this.freeListHead = NIL;
+        this.freeRecords = 0;
+    }
+
+    /**
+     * Read an int field of a record.
+     * @param address the address of the record.
+     * @param intIndex the index of the int field inside the record.
+     * @return the value of the field.
+     */
+    public int getInt(int address, int intIndex) {
+        return this.slabs.get(address / this.recordsPerSlab)
+                .getInt((address % this.recordsPerSlab) * this.recordBytes + (intIndex << 2));
+    }
+
+    /**
+     * Write an int field of a record.
+     * @param address the address of the record.
+     * @param intIndex the index of the int field inside the record.
+     * @param value the value to write.
+     */
+    public void putInt(int address, int intIndex, int value) {
+        this.slabs.get(address / this.recordsPerSlab)
+                .putInt((address % this.recordsPerSlab) * this.recordBytes + (intIndex << 2), value);
+    }
+
+    /**
+     * Copy a run of int fields from one record to another (or to another position in the same record).
+     * Overlapping runs inside the same record are copied back to front if necessary so no field is overwritten before
+     * it has been read.
+     * @param sourceAddress the address of the record to copy from.
+     * @param sourceIndex the index of the first int field to copy.
+     * @param targetAddress the address of the record to copy to.
+     * @param targetIndex the index of the first int field to write.
+     * @param length the number of int fields to copy.
+     */
+    public void copyInts(int sourceAddress, int sourceIndex, int targetAddress, int targetIndex, int length) {
+        if(sourceAddress == targetAddress && targetIndex > sourceIndex) {
+            for(int i = length - 1; i >= 0; --i) {
+                putInt(targetAddress, targetIndex + i, getInt(sourceAddress, sourceIndex + i));
+            }
+        } else {
+            for(int i = 0; i < length; ++i) {
+                putInt(targetAddress, targetIndex + i, getInt(sourceAddress, sourceIndex + i));
+            }
+        }
+    }
+
+    /**
+     * Get the number of records currently handed out.
+     * @return number of live records.
+     */
+    public int getLiveRecords() {
+        return this.nextUnusedRecord - this.freeRecords;
+    }
+
+    /**
+     * Get the number of off-heap bytes reserved by all slabs.
+     * @return reserved bytes.
+     */
+    public long getAllocatedBytes() {
+        return (long) this.slabs.size() * this.recordsPerSlab * this.recordBytes;
+    }
+
+    /**
+     * Get the number of off-heap bytes occupied by live records.
+     * @return occupied bytes.
+     */
+    public long getUsedBytes() {
+        return (long) getLiveRecords() * this.recordBytes;
+    }
+
+    /* Standard getters */
+
+    public int getRecordBytes() {
+        return this.recordBytes;
+    }
+}
@@ -0,0 +1,116 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+/**
+ * The shape of a BTree built from a number of keys ordered ascending without a single insert or split, used to write
+ *      snapshots and to build BTrees from keys that are not stored in BTree nodes, e.g. those of a ShardedBTree.
+ * Contains the number of nodes on every level, from the root (depth 0) down to the leaves. There are as few leaves as
+ *      can hold the keys, i.e. ceil((numberOfKeys + 1) / order), and every level above has as few nodes as can hold the
+ *      level below as children. The children of a level and the keys of the leaves are distributed evenly, so every
+ *      node but the root holds at least elementMin keys and the BTree needs no rebalancing.
+ * The keys are numbered by their rank, i.e. their position in ascending order. The leaves hold the keys in this order,
+ *      except for the separators: separator i lies between the keys of leaf i and leaf i + 1 and is stored in the
+ *      inner node whose subtree contains both leaves as neighbouring children.
+ *
+ * Offers package-private methods to get the number of nodes of a level, the children and keys of a node and the ranks
+ *      of the keys of the leaves and of the separators.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+final class SortedKeysLayout {
+    private final int[] nodesOnLevel;
+    private final int leafKeys;
+
+    /**
+     * Constructor calculating the shape of a BTree of the given order holding the given number of keys.
+     * @param numberOfKeys number of keys, at least 0.
+     * @param order order of the BTree, at least 3.
+     */
+    SortedKeysLayout(int numberOfKeys, int order) {
+        if(numberOfKeys == 0) {
+            this.nodesOnLevel = new int[0];
+            this.leafKeys = 0;
+            return;
+        }
+        int leaves = (int) (((long) numberOfKeys + order) / order);
+        int height = 1;
+        for(int nodes = leaves; nodes > 1; nodes = (nodes + order - 1) / order) {
+            ++height;
+        }
+        this.nodesOnLevel = new int[height];
+        this.nodesOnLevel[height - 1] = leaves;
+        for(int depth = height - 2; depth >= 0; --depth) {
+            this.nodesOnLevel[depth] = (this.nodesOnLevel[depth + 1] + order - 1) / order;
+        }
+        this.leafKeys = numberOfKeys - (leaves - 1);
+    }
+
+    /**
+     * Get the index of the first child of a node within the level below.
+     * @param depth depth of the node, smaller than height - 1.
+     * @param node index of the node within its level, up to the number of nodes of the level for the end.
+     * @return index of the first child.
+     */
+    int getFirstChild(int depth, int node) {
+        return (int) ((long) node * this.nodesOnLevel[depth + 1] / this.nodesOnLevel[depth]);
+    }
+
+    /**
+     * Get the number of keys of a node.
+     * @param depth depth of the node.
+     * @param node index of the node within its level.
+     * @return number of keys.
+     */
+    int getNumberOfKeys(int depth, int node) {
+        if(depth == getHeight() - 1) {
+            return getFirstRankOfLeaf(node + 1) - getFirstRankOfLeaf(node) - 1;
+        }
+        return getFirstChild(depth, node + 1) - getFirstChild(depth, node) - 1;
+    }
+
+    /**
+     * Get the separator stored as the given key of an inner node, i.e. the separator between the last leaf of the
+     * subtree of its child at the same index and the first leaf of the next child's subtree.
+     * @param depth depth of the inner node.
+     * @param node index of the inner node within its level.
+     * @param index index of the key within the node.
+     * @return index of the separator.
+     */
+    int getSeparator(int depth, int node, int index) {
+        int leaf = getFirstChild(depth, node) + index + 1;
+        for(int childDepth = depth + 1; childDepth < getHeight() - 1; ++childDepth) {
+            leaf = getFirstChild(childDepth, leaf);
+        }
+        return leaf - 1;
+    }
+
+    /**
+     * Get the rank of the first key of a leaf.
+     * @param leaf index of the leaf, up to the number of leaves for the end.
+     * @return the rank.
+     */
+    int getFirstRankOfLeaf(int leaf) {
+        return (int) ((long) leaf * this.leafKeys / getNumberOfLeaves()) + leaf;
+    }
+
+    /**
+     * Get the rank of a separator, which directly follows the keys of the leaf with the same index.
+     * @param separator index of the separator.
+     * @return the rank.
+     */
+    int getRankOfSeparator(int separator) {
+        return getFirstRankOfLeaf(separator + 1) - 1;
+    }
+
+    int getHeight() {
+        return this.nodesOnLevel.length;
+    }
+
+    int getNodesOnLevel(int depth) {
+        return this.nodesOnLevel[depth];
+    }
+
+    int getNumberOfLeaves() {
+        return this.nodesOnLevel[this.nodesOnLevel.length - 1];
+    }
+}
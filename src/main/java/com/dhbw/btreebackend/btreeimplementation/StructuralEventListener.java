@@ -0,0 +1,27 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+/**
+ * Interface for classes that want to observe the structural events of a BTree, e.g. to diagnose pathological
+ * rebalancing. The events are not pushed to the listener by the BTree, which only publishes them into a
+ * StructuralEventRing; the listener is passed the events read from the ring by StructuralEventRing.read, so the BTree
+ * is never slowed down by a listener. All values are primitive, so reading the events allocates nothing either.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public interface StructuralEventListener {
+
+    /**
+     * Called for every event read from the ring, in the order of the sequence numbers.
+     * @param sequence sequence number of the event.
+     * @param timeNanos System.nanoTime() when the event was published.
+     * @param type type of the event.
+     * @param level level of the node counted from the leaves, for ROOT_CHANGE the height of the BTree afterwards.
+     * @param uuidMostSignificantBits most significant bits of the UUID of the node, 0 if there is none.
+     * @param uuidLeastSignificantBits least significant bits of the UUID of the node, 0 if there is none.
+     * @param key the key moved by the event, 0 if it moved none.
+     * @param numberOfElements number of elements of the node after the event.
+     */
+    void structuralEvent(long sequence, long timeNanos, StructuralEventRing.Type type, int level,
+                         long uuidMostSignificantBits, long uuidLeastSignificantBits, int key, int numberOfElements);
+}
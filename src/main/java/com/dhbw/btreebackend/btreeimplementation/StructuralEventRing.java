@@ -0,0 +1,174 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A preallocated ring buffer of the structural events of a BTree: splits, rotations, merges, changes of the root and
+ *      nodes left without elements that keep their remaining child as phantomRef.
+ * Contains the events as records of primitive values in a single array, so publishing an event allocates nothing.
+ *      Every event gets the next sequence number. A record holds the sequence number, System.nanoTime(), the UUID of
+ *      the node, the type, the level counted from the leaves, a key and the number of elements of the node after the
+ *      event. Once the ring is full, every event overwrites the oldest one.
+ * Several BTrees, e.g. the shards of a ShardedBTree, can share a ring: a writer claims a sequence number by
+ *      incrementing a counter, claims the record by a compare-and-set of its sequence word to a mark naming the
+ *      writer, writes it and then stores the sequence number in it. Only the writer holding the claim writes the
+ *      fields, so two writers whose sequence numbers map to the same record never interleave: a writer finding the
+ *      record claimed or written by a newer one drops its event, which would be overwritten anyway, and a writer
+ *      finding it claimed by an older one waits until that one has stored its sequence number, which only happens if
+ *      the ring wrapped around during a single write. A reader accepts a record only if it holds the expected sequence
+ *      number before and after reading it, so it never returns a record that is being written or was overwritten
+ *      meanwhile.
+ *
+ * Offers a package-private method for the BTree to publish events and public methods to read the events from a
+ *      sequence number on, which can be repeated as long as the events were not overwritten.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class StructuralEventRing {
+    public static final int MAX_CAPACITY = 1 << 20;
+    private static final int RECORD_SIZE = 6;
+    private static final int SEQUENCE = 0;
+    private static final int TIME = 1;
+    private static final int UUID_MOST = 2;
+    private static final int UUID_LEAST = 3;
+    private static final int TYPE_LEVEL = 4;
+    private static final int KEY_SIZE = 5;
+    private static final long EMPTY = -1;
+    private static final Type[] TYPES = Type.values();
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray records;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Constructor for a new, empty StructuralEventRing.
+     * @param capacity number of events to keep, rounded up to a power of two.
+     * @throws IllegalArgumentException if capacity is smaller than 1 or greater than MAX_CAPACITY.
+     */
+    public StructuralEventRing(int capacity) {
+        if(capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int roundedCapacity = Integer.highestOneBit(capacity);
+        this.capacity = (roundedCapacity < capacity) ? roundedCapacity << 1 : roundedCapacity;
+        this.mask = this.capacity - 1;
+        this.records = new AtomicLongArray(this.capacity * RECORD_SIZE);
+        for(int record = 0; record < this.capacity; ++record) {
+            this.records.set(record * RECORD_SIZE + SEQUENCE, EMPTY);
+        }
+    }
+
+    /**
+     * Publish an event. Allocates nothing and only waits if an older writer still writes the same record.
+     * @param type type of the event.
+     * @param level level of the node counted from the leaves, for ROOT_CHANGE the height of the BTree.
+     * @param node the node the event happened to, null for none.
+     * @param key the key moved by the event, 0 if it moved none.
+     */
+    void publish(Type type, int level, Node node, int key) {
+        long sequence = this.nextSequence.getAndIncrement();
+        int base = (int) (sequence & this.mask) * RECORD_SIZE;
+        while(true) {
+            long recordSequence = this.records.get(base + SEQUENCE);
+            if(recordSequence < EMPTY) {
+                if(getWriter(recordSequence) > sequence) {
+                    return;     // claimed by a newer writer
+                }
+                Thread.onSpinWait();
+            } else if(recordSequence > sequence) {
+                return;         // written by a newer writer
+            } else if(this.records.compareAndSet(base + SEQUENCE, recordSequence, getWritingMark(sequence))) {
+                break;
+            }
+        }
+        this.records.lazySet(base + TIME, System.nanoTime());
+        this.records.lazySet(base + UUID_MOST, (node != null) ? node.getUuid().getMostSignificantBits() : 0);
+        this.records.lazySet(base + UUID_LEAST, (node != null) ? node.getUuid().getLeastSignificantBits() : 0);
+        this.records.lazySet(base + TYPE_LEVEL, ((long) type.ordinal() << 32) | (level & 0xFFFFFFFFL));
+        this.records.lazySet(base + KEY_SIZE,
+                ((long) key << 32) | ((node != null) ? node.getNumberOfElements() : 0));
+        this.records.set(base + SEQUENCE, sequence);
+    }
+
+    /**
+     * Read the events from the given sequence number on, oldest first, and pass them to the listener.
+     * Events that were overwritten before they could be read are skipped, as is every event after one that is still
+     *      being written, which is read by the next call.
+     * @param fromSequence sequence number of the first event to read.
+     * @param maxEvents maximum number of events to pass to the listener.
+     * @param listener the listener to pass the events to, on the calling thread.
+     * @return the sequence number to continue reading with. All events between fromSequence and it that were not passed
+     *         to the listener were lost.
+     */
+    public long read(long fromSequence, int maxEvents, StructuralEventListener listener) {
+        long end = this.nextSequence.get();
+        long sequence = Math.max(fromSequence, end - this.capacity);
+        for(int events = 0; sequence < end && events < maxEvents; ++sequence) {
+            int base = (int) (sequence & this.mask) * RECORD_SIZE;
+            long recordSequence = this.records.get(base + SEQUENCE);
+            if(recordSequence < EMPTY && getWriter(recordSequence) > sequence) {
+                continue;   // being overwritten
+            }
+            if(recordSequence < sequence) {
+                break;      // not published yet
+            }
+            long time = this.records.get(base + TIME);
+            long uuidMost = this.records.get(base + UUID_MOST);
+            long uuidLeast = this.records.get(base + UUID_LEAST);
+            long typeLevel = this.records.get(base + TYPE_LEVEL);
+            long keySize = this.records.get(base + KEY_SIZE);
+            if(recordSequence != sequence || this.records.get(base + SEQUENCE) != sequence) {
+                continue;   // overwritten
+            }
+            listener.structuralEvent(sequence, time, TYPES[(int) (typeLevel >>> 32)], (int) typeLevel, uuidMost,
+                    uuidLeast, (int) (keySize >> 32), (int) keySize);
+            ++events;
+        }
+        return sequence;
+    }
+
+    /**
+     * Get the mark claiming a record for the writer of the given sequence number, smaller than EMPTY.
+     * @param sequence sequence number of the writer.
+     * @return the mark.
+     */
+    private static long getWritingMark(long sequence) {
+        return -sequence - 2;
+    }
+
+    /**
+     * Get the sequence number of the writer that claimed a record.
+     * @param writingMark the mark stored in the record.
+     * @return the sequence number of the writer.
+     */
+    private static long getWriter(long writingMark) {
+        return -writingMark - 2;
+    }
+
+    /**
+     * Get the sequence number the next event will get, i.e. the number of events published so far.
+     * @return the next sequence number.
+     */
+    public long getNextSequence() {
+        return this.nextSequence.get();
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * The types of structural events.
+     * SPLIT: an overflowing node was split, the node keeps the smaller half, the key moved up to the parent.
+     * ROTATE_LEFT, ROTATE_RIGHT: an underflowing node got the key separating it from its right or left neighbour.
+     * MERGE: an underflowing node was merged with a neighbour into the node, together with the key separating them.
+     * ROOT_CHANGE: the BTree got a new root, e.g. by splitting or merging the children of the root, or none.
+     * PHANTOM_REF: a node was left without elements and keeps its remaining child as phantomRef.
+     */
+    public enum Type {
+        SPLIT, ROTATE_LEFT, ROTATE_RIGHT, MERGE, ROOT_CHANGE, PHANTOM_REF
+    }
+}
@@ -0,0 +1,263 @@
+package com.dhbw.btreebackend.experiment;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.BTreeStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compares BTrees of different orders on the same workload, without touching the BTree bean.
+ * For every order an independent BTree is built and the workload is replayed on it. The trees are processed in
+ * parallel on a dedicated ForkJoinPool of 'btree.experiment.parallelism' threads (the number of processors by default),
+ * so the comparison of several orders takes about as long as the slowest one, and other pools are not blocked.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class OrderExperiment {
+    public static final int MIN_ORDER = 3;
+
+    private final ForkJoinPool pool;
+
+    public OrderExperiment(@Value("${btree.experiment.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool((parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stop the threads of the pool. Running experiments are finished.
+     */
+    @PreDestroy
+    public void stop() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Replay the workload on a new BTree of every given order in parallel.
+     * @param workload the workload to replay.
+     * @param orders the orders to compare, each at least MIN_ORDER.
+     * @return the result of every order, in the given order.
+     * @throws InterruptedException if interrupted while waiting for the results.
+     */
+    public List<Result> run(Workload workload, int[] orders) throws InterruptedException {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for(int order : orders) {
+            if(order < MIN_ORDER) {
+                throw new IllegalArgumentException("Order must be at least " + MIN_ORDER + ": " + order);
+            }
+            tasks.add(() -> workload.replay(order));
+        }
+        List<Result> results = new ArrayList<>();
+        for(Future<Result> future : this.pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("Experiment failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * A workload: keys loaded into the tree first, followed by a sequence of inserts, searches and deletes.
+     * The operations are drawn once, so every order replays exactly the same sequence.
+     */
+    public static class Workload {
+        private static final byte INSERT = 0;
+        private static final byte SEARCH = 1;
+        private static final byte DELETE = 2;
+
+        private final int[] loadKeys;
+        private final byte[] operationTypes;
+        private final int[] operationKeys;
+
+        private Workload(int[] loadKeys, byte[] operationTypes, int[] operationKeys) {
+            this.loadKeys = loadKeys;
+            this.operationTypes = operationTypes;
+            this.operationKeys = operationKeys;
+        }
+
+        /**
+         * Create a workload loading the given keys and replaying the given number of operations afterwards. The type of
+         * every operation is drawn by the weights. Searches and deletes draw their key uniformly from the loaded keys,
+         * so they hit loaded keys unless they have been deleted before. Inserts draw their key uniformly from the given
+         * insert keys or, without them, from the keys not loaded above the smallest loaded key, so inserts grow the
+         * tree instead of being duplicates.
+         * @param keys the keys to load, in the order to insert them.
+         * @param insertKeys the keys of the inserts, null to draw keys not loaded.
+         * @param numberOfOperations number of operations after loading.
+         * @param insertWeight weight of inserts.
+         * @param searchWeight weight of searches.
+         * @param deleteWeight weight of deletes.
+         * @param seed seed of the random operations.
+         * @return the workload.
+         */
+        public static Workload create(int[] keys, int[] insertKeys, int numberOfOperations, int insertWeight,
+                                      int searchWeight, int deleteWeight, long seed) {
+            int totalWeight = insertWeight + searchWeight + deleteWeight;
+            if(insertWeight < 0 || searchWeight < 0 || deleteWeight < 0 || totalWeight <= 0) {
+                throw new IllegalArgumentException("Weights must not be negative and not all 0");
+            }
+            if(numberOfOperations > 0 && keys.length == 0 && searchWeight + deleteWeight > 0) {
+                throw new IllegalArgumentException("Searches and deletes need keys");
+            }
+            if(numberOfOperations > 0 && insertKeys != null && insertKeys.length == 0 && insertWeight > 0) {
+                throw new IllegalArgumentException("Inserts need insert keys");
+            }
+            Random random = new Random(seed);
+            int[] sortedKeys = (insertKeys == null && insertWeight > 0) ? getSortedKeys(keys) : null;
+            byte[] operationTypes = new byte[numberOfOperations];
+            int[] operationKeys = new int[numberOfOperations];
+            for(int i = 0; i < numberOfOperations; ++i) {
+                int weight = random.nextInt(totalWeight);
+                operationTypes[i] = (weight < insertWeight) ? INSERT : (weight < insertWeight + searchWeight) ? SEARCH :
+                        DELETE;
+                if(operationTypes[i] != INSERT) {
+                    operationKeys[i] = keys[random.nextInt(keys.length)];
+                } else if(insertKeys != null) {
+                    operationKeys[i] = insertKeys[random.nextInt(insertKeys.length)];
+                } else {
+                    operationKeys[i] = drawKeyNotLoaded(sortedKeys, numberOfOperations, random);
+                }
+            }
+            return new Workload(keys, operationTypes, operationKeys);
+        }
+
+        /**
+         * Copy and sort the loaded keys, so keys not loaded can be drawn by a binary search.
+         * @param keys the loaded keys.
+         * @return the keys in ascending order.
+         */
+        private static int[] getSortedKeys(int[] keys) {
+            int[] sortedKeys = keys.clone();
+            Arrays.sort(sortedKeys);
+            return sortedKeys;
+        }
+
+        /**
+         * Draw a key that is not loaded from the keys between the smallest loaded key and twice the number of loaded
+         * keys plus operations or twice the range of the loaded keys above it, whichever is more, or from all ints if
+         * that exceeds the ints, so at least half of the draws are accepted and inserts rarely repeat a key.
+         * @param sortedKeys the loaded keys in ascending order.
+         * @param numberOfOperations number of operations after loading.
+         * @param random the random numbers of the workload.
+         * @return the key.
+         */
+        private static int drawKeyNotLoaded(int[] sortedKeys, int numberOfOperations, Random random) {
+            long lowerBound = (sortedKeys.length > 0) ? sortedKeys[0] : 0;
+            long range = (sortedKeys.length > 0) ? (long) sortedKeys[sortedKeys.length - 1] - lowerBound + 1 : 0;
+            long size = 2 * Math.max(range, (long) sortedKeys.length + numberOfOperations);
+            if(lowerBound + size - 1 > Integer.MAX_VALUE) {
+                lowerBound = Integer.MIN_VALUE;
+                size = 1L << 32;
+            }
+            while(true) {
+                int key = (int) (lowerBound + Math.floorMod(random.nextLong(), size));
+                if(Arrays.binarySearch(sortedKeys, key) < 0) {
+                    return key;
+                }
+            }
+        }
+
+        /**
+         * Build a BTree of the given order and replay this workload on it.
+         * @param order order of the tree.
+         * @return the shape of the tree afterwards, the costs of the searches and the time taken.
+         */
+        private Result replay(int order) {
+            long start = System.nanoTime();
+            BTree bTree = new BTree(order);
+            for(int key : this.loadKeys) {
+                bTree.insertElement(key);
+            }
+            long searches = 0;
+            long totalCosts = 0;
+            int maxCosts = 0;
+            for(int i = 0; i < this.operationTypes.length; ++i) {
+                int key = this.operationKeys[i];
+                if(this.operationTypes[i] == INSERT) {
+                    bTree.insertElement(key);
+                } else if(this.operationTypes[i] == DELETE) {
+                    bTree.deleteElement(key);
+                } else {
+                    int costs = bTree.searchElement(key).getCosts();
+                    ++searches;
+                    totalCosts += costs;
+                    maxCosts = Math.max(maxCosts, costs);
+                }
+            }
+            return new Result(order, bTree.getStatistics(), searches, totalCosts, maxCosts,
+                    System.nanoTime() - start);
+        }
+
+        public int getNumberOfLoadKeys() {
+            return this.loadKeys.length;
+        }
+
+        public int getNumberOfOperations() {
+            return this.operationTypes.length;
+        }
+    }
+
+    /**
+     * The result of replaying a workload on a BTree of one order.
+     */
+    public static class Result {
+        private final int order;
+        private final BTreeStatistics statistics;
+        private final long searches;
+        private final long totalCosts;
+        private final int maxCosts;
+        private final long wallNanos;
+
+        private Result(int order, BTreeStatistics statistics, long searches, long totalCosts, int maxCosts,
+                       long wallNanos) {
+            this.order = order;
+            this.statistics = statistics;
+            this.searches = searches;
+            this.totalCosts = totalCosts;
+            this.maxCosts = maxCosts;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * Get the average costs of the searches of the workload.
+         * @return the average costs, 0 if the workload contains no searches.
+         */
+        public double getAverageCosts() {
+            return (this.searches > 0) ? this.totalCosts / (double) this.searches : 0;
+        }
+
+        /* Standard getters */
+
+        public int getOrder() {
+            return this.order;
+        }
+
+        public BTreeStatistics getStatistics() {
+            return this.statistics;
+        }
+
+        public long getSearches() {
+            return this.searches;
+        }
+
+        public int getMaxCosts() {
+            return this.maxCosts;
+        }
+
+        public long getWallNanos() {
+            return this.wallNanos;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dhbw.btreebackend.job;
+
+import java.util.concurrent.Future;
+
+/**
+ * A batch operation on the BTree running in the background, see BatchJobService.
+ * Contains the id and type of the job, its state and the number of keys it processes.
+ * Contains the progress: the number of keys processed so far and the number of keys actually inserted or deleted, as
+ *      duplicates and missing keys are skipped. Both are only written by the thread running the job.
+ * Contains the times the job was submitted, started and finished, to report the elapsed time and to estimate the
+ *      remaining time from the rate of the keys processed so far.
+ * Contains a flag requesting cancellation, which the running job checks between two chunks of keys.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class BatchJob {
+    private final long id;
+    private final Type type;
+    private final long numberOfKeys;
+    private final long submittedMillis = System.currentTimeMillis();
+    private volatile State state = State.QUEUED;
+    private volatile long processedKeys;
+    private volatile long appliedKeys;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean cancelRequested;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    BatchJob(long id, Type type, long numberOfKeys) {
+        this.id = id;
+        this.type = type;
+        this.numberOfKeys = numberOfKeys;
+    }
+
+    /**
+     * Mark the job as running, unless it was cancelled while queued.
+     * @return true if the job was queued and is running now.
+     */
+    synchronized boolean start() {
+        if(this.state != State.QUEUED) {
+            return false;
+        }
+        this.startNanos = System.nanoTime();
+        this.state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Mark the job as cancelled, if it has not been started yet.
+     * @return true if the job was queued and is cancelled now.
+     */
+    synchronized boolean cancelQueued() {
+        if(this.state != State.QUEUED) {
+            return false;
+        }
+        finish(State.CANCELLED, null);
+        return true;
+    }
+
+    /**
+     * Record the progress after a chunk of keys.
+     * @param processed number of keys processed in the chunk.
+     * @param applied number of keys of the chunk actually inserted or deleted.
+     */
+    void addProgress(long processed, long applied) {
+        this.processedKeys += processed;
+        this.appliedKeys += applied;
+    }
+
+    /**
+     * Mark the job as finished in the given state.
+     * @param finalState SUCCEEDED, FAILED or CANCELLED.
+     * @param failure the error the job failed with, null if it did not fail.
+     */
+    synchronized void finish(State finalState, String failure) {
+        this.endNanos = System.nanoTime();
+        this.error = failure;
+        this.state = finalState;
+    }
+
+    /**
+     * Request the job to stop after its current chunk.
+     */
+    void requestCancel() {
+        this.cancelRequested = true;
+    }
+
+    /**
+     * Check whether the job is finished, i.e. succeeded, failed or was cancelled.
+     * @return true if the job is finished.
+     */
+    public boolean isFinished() {
+        return this.state == State.SUCCEEDED || this.state == State.FAILED || this.state == State.CANCELLED;
+    }
+
+    /**
+     * Get the time since the job was started, up to its end if it is finished.
+     * @return elapsed milliseconds, 0 if the job has not been started.
+     */
+    public long getElapsedMillis() {
+        if(this.state == State.QUEUED || this.startNanos == 0) {
+            return 0;
+        }
+        long end = isFinished() ? this.endNanos : System.nanoTime();
+        return (end - this.startNanos) / 1_000_000;
+    }
+
+    /**
+     * Estimate the remaining time of a running job, assuming the remaining keys are processed at the rate of the keys
+     * processed so far.
+     * @return estimated remaining milliseconds, -1 if there is no estimate yet or the job is not running.
+     */
+    public long getEtaMillis() {
+        long processed = this.processedKeys;
+        if(this.state != State.RUNNING || processed == 0) {
+            return -1;
+        }
+        return (long) (getElapsedMillis() * (double) (this.numberOfKeys - processed) / processed);
+    }
+
+    /**
+     * Get the share of the keys processed so far.
+     * @return progress between 0 and 1, 1 for a job without keys once it has finished.
+     */
+    public double getProgress() {
+        if(this.numberOfKeys == 0) {
+            return isFinished() ? 1 : 0;
+        }
+        return this.processedKeys / (double) this.numberOfKeys;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    Future<?> getFuture() {
+        return this.future;
+    }
+
+    boolean isCancelRequested() {
+        return this.cancelRequested;
+    }
+
+    /* Standard getters */
+
+    public long getId() {
+        return this.id;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public long getNumberOfKeys() {
+        return this.numberOfKeys;
+    }
+
+    public long getProcessedKeys() {
+        return this.processedKeys;
+    }
+
+    public long getAppliedKeys() {
+        return this.appliedKeys;
+    }
+
+    public long getSubmittedMillis() {
+        return this.submittedMillis;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * The batch operation of a job.
+     */
+    public enum Type {
+        INSERT, DELETE, RANDOM, CHANGE_ORDER
+    }
+
+    /**
+     * The state of a job. A queued job becomes running, a running job ends as succeeded, failed or cancelled. A queued
+     * job can be cancelled right away.
+     */
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+}
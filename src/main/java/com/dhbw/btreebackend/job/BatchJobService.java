@@ -0,0 +1,348 @@
+package com.dhbw.btreebackend.job;
+
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.json.BatchJobToJson;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import com.dhbw.btreebackend.pipeline.MutationPipeline.MutationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs large batch operations on the BTree in the background, so the request submitting them returns at once with the
+ * id of a BatchJob instead of holding its thread and connection until the batch is applied.
+ * Jobs run on a bounded executor of 'btree.jobs.threads' threads (1 by default) with room for
+ * 'btree.jobs.queue-capacity' (16 by default) waiting jobs; further submissions are rejected. The keys of a job are
+ * applied through the mutation pipeline in chunks of 'btree.jobs.chunk-size' keys (65536 by default), so the writer
+ * thread applies other mutations between two chunks and requests are never blocked by a job for longer than one chunk.
+ * After every chunk the progress of the job is updated, and a job whose cancellation was requested stops; the chunks
+ * applied until then stay applied.
+ * Every change of the state and every chunk is published to the WebSocket subscribers of TOPIC in the format of
+ * BatchJobToJson. The last 'btree.jobs.retained' (100 by default) finished jobs are kept to be polled, older ones are
+ * dropped. The keys of a job are released as soon as it is finished.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class BatchJobService {
+    public static final String TOPIC = "/topic/jobs";
+    public static final int MAX_RANDOM_KEYS = 50_000_000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchJobService.class);
+
+    private final OrderedIntIndex bTree;
+    private final MutationPipeline mutationPipeline;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int chunkSize;
+    private final int retainedJobs;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, BatchJob> jobs = new LinkedHashMap<>();
+
+    public BatchJobService(OrderedIntIndex bTree, MutationPipeline mutationPipeline, SimpMessagingTemplate messagingTemplate,
+                           @Value("${btree.jobs.threads:1}") int threads,
+                           @Value("${btree.jobs.queue-capacity:16}") int queueCapacity,
+                           @Value("${btree.jobs.chunk-size:65536}") int chunkSize,
+                           @Value("${btree.jobs.retained:100}") int retainedJobs) {
+        this.bTree = bTree;
+        this.mutationPipeline = mutationPipeline;
+        this.messagingTemplate = messagingTemplate;
+        this.chunkSize = chunkSize;
+        this.retainedJobs = retainedJobs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "btree-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Stop the executor. Running jobs are interrupted and stop after their current chunk.
+     */
+    @PreDestroy
+    public void stop() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Submit a job inserting the given keys in chunks.
+     * @param keys the keys to insert. The array must not be modified afterwards.
+     * @return the queued job.
+     * @throws RejectedExecutionException if the queue of jobs is full.
+     */
+    public BatchJob submitInsert(int[] keys) {
+        return submit(BatchJob.Type.INSERT, keys.length, job -> applyKeys(job, true, keys));
+    }
+
+    /**
+     * Submit a job deleting the given keys in chunks.
+     * @param keys the keys to delete. The array must not be modified afterwards.
+     * @return the queued job.
+     * @throws RejectedExecutionException if the queue of jobs is full.
+     */
+    public BatchJob submitDelete(int[] keys) {
+        return submit(BatchJob.Type.DELETE, keys.length, job -> applyKeys(job, false, keys));
+    }
+
+    /**
+     * Submit a job inserting distinct random keys between min and max, drawn when the job starts.
+     * @param min smallest random key (inclusive).
+     * @param number number of random keys, at most the number of keys between min and max.
+     * @param max greatest random key (inclusive).
+     * @return the queued job.
+     * @throws IllegalArgumentException if min > max, number is negative, exceeds MAX_RANDOM_KEYS or the keys between
+     *          min and max.
+     * @throws RejectedExecutionException if the queue of jobs is full.
+     */
+    public BatchJob submitRandom(int min, int number, int max) {
+        if(min > max || number < 0 || number > MAX_RANDOM_KEYS || number > (long) max - min + 1) {
+            throw new IllegalArgumentException("Invalid random keys: " + min + ", " + number + ", " + max);
+        }
+        return submit(BatchJob.Type.RANDOM, number, job -> applyKeys(job, true, createRandomKeys(min, number, max)));
+    }
+
+    /**
+     * Submit a job changing the order of the BTree, which rebuilds it with all keys in a single step.
+     * @param order the new order.
+     * @return the queued job, processing the number of keys the BTree holds at submission.
+     * @throws RejectedExecutionException if the queue of jobs is full.
+     */
+    public BatchJob submitChangeOrder(int order) {
+        long numberOfKeys = this.mutationPipeline.read(() -> this.bTree.getStatistics().getNumberOfKeys());
+        return submit(BatchJob.Type.CHANGE_ORDER, numberOfKeys, job -> {
+            long rebuiltKeys = this.mutationPipeline.execute(() -> {
+                this.bTree.setOrder(order);
+                return this.bTree.getStatistics().getNumberOfKeys();
+            }).join();
+            job.addProgress(job.getNumberOfKeys(), rebuiltKeys);
+        });
+    }
+
+    /**
+     * Register a new job and queue it on the executor.
+     * @param type type of the job.
+     * @param numberOfKeys number of keys the job processes.
+     * @param work the work of the job, run on a thread of the executor.
+     * @return the queued job.
+     * @throws RejectedExecutionException if the queue of jobs is full.
+     */
+    private BatchJob submit(BatchJob.Type type, long numberOfKeys, Consumer<BatchJob> work) {
+        BatchJob job = new BatchJob(this.nextId.getAndIncrement(), type, numberOfKeys);
+        synchronized(this.jobs) {
+            this.jobs.put(job.getId(), job);
+        }
+        try {
+            job.setFuture(this.executor.submit(() -> run(job, work)));
+        } catch(RejectedExecutionException e) {
+            synchronized(this.jobs) {
+                this.jobs.remove(job.getId());
+            }
+            throw e;
+        }
+        publish(job);
+        return job;
+    }
+
+    /**
+     * Run a job on a thread of the executor, unless it was cancelled while queued.
+     * @param job the job.
+     * @param work the work of the job.
+     */
+    private void run(BatchJob job, Consumer<BatchJob> work) {
+        if(!job.start()) {
+            return;
+        }
+        publish(job);
+        try {
+            work.accept(job);
+            finish(job, job.isCancelRequested() ? BatchJob.State.CANCELLED : BatchJob.State.SUCCEEDED, null);
+        } catch(RuntimeException e) {
+            Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+            LOGGER.warn("Job {} failed", job.getId(), cause);
+            finish(job, BatchJob.State.FAILED, cause.toString());
+        }
+    }
+
+    /**
+     * Insert or delete the keys through the mutation pipeline chunk by chunk, updating the progress of the job after
+     * every chunk. Stops before the next chunk if cancellation was requested or the thread was interrupted.
+     * @param job the job.
+     * @param insert true to insert the keys, false to delete them.
+     * @param keys the keys.
+     */
+    private void applyKeys(BatchJob job, boolean insert, int[] keys) {
+        for(int from = 0; from < keys.length; from += this.chunkSize) {
+            if(Thread.currentThread().isInterrupted()) {
+                job.requestCancel();
+            }
+            if(job.isCancelRequested()) {
+                return;
+            }
+            int[] chunk = Arrays.copyOfRange(keys, from, (int) Math.min(keys.length, (long) from + this.chunkSize));
+            MutationResult<Void> result = (insert ? this.mutationPipeline.insert(chunk) :
+                    this.mutationPipeline.delete(chunk)).join();
+            job.addProgress(chunk.length, result.getNumberOfAppliedKeys());
+            publish(job);
+        }
+    }
+
+    /**
+     * Draw the given number of distinct random keys between min and max in random order.
+     * If they make up more than half of the keys between min and max, the keys between min and max are shuffled and
+     * the first ones are taken. Otherwise random keys are drawn, sorted and freed from duplicates until there are
+     * enough of them, and shuffled afterwards. Unlike checking every new key against the keys drawn so far, both take
+     * O(n log n) for n keys.
+     * @param min smallest key (inclusive).
+     * @param number number of keys, at most the number of keys between min and max.
+     * @param max greatest key (inclusive).
+     * @return the keys.
+     */
+    private static int[] createRandomKeys(int min, int number, int max) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long range = (long) max - min + 1;
+        int[] keys;
+        if(number > range / 2) {
+            keys = new int[(int) range];
+            for(int i = 0; i < keys.length; ++i) {
+                keys[i] = min + i;
+            }
+            shuffle(keys, number, random);
+            return (number == keys.length) ? keys : Arrays.copyOf(keys, number);
+        }
+        keys = new int[number];
+        int distinct = 0;
+        while(distinct < number) {
+            for(int i = distinct; i < number; ++i) {
+                keys[i] = (int) (min + random.nextLong(range));
+            }
+            Arrays.sort(keys);
+            distinct = 0;
+            for(int i = 0; i < number; ++i) {
+                if(i == 0 || keys[i] != keys[i - 1]) {
+                    keys[distinct++] = keys[i];
+                }
+            }
+        }
+        shuffle(keys, number, random);
+        return keys;
+    }
+
+    /**
+     * Move the given number of randomly chosen keys to the front of the array in random order (Fisher-Yates).
+     * @param keys the keys.
+     * @param number number of keys to choose.
+     * @param random the random number generator.
+     */
+    private static void shuffle(int[] keys, int number, ThreadLocalRandom random) {
+        for(int i = 0; i < number; ++i) {
+            int j = random.nextInt(i, keys.length);
+            int key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+    }
+
+    /**
+     * Mark the job as finished, publish it and drop the oldest finished jobs beyond the number to retain.
+     * @param job the job.
+     * @param state the final state.
+     * @param error the error the job failed with, null if it did not fail.
+     */
+    private void finish(BatchJob job, BatchJob.State state, String error) {
+        job.finish(state, error);
+        retain(job);
+    }
+
+    /**
+     * Publish the finished job and drop the oldest finished jobs beyond the number to retain.
+     * @param job the finished job.
+     */
+    private void retain(BatchJob job) {
+        publish(job);
+        synchronized(this.jobs) {
+            long finishedJobs = this.jobs.values().stream().filter(BatchJob::isFinished).count();
+            Iterator<BatchJob> iterator = this.jobs.values().iterator();
+            while(finishedJobs > this.retainedJobs && iterator.hasNext()) {
+                if(iterator.next().isFinished()) {
+                    iterator.remove();
+                    --finishedJobs;
+                }
+            }
+        }
+    }
+
+    /**
+     * Request the cancellation of a job. A queued job is cancelled right away, a running job stops after its current
+     * chunk.
+     * @param id id of the job.
+     * @return the job, null if there is no job with the id.
+     */
+    public BatchJob cancel(long id) {
+        BatchJob job = getJob(id);
+        if(job == null || job.isFinished()) {
+            return job;
+        }
+        job.requestCancel();
+        if(job.cancelQueued()) {
+            if(job.getFuture() != null) {
+                job.getFuture().cancel(false);
+            }
+            retain(job);
+        }
+        return job;
+    }
+
+    /**
+     * Get a job by its id.
+     * @param id id of the job.
+     * @return the job, null if there is no job with the id or it was dropped.
+     */
+    public BatchJob getJob(long id) {
+        synchronized(this.jobs) {
+            return this.jobs.get(id);
+        }
+    }
+
+    /**
+     * Get all queued, running and retained finished jobs.
+     * @return the jobs ordered by their id.
+     */
+    public List<BatchJob> getJobs() {
+        synchronized(this.jobs) {
+            return new ArrayList<>(this.jobs.values());
+        }
+    }
+
+    /**
+     * Publish the current state of the job to the subscribers of TOPIC.
+     * @param job the job.
+     */
+    private void publish(BatchJob job) {
+        try {
+            this.messagingTemplate.convertAndSend(TOPIC, BatchJobToJson.createBatchJobJson(job).toString());
+        } catch(RuntimeException e) {
+            LOGGER.warn("Publishing job {} failed", job.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.dhbw.btreebackend.json;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.Element;
+import com.dhbw.btreebackend.btreeimplementation.Node;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.btreeimplementation.ShardedBTree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A columnar copy of the shape of a BTree at one point in time, e.g. after a step of a request, which can be written
+ * as JSON by BTreeToJson or in the binary format of BTreeToColumnar afterwards, without holding on to the tree.
+ * The nodes are stored in 'level-order' in primitive arrays: the two halves of the UUID, the number of keys and,
+ * concatenated, the keys of every node. The child references are implicit: the children of the inner nodes are the
+ * nodes of the next level in the same order, so the first child of an inner node follows the children of all inner
+ * nodes before it, and all leaves are the last nodes.
+ *
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class BTreeColumns {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int order;
+    private final int height;
+    private final int numberOfLeaves;
+    private final int numberOfNodes;
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final int[] keyCounts;
+    private final int[] keys;
+
+    private BTreeColumns(int order, int height, int numberOfLeaves, int numberOfNodes, long[] mostSignificantBits,
+                         long[] leastSignificantBits, int[] keyCounts, int[] keys) {
+        this.order = order;
+        this.height = height;
+        this.numberOfLeaves = numberOfLeaves;
+        this.numberOfNodes = numberOfNodes;
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.keyCounts = keyCounts;
+        this.keys = keys;
+    }
+
+    /**
+     * This method returns the tree whose shape can be copied, i.e. the given index if it is a BTree with a single root.
+     * Engines without BTree nodes have no shape, and a ShardedBTree has a root per shard but none above them, so tree
+     * representations of both are left out or rejected by the callers instead of being sent empty.
+     *
+     * @param index: The index storing the keys.
+     * @return the index as BTree, null if it has no single tree of nodes.
+     */
+    public static BTree getSingleTree(OrderedIntIndex index) {
+        if (!(index instanceof BTree) || index instanceof ShardedBTree) {
+            return null;
+        }
+        return (BTree) index;
+    }
+
+    /**
+     * This method copies the shape of the tree by walking it breadth-first once. The height is counted from the root
+     * to the most left leaf.
+     *
+     * @param bTree: The B-Tree to copy.
+     * @return the columnar copy of the tree, without nodes if the tree has no root.
+     */
+    public static BTreeColumns capture(BTree bTree) {
+        Node root = bTree.getRoot();
+        if (root == null) {
+            return new BTreeColumns(bTree.getOrder(), 0, 0, 0, new long[0], new long[0], new int[0], new int[0]);
+        }
+        int height = 1;
+        for (Node node = root; !node.getElements().isEmpty() && node.getElements().get(0).getLeftNode() != null;
+             node = node.getElements().get(0).getLeftNode()) {
+            ++height;
+        }
+
+        long[] mostSignificantBits = new long[INITIAL_CAPACITY];
+        long[] leastSignificantBits = new long[INITIAL_CAPACITY];
+        int[] keyCounts = new int[INITIAL_CAPACITY];
+        int[] keys = new int[INITIAL_CAPACITY];
+        int numberOfNodes = 0;
+        int numberOfKeys = 0;
+        int numberOfLeaves = 0;
+        ArrayDeque<Node> levelOrderQueue = new ArrayDeque<Node>();
+        levelOrderQueue.add(root);
+        while (!levelOrderQueue.isEmpty()) {
+            Node node = levelOrderQueue.poll();
+            List<Element> elements = node.getElements();
+            if (numberOfNodes == keyCounts.length) {
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, 2 * numberOfNodes);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, 2 * numberOfNodes);
+                keyCounts = Arrays.copyOf(keyCounts, 2 * numberOfNodes);
+            }
+            if (numberOfKeys + elements.size() > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2 * keys.length, numberOfKeys + elements.size()));
+            }
+            mostSignificantBits[numberOfNodes] = node.getUuid().getMostSignificantBits();
+            leastSignificantBits[numberOfNodes] = node.getUuid().getLeastSignificantBits();
+            keyCounts[numberOfNodes++] = elements.size();
+            for (Element element : elements) {
+                keys[numberOfKeys++] = element.getKey();
+            }
+            if (!elements.isEmpty() && elements.get(0).getLeftNode() != null) {
+                levelOrderQueue.add(elements.get(0).getLeftNode());
+                for (Element element : elements) {
+                    levelOrderQueue.add(element.getRightNode());
+                }
+            } else {
+                ++numberOfLeaves;
+            }
+        }
+        return new BTreeColumns(bTree.getOrder(), height, numberOfLeaves, numberOfNodes,
+                Arrays.copyOf(mostSignificantBits, numberOfNodes), Arrays.copyOf(leastSignificantBits, numberOfNodes),
+                Arrays.copyOf(keyCounts, numberOfNodes), Arrays.copyOf(keys, numberOfKeys));
+    }
+
+    /**
+     * This method checks whether a node is a leaf. As all leaves are on the last level, they are the last nodes.
+     *
+     * @param node: The index of the node in level-order.
+     * @return true if the node is a leaf.
+     */
+    public boolean isLeaf(int node) {
+        return node >= this.numberOfNodes - this.numberOfLeaves;
+    }
+
+    /**
+     * This method gets the UUID of a node.
+     *
+     * @param node: The index of the node in level-order.
+     * @return the UUID of the node.
+     */
+    public UUID getUuid(int node) {
+        return new UUID(this.mostSignificantBits[node], this.leastSignificantBits[node]);
+    }
+
+    /* Standard getters */
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getNumberOfLeaves() {
+        return this.numberOfLeaves;
+    }
+
+    public int getNumberOfNodes() {
+        return this.numberOfNodes;
+    }
+
+    public long getMostSignificantBits(int node) {
+        return this.mostSignificantBits[node];
+    }
+
+    public long getLeastSignificantBits(int node) {
+        return this.leastSignificantBits[node];
+    }
+
+    public int getKeyCount(int node) {
+        return this.keyCounts[node];
+    }
+
+    /**
+     * This method gets the keys of all nodes, concatenated in level-order. The keys of a node follow the keys of all
+     * nodes before it.
+     *
+     * @return the keys, not to be modified.
+     */
+    public int[] getKeys() {
+        return this.keys;
+    }
+}
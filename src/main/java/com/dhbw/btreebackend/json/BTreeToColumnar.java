@@ -0,0 +1,185 @@
+package com.dhbw.btreebackend.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the responses containing trees in a compact binary format instead of JSON, selected by requesting the media
+ * type MEDIA_TYPE_VALUE in the Accept header. ColumnarTreeDecoder is the reference decoder for clients.
+ * The trees are written column by column, and every UUID is written only once per response, as the trees after the
+ * steps of a request share most of their nodes. All numbers are varints (groups of 7 bits, least significant group
+ * first, with the highest bit of a byte set if another byte follows), signed numbers are zigzag-encoded first
+ * (0, -1, 1, -2, ... become 0, 1, 2, 3, ...):
+ *  magic: the 4 ASCII bytes "BTC1".
+ *  attributes: the number of attributes, then for every attribute its name (length and UTF-8 bytes), its type (a byte,
+ *      0: null, 1: number, 2: list of numbers) and its value (a signed number, or the length and the signed numbers).
+ *  UUIDs: the number of distinct nodes, then the UUID of every node as 16 bytes (most significant byte first).
+ *  trees: the number of trees, then for every tree its order, height, number of leaves and number of nodes, followed by
+ *      the columns: for every node in 'level-order' the index of its UUID, for every node the number of its keys, and
+ *      for every node its keys, the first one as signed number, every further one as difference to the key before.
+ * The children are not written, as they follow from the level-order: the first inner node has the nodes 1 to k + 1 as
+ * children, where k is its number of keys, the next inner node the following ones, and the last 'number of leaves'
+ * nodes are the leaves.
+ *
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class BTreeToColumnar {
+    public static final String MEDIA_TYPE_VALUE = "application/x-btree-columnar";
+    public static final byte[] MAGIC = {'B', 'T', 'C', '1'};
+    public static final int TYPE_NULL = 0;
+    public static final int TYPE_NUMBER = 1;
+    public static final int TYPE_LIST = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * This method writes a response containing the trees after every step in the binary format.
+     *
+     * @param attributes: The attributes of the response, with values of null, Integer or List of Integer.
+     * @param trees: The columnar copies of the trees.
+     * @param outputStream: The stream to write to, not closed.
+     * @return the number of bytes written.
+     * @throws IOException if writing fails.
+     */
+    public static long writeTreeListResponse(Map<String, Object> attributes, List<BTreeColumns> trees,
+                                             OutputStream outputStream) throws IOException {
+        VarintOutput output = new VarintOutput(outputStream);
+        output.writeBytes(MAGIC);
+        output.writeVarint(attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            byte[] name = attribute.getKey().getBytes(StandardCharsets.UTF_8);
+            output.writeVarint(name.length);
+            output.writeBytes(name);
+            Object value = attribute.getValue();
+            if (value == null) {
+                output.writeVarint(TYPE_NULL);
+            } else if (value instanceof List) {
+                List<?> values = (List<?>) value;
+                output.writeVarint(TYPE_LIST);
+                output.writeVarint(values.size());
+                for (Object element : values) {
+                    output.writeZigzag((Integer) element);
+                }
+            } else {
+                output.writeVarint(TYPE_NUMBER);
+                output.writeZigzag((Integer) value);
+            }
+        }
+
+        Map<UUID, Integer> uuidIndices = new HashMap<UUID, Integer>();
+        int[][] nodeIndices = new int[trees.size()][];
+        for (int tree = 0; tree < trees.size(); ++tree) {
+            BTreeColumns columns = trees.get(tree);
+            nodeIndices[tree] = new int[columns.getNumberOfNodes()];
+            for (int node = 0; node < columns.getNumberOfNodes(); ++node) {
+                Integer index = uuidIndices.putIfAbsent(columns.getUuid(node), uuidIndices.size());
+                nodeIndices[tree][node] = (index != null) ? index : uuidIndices.size() - 1;
+            }
+        }
+        long[] uuids = new long[2 * uuidIndices.size()];
+        for (Map.Entry<UUID, Integer> uuid : uuidIndices.entrySet()) {
+            uuids[2 * uuid.getValue()] = uuid.getKey().getMostSignificantBits();
+            uuids[2 * uuid.getValue() + 1] = uuid.getKey().getLeastSignificantBits();
+        }
+        output.writeVarint(uuidIndices.size());
+        for (long half : uuids) {
+            output.writeLong(half);
+        }
+
+        output.writeVarint(trees.size());
+        for (int tree = 0; tree < trees.size(); ++tree) {
+            BTreeColumns columns = trees.get(tree);
+            output.writeVarint(columns.getOrder());
+            output.writeVarint(columns.getHeight());
+            output.writeVarint(columns.getNumberOfLeaves());
+            output.writeVarint(columns.getNumberOfNodes());
+            for (int index : nodeIndices[tree]) {
+                output.writeVarint(index);
+            }
+            for (int node = 0; node < columns.getNumberOfNodes(); ++node) {
+                output.writeVarint(columns.getKeyCount(node));
+            }
+            int[] keys = columns.getKeys();
+            int key = 0;
+            for (int node = 0; node < columns.getNumberOfNodes(); ++node) {
+                for (int i = 0; i < columns.getKeyCount(node); ++i, ++key) {
+                    if (i == 0) {
+                        output.writeZigzag(keys[key]);
+                    } else {
+                        output.writeVarint(keys[key] - keys[key - 1]);
+                    }
+                }
+            }
+        }
+        output.flush();
+        return output.getCount();
+    }
+
+    /**
+     * A buffered output of varints and raw bytes, counting the bytes written.
+     */
+    private static final class VarintOutput {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private long count;
+
+        private VarintOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * This method writes an unsigned varint. Differences of ascending keys are written as unsigned 32-bit numbers,
+         * so they take at most 5 bytes.
+         *
+         * @param value: The value, interpreted as unsigned.
+         * @throws IOException if writing fails.
+         */
+        private void writeVarint(int value) throws IOException {
+            ensureSpace(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeZigzag(int value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensureSpace(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            flush();
+            out.write(bytes);
+            count += bytes.length;
+        }
+
+        private void ensureSpace(int bytes) throws IOException {
+            if (position > buffer.length - bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, position);
+            count += position;
+            position = 0;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
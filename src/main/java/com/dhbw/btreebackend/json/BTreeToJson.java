@@ -3,146 +3,274 @@ package com.dhbw.btreebackend.json;
 import com.dhbw.btreebackend.btreeimplementation.*;
 
 import javax.json.*;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
-import java.util.ArrayList;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * @author Elias Müller
  * @version 1.0
  */
 public class BTreeToJson {
+    /*
+     * Json.createGenerator() and the other static factory methods of Json look up the JsonProvider on every call,
+     * which scans the class path. The factory is created once and is thread-safe.
+     */
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+    private static final int BUFFER_SIZE = 8192;
 
     /**
-     * This methods calculates the height of the B-Tree. It goes from the root to the most left leaf
-     * and counts the levels.
+     * This method writes the JSON-representation of the tree as the next value of the generator. The nodes are
+     * written in 'level-order' as captured, every element with its value and, for inner nodes, the UUIDs of its left
+     * and right child, which are the next children of the next level not taken by the inner nodes before.
      *
-     * @param bTree: The B-Tree to get the tree height from.
-     * @return treeHeight: The height of the B-Tree.
+     * @param bTree: The columnar copy of the B-Tree to write.
+     * @param generator: The generator to write to, expecting a value.
      */
-    private static int getTreeHeight(BTree bTree) {
-        int treeHeight = 1;
-        if (bTree.getRoot() != null) {
-            Node currentLeft = bTree.getRoot();
-            while (currentLeft.getElements().size() != 0 && currentLeft.getElements().get(0).getLeftNode() != null) {
-                ++treeHeight;
-                currentLeft = currentLeft.getElements().get(0).getLeftNode();
+    public static void writeBTreeJson(BTreeColumns bTree, JsonGenerator generator) {
+        int numberOfNodes = bTree.getNumberOfNodes();
+        int[] keys = bTree.getKeys();
+        String[] uuids = new String[numberOfNodes];
+        generator.writeStartObject()
+                .write("Order", bTree.getOrder())
+                .write("Height", bTree.getHeight())
+                .write("NumberLeaves", bTree.getNumberOfLeaves())
+                .writeStartArray("Nodes");
+        int key = 0;
+        int child = 1;
+        for (int node = 0; node < numberOfNodes; ++node) {
+            generator.writeStartObject()
+                    .write("UUID", getUuidString(bTree, uuids, node))
+                    .writeStartArray("Elements");
+            boolean leaf = bTree.isLeaf(node);
+            for (int i = 0; i < bTree.getKeyCount(node); ++i) {
+                generator.writeStartObject()
+                        .write("Value", keys[key++]);
+                if (!leaf) {
+                    generator.write("Left", getUuidString(bTree, uuids, child + i))
+                            .write("Right", getUuidString(bTree, uuids, child + i + 1));
+                }
+                generator.writeEnd();
             }
-        } else {
-            return 0;
+            if (!leaf) {
+                child += bTree.getKeyCount(node) + 1;
+            }
+            generator.writeEnd()
+                    .writeEnd();
         }
-        return treeHeight;
+        generator.writeEnd()
+                .writeEnd();
     }
 
     /**
-     * This method first reorders the tree into a level-ordered tree. Therefore, all nodes will be added to a List,
-     * starting from the left in every row. This array then will be custom transformed into a JSON-file containing
-     * the level-ordered tree, that can be transferred to the frontend.
+     * This method gets the UUID of a node as string, creating it only once per node.
      *
-     * @param bTree: The B-Tree to transform into a JSON-File.
-     * @return The Json representation of the tree.
+     * @param bTree: The columnar copy of the B-Tree.
+     * @param uuids: The strings of the UUIDs created so far.
+     * @param node: The index of the node.
+     * @return the UUID as string.
      */
-    public static JsonObject createBTreeJson(BTree bTree) {
-        List<Node> levelOrderTree = new ArrayList<Node>();
-        int treeHeight = getTreeHeight(bTree);
-        int numberLeaves = 0;
-
-        Node currentNode;
-        Node lastNode;
-
-        if (bTree.getRoot() != null) {
-            levelOrderTree.add(bTree.getRoot());
-            numberLeaves = 1;
-
-            if (bTree.getRoot().getElements().get(0).getLeftNode() != null) {
-                lastNode = bTree.getRoot();
-                while (lastNode.getElements().get(lastNode.getElements().size() - 1).getRightNode() != null) {
-                    lastNode = lastNode.getElements().get(lastNode.getElements().size() - 1).getRightNode();
-                }
-                currentNode = bTree.getRoot().getElements().get(0).getLeftNode();
-                List<Node> previousRow = new ArrayList<Node>();
-                List<Node> currentRow = new ArrayList<Node>();
-                previousRow.add(bTree.getRoot());
-
-                while (currentNode != lastNode) {
-
-                    for (Node nodeIterator : previousRow) {
-                        for (Element elementIterator : nodeIterator.getElements()) {
-                            currentRow.add(elementIterator.getLeftNode());
-                            currentRow.add(elementIterator.getRightNode());
-                            currentNode = elementIterator.getRightNode();
-                        }
-                    }
-                    List<Node> currentRowWithoutDuplicates = currentRow.stream()
-                            .distinct()
-                            .collect(Collectors.toList());
-                    levelOrderTree.addAll(currentRowWithoutDuplicates);
-                    numberLeaves = currentRowWithoutDuplicates.size();
-                    previousRow = currentRowWithoutDuplicates;
-                    currentRow.clear();
-                }
-            }
+    private static String getUuidString(BTreeColumns bTree, String[] uuids, int node) {
+        if (uuids[node] == null) {
+            uuids[node] = bTree.getUuid(node).toString();
         }
+        return uuids[node];
+    }
 
-        JsonObjectBuilder jsonTree = Json.createObjectBuilder();
-        JsonArrayBuilder jsonTreeNodes = Json.createArrayBuilder();
+    /**
+     * This method writes the JSON-representation of a node as the next value of the generator. Every element is
+     * written with its value and, for inner nodes, the UUIDs of its left and right child.
+     *
+     * @param node: The node to write.
+     * @param generator: The generator to write to, expecting a value.
+     */
+    public static void writeNodeJson(Node node, JsonGenerator generator) {
+        generator.writeStartObject()
+                .write("UUID", node.getUuid().toString())
+                .writeStartArray("Elements");
+        for (Element element : node.getElements()) {
+            generator.writeStartObject()
+                    .write("Value", element.getKey());
+            if (element.getLeftNode() != null) {
+                generator.write("Left", element.getLeftNode().getUuid().toString())
+                        .write("Right", element.getRightNode().getUuid().toString());
+            }
+            generator.writeEnd();
+        }
+        generator.writeEnd()
+                .writeEnd();
+    }
 
-        jsonTree.add("Order", bTree.getOrder())
-                .add("Height", treeHeight)
-                .add("NumberLeaves", numberLeaves);
+    /**
+     * This method creates a generator writing to the given writer, without looking up the JsonProvider again.
+     *
+     * @param writer: The writer to write to.
+     * @return the generator.
+     */
+    public static JsonGenerator createGenerator(Writer writer) {
+        return GENERATOR_FACTORY.createGenerator(writer);
+    }
 
-        for (Node n : levelOrderTree) {
-            jsonTreeNodes.add(createNodeJson(n));
+    /**
+     * This method writes a response containing the JSON-representations of the trees after every step straight to
+     * the output stream. The response has the same format as before: the attributes followed by the attribute with
+     * the given key, whose value is the list of trees as a single string ("[tree, tree]"), as the frontend expects it.
+     * Lists of values are written as string as well, numbers as numbers. The trees are written by the generator through
+     * an escaping writer, so neither the trees nor the response are held as a whole.
+     *
+     * @param attributes: The attributes preceding the trees, with values of null, Integer or List of Integer.
+     * @param treesKey: The key of the trees.
+     * @param trees: The columnar copies of the trees.
+     * @param outputStream: The stream to write to, not closed.
+     * @return the number of bytes written.
+     * @throws IOException if writing fails.
+     */
+    public static long writeTreeListResponse(Map<String, Object> attributes, String treesKey,
+                                             List<BTreeColumns> trees, OutputStream outputStream) throws IOException {
+        CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(countingStream, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        writer.write('{');
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            writeEscapedString(attribute.getKey(), writer);
+            writer.write(':');
+            Object value = attribute.getValue();
+            if (value instanceof List) {
+                writeEscapedString(value.toString(), writer);
+            } else {
+                writer.write(String.valueOf(value));
+            }
+            writer.write(',');
         }
-        jsonTree.add("Nodes", jsonTreeNodes);
+        writeEscapedString(treesKey, writer);
+        writer.write(":\"[");
+        Writer escapingWriter = new EscapingWriter(writer);
+        for (int i = 0; i < trees.size(); ++i) {
+            if (i > 0) {
+                writer.write(", ");
+            }
+            try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(escapingWriter)) {
+                writeBTreeJson(trees.get(i), generator);
+            }
+        }
+        writer.write("]\"}");
+        writer.flush();
+        return countingStream.getCount();
+    }
 
-        return jsonTree.build();
+    /**
+     * This method writes a string as JSON-string, i.e. in quotes and escaped.
+     *
+     * @param string: The string.
+     * @param writer: The writer to write to.
+     * @throws IOException if writing fails.
+     */
+    private static void writeEscapedString(String string, Writer writer) throws IOException {
+        writer.write('"');
+        writeEscapedCharacters(string, writer);
+        writer.write('"');
     }
 
     /**
-     * This method transforms an Element-Object to a suitable JSON-representation.
+     * This method writes the characters of a string escaped for a JSON-string.
      *
-     * @param element
-     * @return the JSON-representation of the element.
+     * @param string: The string.
+     * @param writer: The writer to write to.
+     * @throws IOException if writing fails.
      */
-    private static JsonObject createElementJson(Element element) {
-        JsonObjectBuilder jO = Json.createObjectBuilder();
-        jO.add("Value", element.getKey());
-        if (element.getLeftNode() != null) {
+    private static void writeEscapedCharacters(String string, Writer writer) throws IOException {
+        char[] characters = string.toCharArray();
+        writeEscapedCharacters(characters, 0, characters.length, writer);
+    }
 
-            jO.add("Left", element.getLeftNode().getUuid().toString())
-                    .add("Right", element.getRightNode().getUuid().toString());
+    /**
+     * This method writes characters escaped for a JSON-string. Runs of characters that need no escaping are written at
+     * once.
+     *
+     * @param characters: The characters.
+     * @param offset: The index of the first character to write.
+     * @param length: The number of characters to write.
+     * @param writer: The writer to write to.
+     * @throws IOException if writing fails.
+     */
+    private static void writeEscapedCharacters(char[] characters, int offset, int length, Writer writer)
+            throws IOException {
+        int start = offset;
+        for (int i = offset; i < offset + length; ++i) {
+            char character = characters[i];
+            if (character == '"' || character == '\\' || character < 0x20) {
+                writer.write(characters, start, i - start);
+                if (character < 0x20) {
+                    writer.write(String.format("\\u%04x", (int) character));
+                } else {
+                    writer.write('\\');
+                    writer.write(character);
+                }
+                start = i + 1;
+            }
         }
-        return jO.build();
+        writer.write(characters, start, offset + length - start);
     }
 
     /**
-     * This method transforms a Node-Object to a suitable JSON-representation and calls the createElementJasonArray-
-     * method for the element-list.
-     *
-     * @param node
-     * @return the JSON-representation of the node.
+     * A writer escaping everything written to it for a JSON-string. Closing it only flushes it, so the generators
+     * writing to it do not close the response.
      */
-    private static JsonObject createNodeJson(Node node) {
-        return Json.createObjectBuilder()
-                .add("UUID", node.getUuid().toString())
-                .add("Elements", createElementArrayJson(node.getElements()))
-                .build();
+    private static final class EscapingWriter extends FilterWriter {
+
+        private EscapingWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            writeEscapedCharacters(new char[] {(char) c}, 0, 1, out);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            writeEscapedCharacters(cbuf, off, len, out);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            writeEscapedCharacters(str.substring(off, off + len), out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 
     /**
-     * This method transforms the element-list into a suitable JSON-representation and calls the createElementJson-
-     * method for every element.
-     *
-     * @param elements
-     * @return the JSON-representation of the element-list.
+     * An output stream counting the bytes written to the underlying stream.
      */
-    private static JsonArray createElementArrayJson(List<Element> elements) {
-        JsonArrayBuilder elementList = Json.createArrayBuilder();
-        for (Element e : elements) {
-            elementList.add(createElementJson(e));
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        private long getCount() {
+            return count;
         }
-        return elementList.build();
     }
 }
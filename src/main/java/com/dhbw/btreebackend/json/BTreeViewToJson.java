@@ -0,0 +1,70 @@
+package com.dhbw.btreebackend.json;
+
+import com.dhbw.btreebackend.btreeimplementation.BTreeView;
+import com.dhbw.btreebackend.btreeimplementation.BTreeView.ViewNode;
+
+import javax.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.UUID;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class BTreeViewToJson {
+
+    /**
+     * This method creates the JSON-representation of a window of the tree. The nodes are written like in the
+     * JSON-representation of the whole tree, every element with its value and, for inner nodes, the UUIDs of its left
+     * and right child, together with their depth, their number of children and the number of children not contained
+     * in the window, whose subtrees are collapsed.
+     *
+     * @param view: The window of the tree.
+     * @return The JSON-representation of the window as string, containing the height of the tree, the depths and the
+     *      key range of the window, whether levels were cut and the key to continue with (null if not cut), the number
+     *      of nodes visited and the nodes.
+     */
+    public static String createBTreeViewJsonString(BTreeView view) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = BTreeToJson.createGenerator(json)) {
+            generator.writeStartObject().
+                    write("Height", view.getHeight()).
+                    write("FromDepth", view.getFromDepth()).
+                    write("ToDepth", view.getToDepth()).
+                    write("Min", view.getLowerBound()).
+                    write("Max", view.getUpperBound()).
+                    write("Truncated", view.isTruncated());
+            if (view.isTruncated()) {
+                generator.write("NextKey", view.getNextKey());
+            } else {
+                generator.writeNull("NextKey");
+            }
+            generator.write("NodesVisited", view.getNodesVisited()).
+                    writeStartArray("Nodes");
+            for (ViewNode node : view.getNodes()) {
+                int[] keys = node.getKeys();
+                UUID[] children = node.getChildren();
+                generator.writeStartObject().
+                        write("UUID", node.getUuid().toString()).
+                        write("Depth", node.getDepth()).
+                        writeStartArray("Elements");
+                for (int i = 0; i < keys.length; ++i) {
+                    generator.writeStartObject().
+                            write("Value", keys[i]);
+                    if (children.length > 0) {
+                        generator.write("Left", children[i].toString()).
+                                write("Right", children[i + 1].toString());
+                    }
+                    generator.writeEnd();
+                }
+                generator.writeEnd().
+                        write("Children", children.length).
+                        write("Collapsed", node.getCollapsedChildren()).
+                        writeEnd();
+            }
+            generator.writeEnd().
+                    writeEnd();
+        }
+        return json.toString();
+    }
+}
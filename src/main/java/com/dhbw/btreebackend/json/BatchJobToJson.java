@@ -0,0 +1,40 @@
+package com.dhbw.btreebackend.json;
+
+import com.dhbw.btreebackend.job.BatchJob;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class BatchJobToJson {
+
+    /**
+     * This method creates the JSON-representation of a job, as returned by the job endpoints and published to the
+     * subscribers of the jobs.
+     *
+     * @param job: The job.
+     * @return The Json representation of the job, containing id, type, state, number of keys, processed and applied
+     *      keys, progress, elapsed and estimated remaining milliseconds (null if unknown) and the error (null if the job
+     *      did not fail).
+     */
+    public static JsonObject createBatchJobJson(BatchJob job) {
+        long etaMillis = job.getEtaMillis();
+        JsonObjectBuilder jobBuilder = Json.createObjectBuilder().
+                add("Id", job.getId()).
+                add("Type", job.getType().name()).
+                add("State", job.getState().name()).
+                add("Keys", job.getNumberOfKeys()).
+                add("ProcessedKeys", job.getProcessedKeys()).
+                add("AppliedKeys", job.getAppliedKeys()).
+                add("Progress", job.getProgress()).
+                add("ElapsedMillis", job.getElapsedMillis()).
+                add("EtaMillis", (etaMillis >= 0) ? Json.createValue(etaMillis) : JsonValue.NULL).
+                add("Error", (job.getError() != null) ? Json.createValue(job.getError()) : JsonValue.NULL);
+        return jobBuilder.build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.dhbw.btreebackend.json;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reference decoder for the binary format of BTreeToColumnar, for clients requesting it instead of JSON. It turns a
+ * response back into the JsonObject the same request returns as JSON, so it also documents how the columns map to
+ * the JSON-representation of the trees. Clients in other languages decode the format the same way.
+ *
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class ColumnarTreeDecoder {
+    private static final String TREE_LIST_KEY = "Trees";
+
+    /**
+     * This method decodes a response in the binary format.
+     *
+     * @param inputStream: The body of the response, not closed.
+     * @return the JsonObject of the response as the JSON-format returns it: the attributes, lists of values as string,
+     *      followed by the list of the trees as string.
+     * @throws IOException if reading fails or the body is not in the binary format.
+     */
+    public static JsonObject decode(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        byte[] magic = new byte[BTreeToColumnar.MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(magic, BTreeToColumnar.MAGIC)) {
+            throw new IOException("Not a columnar tree response");
+        }
+
+        JsonObjectBuilder response = Json.createObjectBuilder();
+        int numberOfAttributes = readVarint(input);
+        for (int i = 0; i < numberOfAttributes; ++i) {
+            byte[] name = new byte[readVarint(input)];
+            input.readFully(name);
+            String key = new String(name, StandardCharsets.UTF_8);
+            int type = readVarint(input);
+            if (type == BTreeToColumnar.TYPE_NULL) {
+                response.addNull(key);
+            } else if (type == BTreeToColumnar.TYPE_NUMBER) {
+                response.add(key, readZigzag(input));
+            } else if (type == BTreeToColumnar.TYPE_LIST) {
+                List<Integer> values = new ArrayList<Integer>();
+                for (int length = readVarint(input); values.size() < length; ) {
+                    values.add(readZigzag(input));
+                }
+                response.add(key, values.toString());
+            } else {
+                throw new IOException("Unknown attribute type " + type);
+            }
+        }
+
+        String[] uuids = new String[readVarint(input)];
+        for (int i = 0; i < uuids.length; ++i) {
+            uuids[i] = new UUID(input.readLong(), input.readLong()).toString();
+        }
+
+        List<JsonObject> trees = new ArrayList<JsonObject>();
+        for (int numberOfTrees = readVarint(input); trees.size() < numberOfTrees; ) {
+            trees.add(readTree(input, uuids));
+        }
+        return response.add(TREE_LIST_KEY, trees.toString()).build();
+    }
+
+    /**
+     * This method decodes one tree. The children of an inner node are the next nodes not yet taken as children by the
+     * inner nodes before it, starting with the node after the root; the last nodes are the leaves.
+     *
+     * @param input: The input positioned at the tree.
+     * @param uuids: The UUIDs of the response.
+     * @return the JSON-representation of the tree.
+     * @throws IOException if reading fails.
+     */
+    private static JsonObject readTree(DataInputStream input, String[] uuids) throws IOException {
+        int order = readVarint(input);
+        int height = readVarint(input);
+        int numberOfLeaves = readVarint(input);
+        int numberOfNodes = readVarint(input);
+        String[] nodeUuids = new String[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; ++node) {
+            nodeUuids[node] = uuids[readVarint(input)];
+        }
+        int[] keyCounts = new int[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; ++node) {
+            keyCounts[node] = readVarint(input);
+        }
+
+        JsonArrayBuilder nodes = Json.createArrayBuilder();
+        int child = 1;
+        for (int node = 0; node < numberOfNodes; ++node) {
+            boolean leaf = node >= numberOfNodes - numberOfLeaves;
+            JsonArrayBuilder elements = Json.createArrayBuilder();
+            int key = 0;
+            for (int i = 0; i < keyCounts[node]; ++i) {
+                key = (i == 0) ? readZigzag(input) : key + readVarint(input);
+                JsonObjectBuilder element = Json.createObjectBuilder().add("Value", key);
+                if (!leaf) {
+                    element.add("Left", nodeUuids[child + i]).add("Right", nodeUuids[child + i + 1]);
+                }
+                elements.add(element);
+            }
+            if (!leaf) {
+                child += keyCounts[node] + 1;
+            }
+            nodes.add(Json.createObjectBuilder().add("UUID", nodeUuids[node]).add("Elements", elements));
+        }
+        return Json.createObjectBuilder()
+                .add("Order", order)
+                .add("Height", height)
+                .add("NumberLeaves", numberOfLeaves)
+                .add("Nodes", nodes)
+                .build();
+    }
+
+    /**
+     * This method reads an unsigned varint.
+     *
+     * @param input: The input.
+     * @return the value, as unsigned 32-bit number.
+     * @throws IOException if reading fails, the varint is longer than 5 bytes or the input ends within it.
+     */
+    private static int readVarint(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift <= 28; shift += 7) {
+            int currentByte = input.read();
+            if (currentByte < 0) {
+                throw new EOFException("Input ends within a varint");
+            }
+            value |= (currentByte & 0x7F) << shift;
+            if ((currentByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint longer than 5 bytes");
+    }
+
+    private static int readZigzag(DataInputStream input) throws IOException {
+        int value = readVarint(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
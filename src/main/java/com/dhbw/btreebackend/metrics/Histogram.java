@@ -0,0 +1,107 @@
+package com.dhbw.btreebackend.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values with log-linear buckets, following the bucket layout of
+ * HdrHistogram: values below 2 * SUB_BUCKETS are counted exactly, greater values in buckets whose width is a power of
+ * two, so every recorded value is accurate to 1 / SUB_BUCKETS (~1.6%) of its magnitude over the whole long range.
+ * Contains the counts per bucket, the total count, the sum and the maximum of the recorded values.
+ *
+ * Offers methods to record values from any number of threads and to read percentiles, mean and maximum.
+ * Reads do not block writers, so values recorded concurrently to a read may or may not be included.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        this.counts.incrementAndGet(getBucketIndex(value));
+        this.totalCount.incrementAndGet();
+        this.sum.addAndGet(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Get the value at the given percentile, i.e. the greatest value of the bucket containing the value that is
+     * greater than or equal to the given percentage of all recorded values.
+     * @param percentile percentile between 0 and 100, e.g. 99.9.
+     * @return the value at the percentile, at most the maximum recorded value. 0 if no value was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = this.totalCount.get();
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long cumulative = 0;
+        for(int index = 0; index < NUMBER_OF_BUCKETS; ++index) {
+            cumulative += this.counts.get(index);
+            if(cumulative >= rank) {
+                return Math.min(getHighestValueOfBucket(index), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Get the index of the bucket counting the given value.
+     * @param value the non-negative value.
+     * @return index of the bucket.
+     */
+    private static int getBucketIndex(long value) {
+        if(value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Get the greatest value counted by the bucket with the given index.
+     * @param index index of the bucket.
+     * @return the greatest value of the bucket.
+     */
+    private static long getHighestValueOfBucket(int index) {
+        if(index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Get the arithmetic mean of the recorded values.
+     * @return the mean, 0 if no value was recorded.
+     */
+    public double getMean() {
+        long total = this.totalCount.get();
+        return (total == 0) ? 0 : (double) this.sum.get() / total;
+    }
+
+    /* Standard getters */
+
+    public long getTotalCount() {
+        return this.totalCount.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+}
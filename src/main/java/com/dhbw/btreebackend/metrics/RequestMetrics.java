@@ -0,0 +1,162 @@
+package com.dhbw.btreebackend.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the metrics of the REST endpoints.
+ * Contains one EndpointMetrics per endpoint, created on its first request.
+ *
+ * Offers startRequest(String) to get a RequestTimer measuring a single request, which records into the metrics of its
+ * endpoint when finished.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class RequestMetrics {
+
+    /**
+     * The phases a request is split into.
+     * TREE: operations on the BTree. JSON: building the JSON-representation of the response.
+     * WRITE: serializing the response to its final string or byte form.
+     */
+    public enum Phase {
+        TREE, JSON, WRITE
+    }
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Start measuring a request to the given endpoint.
+     * @param endpoint name of the endpoint, e.g. "POST /api".
+     * @return the timer of the request.
+     */
+    public RequestTimer startRequest(String endpoint) {
+        return new RequestTimer(this.endpoints.computeIfAbsent(endpoint, name -> new EndpointMetrics()));
+    }
+
+    /**
+     * Get the metrics of all endpoints that have been requested so far.
+     * @return map of endpoint names to their metrics, ordered by name.
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return new TreeMap<>(this.endpoints);
+    }
+
+    /**
+     * The metrics of a single endpoint.
+     * Contains a latency histogram in nanoseconds for every phase and for the whole request, a histogram of the
+     * response sizes in bytes and a histogram of the steps (tree states or values) per response.
+     */
+    public static class EndpointMetrics {
+        private final Map<Phase, Histogram> phaseNanos = new EnumMap<>(Phase.class);
+        private final Histogram totalNanos = new Histogram();
+        private final Histogram responseBytes = new Histogram();
+        private final Histogram steps = new Histogram();
+
+        private EndpointMetrics() {
+            for(Phase phase : Phase.values()) {
+                this.phaseNanos.put(phase, new Histogram());
+            }
+        }
+
+        public Histogram getPhaseNanos(Phase phase) {
+            return this.phaseNanos.get(phase);
+        }
+
+        public Histogram getTotalNanos() {
+            return this.totalNanos;
+        }
+
+        public Histogram getResponseBytes() {
+            return this.responseBytes;
+        }
+
+        public Histogram getSteps() {
+            return this.steps;
+        }
+    }
+
+    /**
+     * Measures a single request. Not thread-safe, a timer belongs to the thread handling its request.
+     * The time since the last call of endPhase(Phase) (or since the start) is added to the given phase, so phases that
+     * alternate, e.g. one tree operation and one JSON-representation per inserted element, are summed up.
+     */
+    public static class RequestTimer {
+        private final EndpointMetrics endpointMetrics;
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private final long startNanos;
+        private long lastMarkNanos;
+
+        private RequestTimer(EndpointMetrics endpointMetrics) {
+            this.endpointMetrics = endpointMetrics;
+            this.startNanos = System.nanoTime();
+            this.lastMarkNanos = this.startNanos;
+        }
+
+        /**
+         * Add the time since the last mark to the given phase.
+         * @param phase the phase that just ended.
+         */
+        public void endPhase(Phase phase) {
+            long now = System.nanoTime();
+            this.phaseNanos[phase.ordinal()] += now - this.lastMarkNanos;
+            this.lastMarkNanos = now;
+        }
+
+        /**
+         * Move time already added to one phase to another phase, e.g. the time the writer thread spent building
+         * JSON-representations while the request thread was waiting in the TREE phase.
+         * @param from the phase the time was added to.
+         * @param to the phase the time belongs to.
+         * @param nanos the time to move.
+         */
+        public void moveNanos(Phase from, Phase to, long nanos) {
+            this.phaseNanos[from.ordinal()] -= nanos;
+            this.phaseNanos[to.ordinal()] += nanos;
+        }
+
+        /**
+         * Finish the request and record its phases, total time, response size and steps.
+         * @param responseBytes size of the response body in bytes.
+         * @param steps number of steps contained in the response.
+         */
+        public void finish(long responseBytes, int steps) {
+            for(Phase phase : Phase.values()) {
+                this.endpointMetrics.getPhaseNanos(phase).record(this.phaseNanos[phase.ordinal()]);
+            }
+            this.endpointMetrics.getTotalNanos().record(System.nanoTime() - this.startNanos);
+            this.endpointMetrics.getResponseBytes().record(responseBytes);
+            this.endpointMetrics.getSteps().record(steps);
+        }
+
+        /**
+         * Get the number of bytes the given string takes when encoded as UTF-8, without encoding it.
+         * @param string the string to measure.
+         * @return length in bytes.
+         */
+        public static long getUtf8Length(String string) {
+            long length = 0;
+            for(int i = 0; i < string.length(); ++i) {
+                char character = string.charAt(i);
+                if(character < 0x80) {
+                    ++length;
+                } else if(character < 0x800) {
+                    length += 2;
+                } else if(Character.isHighSurrogate(character)) {
+                    length += 4;
+                    ++i;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+}
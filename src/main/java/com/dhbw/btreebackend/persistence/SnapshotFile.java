@@ -0,0 +1,103 @@
+package com.dhbw.btreebackend.persistence;
+
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the BTree in a binary snapshot file across restarts. Active if the property 'btree.snapshot.file' is set.
+ * On startup the file is memory-mapped and loaded into the BTree if it exists. On shutdown the BTree is written to a
+ * temporary file next to it, which is forced to disk before it atomically replaces the snapshot file, and the directory
+ * is forced afterwards, so neither a crash nor a power loss while writing leaves a truncated snapshot behind. The tree
+ * is written while holding the read lock of the mutation pipeline, so mutations still being applied during shutdown
+ * are either completely contained in the snapshot or not at all.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "btree.snapshot.file")
+public class SnapshotFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotFile.class);
+
+    private final OrderedIntIndex bTree;
+    private final MutationPipeline mutationPipeline;
+    private final Path path;
+
+    public SnapshotFile(OrderedIntIndex bTree, MutationPipeline mutationPipeline, @Value("${btree.snapshot.file}") String path) {
+        this.bTree = bTree;
+        this.mutationPipeline = mutationPipeline;
+        this.path = Paths.get(path);
+    }
+
+    /**
+     * Load the snapshot file into the BTree if it exists.
+     * @throws IOException if the file cannot be read or contains no valid snapshot.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if(!Files.exists(this.path)) {
+            LOGGER.info("No BTree snapshot at {}, starting with an empty tree", this.path);
+            return;
+        }
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            this.bTree.loadSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        LOGGER.info("Loaded BTree snapshot from {} in {} ms", this.path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Write the BTree to the snapshot file.
+     * @throws IOException if writing fails. The previous snapshot file is kept in that case.
+     */
+    @PreDestroy
+    public void save() throws IOException {
+        Path directory = this.path.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                this.mutationPipeline.getTreeLock().readLock().lock();
+                try {
+                    this.bTree.writeSnapshot(Channels.newOutputStream(channel));
+                } finally {
+                    this.mutationPipeline.getTreeLock().readLock().unlock();
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryFile, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        LOGGER.info("Saved BTree snapshot to {}", this.path);
+    }
+
+    /**
+     * Force the entries of the given directory to disk, so the renamed snapshot file survives a power loss. Not every
+     * platform can open a directory, e.g. Windows, where the rename is left to the file system.
+     * @param directory the directory containing the snapshot file.
+     */
+    private static void forceDirectory(Path directory) {
+        try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch(IOException e) {
+            LOGGER.debug("Cannot force directory {} to disk: {}", directory, e.getMessage());
+        }
+    }
+}
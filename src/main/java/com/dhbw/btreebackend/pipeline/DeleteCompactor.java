@@ -0,0 +1,96 @@
+package com.dhbw.btreebackend.pipeline;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables relaxed deletes on the BTree and rebalances the leaves they leave underfull in the background. Active if the
+ * property 'btree.relaxed-deletes' is true.
+ * Every 'btree.compaction.interval-millis' (50 by default) the compactor submits a task to the mutation pipeline that
+ * performs at most 'btree.compaction.budget' (64 by default) rotations or merges. As long as a task uses up its whole
+ * budget, the next one is submitted right away, so a backlog is worked off quickly, while mutations enqueued in the
+ * meantime are applied between the tasks and never wait for more than one budget of rebalancing.
+ * Only the engine 'btree' supports relaxed deletes, so the property is rejected at startup with another engine.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "btree.relaxed-deletes", havingValue = "true")
+public class DeleteCompactor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeleteCompactor.class);
+
+    private final BTree bTree;
+    private final MutationPipeline mutationPipeline;
+    private final long intervalMillis;
+    private final int budget;
+    private ScheduledExecutorService scheduler;
+
+    public DeleteCompactor(OrderedIntIndex bTree, MutationPipeline mutationPipeline,
+                           @Value("${btree.compaction.interval-millis:50}") long intervalMillis,
+                           @Value("${btree.compaction.budget:64}") int budget) {
+        if(!(bTree instanceof BTree)) {
+            throw new IllegalArgumentException("btree.relaxed-deletes requires btree.engine=btree");
+        }
+        this.bTree = (BTree) bTree;
+        this.mutationPipeline = mutationPipeline;
+        this.intervalMillis = intervalMillis;
+        this.budget = budget;
+    }
+
+    /**
+     * Enable relaxed deletes and start compacting.
+     */
+    @PostConstruct
+    public void start() {
+        this.mutationPipeline.execute(() -> {
+            this.bTree.setRelaxedDeletes(true);
+            return null;
+        }).join();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "btree-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::compact, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop compacting. Leaves recorded until then stay underfull, which is safe. A snapshot written afterwards contains
+     * them as they are, and loading it records them again.
+     */
+    @PreDestroy
+    public void stop() {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * Submit compaction tasks until there is nothing left to compact or a task did not use up its budget. Runs on the
+     * scheduler thread.
+     */
+    private void compact() {
+        try {
+            while(this.mutationPipeline.read(this.bTree::getPendingCompactions) > 0) {
+                int steps = this.mutationPipeline.execute(() -> this.bTree.compact(this.budget)).join();
+                if(steps < this.budget) {
+                    return;
+                }
+            }
+        } catch(CompletionException e) {
+            LOGGER.warn("Compaction failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.dhbw.btreebackend.pipeline;
+
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.btreeimplementation.ShardedBTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The single writer of the OrderedIntIndex bean. All mutations are enqueued into a bounded queue shared by all request
+ * threads and applied by one writer thread, which completes the future of every mutation with its own result.
+ *
+ * The writer drains up to MAX_BATCH_SIZE mutations at once and applies them while holding the write lock of treeLock
+ * a single time. Consecutive inserts and deletes that do not record steps are coalesced: their keys are applied in
+ * ascending order, so successive operations descend into the same region of the tree. Operations on the same key keep
+ * the order in which they were enqueued, so the result of every operation is the same as if all mutations had been
+ * applied one after another. Inserts and deletes recording steps (a representation of the tree after every
+ * successful operation) and arbitrary tasks are applied on their own in queue order.
+ *
+ * If the tree is a ShardedBTree, the ordered keys of coalesced inserts and deletes are cut at its split points and the
+ * parts of the shards are applied in parallel, by one thread per shard, while the writer holds the write lock. All
+ * operations on a key belong to the same part, so their order is kept, and the threads only share the routing lock of
+ * the ShardedBTree, as each of them locks a different shard. Everything else is applied by the writer thread alone.
+ *
+ * Readers hold the read lock of treeLock, so they run concurrently to each other and see the tree between batches.
+ * If the queue is full, submitting threads block until the writer has caught up.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class MutationPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MutationPipeline.class);
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final OrderedIntIndex bTree;
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Mutation<?>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong appliedBatches = new AtomicLong();
+    private final AtomicLong appliedMutations = new AtomicLong();
+    private final AtomicLong coalescedKeys = new AtomicLong();
+    private final ExecutorService shardWriters;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public MutationPipeline(OrderedIntIndex bTree) {
+        this.bTree = bTree;
+        if(bTree instanceof ShardedBTree) {
+            AtomicInteger threads = new AtomicInteger();
+            this.shardWriters = Executors.newFixedThreadPool(((ShardedBTree) bTree).getShardSizes().length,
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "btree-shard-writer-" + threads.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            this.shardWriters = null;
+        }
+    }
+
+    /**
+     * Start the writer thread.
+     */
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        this.writerThread = new Thread(this::applyMutations, "btree-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Stop the writer thread after it has applied all mutations enqueued so far, and the shard writers if there are
+     * any.
+     * @throws InterruptedException if interrupted while waiting for the writer thread.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        execute(() -> {
+            this.running = false;
+            return null;
+        });
+        this.writerThread.join();
+        if(this.shardWriters != null) {
+            this.shardWriters.shutdown();
+        }
+    }
+
+    /**
+     * Insert the given keys in the given order.
+     * @param keys the keys to insert.
+     * @param stepRecorder function creating a representation of the tree after every inserted key, null if no steps
+     *          are needed. Mutations without steps can be coalesced with others.
+     * @param <S> type of the step representation.
+     * @return future completed with the inserted keys and the steps.
+     */
+    public <S> CompletableFuture<MutationResult<S>> insert(List<Integer> keys,
+                                                           Function<OrderedIntIndex, S> stepRecorder) {
+        return submitKeys(true, keys, stepRecorder);
+    }
+
+    /**
+     * Insert the given keys in the given order without recording steps. Used for bulk uploads, whose keys are never
+     * boxed.
+     * @param keys the keys to insert. The array must not be modified afterwards.
+     * @return future completed with the inserted keys.
+     */
+    public CompletableFuture<MutationResult<Void>> insert(int[] keys) {
+        return submit(new KeyMutation<Void>(true, keys, null));
+    }
+
+    /**
+     * Delete the given keys in the given order.
+     * @param keys the keys to delete.
+     * @param stepRecorder function creating a representation of the tree after every deleted key, null if no steps
+     *          are needed. Mutations without steps can be coalesced with others.
+     * @param <S> type of the step representation.
+     * @return future completed with the deleted keys and the steps.
+     */
+    public <S> CompletableFuture<MutationResult<S>> delete(List<Integer> keys,
+                                                           Function<OrderedIntIndex, S> stepRecorder) {
+        return submitKeys(false, keys, stepRecorder);
+    }
+
+    /**
+     * Delete the given keys in the given order without recording steps. Used for bulk uploads, whose keys are never
+     * boxed.
+     * @param keys the keys to delete. The array must not be modified afterwards.
+     * @return future completed with the deleted keys.
+     */
+    public CompletableFuture<MutationResult<Void>> delete(int[] keys) {
+        return submit(new KeyMutation<Void>(false, keys, null));
+    }
+
+    /**
+     * Run the given task on the writer thread, e.g. to change the order of the tree.
+     * @param task the task, which may read and modify the tree.
+     * @param <T> type of the result.
+     * @return future completed with the result of the task, or exceptionally with the exception thrown by it.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<T> task) {
+        return submit(new TaskMutation<>(task));
+    }
+
+    /**
+     * Read from the tree while holding the read lock.
+     * @param read the read operation.
+     * @param <T> type of the result.
+     * @return the result of the read operation.
+     */
+    public <T> T read(Supplier<T> read) {
+        this.treeLock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            this.treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unbox the given keys and enqueue an insert or delete of them.
+     * @param insert true to insert, false to delete.
+     * @param keys the keys.
+     * @param stepRecorder function creating a representation of the tree after every applied key, null for none.
+     * @param <S> type of the step representation.
+     * @return the future of the mutation, completed exceptionally if a key is null.
+     */
+    private <S> CompletableFuture<MutationResult<S>> submitKeys(boolean insert, List<Integer> keys,
+                                                                Function<OrderedIntIndex, S> stepRecorder) {
+        int[] keyArray = new int[keys.size()];
+        int i = 0;
+        for(Integer key : keys) {
+            if(key == null) {
+                CompletableFuture<MutationResult<S>> future = new CompletableFuture<>();
+                future.completeExceptionally(new IllegalArgumentException("Keys must not be null"));
+                return future;
+            }
+            keyArray[i++] = key;
+        }
+        return submit(new KeyMutation<>(insert, keyArray, stepRecorder));
+    }
+
+    /**
+     * Enqueue a mutation, blocking while the queue is full.
+     * @param mutation the mutation to enqueue.
+     * @param <T> type of the result of the mutation.
+     * @return the future of the mutation.
+     */
+    private <T> CompletableFuture<T> submit(Mutation<T> mutation) {
+        if(!this.running) {
+            mutation.future.completeExceptionally(new IllegalStateException("Mutation pipeline is stopped"));
+            return mutation.future;
+        }
+        try {
+            this.queue.put(mutation);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mutation.future.completeExceptionally(e);
+        }
+        return mutation.future;
+    }
+
+    /**
+     * Loop of the writer thread: take all queued mutations (at most MAX_BATCH_SIZE), apply them under the write lock
+     * and complete their futures afterwards.
+     */
+    private void applyMutations() {
+        List<Mutation<?>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while(this.running || !this.queue.isEmpty()) {
+            try {
+                batch.add(this.queue.take());
+            } catch(InterruptedException e) {
+                LOGGER.warn("Writer thread interrupted, {} mutations are not applied", this.queue.size());
+                return;
+            }
+            this.queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            this.treeLock.writeLock().lock();
+            try {
+                applyBatch(batch);
+            } finally {
+                this.treeLock.writeLock().unlock();
+            }
+            for(Mutation<?> mutation : batch) {
+                mutation.complete();
+            }
+            this.appliedBatches.incrementAndGet();
+            this.appliedMutations.addAndGet(batch.size());
+            batch.clear();
+        }
+        for(Mutation<?> mutation; (mutation = this.queue.poll()) != null; ) {    // enqueued while stopping
+            mutation.future.completeExceptionally(new IllegalStateException("Mutation pipeline is stopped"));
+        }
+    }
+
+    /**
+     * Apply a batch of mutations. Runs of consecutive coalescable mutations are applied together, all others one by
+     * one.
+     * @param batch the mutations in queue order.
+     */
+    private void applyBatch(List<Mutation<?>> batch) {
+        int start = 0;
+        while(start < batch.size()) {
+            int end = start;
+            while(end < batch.size() && batch.get(end).isCoalescable()) {
+                ++end;
+            }
+            if(end > start) {
+                applyCoalesced(batch.subList(start, end));
+                start = end;
+            } else {
+                batch.get(start).apply(this.bTree);
+                ++start;
+            }
+        }
+    }
+
+    /**
+     * Apply the keys of the given inserts and deletes ordered by key. Every operation is encoded as a long with the
+     * key in the upper and its position in queue order in the lower half, so sorting the longs orders the operations
+     * by key and keeps the queue order of operations on the same key.
+     * If an operation fails, only the mutation it belongs to fails, just like a mutation applied on its own: its keys
+     * not applied yet are skipped, while the keys of the other mutations are still applied and they complete with
+     * their results. If the parts of several shards are applied in parallel, keys of the failed mutation in other
+     * shards may have been applied before the failure is seen there.
+     * @param mutations the coalescable mutations in queue order.
+     */
+    private void applyCoalesced(List<Mutation<?>> mutations) {
+        int numberOfOperations = 0;
+        for(Mutation<?> mutation : mutations) {
+            numberOfOperations += ((KeyMutation<?>) mutation).keys.length;
+        }
+        long[] operations = new long[numberOfOperations];
+        KeyMutation<?>[] owners = new KeyMutation<?>[numberOfOperations];
+        int[] keyIndices = new int[numberOfOperations];
+        int position = 0;
+        for(Mutation<?> mutation : mutations) {
+            KeyMutation<?> keyMutation = (KeyMutation<?>) mutation;
+            keyMutation.applied = new boolean[keyMutation.keys.length];
+            for(int i = 0; i < keyMutation.keys.length; ++i) {
+                int key = keyMutation.keys[i];
+                operations[position] = ((long) key << 32) | position;
+                owners[position] = keyMutation;
+                keyIndices[position] = i;
+                ++position;
+            }
+        }
+        Arrays.sort(operations);
+        int[] parts = getShardParts(operations);
+        if(parts == null) {
+            applyOperations(operations, 0, operations.length, owners, keyIndices);
+        } else {
+            List<CompletableFuture<Void>> shardTasks = new ArrayList<>();
+            for(int part = 0; part + 1 < parts.length; ++part) {
+                int from = parts[part];
+                int to = parts[part + 1];
+                if(from < to) {
+                    shardTasks.add(CompletableFuture.runAsync(
+                            () -> applyOperations(operations, from, to, owners, keyIndices), this.shardWriters));
+                }
+            }
+            CompletableFuture.allOf(shardTasks.toArray(new CompletableFuture<?>[0])).join();
+        }
+        this.coalescedKeys.addAndGet(numberOfOperations);
+    }
+
+    /**
+     * Apply the given range of ordered operations one after another, skipping those of failed mutations.
+     * @param operations the encoded operations ordered by key, see applyCoalesced(List).
+     * @param from index of the first operation to apply.
+     * @param to index after the last operation to apply.
+     * @param owners the mutation of every operation, indexed by its position in queue order.
+     * @param keyIndices the index of the key of every operation within its mutation, indexed like owners.
+     */
+    private void applyOperations(long[] operations, int from, int to, KeyMutation<?>[] owners, int[] keyIndices) {
+        for(int i = from; i < to; ++i) {
+            int index = (int) operations[i];
+            KeyMutation<?> owner = owners[index];
+            if(owner.failure != null) {
+                continue;
+            }
+            int key = (int) (operations[i] >> 32);
+            try {
+                owner.applied[keyIndices[index]] = owner.insert ? this.bTree.insertElement(key) :
+                        this.bTree.deleteElement(key);
+            } catch(RuntimeException e) {
+                owner.failure = e;
+            }
+        }
+    }
+
+    /**
+     * Cut the ordered operations into the parts of the shards of a ShardedBTree: part i holds the operations with
+     * splitPoints[i - 1] <= key < splitPoints[i]. If a shard is rebalanced while the parts are applied, every key is
+     * still routed to its new shard by the ShardedBTree, the parts only decide which thread applies it.
+     * @param operations the encoded operations ordered by key.
+     * @return the index of the first operation of every part followed by the number of operations, null if the tree
+     *      is not sharded or all operations belong to the same shard.
+     */
+    private int[] getShardParts(long[] operations) {
+        if(this.shardWriters == null) {
+            return null;
+        }
+        int[] splitPoints = ((ShardedBTree) this.bTree).getSplitPoints();
+        int[] parts = new int[splitPoints.length + 2];
+        int nonEmptyParts = 0;
+        for(int i = 0; i < splitPoints.length; ++i) {
+            int index = Arrays.binarySearch(operations, (long) splitPoints[i] << 32);
+            parts[i + 1] = (index >= 0) ? index : -index - 1;
+            nonEmptyParts += (parts[i + 1] > parts[i]) ? 1 : 0;
+        }
+        parts[parts.length - 1] = operations.length;
+        nonEmptyParts += (operations.length > parts[parts.length - 2]) ? 1 : 0;
+        return (nonEmptyParts > 1) ? parts : null;
+    }
+
+    /* Standard getters */
+
+    public ReadWriteLock getTreeLock() {
+        return this.treeLock;
+    }
+
+    public int getQueuedMutations() {
+        return this.queue.size();
+    }
+
+    public long getAppliedBatches() {
+        return this.appliedBatches.get();
+    }
+
+    public long getAppliedMutations() {
+        return this.appliedMutations.get();
+    }
+
+    public long getCoalescedKeys() {
+        return this.coalescedKeys.get();
+    }
+
+    /**
+     * The result of an insert or delete.
+     * Contains the keys that were actually inserted or deleted, in the order they were given, the steps recorded
+     * after every one of them (empty if no steps were requested) and the time spent recording the steps.
+     * @param <S> type of the step representation.
+     */
+    public static class MutationResult<S> {
+        private final int[] appliedKeys;
+        private final List<S> steps;
+        private final long stepNanos;
+
+        private MutationResult(int[] appliedKeys, List<S> steps, long stepNanos) {
+            this.appliedKeys = appliedKeys;
+            this.steps = steps;
+            this.stepNanos = stepNanos;
+        }
+
+        /**
+         * Get the applied keys boxed into a new list.
+         * @return the applied keys in the order they were given.
+         */
+        public List<Integer> getAppliedKeys() {
+            return Arrays.stream(this.appliedKeys).boxed().collect(Collectors.toList());
+        }
+
+        public int getNumberOfAppliedKeys() {
+            return this.appliedKeys.length;
+        }
+
+        public List<S> getSteps() {
+            return this.steps;
+        }
+
+        public long getStepNanos() {
+            return this.stepNanos;
+        }
+    }
+
+    /**
+     * A queued mutation with the future to complete once it has been applied.
+     * @param <T> type of the result.
+     */
+    private abstract static class Mutation<T> {
+        protected final CompletableFuture<T> future = new CompletableFuture<>();
+        protected T result;
+        protected volatile RuntimeException failure;
+
+        /**
+         * Apply this mutation on its own and keep its result or failure.
+         * @param bTree the tree to apply the mutation to.
+         */
+        abstract void apply(OrderedIntIndex bTree);
+
+        /**
+         * Check whether this mutation may be applied together with others.
+         * @return true if it may be coalesced.
+         */
+        abstract boolean isCoalescable();
+
+        /**
+         * Complete the future with the kept result or failure. Called after the write lock has been released.
+         */
+        void complete() {
+            if(this.failure != null) {
+                this.future.completeExceptionally(this.failure);
+            } else {
+                this.future.complete(this.result);
+            }
+        }
+    }
+
+    /**
+     * An insert or delete of a list of keys.
+     * @param <S> type of the step representation.
+     */
+    private static class KeyMutation<S> extends Mutation<MutationResult<S>> {
+        private final boolean insert;
+        private final int[] keys;
+        private final Function<OrderedIntIndex, S> stepRecorder;
+        private boolean[] applied;
+
+        private KeyMutation(boolean insert, int[] keys, Function<OrderedIntIndex, S> stepRecorder) {
+            this.insert = insert;
+            this.keys = keys;
+            this.stepRecorder = stepRecorder;
+        }
+
+        @Override
+        void apply(OrderedIntIndex bTree) {
+            int[] appliedKeys = new int[this.keys.length];
+            int numberOfAppliedKeys = 0;
+            List<S> steps = new ArrayList<>();
+            long stepNanos = 0;
+            try {
+                for(int key : this.keys) {
+                    if(this.insert ? bTree.insertElement(key) : bTree.deleteElement(key)) {
+                        appliedKeys[numberOfAppliedKeys++] = key;
+                        if(this.stepRecorder != null) {
+                            long start = System.nanoTime();
+                            steps.add(this.stepRecorder.apply(bTree));
+                            stepNanos += System.nanoTime() - start;
+                        }
+                    }
+                }
+                this.result = new MutationResult<>(Arrays.copyOf(appliedKeys, numberOfAppliedKeys), steps, stepNanos);
+            } catch(RuntimeException e) {
+                this.failure = e;
+            }
+        }
+
+        @Override
+        boolean isCoalescable() {
+            return this.stepRecorder == null;
+        }
+
+        @Override
+        void complete() {
+            if(this.applied != null && this.failure == null) {      // applied coalesced
+                int[] appliedKeys = new int[this.keys.length];
+                int numberOfAppliedKeys = 0;
+                for(int i = 0; i < this.keys.length; ++i) {
+                    if(this.applied[i]) {
+                        appliedKeys[numberOfAppliedKeys++] = this.keys[i];
+                    }
+                }
+                this.result = new MutationResult<>(Arrays.copyOf(appliedKeys, numberOfAppliedKeys), new ArrayList<>(),
+                        0);
+            }
+            super.complete();
+        }
+    }
+
+    /**
+     * An arbitrary task run on the writer thread.
+     * @param <T> type of the result.
+     */
+    private static class TaskMutation<T> extends Mutation<T> {
+        private final Supplier<T> task;
+
+        private TaskMutation(Supplier<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        void apply(OrderedIntIndex bTree) {
+            try {
+                this.result = this.task.get();
+            } catch(RuntimeException e) {
+                this.failure = e;
+            }
+        }
+
+        @Override
+        boolean isCoalescable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.dhbw.btreebackend.push;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.BTreeMutationListener;
+import com.dhbw.btreebackend.btreeimplementation.Node;
+import com.dhbw.btreebackend.btreeimplementation.NodeChangeListener;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.json.BTreeColumns;
+import com.dhbw.btreebackend.json.BTreeToJson;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the changes of the BTree to the WebSocket subscribers of TOPIC.
+ * Registers itself as mutation listener of the BTree and counts every mutation as a new version of the tree. The
+ * affected keys are collected until the next publication, which happens at most every 'btree.push.interval-millis'
+ * (100 by default), so any number of mutations in between is coalesced into a single message.
+ *
+ * A message contains the new version, the version of the previous message, the affected keys and ranges, whether the
+ * tree was rebuilt (cleared, order changed or snapshot loaded), the order, the UUID of the root and the nodes that
+ * changed since the previous message in the format of BTreeToJson, as well as the UUIDs of the nodes removed since then.
+ * The changed and removed nodes are reported by the BTree itself as NodeChangeListener while it inserts, deletes,
+ * splits, rotates, merges and deletes ranges, so publishing never walks the tree. Only a rebuild replaces all nodes
+ * without reporting them: its message contains all nodes of the new tree and no removed ones. A client that received
+ * the whole tree by subscribing to /app/tree keeps it up to date by replacing and removing the listed nodes of every
+ * message whose version is greater than the version of its tree, and by replacing its tree by the listed nodes if the
+ * tree was rebuilt.
+ *
+ * Engines without BTree nodes and the sharded BTree, which has no single root (see BTreeColumns.getSingleTree()),
+ * publish the same messages without nodes and with "Root": null.
+ *
+ * Nothing is collected or published while TOPIC has no subscribers, which are counted from the subscribe,
+ * unsubscribe and disconnect events of the STOMP sessions. When the first client subscribes, the BTree starts reporting
+ * its nodes and the next message continues from the version at that moment. So a client subscribes to TOPIC before
+ * /app/tree, otherwise the tree it receives may be older than the first message.
+ *
+ * The message is built once under the read lock of the mutation pipeline and sent to all subscribers as the same
+ * payload. Slow subscribers are disconnected by the transport limits set in WebSocketConfig.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class TreeChangePublisher implements BTreeMutationListener, NodeChangeListener {
+    public static final String TOPIC = "/topic/tree";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreeChangePublisher.class);
+
+    private final OrderedIntIndex bTree;
+    private final BTree nodeTree;
+    private final MutationPipeline mutationPipeline;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long intervalMillis;
+    private final TreeSet<Integer> pendingKeys = new TreeSet<>();
+    private final List<int[]> pendingRanges = new ArrayList<>();
+    private final Set<Node> changedNodes = new LinkedHashSet<>();
+    private final Set<UUID> removedNodes = new LinkedHashSet<>();
+    private final Map<String, Set<String>> subscriptions = new HashMap<>();
+    private boolean pendingRebuild;
+    private volatile boolean tracking;
+    private volatile long version;
+    private long publishedVersion;
+    private ScheduledExecutorService scheduler;
+
+    public TreeChangePublisher(OrderedIntIndex bTree, MutationPipeline mutationPipeline,
+                               SimpMessagingTemplate messagingTemplate,
+                               @Value("${btree.push.interval-millis:100}") long intervalMillis) {
+        this.bTree = bTree;
+        this.nodeTree = BTreeColumns.getSingleTree(bTree);
+        this.mutationPipeline = mutationPipeline;
+        this.messagingTemplate = messagingTemplate;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Start listening to the BTree's mutations and publishing the changes.
+     */
+    @PostConstruct
+    public void start() {
+        this.bTree.addMutationListener(this);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tree-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::publishChanges, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop listening to mutations and publishing.
+     */
+    @PreDestroy
+    public void stop() {
+        this.bTree.removeMutationListener(this);
+        this.mutationPipeline.read(() -> {
+            if(this.nodeTree != null && this.nodeTree.getNodeChangeListener() == this) {
+                this.nodeTree.setNodeChangeListener(null);
+            }
+            return null;
+        });
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * Count a subscription to TOPIC.
+     * @param event the event of the subscribing session.
+     */
+    @EventListener
+    public void subscribed(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if(TOPIC.equals(headers.getDestination()) && headers.getSessionId() != null) {
+            updateSubscriptions(headers.getSessionId(), headers.getSubscriptionId(), true);
+        }
+    }
+
+    /**
+     * Remove a subscription to TOPIC, if the given subscription is one.
+     * @param event the event of the unsubscribing session.
+     */
+    @EventListener
+    public void unsubscribed(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if(headers.getSessionId() != null) {
+            updateSubscriptions(headers.getSessionId(), headers.getSubscriptionId(), false);
+        }
+    }
+
+    /**
+     * Remove all subscriptions of a closed session.
+     * @param event the event of the closed session.
+     */
+    @EventListener
+    public void disconnected(SessionDisconnectEvent event) {
+        updateSubscriptions(event.getSessionId(), null, false);
+    }
+
+    /**
+     * Add or remove a subscription to TOPIC and start or stop tracking the changes if it is the first or was the last
+     * one. Holds the read lock of the mutation pipeline, so no mutation is half applied when tracking starts and the
+     * next message continues from the current version.
+     * @param sessionId id of the session.
+     * @param subscriptionId id of the subscription within the session, null to remove all of the session.
+     * @param subscribe true to add the subscription, false to remove it.
+     */
+    private void updateSubscriptions(String sessionId, String subscriptionId, boolean subscribe) {
+        this.mutationPipeline.read(() -> {
+            synchronized(this) {
+                if(subscribe) {
+                    this.subscriptions.computeIfAbsent(sessionId, id -> new HashSet<>()).add(subscriptionId);
+                } else if(subscriptionId == null) {
+                    this.subscriptions.remove(sessionId);
+                } else if(this.subscriptions.containsKey(sessionId)) {
+                    this.subscriptions.get(sessionId).remove(subscriptionId);
+                    if(this.subscriptions.get(sessionId).isEmpty()) {
+                        this.subscriptions.remove(sessionId);
+                    }
+                }
+                boolean subscribed = !this.subscriptions.isEmpty();
+                if(subscribed != this.tracking) {
+                    this.tracking = subscribed;
+                    if(this.nodeTree != null) {
+                        this.nodeTree.setNodeChangeListener(subscribed ? this : null);
+                    }
+                    this.pendingKeys.clear();
+                    this.pendingRanges.clear();
+                    this.changedNodes.clear();
+                    this.removedNodes.clear();
+                    this.pendingRebuild = false;
+                    this.publishedVersion = this.version;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void elementInserted(int elementKey) {
+        if(this.tracking) {
+            this.pendingKeys.add(elementKey);
+        }
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void elementDeleted(int elementKey) {
+        if(this.tracking) {
+            this.pendingKeys.add(elementKey);
+        }
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void rangeDeleted(int lowerBound, int upperBound) {
+        if(this.tracking) {
+            this.pendingRanges.add(new int[] {lowerBound, upperBound});
+        }
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void orderChanged(int order) {
+        this.pendingRebuild = true;
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void cleared() {
+        this.pendingRebuild = true;
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void snapshotLoaded() {
+        this.pendingRebuild = true;
+        ++this.version;
+    }
+
+    /**
+     * A compaction changes no keys, but its changed nodes have to be published, so it counts as a new version.
+     */
+    @Override
+    public synchronized void compacted() {
+        ++this.version;
+    }
+
+    @Override
+    public synchronized void nodeChanged(Node node) {
+        this.changedNodes.add(node);
+    }
+
+    @Override
+    public synchronized void nodeRemoved(Node node) {
+        this.changedNodes.remove(node);
+        this.removedNodes.add(node.getUuid());
+    }
+
+    /**
+     * Publish the changes since the last publication, if there are any and TOPIC has subscribers. Runs on the
+     * scheduler thread.
+     */
+    private void publishChanges() {
+        if(!this.tracking) {
+            return;
+        }
+        try {
+            String message = this.mutationPipeline.read(this::createChangeMessage);
+            if(message != null) {
+                this.messagingTemplate.convertAndSend(TOPIC, message);
+            }
+        } catch(RuntimeException e) {
+            LOGGER.warn("Publishing tree changes failed", e);
+        }
+    }
+
+    /**
+     * Take the pending changes and create the message describing them. Must be called while holding the read lock of
+     * the mutation pipeline, so the version, the nodes and the tree belong together.
+     * @return the JSON message, null if nothing changed or nothing is tracked.
+     */
+    private String createChangeMessage() {
+        List<Integer> keys;
+        List<int[]> ranges;
+        List<Node> nodes;
+        List<UUID> removed;
+        boolean rebuild;
+        long currentVersion;
+        long previousVersion;
+        synchronized(this) {
+            currentVersion = this.version;
+            previousVersion = this.publishedVersion;
+            if(!this.tracking || currentVersion == previousVersion) {
+                return null;
+            }
+            keys = new ArrayList<>(this.pendingKeys);
+            ranges = new ArrayList<>(this.pendingRanges);
+            rebuild = this.pendingRebuild;
+            nodes = rebuild ? getAllNodes() : new ArrayList<>(this.changedNodes);
+            removed = rebuild ? new ArrayList<>() : new ArrayList<>(this.removedNodes);
+            this.pendingKeys.clear();
+            this.pendingRanges.clear();
+            this.changedNodes.clear();
+            this.removedNodes.clear();
+            this.pendingRebuild = false;
+            this.publishedVersion = currentVersion;
+        }
+        Node root = (this.nodeTree != null) ? this.nodeTree.getRoot() : null;
+        StringWriter message = new StringWriter();
+        try(JsonGenerator generator = BTreeToJson.createGenerator(message)) {
+            generator.writeStartObject()
+                    .write("Version", currentVersion)
+                    .write("PreviousVersion", previousVersion)
+                    .writeStartArray("Keys");
+            keys.forEach(generator::write);
+            generator.writeEnd().writeStartArray("Ranges");
+            ranges.forEach(range -> generator.writeStartArray().write(range[0]).write(range[1]).writeEnd());
+            generator.writeEnd()
+                    .write("Rebuilt", rebuild)
+                    .write("Order", this.bTree.getOrder())
+                    .writeStartArray("Nodes");
+            nodes.forEach(node -> BTreeToJson.writeNodeJson(node, generator));
+            generator.writeEnd().writeStartArray("Removed");
+            removed.forEach(uuid -> generator.write(uuid.toString()));
+            generator.writeEnd();
+            if(root != null) {
+                generator.write("Root", root.getUuid().toString());
+            } else {
+                generator.writeNull("Root");
+            }
+            generator.writeEnd();
+        }
+        return message.toString();
+    }
+
+    /**
+     * Get all nodes of the tree, which are published after a rebuild, as it replaced every node without reporting it.
+     * @return the nodes, empty if the tree is empty or has no BTree nodes.
+     */
+    private List<Node> getAllNodes() {
+        List<Node> nodes = new ArrayList<>();
+        Node root = (this.nodeTree != null) ? this.nodeTree.getRoot() : null;
+        if(root == null) {
+            return nodes;
+        }
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()) {
+            Node node = stack.pop();
+            nodes.add(node);
+            for(int i = 0; !node.isLeaf() && i <= node.getNumberOfElements(); ++i) {
+                stack.push(node.getChild(i));
+            }
+        }
+        return nodes;
+    }
+
+    /* Standard getters */
+
+    public long getVersion() {
+        return this.version;
+    }
+}
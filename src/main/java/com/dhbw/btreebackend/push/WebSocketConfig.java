@@ -0,0 +1,43 @@
+package com.dhbw.btreebackend.push;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+/**
+ * Configures the STOMP over WebSocket endpoint at /ws.
+ * Clients subscribe to /topic/tree for the changes published by TreeChangePublisher and to /app/tree once to receive
+ * the current tree the changes apply to.
+ *
+ * A session whose outbound messages are not written within SEND_TIME_LIMIT_MILLIS or whose unsent messages exceed
+ * SEND_BUFFER_SIZE_LIMIT bytes is closed, so a slow consumer cannot hold back the others or exhaust the memory. It can
+ * reconnect and subscribe again.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private static final int SEND_TIME_LIMIT_MILLIS = 10_000;
+    private static final int SEND_BUFFER_SIZE_LIMIT = 1 << 20;
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOrigins("*");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(SEND_TIME_LIMIT_MILLIS).setSendBufferSizeLimit(SEND_BUFFER_SIZE_LIMIT);
+    }
+}
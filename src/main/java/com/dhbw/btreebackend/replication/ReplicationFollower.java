@@ -0,0 +1,267 @@
+package com.dhbw.btreebackend.replication;
+
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The secondary side of the replication. Active if the property 'btree.replication.role' is 'follower'.
+ * Connects to the leader given by 'btree.replication.leader-host' and 'btree.replication.leader-port'
+ * (localhost:7070 by default), loads the snapshot sent by the leader into the local BTree and applies the following
+ * batches of operations in order. If the connection is lost, it reconnects after RECONNECT_DELAY_MILLIS and catches up
+ * from a new snapshot.
+ *
+ * Snapshots and batches are applied as a single task of the mutation pipeline, i.e. on its writer thread while holding
+ * the write lock. Read requests hold the pipeline's read lock, so they always see the state after a complete batch. The
+ * REST layer rejects mutations while this component is active.
+ *
+ * Tracks the sequence number of the last applied operation, the latest sequence number reported by the leader and the
+ * delay between the leader sending a frame and this follower receiving it, to report the replication lag.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "btree.replication.role", havingValue = "follower")
+public class ReplicationFollower {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationFollower.class);
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final OrderedIntIndex bTree;
+    private final MutationPipeline mutationPipeline;
+    private final String leaderHost;
+    private final int leaderPort;
+    private final AtomicLong appliedOperations = new AtomicLong();
+    private final AtomicLong loadedSnapshots = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private volatile long appliedSequence = -1;
+    private volatile long leaderSequence = -1;
+    private volatile long lastFrameDelayMillis;
+    private volatile long lastFrameReceivedMillis;
+
+    public ReplicationFollower(OrderedIntIndex bTree, MutationPipeline mutationPipeline,
+                               @Value("${btree.replication.leader-host:localhost}") String leaderHost,
+                               @Value("${btree.replication.leader-port:7070}") int leaderPort) {
+        this.bTree = bTree;
+        this.mutationPipeline = mutationPipeline;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+    }
+
+    /**
+     * Start the thread replicating from the leader.
+     */
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        Thread replicationThread = new Thread(this::replicate, "replication-follower");
+        replicationThread.setDaemon(true);
+        replicationThread.start();
+    }
+
+    /**
+     * Stop replicating and close the connection to the leader.
+     */
+    @PreDestroy
+    public void stop() {
+        this.running = false;
+        try {
+            if(this.socket != null) {
+                this.socket.close();
+            }
+        } catch(IOException ignored) {
+            // the connection is going away anyway
+        }
+    }
+
+    /**
+     * Connect to the leader and apply the received frames until stopped. Reconnect after connection failures.
+     */
+    private void replicate() {
+        while(this.running) {
+            try(Socket leaderSocket = new Socket(this.leaderHost, this.leaderPort)) {
+                this.socket = leaderSocket;
+                leaderSocket.setTcpNoDelay(true);
+                ReplicationProtocol.writeHello(
+                        new DataOutputStream(new BufferedOutputStream(leaderSocket.getOutputStream())));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(leaderSocket.getInputStream()));
+                this.connected = true;
+                LOGGER.info("Replicating from leader {}:{}", this.leaderHost, this.leaderPort);
+                while(this.running) {
+                    readFrame(in);
+                }
+            } catch(IOException e) {
+                if(this.running) {
+                    LOGGER.warn("Replication from leader {}:{} failed: {}", this.leaderHost, this.leaderPort,
+                            e.getMessage());
+                }
+            } finally {
+                this.connected = false;
+            }
+            sleepBeforeReconnect();
+        }
+    }
+
+    /**
+     * Read a single frame from the leader and apply it.
+     * @param in the stream to read from.
+     * @throws IOException if reading fails or the frame type is unknown.
+     */
+    private void readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte frameType = in.readByte();
+        this.receivedBytes.addAndGet(Integer.BYTES + length);
+        this.lastFrameReceivedMillis = System.currentTimeMillis();
+        switch(frameType) {
+            case ReplicationProtocol.SNAPSHOT:
+                readSnapshot(in, ReplicationProtocol.getSnapshotBytes(length));
+                break;
+            case ReplicationProtocol.BATCH:
+                readBatch(in);
+                break;
+            case ReplicationProtocol.HEARTBEAT:
+                this.leaderSequence = in.readLong();
+                this.lastFrameDelayMillis = this.lastFrameReceivedMillis - in.readLong();
+                break;
+            default:
+                throw new IOException("Unknown replication frame type " + frameType);
+        }
+    }
+
+    /**
+     * Replace the local tree with the binary snapshot sent by the leader. The snapshot is read into a byte array first
+     * and loaded by OrderedIntIndex.loadSnapshot in a single task of the mutation pipeline, so the nodes are built
+     * without inserting the keys one by one and readers never see a partially loaded tree.
+     * @param in the stream to read from, positioned after the frame type.
+     * @param snapshotBytes number of bytes of the binary snapshot following the sequence number.
+     * @throws IOException if reading fails or the frame contains no valid snapshot.
+     */
+    private void readSnapshot(DataInputStream in, int snapshotBytes) throws IOException {
+        long sequence = in.readLong();
+        byte[] snapshot = new byte[snapshotBytes];
+        in.readFully(snapshot);
+        IOException failure = this.mutationPipeline.execute(() -> {
+            try {
+                this.bTree.loadSnapshot(ByteBuffer.wrap(snapshot));
+            } catch(IOException e) {
+                return e;
+            }
+            this.appliedSequence = sequence;
+            this.leaderSequence = Math.max(this.leaderSequence, sequence);
+            return null;
+        }).join();
+        if(failure != null) {
+            throw failure;
+        }
+        this.loadedSnapshots.incrementAndGet();
+        LOGGER.info("Loaded replication snapshot of {} bytes at sequence {}", snapshotBytes, sequence);
+    }
+
+    /**
+     * Apply a batch of operations sent by the leader.
+     * @param in the stream to read from, positioned after the frame type.
+     * @throws IOException if reading fails or the batch does not follow the last applied operation.
+     */
+    private void readBatch(DataInputStream in) throws IOException {
+        long firstSequence = in.readLong();
+        this.lastFrameDelayMillis = this.lastFrameReceivedMillis - in.readLong();
+        int numberOfOperations = in.readInt();
+        if(firstSequence != this.appliedSequence + 1) {
+            throw new IOException("Replication gap: expected sequence " + (this.appliedSequence + 1)
+                    + " but received " + firstSequence);
+        }
+        byte[] types = new byte[numberOfOperations];
+        int[] arguments = new int[numberOfOperations];
+        int[] secondArguments = new int[numberOfOperations];
+        for(int i = 0; i < numberOfOperations; ++i) {
+            types[i] = in.readByte();
+            arguments[i] = in.readInt();
+            if(ReplicationOperation.hasSecondArgument(types[i])) {
+                secondArguments[i] = in.readInt();
+            }
+        }
+        this.mutationPipeline.execute(() -> {
+            for(int i = 0; i < numberOfOperations; ++i) {
+                ReplicationOperation.apply(types[i], arguments[i], secondArguments[i], this.bTree);
+            }
+            this.appliedSequence = firstSequence + numberOfOperations - 1;
+            this.leaderSequence = Math.max(this.leaderSequence, this.appliedSequence);
+            return null;
+        }).join();
+        this.appliedOperations.addAndGet(numberOfOperations);
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.running = false;
+        }
+    }
+
+    /**
+     * Get the number of operations the leader has numbered but this follower has not applied yet, as far as known from
+     * the last frame received.
+     * @return lag in operations, 0 before the first snapshot was loaded.
+     */
+    public long getLagOperations() {
+        return Math.max(0, this.leaderSequence - this.appliedSequence);
+    }
+
+    /* Standard getters */
+
+    public String getLeaderAddress() {
+        return this.leaderHost + ":" + this.leaderPort;
+    }
+
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    public long getAppliedSequence() {
+        return this.appliedSequence;
+    }
+
+    public long getLeaderSequence() {
+        return this.leaderSequence;
+    }
+
+    public long getLastFrameDelayMillis() {
+        return this.lastFrameDelayMillis;
+    }
+
+    public long getLastFrameReceivedMillis() {
+        return this.lastFrameReceivedMillis;
+    }
+
+    public long getAppliedOperations() {
+        return this.appliedOperations.get();
+    }
+
+    public long getLoadedSnapshots() {
+        return this.loadedSnapshots.get();
+    }
+
+    public long getReceivedBytes() {
+        return this.receivedBytes.get();
+    }
+}
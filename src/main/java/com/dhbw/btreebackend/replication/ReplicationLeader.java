@@ -0,0 +1,329 @@
+package com.dhbw.btreebackend.replication;
+
+import com.dhbw.btreebackend.btreeimplementation.BTreeMutationListener;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The primary side of the replication. Active if the property 'btree.replication.role' is 'leader'.
+ * Listens for followers on the port given by 'btree.replication.port' (7070 by default) and registers itself as
+ * mutation listener of the BTree. Every insert, delete, range delete, setOrder and clear gets the next sequence number
+ * and is queued for every connected follower.
+ *
+ * A newly connected follower first receives a binary snapshot of the tree together with the sequence number it
+ * reflects, afterwards the operations following that sequence number in batches of up to MAX_BATCH_SIZE operations. If
+ * nothing happens, a heartbeat carrying the current sequence number is sent every HEARTBEAT_INTERVAL_MILLIS so
+ * followers can report their lag. A follower whose queue overflows is disconnected; it reconnects and catches up from
+ * a new snapshot. The same happens to all followers when a snapshot is loaded into the leader's tree.
+ *
+ * Operations are idempotent, so an operation that is already contained in a snapshot taken concurrently to it can
+ * safely be applied once more by the follower.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "btree.replication.role", havingValue = "leader")
+public class ReplicationLeader implements BTreeMutationListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationLeader.class);
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private final OrderedIntIndex bTree;
+    private final MutationPipeline mutationPipeline;
+    private final int port;
+    private final List<FollowerSession> sessions = new CopyOnWriteArrayList<>();
+    private long sequence;
+    private volatile ServerSocket serverSocket;
+
+    public ReplicationLeader(OrderedIntIndex bTree, MutationPipeline mutationPipeline,
+                             @Value("${btree.replication.port:7070}") int port) {
+        this.bTree = bTree;
+        this.mutationPipeline = mutationPipeline;
+        this.port = port;
+    }
+
+    /**
+     * Open the server socket, start accepting followers and start listening to the BTree's mutations.
+     * @throws IOException if the port cannot be bound.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket(this.port);
+        this.bTree.addMutationListener(this);
+        Thread acceptThread = new Thread(this::acceptFollowers, "replication-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOGGER.info("Replication leader listening on port {}", this.port);
+    }
+
+    /**
+     * Stop listening to mutations and close the server socket and all follower connections.
+     */
+    @PreDestroy
+    public void stop() {
+        this.bTree.removeMutationListener(this);
+        closeQuietly(this.serverSocket);
+        for(FollowerSession session : this.sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Accept followers until the server socket is closed. The handshake of each connection runs on its own thread, so
+     * a connection that never sends its HELLO does not keep other followers from connecting.
+     */
+    private void acceptFollowers() {
+        while(!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                Thread handshakeThread = new Thread(() -> handshake(socket),
+                        "replication-handshake-" + socket.getRemoteSocketAddress());
+                handshakeThread.setDaemon(true);
+                handshakeThread.start();
+            } catch(IOException e) {
+                if(!this.serverSocket.isClosed()) {
+                    LOGGER.warn("Accepting replication follower failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the HELLO of a new connection within HANDSHAKE_TIMEOUT_MILLIS and register it as follower, which then gets
+     * its own session with a sender thread. The connection is closed if the handshake fails or times out.
+     * @param socket the new connection.
+     */
+    private void handshake(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            ReplicationProtocol.readHello(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            socket.setSoTimeout(0);
+            registerFollower(socket);
+        } catch(IOException e) {
+            LOGGER.warn("Replication handshake with {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Write a binary snapshot of the tree into memory and register a session for the follower starting right after the
+     * snapshot's sequence number. Both happen while holding this leader's monitor, so no operation is numbered in
+     * between, and the read lock of the mutation pipeline, so the writer thread does not change the tree while it is
+     * read. The read lock is taken first, as the writer thread publishes while holding the write lock.
+     * The snapshot is streamed from the tree into a byte array of about 4 bytes per key and sent by the session's
+     * thread after the locks are released, so a slow follower does not hold up the writer.
+     * @param socket the follower's connection.
+     */
+    private void registerFollower(Socket socket) {
+        FollowerSession session = this.mutationPipeline.read(() -> {
+            synchronized(this) {
+                ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+                try {
+                    this.bTree.writeSnapshot(snapshot);
+                } catch(IOException e) {
+                    // a ByteArrayOutputStream does not fail
+                    throw new UncheckedIOException(e);
+                }
+                FollowerSession newSession = new FollowerSession(socket, this.sequence, snapshot);
+                this.sessions.add(newSession);
+                return newSession;
+            }
+        });
+        session.start();
+        LOGGER.info("Replication follower {} connected", socket.getRemoteSocketAddress());
+    }
+
+    /**
+     * Number the given operation and queue it for every follower. Followers whose queue is full are disconnected.
+     * @param type type of the operation.
+     * @param argument argument of the operation.
+     */
+    private void publish(byte type, int argument) {
+        publish(type, argument, 0);
+    }
+
+    /**
+     * Number the given operation with two arguments and queue it for every follower. Followers whose queue is full are
+     * disconnected.
+     * @param type type of the operation.
+     * @param argument argument of the operation.
+     * @param secondArgument second argument of the operation.
+     */
+    private synchronized void publish(byte type, int argument, int secondArgument) {
+        ReplicationOperation operation = new ReplicationOperation(type, argument, secondArgument, ++this.sequence);
+        for(FollowerSession session : this.sessions) {
+            if(!session.queue.offer(operation)) {
+                LOGGER.warn("Replication follower {} is too slow, disconnecting", session.getAddress());
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public void elementInserted(int elementKey) {
+        publish(ReplicationOperation.INSERT, elementKey);
+    }
+
+    @Override
+    public void elementDeleted(int elementKey) {
+        publish(ReplicationOperation.DELETE, elementKey);
+    }
+
+    @Override
+    public void rangeDeleted(int lowerBound, int upperBound) {
+        publish(ReplicationOperation.DELETE_RANGE, lowerBound, upperBound);
+    }
+
+    @Override
+    public void orderChanged(int order) {
+        publish(ReplicationOperation.SET_ORDER, order);
+    }
+
+    @Override
+    public void cleared() {
+        publish(ReplicationOperation.CLEAR, 0);
+    }
+
+    /**
+     * A loaded snapshot is not sent as an operation. Instead all followers are disconnected, so they reconnect and
+     * receive a new snapshot of the tree.
+     */
+    @Override
+    public synchronized void snapshotLoaded() {
+        for(FollowerSession session : this.sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * A compaction changes no keys, so it is not sent. Followers with relaxed deletes compact their own tree.
+     */
+    @Override
+    public void compacted() {
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            if(closeable != null) {
+                closeable.close();
+            }
+        } catch(IOException ignored) {
+            // nothing left to do for a connection that is going away
+        }
+    }
+
+    /* Standard getters */
+
+    public synchronized long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Get the port followers connect to. This is the port actually bound, so configuring port 0 lets the system choose
+     * a free one.
+     * @return the port.
+     */
+    public int getPort() {
+        ServerSocket boundSocket = this.serverSocket;
+        return (boundSocket != null) ? boundSocket.getLocalPort() : this.port;
+    }
+
+    public List<FollowerSession> getSessions() {
+        return new ArrayList<>(this.sessions);
+    }
+
+    /**
+     * The connection to a single follower.
+     * Contains the socket, the queue of operations not yet sent and the sequence number of the last operation sent.
+     * A dedicated thread sends the snapshot, then drains the queue in batches and sends heartbeats while idle.
+     */
+    public class FollowerSession {
+        private final Socket socket;
+        private final BlockingQueue<ReplicationOperation> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private ByteArrayOutputStream snapshot;
+        private volatile long sentSequence;
+
+        private FollowerSession(Socket socket, long snapshotSequence, ByteArrayOutputStream snapshot) {
+            this.socket = socket;
+            this.sentSequence = snapshotSequence;
+            this.snapshot = snapshot;
+        }
+
+        private void start() {
+            Thread senderThread = new Thread(this::send, "replication-sender-" + getAddress());
+            senderThread.setDaemon(true);
+            senderThread.start();
+        }
+
+        private void send() {
+            List<ReplicationOperation> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+                ReplicationProtocol.writeSnapshot(out, this.sentSequence, this.snapshot);
+                this.snapshot = null;
+                while(!this.socket.isClosed()) {
+                    ReplicationOperation first = this.queue.poll(HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if(first == null) {
+                        ReplicationProtocol.writeHeartbeat(out, getSequence());
+                        continue;
+                    }
+                    batch.add(first);
+                    this.queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    ReplicationProtocol.writeBatch(out, batch);
+                    this.sentSequence = batch.get(batch.size() - 1).getSequence();
+                    batch.clear();
+                }
+            } catch(IOException e) {
+                LOGGER.info("Replication follower {} disconnected: {}", getAddress(), e.getMessage());
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            sessions.remove(this);
+            closeQuietly(this.socket);
+        }
+
+        public String getAddress() {
+            return String.valueOf(this.socket.getRemoteSocketAddress());
+        }
+
+        public long getSentSequence() {
+            return this.sentSequence;
+        }
+
+        public int getQueuedOperations() {
+            return this.queue.size();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dhbw.btreebackend.replication;
+
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+
+/**
+ * This class represents a single entry of the replication log.
+ * Contains the type of the mutation, its argument (the key for insert and delete, the lower bound for a range
+ * delete, the order for setOrder, 0 for clear), its second argument (the upper bound for a range delete, 0 otherwise)
+ * and the sequence number assigned by the leader.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public class ReplicationOperation {
+    public static final byte INSERT = 1;
+    public static final byte DELETE = 2;
+    public static final byte SET_ORDER = 3;
+    public static final byte CLEAR = 4;
+    public static final byte DELETE_RANGE = 5;
+
+    private final byte type;
+    private final int argument;
+    private final int secondArgument;
+    private final long sequence;
+
+    public ReplicationOperation(byte type, int argument, int secondArgument, long sequence) {
+        this.type = type;
+        this.argument = argument;
+        this.secondArgument = secondArgument;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Check whether operations of the given type carry a second argument on the wire.
+     * @param type the type of the operation.
+     * @return true for range deletes.
+     */
+    public static boolean hasSecondArgument(byte type) {
+        return type == DELETE_RANGE;
+    }
+
+    /**
+     * Apply an operation to the given BTree.
+     * @param type the type of the operation.
+     * @param argument the argument of the operation.
+     * @param secondArgument the second argument of the operation.
+     * @param bTree the BTree to apply the operation to.
+     */
+    public static void apply(byte type, int argument, int secondArgument, OrderedIntIndex bTree) {
+        switch(type) {
+            case INSERT:
+                bTree.insertElement(argument);
+                break;
+            case DELETE:
+                bTree.deleteElement(argument);
+                break;
+            case SET_ORDER:
+                bTree.setOrder(argument);
+                break;
+            case CLEAR:
+                bTree.clear();
+                break;
+            case DELETE_RANGE:
+                bTree.deleteRange(argument, secondArgument);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown replication operation " + type);
+        }
+    }
+
+    /* Standard getters */
+
+    public byte getType() {
+        return this.type;
+    }
+
+    public int getArgument() {
+        return this.argument;
+    }
+
+    public int getSecondArgument() {
+        return this.secondArgument;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+}
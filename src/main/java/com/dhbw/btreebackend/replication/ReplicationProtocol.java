@@ -0,0 +1,135 @@
+package com.dhbw.btreebackend.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This class defines the frames exchanged between a replication leader and its followers over TCP.
+ * Every frame starts with an int holding the number of bytes that follow, then a byte identifying the frame type.
+ * All numbers are written big-endian by DataOutputStream.
+ *
+ * - HELLO (follower to leader): int protocol version.
+ * - SNAPSHOT (leader to follower): long sequence of the last operation contained, then the binary snapshot of the tree
+ *      in the format of BTreeSnapshot up to the end of the frame, so the follower loads it without inserting the keys
+ *      one by one.
+ * - BATCH (leader to follower): long sequence of the first operation, long leader time in millis when the batch was
+ *      sent, int number of operations, then per operation a byte type and an int argument (the key for insert and
+ *      delete, the lower bound for a range delete, the order for setOrder, 0 for clear). Range deletes are followed by
+ *      a second int holding the upper bound. The operations have consecutive sequence numbers.
+ * - HEARTBEAT (leader to follower): long current leader sequence, long leader time in millis.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public final class ReplicationProtocol {
+    public static final int VERSION = 3;
+
+    public static final byte HELLO = 1;
+    public static final byte SNAPSHOT = 2;
+    public static final byte BATCH = 3;
+    public static final byte HEARTBEAT = 4;
+
+    private static final int OPERATION_BYTES = Byte.BYTES + Integer.BYTES;
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * Write a HELLO frame.
+     * @param out the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void writeHello(DataOutputStream out) throws IOException {
+        out.writeInt(Byte.BYTES + Integer.BYTES);
+        out.writeByte(HELLO);
+        out.writeInt(VERSION);
+        out.flush();
+    }
+
+    /**
+     * Read a HELLO frame and check the protocol version.
+     * @param in the stream to read from.
+     * @throws IOException if reading fails or the frame is no HELLO frame of the supported version.
+     */
+    public static void readHello(DataInputStream in) throws IOException {
+        in.readInt();
+        if(in.readByte() != HELLO || in.readInt() != VERSION) {
+            throw new IOException("Unsupported replication handshake.");
+        }
+    }
+
+    /**
+     * Write a SNAPSHOT frame.
+     * @param out the stream to write to.
+     * @param sequence sequence number of the last operation contained in the snapshot.
+     * @param snapshot the binary snapshot of the tree, written by OrderedIntIndex.writeSnapshot.
+     * @throws IOException if writing fails.
+     */
+    public static void writeSnapshot(DataOutputStream out, long sequence, ByteArrayOutputStream snapshot)
+            throws IOException {
+        out.writeInt(Byte.BYTES + Long.BYTES + snapshot.size());
+        out.writeByte(SNAPSHOT);
+        out.writeLong(sequence);
+        snapshot.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Get the number of bytes of the binary snapshot contained in a SNAPSHOT frame.
+     * @param frameLength the length of the frame as read from its first int.
+     * @return the number of bytes following the sequence number.
+     * @throws IOException if the frame is too short to hold a sequence number.
+     */
+    public static int getSnapshotBytes(int frameLength) throws IOException {
+        int snapshotBytes = frameLength - Byte.BYTES - Long.BYTES;
+        if(snapshotBytes < 0) {
+            throw new IOException("Replication snapshot frame too short.");
+        }
+        return snapshotBytes;
+    }
+
+    /**
+     * Write a BATCH frame.
+     * @param out the stream to write to.
+     * @param operations the operations to send, with consecutive sequence numbers.
+     * @throws IOException if writing fails.
+     */
+    public static void writeBatch(DataOutputStream out, List<ReplicationOperation> operations) throws IOException {
+        int length = Byte.BYTES + 2 * Long.BYTES + Integer.BYTES + operations.size() * OPERATION_BYTES;
+        for(ReplicationOperation operation : operations) {
+            if(ReplicationOperation.hasSecondArgument(operation.getType())) {
+                length += Integer.BYTES;
+            }
+        }
+        out.writeInt(length);
+        out.writeByte(BATCH);
+        out.writeLong(operations.get(0).getSequence());
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(operations.size());
+        for(ReplicationOperation operation : operations) {
+            out.writeByte(operation.getType());
+            out.writeInt(operation.getArgument());
+            if(ReplicationOperation.hasSecondArgument(operation.getType())) {
+                out.writeInt(operation.getSecondArgument());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a HEARTBEAT frame.
+     * @param out the stream to write to.
+     * @param sequence the current sequence number of the leader.
+     * @throws IOException if writing fails.
+     */
+    public static void writeHeartbeat(DataOutputStream out, long sequence) throws IOException {
+        out.writeInt(Byte.BYTES + 2 * Long.BYTES);
+        out.writeByte(HEARTBEAT);
+        out.writeLong(sequence);
+        out.writeLong(System.currentTimeMillis());
+        out.flush();
+    }
+}
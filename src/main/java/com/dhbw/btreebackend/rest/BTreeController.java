@@ -1,8 +1,19 @@
 package com.dhbw.btreebackend.rest;
 
 import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.BTreeBatchSearchResult;
 import com.dhbw.btreebackend.btreeimplementation.BTreeSearchResult;
-import com.dhbw.btreebackend.json.BTreeToJson;
+import com.dhbw.btreebackend.btreeimplementation.BTreeView;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.json.BTreeColumns;
+import com.dhbw.btreebackend.json.BTreeToColumnar;
+import com.dhbw.btreebackend.json.BTreeViewToJson;
+import com.dhbw.btreebackend.metrics.RequestMetrics;
+import com.dhbw.btreebackend.metrics.RequestMetrics.Phase;
+import com.dhbw.btreebackend.metrics.RequestMetrics.RequestTimer;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import com.dhbw.btreebackend.pipeline.MutationPipeline.MutationResult;
+import com.dhbw.btreebackend.replication.ReplicationFollower;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,13 +22,22 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author Elias Müller
@@ -28,10 +48,20 @@ import java.util.concurrent.ThreadLocalRandom;
 @RequestMapping ("/api")
 public class BTreeController {
     private static final String INTEGER_LIST_KEY = "Values";
-    private static final String TREE_LIST_KEY = "Trees";
+    private static final int DEFAULT_VIEW_LEVELS = 3;
+    private static final int MAX_VIEW_WIDTH = 1024;
 
     @Autowired
-    private BTree bTree;
+    private OrderedIntIndex bTree;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private MutationPipeline mutationPipeline;
+
+    @Autowired(required = false)
+    private ReplicationFollower replicationFollower;
 
     /**
      * Reset the tree by clearing all elements and resetting the order to default value 5.
@@ -39,7 +69,11 @@ public class BTreeController {
      */
     @GetMapping(value = "/reset")
     public ResponseEntity<Object> resetTree() {
-        this.bTree.clear();
+        checkWritable();
+        await(mutationPipeline.execute(() -> {
+            bTree.clear();
+            return null;
+        }));
         return new ResponseEntity<>(null, HttpStatus.OK);
     }
 
@@ -49,18 +83,24 @@ public class BTreeController {
      * JSON-representation of the tree for every insertion, to display the single steps in the frontend.
      *
      * @param newElements: The list of new elements, that will be added to the tree.
+     * @param steps: Whether to create the JSON-representations of the steps. Without them, the insertions can be
+     *      applied together with those of concurrent requests.
      * @return ResponseEntity, containing the JSON-List of inserted values, JSON-List of the trees
      *      and Http status-code 200(Ok).
      */
-    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> addElements(@RequestBody List<Integer> newElements) {
+    @PostMapping(produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> addElements(@RequestBody List<Integer> newElements,
+                                                        @RequestParam(value = "steps", defaultValue = "true")
+                                                                boolean steps) {
+        checkWritable();
 
         if (newElements == null) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, "Elemente nicht vollständig!");
         }
 
-        return getInsertedTreeRepresentationsAndInsertElements(newElements);
+        return getInsertedTreeRepresentationsAndInsertElements(newElements, steps,
+                requestMetrics.startRequest("POST /api"));
     }
 
     /**
@@ -68,29 +108,74 @@ public class BTreeController {
      * them iterative from the tree, while creating a JSON-representation for every step.
      *
      * @param elementsToDelete: The list of  elements, that will be removde from the tree.
+     * @param steps: Whether to create the JSON-representations of the steps. Without them, the removals can be
+     *      applied together with those of concurrent requests.
      * @return ResponseEntity, containing the JSON-List of deleted values, JSON-List of the trees
      *      and Http status-code 200(Ok).
      */
-    @DeleteMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> deleteElements(@RequestBody List<Integer> elementsToDelete) {
+    @DeleteMapping(produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> deleteElements(@RequestBody List<Integer> elementsToDelete,
+                                                           @RequestParam(value = "steps", defaultValue = "true")
+                                                                   boolean steps) {
+        checkWritable();
         if (elementsToDelete == null) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, "Elemente nicht vollständig!");
         }
-        List<Integer> deletedElements = new ArrayList<>();
-        List<JsonObject> answerTreeList = new ArrayList<JsonObject>();
-        for (Integer i : elementsToDelete) {
-            if(bTree.deleteElement(i)) {
-                deletedElements.add(i);
-                answerTreeList.add(BTreeToJson.createBTreeJson(bTree));
-            }
-        }
+        RequestTimer timer = requestMetrics.startRequest("DELETE /api");
+        MutationResult<BTreeColumns> result = await(mutationPipeline.delete(elementsToDelete,
+                getStepRecorder(steps)));
+        timer.endPhase(Phase.TREE);
+        timer.moveNanos(Phase.TREE, Phase.JSON, result.getStepNanos());
+
+        return createTreeListResponse(INTEGER_LIST_KEY, result.getAppliedKeys(), result.getSteps(), timer);
+    }
+
+    /**
+     * This method provides the endpoint for inserting many values at once from a binary body, e.g. for bulk uploads.
+     * The keys are decoded by the IntArrayHttpMessageConverter straight into an int array, either as little-endian
+     * 4-byte integers (application/octet-stream) or as zigzag varints (application/x-varint), so no JSON is parsed and
+     * no key is boxed. No steps are recorded, so the insertions can be applied together with those of concurrent
+     * requests.
+     *
+     * @param newElements: The keys to insert.
+     * @return ResponseEntity, containing the number of inserted values and Http status-code 200(Ok).
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, IntArrayHttpMessageConverter.VARINT_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> addElementsBinary(@RequestBody int[] newElements) {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("POST /api (binary)");
+        MutationResult<Void> result = await(mutationPipeline.insert(newElements));
+        timer.endPhase(Phase.TREE);
         JsonObject responseJson = Json.createObjectBuilder().
-                add(INTEGER_LIST_KEY, deletedElements.toString()).
-                add(TREE_LIST_KEY, answerTreeList.toString()).
+                add("Inserted", result.getNumberOfAppliedKeys()).
                 build();
+        timer.endPhase(Phase.JSON);
 
-        return new ResponseEntity<>(responseJson.toString(), HttpStatus.OK);
+        return createResponse(responseJson, timer, result.getNumberOfAppliedKeys());
+    }
+
+    /**
+     * This method provides the endpoint for removing many values at once given in a binary body. The body is encoded
+     * like the one of addElementsBinary.
+     *
+     * @param elementsToDelete: The keys to delete.
+     * @return ResponseEntity, containing the number of deleted values and Http status-code 200(Ok).
+     */
+    @DeleteMapping(consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, IntArrayHttpMessageConverter.VARINT_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> deleteElementsBinary(@RequestBody int[] elementsToDelete) {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("DELETE /api (binary)");
+        MutationResult<Void> result = await(mutationPipeline.delete(elementsToDelete));
+        timer.endPhase(Phase.TREE);
+        JsonObject responseJson = Json.createObjectBuilder().
+                add("Deleted", result.getNumberOfAppliedKeys()).
+                build();
+        timer.endPhase(Phase.JSON);
+
+        return createResponse(responseJson, timer, result.getNumberOfAppliedKeys());
     }
 
     /**
@@ -107,16 +192,275 @@ public class BTreeController {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, "Element nicht vorhanden!");
         }
-        BTreeSearchResult bTreeSearchResult = bTree.searchElement(searchElement);
+        RequestTimer timer = requestMetrics.startRequest("POST /api/search");
+        BTreeSearchResult bTreeSearchResult = readTree(() -> bTree.searchElement(searchElement));
+        timer.endPhase(Phase.TREE);
         JsonObjectBuilder searchResultBuilder = Json.createObjectBuilder();
-        if (bTreeSearchResult.isFound()) {
+        if (bTreeSearchResult.isFound() && bTreeSearchResult.getLocation() != null) {
             searchResultBuilder.add("Highlighted", bTreeSearchResult.getLocation().getUuid().toString());
         } else {
             searchResultBuilder.add("Highlighted", JsonValue.NULL);
         }
         searchResultBuilder.add("Costs", bTreeSearchResult.getCosts());
+        JsonObject responseJson = searchResultBuilder.build();
+        timer.endPhase(Phase.JSON);
+
+        return createResponse(responseJson, timer, bTreeSearchResult.getCosts());
+    }
+
+    /**
+     * This method provides the endpoint for searching for many elements at once. The tree resolves all elements in a
+     * single traversal, inspecting the nodes on their common paths only once. For every element it returns whether
+     * it was found, the uuid of the node containing it and the costs of finding it, in the given order.
+     *
+     * @param searchElements: The elements to be searched.
+     * @return ResponseEntity, containing a JsonObject with the lists of found flags, highlighted nodes and costs,
+     *      the number of nodes accessed for all elements together and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/search/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> searchElements(@RequestBody List<Integer> searchElements) {
+
+        if (searchElements == null || searchElements.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Elemente nicht vollständig!");
+        }
+        RequestTimer timer = requestMetrics.startRequest("POST /api/search/batch");
+        int[] keys = searchElements.stream().mapToInt(Integer::intValue).toArray();
+        BTreeBatchSearchResult batchSearchResult = readTree(() -> bTree.searchElements(keys));
+        timer.endPhase(Phase.TREE);
+        JsonArrayBuilder foundBuilder = Json.createArrayBuilder();
+        JsonArrayBuilder highlightedBuilder = Json.createArrayBuilder();
+        JsonArrayBuilder costsBuilder = Json.createArrayBuilder();
+        for (BTreeSearchResult bTreeSearchResult : batchSearchResult.getResults()) {
+            foundBuilder.add(bTreeSearchResult.isFound());
+            if (bTreeSearchResult.isFound() && bTreeSearchResult.getLocation() != null) {
+                highlightedBuilder.add(bTreeSearchResult.getLocation().getUuid().toString());
+            } else {
+                highlightedBuilder.add(JsonValue.NULL);
+            }
+            costsBuilder.add(bTreeSearchResult.getCosts());
+        }
+        JsonObject responseJson = Json.createObjectBuilder().
+                add("Found", foundBuilder).
+                add("Highlighted", highlightedBuilder).
+                add("Costs", costsBuilder).
+                add("NodesAccessed", batchSearchResult.getNodesAccessed()).
+                build();
+        timer.endPhase(Phase.JSON);
+
+        return createResponse(responseJson, timer, keys.length);
+    }
 
-        return new ResponseEntity<>(searchResultBuilder.build().toString(), HttpStatus.OK);
+    /**
+     * This method provides the endpoint for getting all values of the tree within a range.
+     *
+     * @param bounds: The list containing the lower and the upper bound of the range (both inclusive).
+     * @return ResponseEntity, containing the JSON-List of values in the range ordered ascending
+     *      and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/range", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> rangeElements(@RequestBody List<Integer> bounds) {
+
+        if (bounds == null || bounds.size() != 2 || bounds.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Bereich nicht vollständig!");
+        }
+        RequestTimer timer = requestMetrics.startRequest("POST /api/range");
+        List<Integer> valuesInRange = readTree(() -> bTree.getElementKeysInRange(bounds.get(0), bounds.get(1)));
+        timer.endPhase(Phase.TREE);
+        JsonObject responseJson = Json.createObjectBuilder().
+                add(INTEGER_LIST_KEY, valuesInRange.toString()).
+                build();
+        timer.endPhase(Phase.JSON);
+
+        return createResponse(responseJson, timer, valuesInRange.size());
+    }
+
+    /**
+     * This method provides the endpoint for removing all values of the tree within a range. Instead of removing the
+     * values one by one, the tree drops the subtrees lying completely within the range at once.
+     *
+     * @param bounds: The list containing the lower and the upper bound of the range (both inclusive).
+     * @return ResponseEntity, containing the number of removed values, JSON-List with the tree after the removal
+     *      and Http status-code 200(Ok).
+     */
+    @DeleteMapping(value = "/range", produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> deleteRange(@RequestBody List<Integer> bounds) {
+        checkWritable();
+        if (bounds == null || bounds.size() != 2 || bounds.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Bereich nicht vollständig!");
+        }
+        RequestTimer timer = requestMetrics.startRequest("DELETE /api/range");
+        List<BTreeColumns> answerTreeList = new ArrayList<BTreeColumns>();
+        int deleted = await(mutationPipeline.execute(() -> {
+            int deletedElements = bTree.deleteRange(bounds.get(0), bounds.get(1));
+            addTree(answerTreeList);
+            return deletedElements;
+        }));
+        timer.endPhase(Phase.TREE);
+
+        return createTreeListResponse("Deleted", deleted, answerTreeList, timer);
+    }
+
+    /**
+     * This method provides the endpoint for getting the smallest value of the tree.
+     *
+     * @return ResponseEntity, containing the smallest value (null if the tree is empty) and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/first", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> firstElement() {
+        RequestTimer timer = requestMetrics.startRequest("GET /api/first");
+        return createValueResponse(readTree(() -> bTree.first()), timer);
+    }
+
+    /**
+     * This method provides the endpoint for getting the greatest value of the tree.
+     *
+     * @return ResponseEntity, containing the greatest value (null if the tree is empty) and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/last", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> lastElement() {
+        RequestTimer timer = requestMetrics.startRequest("GET /api/last");
+        return createValueResponse(readTree(() -> bTree.last()), timer);
+    }
+
+    /**
+     * This method provides the endpoint for getting a window of the tree, for frontends showing only a few levels or
+     * a horizontal slice of a large tree. The window is either given by depths (the root has depth 0) and a key
+     * range, or by the UUID of a node together with one of its keys, in which case the depths are relative to this
+     * node and the key range is the one of its subtree. Only the nodes of the window and the nodes above it on the
+     * way to them are visited, so the response takes time in the size of the window instead of the tree. Engines
+     * without BTree nodes are rejected with Http status-code 409(Conflict).
+     *
+     * @param fromDepth: The depth of the first level of the window.
+     * @param toDepth: The depth of the last level of the window, by default two levels below fromDepth.
+     * @param min: The smallest key of the range, not allowed together with anchor.
+     * @param max: The greatest key of the range, not allowed together with anchor.
+     * @param anchor: The UUID of the node whose subtree is the window.
+     * @param anchorKey: A key of the anchor node, required together with anchor.
+     * @param width: The maximum number of nodes per level.
+     * @return ResponseEntity, containing a JsonObject with the window and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/tree/view", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> viewTree(@RequestParam(value = "fromDepth", defaultValue = "0") int fromDepth,
+                                           @RequestParam(value = "toDepth", required = false) Integer toDepth,
+                                           @RequestParam(value = "min", required = false) Integer min,
+                                           @RequestParam(value = "max", required = false) Integer max,
+                                           @RequestParam(value = "anchor", required = false) UUID anchor,
+                                           @RequestParam(value = "anchorKey", required = false) Integer anchorKey,
+                                           @RequestParam(value = "width", defaultValue = "64") int width) {
+        BTree nodeTree = BTreeColumns.getSingleTree(bTree);
+        if (nodeTree == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Ausschnitte werden von dieser Engine oder mit Shards nicht unterstützt!");
+        }
+        int lastDepth = (toDepth != null) ? toDepth : fromDepth + DEFAULT_VIEW_LEVELS - 1;
+        if (width < 1 || width > MAX_VIEW_WIDTH || lastDepth < fromDepth) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Ausschnitt ungültig!");
+        }
+        RequestTimer timer = requestMetrics.startRequest("GET /api/tree/view");
+        BTreeView view;
+        if (anchor != null) {
+            if (anchorKey == null || min != null || max != null) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Ausschnitt ungültig!");
+            }
+            view = readTree(() -> BTreeView.ofSubtree(nodeTree, anchor, anchorKey, fromDepth, lastDepth, width));
+            if (view == null) {
+                throw new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Knoten nicht vorhanden!");
+            }
+        } else {
+            if (fromDepth < 0) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Ausschnitt ungültig!");
+            }
+            int lowerBound = (min != null) ? min : Integer.MIN_VALUE;
+            int upperBound = (max != null) ? max : Integer.MAX_VALUE;
+            view = readTree(() -> BTreeView.ofKeyRange(nodeTree, fromDepth, lastDepth, lowerBound, upperBound, width));
+        }
+        timer.endPhase(Phase.TREE);
+        String body = BTreeViewToJson.createBTreeViewJsonString(view);
+        timer.endPhase(Phase.JSON);
+        timer.endPhase(Phase.WRITE);
+        timer.finish(RequestTimer.getUtf8Length(body), view.getNodes().size());
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for removing the smallest value of the tree, e.g. to use the tree as priority
+     * queue. The value is removed right from the leftmost leaf without searching for it. No JSON-representation of
+     * the tree is returned, as it would cost more than the removal.
+     *
+     * @return ResponseEntity, containing the removed value (null if the tree is empty) and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/pollFirst", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> pollFirstElement() {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("POST /api/pollFirst");
+        return createValueResponse(await(mutationPipeline.execute(() -> bTree.pollFirst())), timer);
+    }
+
+    /**
+     * This method provides the endpoint for removing the greatest value of the tree, see pollFirstElement().
+     *
+     * @return ResponseEntity, containing the removed value (null if the tree is empty) and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/pollLast", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> pollLastElement() {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("POST /api/pollLast");
+        return createValueResponse(await(mutationPipeline.execute(() -> bTree.pollLast())), timer);
+    }
+
+    /**
+     * This method provides the endpoint for exporting the tree. It streams a binary snapshot of the tree (see
+     * BTreeSnapshot) to the response.
+     *
+     * @param response: The response to write the snapshot to.
+     * @throws IOException if writing the response fails.
+     */
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void exportSnapshot(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("Content-Disposition", "attachment; filename=\"btree.snapshot\"");
+        mutationPipeline.getTreeLock().readLock().lock();
+        try {
+            bTree.writeSnapshot(response.getOutputStream());
+        } finally {
+            mutationPipeline.getTreeLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * This method provides the endpoint for importing a tree. It replaces the tree with the given binary snapshot,
+     * which is loaded without inserting the elements one by one.
+     *
+     * @param snapshot: The binary snapshot, as returned by the export endpoint.
+     * @return ResponseEntity, containing the JSON of the new tree and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> importSnapshot(@RequestBody byte[] snapshot) {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("POST /api/snapshot");
+        List<BTreeColumns> answerTreeList = new ArrayList<BTreeColumns>();
+        await(mutationPipeline.execute(() -> {
+            try {
+                bTree.loadSnapshot(ByteBuffer.wrap(snapshot));
+            } catch (IOException e) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Snapshot ungültig!", e);
+            }
+            addTree(answerTreeList);
+            return null;
+        }));
+        timer.endPhase(Phase.TREE);
+
+        return createTreeListResponse(INTEGER_LIST_KEY, null, answerTreeList, timer);
     }
 
     /**
@@ -129,8 +473,9 @@ public class BTreeController {
      * @return ResponseEntity, containing the JSON-List of inserted values, JSON-List of the trees
      *      and Http status-code 200(Ok).
      */
-    @PostMapping(value = "random", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> randomElements(@RequestBody List<Integer> randomMetrics) {
+    @PostMapping(value = "random", produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> randomElements(@RequestBody List<Integer> randomMetrics) {
+        checkWritable();
 
         if (randomMetrics == null || randomMetrics.size() != 3) {
             throw new ResponseStatusException(
@@ -138,9 +483,9 @@ public class BTreeController {
         }
 
         List<Integer> valuesToAdd = this.getRandomMetrics(randomMetrics.get(0), randomMetrics.get(1), randomMetrics.get(2));
+        RequestTimer timer = requestMetrics.startRequest("POST /api/random");
 
-        return getInsertedTreeRepresentationsAndInsertElements(valuesToAdd);
-
+        return getInsertedTreeRepresentationsAndInsertElements(valuesToAdd, true, timer);
     }
 
     /**
@@ -148,41 +493,149 @@ public class BTreeController {
      * @param newOrder: The value of the new order.
      * @return ResponseEntity, containing the JSON of the new tree and Http status-code 200(Ok).
      */
-    @PostMapping(value = "changeOrder", produces =  MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> changeOrder(@RequestBody int newOrder){
-        bTree.setOrder(newOrder);
+    @PostMapping(value = "changeOrder", produces = {MediaType.APPLICATION_JSON_VALUE, BTreeToColumnar.MEDIA_TYPE_VALUE})
+    public ResponseEntity<TreeListResponse> changeOrder(@RequestBody int newOrder) {
+        checkWritable();
+        RequestTimer timer = requestMetrics.startRequest("POST /api/changeOrder");
+        List<BTreeColumns> answerTreeList = new ArrayList<BTreeColumns>();
+        await(mutationPipeline.execute(() -> {
+            bTree.setOrder(newOrder);
+            addTree(answerTreeList);
+            return null;
+        }));
+        timer.endPhase(Phase.TREE);
 
-        List<JsonObject> answerTreeList = new ArrayList<JsonObject>();
-        answerTreeList.add(BTreeToJson.createBTreeJson(bTree));
+        return createTreeListResponse(INTEGER_LIST_KEY, null, answerTreeList, timer);
+    }
 
-        JsonObject responseJson = Json.createObjectBuilder().
-                add(INTEGER_LIST_KEY, JsonValue.NULL).
-                add(TREE_LIST_KEY, answerTreeList.toString()).
-                build();
+    /**
+     * This method rejects mutations if this instance is a replication follower, as its tree is only changed by the
+     * leader.
+     */
+    private void checkWritable() {
+        if (replicationFollower != null) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Replikat ist schreibgeschützt!");
+        }
+    }
+
+    /**
+     * This method reads from the tree while holding the read lock of the mutation pipeline, so reads run concurrently
+     * to each other and never reflect a partially applied batch of mutations.
+     * @param read: The read operation.
+     * @return the result of the read operation.
+     */
+    private <T> T readTree(Supplier<T> read) {
+        return mutationPipeline.read(read);
+    }
+
+    /**
+     * This method waits for a mutation applied by the mutation pipeline and rethrows the exception it failed with,
+     * e.g. a ResponseStatusException.
+     * @param future: The future of the mutation.
+     * @return the result of the mutation.
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        return new ResponseEntity<>(responseJson.toString(), HttpStatus.OK);
+    /**
+     * This method returns the function copying the tree after every step, if steps are requested. The copies are
+     * written as JSON or in the binary format once the response is written. Engines without BTree nodes and the
+     * sharded BTree have no single tree to copy, see BTreeColumns.getSingleTree(), so their responses contain no trees.
+     * @param steps: Whether the steps are requested.
+     * @return the function, null if no steps are requested or there is no single tree.
+     */
+    private Function<OrderedIntIndex, BTreeColumns> getStepRecorder(boolean steps) {
+        return (steps && BTreeColumns.getSingleTree(bTree) != null) ? tree -> BTreeColumns.capture((BTree) tree) : null;
+    }
+
+    /**
+     * This method adds a copy of the tree to the trees of the response, if there is a single tree, see
+     * getStepRecorder().
+     * @param answerTreeList: The trees of the response.
+     */
+    private void addTree(List<BTreeColumns> answerTreeList) {
+        BTree nodeTree = BTreeColumns.getSingleTree(bTree);
+        if (nodeTree != null) {
+            answerTreeList.add(BTreeColumns.capture(nodeTree));
+        }
     }
 
     /**
      * This method inserts the elements to tree and creates a JSON-representation of the tree for every insertion,
      * to display the single steps in the frontend.
+     * The insertions are applied by the mutation pipeline, which also creates the JSON-representations on its writer
+     * thread, so every representation shows the tree right after its insertion.
      * @param valuesToAdd: The List of values to add to the tree.
+     * @param steps: Whether to create the JSON-representations of the steps.
+     * @param timer: The timer measuring the request.
      * @return ResponseEntity, containing the JSON-List of inserted values, JSON-List of the trees
      *      and Http status-code 200(Ok).
      */
-    private ResponseEntity<Object>  getInsertedTreeRepresentationsAndInsertElements(List<Integer> valuesToAdd) {
-        List<Integer> addedValues = new ArrayList<>();
-        List<JsonObject> answerTreeList = new ArrayList<JsonObject>();
-        for (Integer i : valuesToAdd) {
-            if(bTree.insertElement(i)) {
-                addedValues.add(i);
-                answerTreeList.add(BTreeToJson.createBTreeJson(bTree));
-            }
-        }
+    private ResponseEntity<TreeListResponse> getInsertedTreeRepresentationsAndInsertElements(List<Integer> valuesToAdd,
+                                                                                             boolean steps,
+                                                                                             RequestTimer timer) {
+        MutationResult<BTreeColumns> result = await(mutationPipeline.insert(valuesToAdd, getStepRecorder(steps)));
+        timer.endPhase(Phase.TREE);
+        timer.moveNanos(Phase.TREE, Phase.JSON, result.getStepNanos());
+
+        return createTreeListResponse(INTEGER_LIST_KEY, result.getAppliedKeys(), result.getSteps(), timer);
+    }
+
+    /**
+     * This method creates the response for a single value read or removed from the tree.
+     * @param value: The value, null if the tree was empty.
+     * @param timer: The timer measuring the request.
+     * @return ResponseEntity, containing a JsonObject with the value and Http status-code 200(Ok).
+     */
+    private ResponseEntity<Object> createValueResponse(Integer value, RequestTimer timer) {
+        timer.endPhase(Phase.TREE);
         JsonObject responseJson = Json.createObjectBuilder().
-                add(INTEGER_LIST_KEY, addedValues.toString()).add(TREE_LIST_KEY, answerTreeList.toString()).build();
+                add("Value", (value != null) ? Json.createValue(value) : JsonValue.NULL).
+                build();
+        timer.endPhase(Phase.JSON);
+
+        return createResponse(responseJson, timer, (value != null) ? 1 : 0);
+    }
 
-        return new ResponseEntity<>(responseJson.toString(), HttpStatus.OK);
+    /**
+     * This method creates the response containing the trees after every step. It is written straight to the response
+     * by the TreeListHttpMessageConverter, as JSON or in the binary format requested by the Accept header, which also
+     * finishes the measurement of the request.
+     * @param key: The key of the attribute preceding the trees.
+     * @param value: The value of the attribute: the list of values, the number of values or null.
+     * @param answerTreeList: The copies of the trees.
+     * @param timer: The timer measuring the request.
+     * @return ResponseEntity, containing the attribute, the trees and Http status-code 200(Ok).
+     */
+    private ResponseEntity<TreeListResponse> createTreeListResponse(String key, Object value,
+                                                                    List<BTreeColumns> answerTreeList,
+                                                                    RequestTimer timer) {
+        TreeListResponse response = new TreeListResponse(Collections.singletonMap(key, value), answerTreeList, timer);
+        timer.endPhase(Phase.JSON);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * This method serializes the response JSON and finishes the measurement of the request with it.
+     * @param responseJson: The JSON to respond with.
+     * @param timer: The timer measuring the request.
+     * @param steps: The number of steps (trees, values or nodes accessed) contained in the response.
+     * @return ResponseEntity, containing the serialized JSON and Http status-code 200(Ok).
+     */
+    private ResponseEntity<Object> createResponse(JsonObject responseJson, RequestTimer timer, int steps) {
+        String body = responseJson.toString();
+        timer.endPhase(Phase.WRITE);
+        timer.finish(RequestTimer.getUtf8Length(body), steps);
+        return new ResponseEntity<>(body, HttpStatus.OK);
     }
 
     /**
@@ -0,0 +1,123 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.btreeimplementation.StructuralEventRing;
+import com.dhbw.btreebackend.json.BTreeToJson;
+import com.dhbw.btreebackend.trace.StructuralEventTracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.UUID;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api")
+public class EventController {
+
+    private static final int DEFAULT_EVENT_LIMIT = 1000;
+    private static final int MAX_EVENT_LIMIT = 65536;
+
+    @Autowired
+    private StructuralEventTracer tracer;
+
+    /**
+     * This method provides the endpoint for replaying the structural events of the tree (splits, rotations, merges,
+     * root changes and phantomRefs) from a sequence number on. The events are kept in a ring, so a client can repeat
+     * a request as long as the events were not overwritten, and continues with the returned next sequence number.
+     *
+     * @param from: The sequence number of the first event, 0 by default.
+     * @param limit: The maximum number of events, 1000 by default.
+     * @return ResponseEntity, containing a JsonObject with the capacity of the ring (0 if no events are recorded),
+     *      the sequence number to continue with, the number of events between 'from' and it that were overwritten,
+     *      the current System.nanoTime() to relate the times of the events to, and the events, and Http status-code
+     *      200(Ok).
+     */
+    @GetMapping(value = "/events", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getEvents(@RequestParam(value = "from", defaultValue = "0") long from,
+                                            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_EVENT_LIMIT)
+                                                    int limit) {
+        if (from < 0 || limit < 1 || limit > MAX_EVENT_LIMIT) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Ausschnitt ungültig!");
+        }
+
+        return new ResponseEntity<>(createEventsJsonString(tracer.getRing(), from, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for configuring the recording of structural events. It replaces the ring with
+     * an empty one of the given capacity, or stops recording if the capacity is 0. Engines without BTree nodes are
+     * rejected with Http status-code 409(Conflict).
+     *
+     * @param capacity: The number of events to keep, rounded up to a power of two, 0 to stop recording.
+     * @return ResponseEntity, containing a JsonObject with the capacity of the new ring and the sequence number to
+     *      start replaying with, and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/events", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> setEventCapacity(@RequestParam("capacity") int capacity) {
+        if (capacity < 0 || capacity > StructuralEventRing.MAX_CAPACITY) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Kapazität ungültig!");
+        }
+        if (!tracer.isSupported()) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Strukturereignisse werden von dieser Engine nicht unterstützt!");
+        }
+        StructuralEventRing ring = tracer.setCapacity(capacity);
+
+        long from = (ring != null) ? ring.getNextSequence() : 0;
+        return new ResponseEntity<>(createEventsJsonString(ring, from, 1), HttpStatus.OK);
+    }
+
+    /**
+     * This method creates the JSON-representation of the events of a ring from a sequence number on. The UUID of an
+     * event is null if it happened to no node, i.e. the tree lost its root.
+     *
+     * @param ring: The ring, null if no events are recorded.
+     * @param from: The sequence number of the first event.
+     * @param limit: The maximum number of events.
+     * @return The JSON-representation of the events as string.
+     */
+    private static String createEventsJsonString(StructuralEventRing ring, long from, int limit) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = BTreeToJson.createGenerator(json)) {
+            generator.writeStartObject().
+                    write("Capacity", (ring != null) ? ring.getCapacity() : 0).
+                    write("From", from).
+                    writeStartArray("Events");
+            long[] events = new long[1];
+            long next = (ring == null) ? from : ring.read(from, limit,
+                    (sequence, timeNanos, type, level, uuidMost, uuidLeast, key, numberOfElements) -> {
+                        ++events[0];
+                        generator.writeStartObject().
+                                write("Sequence", sequence).
+                                write("TimeNanos", timeNanos).
+                                write("Type", type.name()).
+                                write("Level", level);
+                        if (uuidMost == 0 && uuidLeast == 0) {
+                            generator.writeNull("UUID");
+                        } else {
+                            generator.write("UUID", new UUID(uuidMost, uuidLeast).toString());
+                        }
+                        generator.write("Key", key).
+                                write("Elements", numberOfElements).
+                                writeEnd();
+                    });
+            generator.writeEnd().
+                    write("NextSequence", next).
+                    write("Lost", Math.max(0, next - from - events[0])).
+                    write("NowNanos", System.nanoTime()).
+                    writeEnd();
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.btreeimplementation.BTreeStatistics;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.experiment.OrderExperiment;
+import com.dhbw.btreebackend.experiment.OrderExperiment.Result;
+import com.dhbw.btreebackend.experiment.OrderExperiment.Workload;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api")
+public class ExperimentController {
+    private static final long NANOS_PER_MILLI = 1_000_000;
+    private static final int MAX_ORDERS = 32;
+    private static final int MAX_OPERATIONS = 10_000_000;
+    private static final long MAX_LOADED_KEYS = 10_000_000;
+
+    @Autowired
+    private OrderedIntIndex bTree;
+
+    @Autowired
+    private MutationPipeline mutationPipeline;
+
+    @Autowired
+    private OrderExperiment orderExperiment;
+
+    /**
+     * This method provides the endpoint for comparing orders on a workload. For every given order an independent
+     * tree is built in parallel, loaded with the keys and the operations are replayed on it, so the tree of the
+     * application is not changed.
+     * The request is a JsonObject with the attributes:
+     *  Orders: [int] the orders to compare (required).
+     *  Keys: [int] the keys to load, in this order. Without them, the keys of the tree of the application are loaded
+     *      in random order. The number of keys times the number of orders must not exceed 10 million.
+     *  InsertKeys: [int] the keys the inserts are drawn from. Without them, the inserts draw keys not loaded.
+     *  Operations: int the number of operations replayed after loading (number of keys by default).
+     *  Mix: {"Insert": int, "Search": int, "Delete": int} the weights of the operations, searches and deletes draw
+     *      their keys from the keys (only searches by default).
+     *  Seed: long the seed of the random operations (42 by default).
+     *
+     * @param experiment: The JSON-representation of the experiment.
+     * @return ResponseEntity, containing a JsonObject with the height, number of nodes, fill factor, average and
+     *      maximum costs of the searches and the wall time of every order and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/experiment/orders", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> compareOrders(@RequestBody String experiment) {
+        int[] orders;
+        Workload workload;
+        try (JsonReader reader = Json.createReader(new StringReader(experiment))) {
+            JsonObject experimentJson = reader.readObject();
+            orders = toIntArray(experimentJson.getJsonArray("Orders"));
+            long seed = experimentJson.containsKey("Seed") ? experimentJson.getJsonNumber("Seed").longValue() : 42;
+            if (orders.length == 0 || orders.length > MAX_ORDERS) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Experiment zu groß oder leer!");
+            }
+            long numberOfKeys = experimentJson.containsKey("Keys") ? experimentJson.getJsonArray("Keys").size() :
+                    mutationPipeline.read(() -> bTree.getStatistics().getNumberOfKeys());
+            checkLoadedKeys(numberOfKeys, orders.length);
+            int[] keys = experimentJson.containsKey("Keys") ? toIntArray(experimentJson.getJsonArray("Keys")) :
+                    getShuffledTreeKeys(seed);
+            checkLoadedKeys(keys.length, orders.length);
+            int[] insertKeys = experimentJson.containsKey("InsertKeys") ?
+                    toIntArray(experimentJson.getJsonArray("InsertKeys")) : null;
+            int operations = experimentJson.getInt("Operations", keys.length);
+            JsonObject mix = experimentJson.containsKey("Mix") ? experimentJson.getJsonObject("Mix") :
+                    Json.createObjectBuilder().add("Search", 1).build();
+            if (operations < 0 || operations > MAX_OPERATIONS) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Experiment zu groß oder leer!");
+            }
+            workload = Workload.create(keys, insertKeys, operations, mix.getInt("Insert", 0),
+                    mix.getInt("Search", 0), mix.getInt("Delete", 0), seed);
+        } catch (JsonException | ClassCastException | NullPointerException | IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Experiment ungültig!", e);
+        }
+
+        List<Result> results;
+        try {
+            results = orderExperiment.run(workload, orders);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Ordnung muss mindestens " + OrderExperiment.MIN_ORDER + " sein!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, "Experiment abgebrochen!", e);
+        }
+
+        JsonArrayBuilder resultsBuilder = Json.createArrayBuilder();
+        for (Result result : results) {
+            BTreeStatistics statistics = result.getStatistics();
+            resultsBuilder.add(Json.createObjectBuilder().
+                    add("Order", result.getOrder()).
+                    add("Height", statistics.getHeight()).
+                    add("Nodes", statistics.getNumberOfNodes()).
+                    add("Keys", statistics.getNumberOfKeys()).
+                    add("FillFactor", statistics.getFillFactor()).
+                    add("Searches", result.getSearches()).
+                    add("AverageCosts", result.getAverageCosts()).
+                    add("MaxCosts", result.getMaxCosts()).
+                    add("WallMillis", result.getWallNanos() / (double) NANOS_PER_MILLI));
+        }
+        JsonObject responseJson = Json.createObjectBuilder().
+                add("LoadedKeys", workload.getNumberOfLoadKeys()).
+                add("Operations", workload.getNumberOfOperations()).
+                add("Results", resultsBuilder).
+                build();
+
+        return new ResponseEntity<>(responseJson.toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method checks that the trees of an experiment are not too large. Every order gets its own tree loaded with
+     * all keys and up to 'btree.experiment.parallelism' of them are built at once, so the keys of all trees are limited.
+     * @param numberOfKeys: The number of keys to load.
+     * @param numberOfOrders: The number of orders to compare.
+     */
+    private void checkLoadedKeys(long numberOfKeys, int numberOfOrders) {
+        if (numberOfKeys * numberOfOrders > MAX_LOADED_KEYS) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Experiment zu groß oder leer!");
+        }
+    }
+
+    /**
+     * This method converts a JsonArray of numbers to an int array.
+     * @param array: The JsonArray.
+     * @return int[]: The numbers.
+     */
+    private int[] toIntArray(JsonArray array) {
+        int[] values = new int[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.getInt(i);
+        }
+        return values;
+    }
+
+    /**
+     * This method reads the keys of the tree and shuffles them, as loading them in ascending order would create a
+     * tree of a different shape than the one grown by the actual inserts.
+     * @param seed: The seed of the shuffle.
+     * @return int[]: The keys of the tree in random order.
+     */
+    private int[] getShuffledTreeKeys(long seed) {
+        List<Integer> keys = mutationPipeline.read(() -> bTree.getElementKeysInRange(Integer.MIN_VALUE,
+                Integer.MAX_VALUE));
+        Collections.shuffle(keys, new Random(seed));
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
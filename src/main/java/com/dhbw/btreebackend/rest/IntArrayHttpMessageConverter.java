@@ -0,0 +1,163 @@
+package com.dhbw.btreebackend.rest;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reads and writes int arrays as binary bodies, so bulk uploads of keys are decoded straight from the request stream
+ * without parsing JSON or boxing every key.
+ * Two encodings are supported, chosen by the content type:
+ *  application/octet-stream: every key as 4 bytes, little-endian.
+ *  application/x-varint: every key zigzag-encoded (0, -1, 1, -2, ... become 0, 1, 2, 3, ...) and written in groups of
+ *      7 bits, least significant group first, with the highest bit of a byte set if another byte follows. Small keys
+ *      take 1 or 2 bytes instead of 4.
+ * Only applies to int[], so byte[] bodies like snapshots are still handled by the default converters. Registered with
+ * Spring MVC by being a bean.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class IntArrayHttpMessageConverter extends AbstractHttpMessageConverter<int[]> {
+    public static final String VARINT_VALUE = "application/x-varint";
+    public static final MediaType VARINT = MediaType.valueOf(VARINT_VALUE);
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_INITIAL_CAPACITY = 1 << 23;
+
+    public IntArrayHttpMessageConverter() {
+        super(MediaType.APPLICATION_OCTET_STREAM, VARINT);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == int[].class;
+    }
+
+    @Override
+    protected int[] readInternal(Class<? extends int[]> clazz, HttpInputMessage inputMessage) throws IOException {
+        long contentLength = inputMessage.getHeaders().getContentLength();
+        if(VARINT.isCompatibleWith(inputMessage.getHeaders().getContentType())) {
+            return readVarints(inputMessage, contentLength);
+        }
+        return readLittleEndian(inputMessage, contentLength);
+    }
+
+    /**
+     * Decode little-endian 4-byte keys from the body.
+     * @param inputMessage the request.
+     * @param contentLength length of the body, -1 if unknown.
+     * @return the keys.
+     * @throws IOException if reading fails or the length of the body is not a multiple of 4.
+     */
+    private int[] readLittleEndian(HttpInputMessage inputMessage, long contentLength) throws IOException {
+        InputStream in = inputMessage.getBody();
+        int[] keys = new int[getInitialCapacity(contentLength, 4)];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int numberOfKeys = 0;
+        int buffered = 0;
+        for(int read; (read = in.read(buffer, buffered, buffer.length - buffered)) >= 0; ) {
+            buffered += read;
+            int complete = buffered & ~3;
+            if(numberOfKeys + complete / 4 > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2 * keys.length, numberOfKeys + complete / 4));
+            }
+            for(int i = 0; i < complete; i += 4) {
+                keys[numberOfKeys++] = (buffer[i] & 0xFF) | (buffer[i + 1] & 0xFF) << 8 |
+                        (buffer[i + 2] & 0xFF) << 16 | buffer[i + 3] << 24;
+            }
+            System.arraycopy(buffer, complete, buffer, 0, buffered - complete);
+            buffered -= complete;
+        }
+        if(buffered != 0) {
+            throw new HttpMessageNotReadableException("Body length is not a multiple of 4", inputMessage);
+        }
+        return (numberOfKeys == keys.length) ? keys : Arrays.copyOf(keys, numberOfKeys);
+    }
+
+    /**
+     * Decode zigzag-encoded varint keys from the body.
+     * @param inputMessage the request.
+     * @param contentLength length of the body, -1 if unknown. Used to estimate the number of keys.
+     * @return the keys.
+     * @throws IOException if reading fails, a key has more than 5 bytes or the body ends within a key.
+     */
+    private int[] readVarints(HttpInputMessage inputMessage, long contentLength) throws IOException {
+        InputStream in = inputMessage.getBody();
+        int[] keys = new int[getInitialCapacity(contentLength, 2)];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int numberOfKeys = 0;
+        int value = 0;
+        int shift = 0;
+        for(int read; (read = in.read(buffer)) >= 0; ) {
+            for(int i = 0; i < read; ++i) {
+                int currentByte = buffer[i];
+                value |= (currentByte & 0x7F) << shift;
+                if(currentByte >= 0) {
+                    if(numberOfKeys == keys.length) {
+                        keys = Arrays.copyOf(keys, 2 * keys.length + 1);
+                    }
+                    keys[numberOfKeys++] = (value >>> 1) ^ -(value & 1);
+                    value = 0;
+                    shift = 0;
+                } else if((shift += 7) > 28) {
+                    throw new HttpMessageNotReadableException("Varint longer than 5 bytes", inputMessage);
+                }
+            }
+        }
+        if(shift != 0) {
+            throw new HttpMessageNotReadableException("Body ends within a varint", inputMessage);
+        }
+        return (numberOfKeys == keys.length) ? keys : Arrays.copyOf(keys, numberOfKeys);
+    }
+
+    /**
+     * Estimate the number of keys in the body. The estimate is limited, so a wrong content length cannot make the
+     * converter allocate more than the body needs.
+     * @param contentLength length of the body, -1 if unknown.
+     * @param bytesPerKey average number of bytes per key.
+     * @return the initial capacity of the key array.
+     */
+    private static int getInitialCapacity(long contentLength, int bytesPerKey) {
+        return (contentLength >= 0) ? (int) Math.min(contentLength / bytesPerKey, MAX_INITIAL_CAPACITY) :
+                INITIAL_CAPACITY;
+    }
+
+    @Override
+    protected void writeInternal(int[] keys, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        boolean varint = VARINT.isCompatibleWith(outputMessage.getHeaders().getContentType());
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int position = 0;
+        for(int key : keys) {
+            if(position > buffer.length - 5) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            if(varint) {
+                int value = (key << 1) ^ (key >> 31);
+                while((value & ~0x7F) != 0) {
+                    buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                buffer[position++] = (byte) value;
+            } else {
+                buffer[position++] = (byte) key;
+                buffer[position++] = (byte) (key >>> 8);
+                buffer[position++] = (byte) (key >>> 16);
+                buffer[position++] = (byte) (key >>> 24);
+            }
+        }
+        out.write(buffer, 0, position);
+        out.flush();
+    }
+}
@@ -0,0 +1,229 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.experiment.OrderExperiment;
+import com.dhbw.btreebackend.job.BatchJob;
+import com.dhbw.btreebackend.job.BatchJobService;
+import com.dhbw.btreebackend.json.BatchJobToJson;
+import com.dhbw.btreebackend.replication.ReplicationFollower;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private BatchJobService batchJobService;
+
+    @Autowired(required = false)
+    private ReplicationFollower replicationFollower;
+
+    /**
+     * This method provides the endpoint for inserting a large list of values in the background. It returns right
+     * away with the queued job, whose progress can be polled or subscribed to.
+     *
+     * @param newElements: The list of new elements, that will be added to the tree.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/insert", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitInsert(@RequestBody List<Integer> newElements) {
+        int[] keys = toIntArray(newElements);
+        return submit(() -> batchJobService.submitInsert(keys));
+    }
+
+    /**
+     * This method provides the endpoint for inserting values given in a binary body in the background. The body is
+     * encoded like the one of BTreeController.addElementsBinary.
+     *
+     * @param newElements: The keys to insert.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/insert",
+            consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, IntArrayHttpMessageConverter.VARINT_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitInsertBinary(@RequestBody int[] newElements) {
+        return submit(() -> batchJobService.submitInsert(newElements));
+    }
+
+    /**
+     * This method provides the endpoint for removing a large list of values in the background.
+     *
+     * @param elementsToDelete: The list of elements, that will be removed from the tree.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/delete", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitDelete(@RequestBody List<Integer> elementsToDelete) {
+        int[] keys = toIntArray(elementsToDelete);
+        return submit(() -> batchJobService.submitDelete(keys));
+    }
+
+    /**
+     * This method provides the endpoint for removing values given in a binary body in the background.
+     *
+     * @param elementsToDelete: The keys to delete.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/delete",
+            consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, IntArrayHttpMessageConverter.VARINT_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitDeleteBinary(@RequestBody int[] elementsToDelete) {
+        return submit(() -> batchJobService.submitDelete(elementsToDelete));
+    }
+
+    /**
+     * This method provides the endpoint for inserting distinct random values in the background. Unlike
+     * BTreeController.randomElements no steps are recorded, so up to BatchJobService.MAX_RANDOM_KEYS values can be
+     * inserted.
+     *
+     * @param randomMetrics: [min, number, max] of the random values.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/random", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitRandom(@RequestBody List<Integer> randomMetrics) {
+        if (randomMetrics == null || randomMetrics.size() != 3 || randomMetrics.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Element nicht vorhanden!");
+        }
+        try {
+            return submit(() -> batchJobService.submitRandom(randomMetrics.get(0), randomMetrics.get(1),
+                    randomMetrics.get(2)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Zufallswerte ungültig!", e);
+        }
+    }
+
+    /**
+     * This method provides the endpoint for changing the order of the tree in the background.
+     *
+     * @param newOrder: The value of the new order.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @PostMapping(value = "/changeOrder", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> submitChangeOrder(@RequestBody int newOrder) {
+        if (newOrder < OrderExperiment.MIN_ORDER) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Ordnung muss mindestens " + OrderExperiment.MIN_ORDER + " sein!");
+        }
+        return submit(() -> batchJobService.submitChangeOrder(newOrder));
+    }
+
+    /**
+     * This method provides the endpoint for listing the queued, running and recently finished jobs.
+     * @return ResponseEntity, containing the JSON-List of the jobs and Http status-code 200(Ok).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getJobs() {
+        JsonArrayBuilder jobsBuilder = Json.createArrayBuilder();
+        for (BatchJob job : batchJobService.getJobs()) {
+            jobsBuilder.add(BatchJobToJson.createBatchJobJson(job));
+        }
+        return new ResponseEntity<>(jobsBuilder.build().toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for polling the progress of a job.
+     * @param id: The id of the job.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getJob(@PathVariable long id) {
+        return new ResponseEntity<>(BatchJobToJson.createBatchJobJson(findJob(id)).toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for retrieving the result of a finished job, i.e. its final state, the number
+     * of keys actually inserted or deleted and the error if it failed.
+     * @param id: The id of the job.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 200(Ok), Http status-code
+     *      409(Conflict) if the job is not finished yet.
+     */
+    @GetMapping(value = "/{id}/result", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getJobResult(@PathVariable long id) {
+        BatchJob job = findJob(id);
+        if (!job.isFinished()) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Auftrag nicht abgeschlossen!");
+        }
+        return new ResponseEntity<>(BatchJobToJson.createBatchJobJson(job).toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for cancelling a job. A queued job is cancelled right away, a running job
+     * stops after its current chunk of keys; the keys applied until then stay in the tree.
+     * @param id: The id of the job.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    @DeleteMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> cancelJob(@PathVariable long id) {
+        BatchJob job = batchJobService.cancel(id);
+        if (job == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND, "Auftrag nicht vorhanden!");
+        }
+        return new ResponseEntity<>(BatchJobToJson.createBatchJobJson(job).toString(), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * This method submits a job, unless this instance is a replication follower or the queue of jobs is full.
+     * @param submission: Submits the job.
+     * @return ResponseEntity, containing the JSON of the job and Http status-code 202(Accepted).
+     */
+    private ResponseEntity<Object> submit(Supplier<BatchJob> submission) {
+        if (replicationFollower != null) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Replikat ist schreibgeschützt!");
+        }
+        try {
+            BatchJob job = submission.get();
+            return new ResponseEntity<>(BatchJobToJson.createBatchJobJson(job).toString(), HttpStatus.ACCEPTED);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, "Zu viele Aufträge!", e);
+        }
+    }
+
+    /**
+     * This method gets a job by its id.
+     * @param id: The id of the job.
+     * @return BatchJob: The job.
+     */
+    private BatchJob findJob(long id) {
+        BatchJob job = batchJobService.getJob(id);
+        if (job == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND, "Auftrag nicht vorhanden!");
+        }
+        return job;
+    }
+
+    /**
+     * This method converts the list of a JSON body to an int array, so the job does not hold boxed keys.
+     * @param elements: The list of elements.
+     * @return int[]: The keys.
+     */
+    private int[] toIntArray(List<Integer> elements) {
+        if (elements == null || elements.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Elemente nicht vollständig!");
+        }
+        return elements.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,69 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.metrics.Histogram;
+import com.dhbw.btreebackend.metrics.RequestMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import java.util.Map;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api")
+public class MetricsController {
+    private static final long NANOS_PER_MICRO = 1000;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    /**
+     * This method provides the endpoint for monitoring the REST layer. For every endpoint requested so far it returns
+     * the latency distribution of every phase (tree operation, JSON build, response write) and of the whole request in
+     * microseconds, as well as the distributions of the response size in bytes and of the steps per response.
+     *
+     * @return ResponseEntity, containing a JsonObject with the metrics per endpoint and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/metrics", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getMetrics() {
+        JsonObjectBuilder metricsBuilder = Json.createObjectBuilder();
+        for (Map.Entry<String, RequestMetrics.EndpointMetrics> endpoint : requestMetrics.getEndpoints().entrySet()) {
+            RequestMetrics.EndpointMetrics metrics = endpoint.getValue();
+            JsonObjectBuilder phasesBuilder = Json.createObjectBuilder();
+            for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+                phasesBuilder.add(phase.name(), createHistogramJson(metrics.getPhaseNanos(phase), NANOS_PER_MICRO));
+            }
+            metricsBuilder.add(endpoint.getKey(), Json.createObjectBuilder().
+                    add("Requests", metrics.getTotalNanos().getTotalCount()).
+                    add("TotalMicros", createHistogramJson(metrics.getTotalNanos(), NANOS_PER_MICRO)).
+                    add("PhaseMicros", phasesBuilder).
+                    add("ResponseBytes", createHistogramJson(metrics.getResponseBytes(), 1)).
+                    add("Steps", createHistogramJson(metrics.getSteps(), 1)));
+        }
+
+        return new ResponseEntity<>(metricsBuilder.build().toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method creates the JSON-representation of a histogram with its mean, p50, p99, p999 and maximum.
+     * @param histogram: The histogram to represent.
+     * @param unit: The divisor converting the recorded values to the reported unit.
+     * @return JsonObjectBuilder, containing the statistics of the histogram.
+     */
+    private JsonObjectBuilder createHistogramJson(Histogram histogram, long unit) {
+        return Json.createObjectBuilder().
+                add("Mean", histogram.getMean() / unit).
+                add("P50", (double) histogram.getValueAtPercentile(50) / unit).
+                add("P99", (double) histogram.getValueAtPercentile(99) / unit).
+                add("P999", (double) histogram.getValueAtPercentile(99.9) / unit).
+                add("Max", (double) histogram.getMax() / unit);
+    }
+}
@@ -0,0 +1,72 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.replication.ReplicationFollower;
+import com.dhbw.btreebackend.replication.ReplicationLeader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api")
+public class ReplicationController {
+
+    @Autowired(required = false)
+    private ReplicationLeader replicationLeader;
+
+    @Autowired(required = false)
+    private ReplicationFollower replicationFollower;
+
+    /**
+     * This method provides the endpoint for monitoring the replication. It returns the role of this instance and,
+     * depending on the role, the state of every connected follower or the lag behind the leader.
+     *
+     * @return ResponseEntity, containing a JsonObject with the replication state and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/replication", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getReplicationState() {
+        JsonObjectBuilder stateBuilder = Json.createObjectBuilder();
+        if (replicationLeader != null) {
+            long sequence = replicationLeader.getSequence();
+            JsonArrayBuilder followersBuilder = Json.createArrayBuilder();
+            for (ReplicationLeader.FollowerSession session : replicationLeader.getSessions()) {
+                followersBuilder.add(Json.createObjectBuilder().
+                        add("Address", session.getAddress()).
+                        add("SentSequence", session.getSentSequence()).
+                        add("QueuedOperations", session.getQueuedOperations()).
+                        add("LagOperations", Math.max(0, sequence - session.getSentSequence())));
+            }
+            stateBuilder.add("Role", "leader").
+                    add("Port", replicationLeader.getPort()).
+                    add("Sequence", sequence).
+                    add("Followers", followersBuilder);
+        } else if (replicationFollower != null) {
+            stateBuilder.add("Role", "follower").
+                    add("Leader", replicationFollower.getLeaderAddress()).
+                    add("Connected", replicationFollower.isConnected()).
+                    add("AppliedSequence", replicationFollower.getAppliedSequence()).
+                    add("LeaderSequence", replicationFollower.getLeaderSequence()).
+                    add("LagOperations", replicationFollower.getLagOperations()).
+                    add("LastFrameDelayMillis", replicationFollower.getLastFrameDelayMillis()).
+                    add("MillisSinceLastFrame",
+                            System.currentTimeMillis() - replicationFollower.getLastFrameReceivedMillis()).
+                    add("AppliedOperations", replicationFollower.getAppliedOperations()).
+                    add("LoadedSnapshots", replicationFollower.getLoadedSnapshots()).
+                    add("ReceivedBytes", replicationFollower.getReceivedBytes());
+        } else {
+            stateBuilder.add("Role", "none");
+        }
+
+        return new ResponseEntity<>(stateBuilder.build().toString(), HttpStatus.OK);
+    }
+}
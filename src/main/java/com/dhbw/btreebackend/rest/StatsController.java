@@ -0,0 +1,157 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.BTreeStatistics;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator;
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator.OperationStatistics;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@CrossOrigin
+@RestController
+@RequestMapping ("/api")
+public class StatsController {
+
+    @Autowired
+    private OrderedIntIndex bTree;
+
+    @Autowired
+    private MutationPipeline mutationPipeline;
+
+    /**
+     * This method provides the endpoint for monitoring the shape of the tree. The statistics are maintained by the
+     * tree on every change, so the tree is not walked. It returns the number of keys and nodes, the height, the order,
+     * the fill factor, the estimated heap size, the number of leaves left underfull by relaxed deletes (0 for engines
+     * without BTree nodes) and the nodes, keys and fill factor of every level from the root down.
+     *
+     * @return ResponseEntity, containing a JsonObject with the statistics and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getStats() {
+        BTreeStatistics statistics = mutationPipeline.read(() -> bTree.getStatistics());
+        int pendingCompactions = (bTree instanceof BTree) ?
+                mutationPipeline.read(() -> ((BTree) bTree).getPendingCompactions()) : 0;
+        JsonArrayBuilder levelsBuilder = Json.createArrayBuilder();
+        for (int level = statistics.getHeight() - 1; level >= 0; level--) {
+            levelsBuilder.add(Json.createObjectBuilder().
+                    add("Depth", statistics.getHeight() - 1 - level).
+                    add("Nodes", statistics.getNodesOnLevel(level)).
+                    add("Keys", statistics.getKeysOnLevel(level)).
+                    add("FillFactor", statistics.getFillFactor(level)));
+        }
+        JsonObject responseJson = Json.createObjectBuilder().
+                add("Keys", statistics.getNumberOfKeys()).
+                add("Nodes", statistics.getNumberOfNodes()).
+                add("Height", statistics.getHeight()).
+                add("Order", statistics.getOrder()).
+                add("FillFactor", statistics.getFillFactor()).
+                add("EstimatedHeapBytes", statistics.getEstimatedHeapBytes()).
+                add("PendingCompactions", pendingCompactions).
+                add("Levels", levelsBuilder).
+                build();
+
+        return new ResponseEntity<>(responseJson.toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for the simulated page cache. For every type of operation (search, insert,
+     * delete) and for all together it returns the number of operations, node accesses, hits, misses and write-backs
+     * of dirty pages, the miss rate and the modeled I/O (misses plus write-backs) in total and per operation.
+     * While a page cache is set, every node visited by a search, insert or delete is recorded in a buffer of the
+     * visiting thread's stripe, and about every 256 accesses of a stripe one thread applies them to the cache under a
+     * lock, which costs searches some throughput. This endpoint applies the buffered accesses before answering.
+     *
+     * @return ResponseEntity, containing a JsonObject with the configuration and the statistics of the page cache,
+     *      "Enabled": false if there is none or the engine has no BTree nodes, and Http status-code 200(Ok).
+     */
+    @GetMapping(value = "/pagecache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getPageCache() {
+        PageCacheSimulator pageCache = (bTree instanceof BTree) ?
+                mutationPipeline.read(() -> ((BTree) bTree).getPageCache()) : null;
+        JsonObjectBuilder responseBuilder = Json.createObjectBuilder().add("Enabled", pageCache != null);
+        if (pageCache != null) {
+            JsonObjectBuilder operationsBuilder = Json.createObjectBuilder();
+            for (PageCacheSimulator.Operation operation : PageCacheSimulator.Operation.values()) {
+                operationsBuilder.add(operation.name(), createPageCacheStatisticsJson(
+                        pageCache.getStatistics(operation)));
+            }
+            responseBuilder.
+                    add("Policy", pageCache.getPolicy().name()).
+                    add("Pages", pageCache.getCapacity()).
+                    add("ResidentPages", pageCache.getResidentPages()).
+                    add("Operations", operationsBuilder).
+                    add("Total", createPageCacheStatisticsJson(pageCache.getTotalStatistics()));
+        }
+
+        return new ResponseEntity<>(responseBuilder.build().toString(), HttpStatus.OK);
+    }
+
+    /**
+     * This method provides the endpoint for configuring the simulated page cache. It replaces the page cache with an
+     * empty one of the given number of pages and policy, or removes it if the number of pages is 0. Engines without
+     * BTree nodes are rejected with Http status-code 409(Conflict).
+     *
+     * @param pages: The number of pages of the new page cache, 0 to remove the page cache.
+     * @param policy: The replacement policy of the new page cache (LRU, CLOCK or TWO_Q), LRU by default.
+     * @return ResponseEntity, containing a JsonObject with the configuration and the statistics of the page cache
+     *      and Http status-code 200(Ok).
+     */
+    @PostMapping(value = "/pagecache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> setPageCache(@RequestParam("pages") int pages,
+                                               @RequestParam(value = "policy", defaultValue = "LRU") String policy) {
+        if (!(bTree instanceof BTree)) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Seitencache wird von dieser Engine nicht unterstützt!");
+        }
+        PageCacheSimulator.Policy pageCachePolicy;
+        try {
+            pageCachePolicy = PageCacheSimulator.Policy.valueOf(policy);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Strategie nicht vorhanden!");
+        }
+        if (pages < 0) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Seitenanzahl ungültig!");
+        }
+        PageCacheSimulator pageCache = (pages > 0) ? new PageCacheSimulator(pages, pageCachePolicy) : null;
+        mutationPipeline.execute(() -> {
+            ((BTree) bTree).setPageCache(pageCache);
+            return null;
+        }).join();
+
+        return getPageCache();
+    }
+
+    /**
+     * This method creates the JSON-representation of the page cache statistics of a type of operation.
+     * @param statistics: The statistics.
+     * @return JsonObjectBuilder, containing the statistics.
+     */
+    private JsonObjectBuilder createPageCacheStatisticsJson(OperationStatistics statistics) {
+        return Json.createObjectBuilder().
+                add("Operations", statistics.getOperations()).
+                add("Accesses", statistics.getAccesses()).
+                add("Hits", statistics.getHits()).
+                add("Misses", statistics.getMisses()).
+                add("WriteBacks", statistics.getWriteBacks()).
+                add("MissRate", statistics.getMissRate()).
+                add("ModeledIo", statistics.getModeledIo()).
+                add("ModeledIoPerOperation", statistics.getModeledIoPerOperation());
+    }
+}
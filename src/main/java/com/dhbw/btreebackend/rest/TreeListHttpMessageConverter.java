@@ -0,0 +1,63 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.json.BTreeToColumnar;
+import com.dhbw.btreebackend.json.BTreeToJson;
+import com.dhbw.btreebackend.metrics.RequestMetrics.Phase;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes a TreeListResponse straight to the response stream, as JSON (the attributes followed by the trees as a single
+ * string, see BTreeToJson) or, if the client accepts it, in the binary format of BTreeToColumnar. Spring MVC chooses
+ * the format by the Accept header among the media types the endpoint produces, JSON if the client accepts both.
+ * Once written, the WRITE phase and the timer of the request are finished with the number of bytes written. Only
+ * writes, never reads. Registered with Spring MVC by being a bean.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class TreeListHttpMessageConverter extends AbstractHttpMessageConverter<TreeListResponse> {
+    public static final MediaType COLUMNAR = MediaType.valueOf(BTreeToColumnar.MEDIA_TYPE_VALUE);
+    private static final String TREE_LIST_KEY = "Trees";
+
+    public TreeListHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, COLUMNAR);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == TreeListResponse.class;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected TreeListResponse readInternal(Class<? extends TreeListResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Tree lists are only written", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(TreeListResponse response, HttpOutputMessage outputMessage) throws IOException {
+        long bytes;
+        if(COLUMNAR.isCompatibleWith(outputMessage.getHeaders().getContentType())) {
+            bytes = BTreeToColumnar.writeTreeListResponse(response.getAttributes(), response.getTrees(),
+                    outputMessage.getBody());
+        } else {
+            bytes = BTreeToJson.writeTreeListResponse(response.getAttributes(), TREE_LIST_KEY, response.getTrees(),
+                    outputMessage.getBody());
+        }
+        outputMessage.getBody().flush();
+        response.getTimer().endPhase(Phase.WRITE);
+        response.getTimer().finish(bytes, response.getTrees().size());
+    }
+}
@@ -0,0 +1,42 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.json.BTreeColumns;
+import com.dhbw.btreebackend.metrics.RequestMetrics.RequestTimer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The response of the endpoints returning the trees after every step, written by the TreeListHttpMessageConverter
+ * either as JSON or in the binary format of BTreeToColumnar, depending on the Accept header.
+ * Contains the attributes preceding the trees (values of null, Integer or List of Integer), the columnar copies of the
+ * trees and the timer of the request, which is finished once the response is written.
+ *
+ * @author Elias Müller
+ * @version 1.0
+ */
+public class TreeListResponse {
+    private final Map<String, Object> attributes;
+    private final List<BTreeColumns> trees;
+    private final RequestTimer timer;
+
+    public TreeListResponse(Map<String, Object> attributes, List<BTreeColumns> trees, RequestTimer timer) {
+        this.attributes = attributes;
+        this.trees = trees;
+        this.timer = timer;
+    }
+
+    /* Standard getters */
+
+    public Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    public List<BTreeColumns> getTrees() {
+        return this.trees;
+    }
+
+    public RequestTimer getTimer() {
+        return this.timer;
+    }
+}
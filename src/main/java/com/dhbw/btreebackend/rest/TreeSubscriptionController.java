@@ -0,0 +1,59 @@
+package com.dhbw.btreebackend.rest;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.json.BTreeColumns;
+import com.dhbw.btreebackend.json.BTreeToJson;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import com.dhbw.btreebackend.push.TreeChangePublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import javax.json.stream.JsonGenerator;
+import java.io.StringWriter;
+
+/**
+ * @author Elias Müller
+ * @version 1.0
+ */
+@Controller
+public class TreeSubscriptionController {
+
+    @Autowired
+    private OrderedIntIndex bTree;
+
+    @Autowired
+    private MutationPipeline mutationPipeline;
+
+    @Autowired
+    private TreeChangePublisher treeChangePublisher;
+
+    /**
+     * This method answers a subscription to /app/tree with the current tree and its version. The client then keeps
+     * the tree up to date with the changes published on /topic/tree whose version is greater.
+     * Engines without BTree nodes and the sharded BTree have no single tree to send, see
+     * BTreeColumns.getSingleTree(), so the message contains only the version and "Tree": null.
+     *
+     * @return JSON, containing the version and the JSON-representation of the tree.
+     */
+    @SubscribeMapping("/tree")
+    public String subscribeTree() {
+        return mutationPipeline.read(() -> {
+            StringWriter message = new StringWriter();
+            try (JsonGenerator generator = BTreeToJson.createGenerator(message)) {
+                generator.writeStartObject().
+                        write("Version", treeChangePublisher.getVersion()).
+                        writeKey("Tree");
+                BTree nodeTree = BTreeColumns.getSingleTree(bTree);
+                if (nodeTree != null) {
+                    BTreeToJson.writeBTreeJson(BTreeColumns.capture(nodeTree), generator);
+                } else {
+                    generator.writeNull();
+                }
+                generator.writeEnd();
+            }
+            return message.toString();
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package com.dhbw.btreebackend.trace;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.btreeimplementation.StructuralEventListener;
+import com.dhbw.btreebackend.btreeimplementation.StructuralEventRing;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the StructuralEventRing the BTree publishes its splits, rotations, merges, root changes and phantomRefs into,
+ * and passes the events to the registered tracing hooks. The ring is only installed if 'btree.events.capacity' is
+ * greater than 0 (0 by default) or it is enabled at runtime, so without it the BTree does not publish at all.
+ * The hooks are never called by the BTree: a single background thread reads the new events from the ring every
+ * 'btree.events.drain-millis' (100 by default) milliseconds and passes them to the hooks, so a slow hook cannot slow
+ * down a mutation, it can only miss events that were overwritten before they were read. If 'btree.events.log' is true,
+ * a hook logging every event is registered, e.g. to trace the rebalancing of a production instance without attaching
+ * a profiler.
+ * Only the engine 'btree' publishes structural events. With another engine, a capacity greater than 0 is rejected at
+ * startup and the ring cannot be enabled at runtime.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+@Component
+public class StructuralEventTracer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StructuralEventTracer.class);
+    private static final int EVENTS_PER_DRAIN = 65536;
+
+    private final BTree nodeTree;
+    private final MutationPipeline mutationPipeline;
+    private final List<StructuralEventListener> hooks = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService drainer;
+    private volatile StructuralEventRing ring;
+    private StructuralEventRing drainedRing;
+    private long drainedSequence;
+    private long lostEvents;
+
+    public StructuralEventTracer(OrderedIntIndex bTree, MutationPipeline mutationPipeline,
+                                 @Value("${btree.events.capacity:0}") int capacity,
+                                 @Value("${btree.events.drain-millis:100}") long drainMillis,
+                                 @Value("${btree.events.log:false}") boolean log) {
+        this.nodeTree = (bTree instanceof BTree) ? (BTree) bTree : null;
+        this.mutationPipeline = mutationPipeline;
+        if(capacity > 0 && this.nodeTree == null) {
+            throw new IllegalArgumentException("btree.events.capacity requires btree.engine=btree");
+        }
+        this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "btree-event-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if(capacity > 0) {
+            setCapacity(capacity);
+        }
+        if(log) {
+            addHook(StructuralEventTracer::logEvent);
+        }
+        this.drainer.scheduleWithFixedDelay(this::drain, drainMillis, drainMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop draining the ring.
+     */
+    @PreDestroy
+    public void stop() {
+        this.drainer.shutdownNow();
+    }
+
+    /**
+     * Replace the ring with an empty one of the given capacity, or remove it. The BTree is changed by the mutation
+     * pipeline, so no mutation publishes into the old ring afterwards.
+     * @param capacity number of events to keep, rounded up to a power of two, 0 to stop publishing.
+     * @return the new ring, null if capacity is 0.
+     * @throws IllegalArgumentException if capacity is negative or greater than StructuralEventRing.MAX_CAPACITY.
+     * @throws IllegalStateException if capacity is greater than 0 and the engine has no structural events.
+     */
+    public StructuralEventRing setCapacity(int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if(!isSupported()) {
+            if(capacity > 0) {
+                throw new IllegalStateException("Structural events require the btree engine");
+            }
+            return null;
+        }
+        StructuralEventRing newRing = (capacity > 0) ? new StructuralEventRing(capacity) : null;
+        this.mutationPipeline.execute(() -> {
+            this.nodeTree.setStructuralEventRing(newRing);
+            return null;
+        }).join();
+        this.ring = newRing;
+        return newRing;
+    }
+
+    /**
+     * Register a hook to be passed every event published from now on, on the drainer thread.
+     * @param hook the hook to add.
+     */
+    public void addHook(StructuralEventListener hook) {
+        this.hooks.add(hook);
+    }
+
+    /**
+     * Remove a previously registered hook.
+     * @param hook the hook to remove.
+     */
+    public void removeHook(StructuralEventListener hook) {
+        this.hooks.remove(hook);
+    }
+
+    /**
+     * Check whether the engine publishes structural events, which only BTree does.
+     * @return true if a ring can be installed.
+     */
+    public boolean isSupported() {
+        return this.nodeTree != null;
+    }
+
+    /**
+     * Get the current ring, e.g. to replay its events.
+     * @return the ring, null if no events are published.
+     */
+    public StructuralEventRing getRing() {
+        return this.ring;
+    }
+
+    /**
+     * Get the number of events the hooks missed, as they were overwritten before the drainer read them.
+     * @return number of missed events.
+     */
+    public synchronized long getLostEvents() {
+        return this.lostEvents;
+    }
+
+    /**
+     * Pass the events published since the last drain to the hooks. Starts at the beginning of a new ring. Does not
+     * read the ring at all while there are no hooks, so hooks only get the events published after they were added.
+     */
+    private synchronized void drain() {
+        StructuralEventRing currentRing = this.ring;
+        if(currentRing != this.drainedRing) {
+            this.drainedRing = currentRing;
+            this.drainedSequence = 0;
+        }
+        if(currentRing == null) {
+            return;
+        }
+        if(this.hooks.isEmpty()) {
+            this.drainedSequence = currentRing.getNextSequence();
+            return;
+        }
+        try {
+            long fromSequence;
+            do {
+                fromSequence = this.drainedSequence;
+                int[] passed = new int[1];
+                this.drainedSequence = currentRing.read(fromSequence, EVENTS_PER_DRAIN,
+                        (sequence, timeNanos, type, level, uuidMost, uuidLeast, key, numberOfElements) -> {
+                            ++passed[0];
+                            for(StructuralEventListener hook : this.hooks) {
+                                hook.structuralEvent(sequence, timeNanos, type, level, uuidMost, uuidLeast, key,
+                                        numberOfElements);
+                            }
+                        });
+                this.lostEvents += this.drainedSequence - fromSequence - passed[0];
+            } while(this.drainedSequence - fromSequence >= EVENTS_PER_DRAIN);
+        } catch(RuntimeException e) {
+            LOGGER.warn("Tracing hook failed", e);
+        }
+    }
+
+    /**
+     * The hook registered by 'btree.events.log', logging an event.
+     */
+    private static void logEvent(long sequence, long timeNanos, StructuralEventRing.Type type, int level,
+                                 long uuidMost, long uuidLeast, int key, int numberOfElements) {
+        LOGGER.info("#{} {} level={} node={} key={} elements={}", sequence, type, level,
+                new UUID(uuidMost, uuidLeast), key, numberOfElements);
+    }
+}
@@ -0,0 +1,104 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the BEpsilonTree against a TreeSet: random inserts, deletes and searches with messages still buffered on
+ * every level, then after flushing all buffers into the leaves, for several orders and buffer capacities. Also checks
+ * that buffering makes inserts cheaper than descending to a leaf for every key.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class BEpsilonTreeTest {
+
+    @Test
+    void randomOperationsMatchTreeSet() {
+        int[][] ordersAndCapacities = {{3, 1}, {3, 4}, {4, 2}, {5, 20}, {8, 3}, {8, 32}, {16, 64}};
+        for(int[] orderAndCapacity : ordersAndCapacities) {
+            Random random = new Random(orderAndCapacity[0] * 100L + orderAndCapacity[1]);
+            BEpsilonTree tree = new BEpsilonTree(orderAndCapacity[0], orderAndCapacity[1]);
+            TreeSet<Integer> expected = new TreeSet<>();
+            String seed = "order " + orderAndCapacity[0] + ", buffer capacity " + orderAndCapacity[1];
+            for(int round = 0; round < 5; ++round) {
+                for(int operation = 0; operation < 4000; ++operation) {
+                    int key = random.nextInt(3000) - 1500;
+                    int choice = random.nextInt(10);
+                    if(choice < 5) {
+                        tree.insertElement(key);
+                        expected.add(key);
+                    } else if(choice < 8) {
+                        tree.deleteElement(key);
+                        expected.remove(key);
+                    } else {
+                        assertEquals(expected.contains(key), tree.searchElement(key).isFound(), seed + ", key " + key);
+                    }
+                }
+                checkTree(tree, expected, seed + ", round " + round);
+                if(round % 2 == 1) {
+                    tree.flush();
+                    assertEquals(0, tree.getNumberOfBufferedMessages(), seed);
+                    checkTree(tree, expected, seed + ", flushed round " + round);
+                }
+            }
+        }
+    }
+
+    @Test
+    void deletesOfMissingKeysAndClear() {
+        BEpsilonTree tree = new BEpsilonTree(4, 3);
+        tree.deleteElement(7);
+        assertEquals(0, tree.getHeight());
+        assertTrue(!tree.searchElement(7).isFound());
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        for(int key = 0; key < 500; key += 2) {
+            tree.insertElement(key);
+            expected.add(key);
+        }
+        for(int key = 1; key < 500; key += 2) {
+            tree.deleteElement(key);
+        }
+        tree.insertElement(10);
+        checkTree(tree, expected, "odd deletes");
+        tree.flush();
+        checkTree(tree, expected, "odd deletes flushed");
+
+        tree.clear();
+        assertEquals(0, tree.getHeight());
+        checkTree(tree, new TreeSet<>(), "cleared");
+        tree.insertElement(-3);
+        assertEquals(new ArrayList<>(List.of(-3)), tree.getAllElementKeysOrderedAscending());
+    }
+
+    @Test
+    void bufferedInsertsAccessFewerNodesThanRootToLeafPaths() {
+        BEpsilonTree tree = new BEpsilonTree(8);
+        int[] keys = new Random(3).ints(100000, 0, 1000000).toArray();
+        for(int key : keys) {
+            tree.insertElement(key);
+        }
+        tree.flush();
+        assertTrue(tree.getHeight() >= 3, "height " + tree.getHeight());
+        // without buffers, every insert would access at least one node per level
+        assertTrue(tree.getNodeAccesses() < (long) keys.length * tree.getHeight() / 2,
+                tree.getNodeAccesses() + " node accesses");
+    }
+
+    private static void checkTree(BEpsilonTree tree, TreeSet<Integer> expected, String seed) {
+        assertEquals(new ArrayList<>(expected), tree.getAllElementKeysOrderedAscending(), seed);
+        for(int key : expected) {
+            assertTrue(tree.searchElement(key).isFound(), seed + ", key " + key);
+            assertEquals(expected.contains(key + 1), tree.searchElement(key + 1).isFound(),
+                    seed + ", key " + (key + 1));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the structure of a BTree against its definition and against a reference set of the keys it should hold.
+ * Walks the whole tree and checks that the keys are ordered ascending within their separators, that every node but
+ *      the root holds between elementMin and order - 1 keys (leaves at least one if deletes are relaxed and not yet
+ *      compacted), that neighbouring elements share their child, that every child references its parent and that all
+ *      leaves have the same depth. The number of nodes and keys per level is compared with the incrementally
+ *      maintained statistics, the keys, first() and last() with the reference set.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+public final class BTreeInvariants {
+
+    private BTreeInvariants() {
+    }
+
+    /**
+     * Check the BTree.
+     * @param bTree the BTree to check, not sharded.
+     * @param expected the keys the BTree must hold.
+     * @param relaxed true if leaves may hold fewer than elementMin keys because of relaxed deletes.
+     */
+    public static void check(BTree bTree, SortedSet<Integer> expected, boolean relaxed) {
+        List<Integer> keys = new ArrayList<>();
+        BTreeStatistics statistics = bTree.getStatistics();
+        Node root = bTree.getRoot();
+        if(root == null) {
+            assertTrue(expected.isEmpty(), "empty tree, expected " + expected.size() + " keys");
+            assertEquals(0, statistics.getHeight());
+            assertEquals(0, statistics.getNumberOfNodes());
+            assertEquals(0, statistics.getNumberOfKeys());
+            assertNull(bTree.first());
+            assertNull(bTree.last());
+            return;
+        }
+        int height = statistics.getHeight();
+        long[] nodesOnLevel = new long[height];
+        long[] keysOnLevel = new long[height];
+        checkNode(bTree, root, height - 1, Long.MIN_VALUE, Long.MAX_VALUE, relaxed, nodesOnLevel, keysOnLevel, keys);
+        assertTrue(root.getNumberOfElements() > 0, "root without keys");
+        for(int level = 0; level < height; ++level) {
+            assertEquals(nodesOnLevel[level], statistics.getNodesOnLevel(level), "nodes on level " + level);
+            assertEquals(keysOnLevel[level], statistics.getKeysOnLevel(level), "keys on level " + level);
+        }
+        assertEquals(expected.size(), statistics.getNumberOfKeys());
+        assertEquals(new ArrayList<>(expected), keys);
+        assertEquals(expected.first(), bTree.first());
+        assertEquals(expected.last(), bTree.last());
+        assertEquals(keys, bTree.getAllElementKeysOrderedAscending());
+    }
+
+    /**
+     * Check a node and its subtree.
+     * @param bTree the BTree.
+     * @param node the node.
+     * @param level level of the node counted from the leaves; the leaves must be reached exactly at level 0.
+     * @param lowerBound all keys of the subtree must be greater than this.
+     * @param upperBound all keys of the subtree must be smaller than this.
+     * @param relaxed true if leaves may be underfull.
+     * @param nodesOnLevel counted nodes per level.
+     * @param keysOnLevel counted keys per level.
+     * @param keys collected keys in ascending order.
+     */
+    private static void checkNode(BTree bTree, Node node, int level, long lowerBound, long upperBound,
+                                  boolean relaxed, long[] nodesOnLevel, long[] keysOnLevel, List<Integer> keys) {
+        int order = bTree.getOrder();
+        int elementMin = (order + 1) / 2 - 1;
+        int numberOfElements = node.getNumberOfElements();
+        assertTrue(level >= 0, "leaves of different depth");
+        assertTrue(numberOfElements <= order - 1, "overfull node " + node.getUuid());
+        if(node != bTree.getRoot()) {
+            int minimum = (relaxed && level == 0) ? Math.min(1, elementMin) : elementMin;
+            assertTrue(numberOfElements >= minimum, "underfull node " + node.getUuid() + " on level " + level);
+        }
+        assertNull(node.getPhantomRef(), "phantomRef left in node " + node.getUuid());
+        ++nodesOnLevel[level];
+        keysOnLevel[level] += numberOfElements;
+        if(node.isLeaf()) {
+            assertEquals(0, level, "leaves of different depth");
+        }
+        long previous = lowerBound;
+        for(int i = 0; i <= numberOfElements; ++i) {
+            long next = (i < numberOfElements) ? node.getElements().get(i).getKey() : upperBound;
+            assertTrue(previous < next, "keys out of order in node " + node.getUuid());
+            if(!node.isLeaf()) {
+                Node child = node.getChild(i);
+                assertNotNull(child, "missing child in node " + node.getUuid());
+                assertSame(node, child.getParentNode(), "wrong parent of node " + child.getUuid());
+                if(i > 0 && i < numberOfElements) {
+                    assertSame(child, node.getElements().get(i - 1).getRightNode(), "children not shared");
+                }
+                checkNode(bTree, child, level - 1, previous, next, relaxed, nodesOnLevel, keysOnLevel, keys);
+            }
+            if(i < numberOfElements) {
+                keys.add((int) next);
+            }
+            previous = next;
+        }
+    }
+}
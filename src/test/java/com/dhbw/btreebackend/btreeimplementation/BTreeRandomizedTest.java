@@ -0,0 +1,108 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Applies random sequences of inserts, deletes, polls and range deletes to BTrees of different orders and compares
+ * them with a TreeSet after every few operations, checking the structure with BTreeInvariants. Keys are drawn from a
+ * small range, so inserts of contained keys, deletes of missing keys and ranges covering whole subtrees are frequent.
+ * Every run uses its own seed, which is part of the failure message. Range deletes at the bounds of int are checked
+ * separately.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class BTreeRandomizedTest {
+    private static final int RUNS = 60;
+    private static final int ROUNDS = 150;
+
+    @Test
+    void strictDeletesMatchTreeSet() {
+        for(int run = 0; run < RUNS; ++run) {
+            applyRandomOperations(run, false);
+        }
+    }
+
+    @Test
+    void rangeDeletesOfWholeTreeAndBounds() {
+        for(int order = 3; order <= 8; ++order) {
+            BTree bTree = new BTree(order);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int key = -500; key <= 500; ++key) {
+                bTree.insertElement(key);
+                expected.add(key);
+            }
+            bTree.insertElement(Integer.MIN_VALUE);
+            bTree.insertElement(Integer.MAX_VALUE);
+            expected.add(Integer.MIN_VALUE);
+            expected.add(Integer.MAX_VALUE);
+            assertEquals(102, bTree.deleteRange(400, Integer.MAX_VALUE));
+            expected.subSet(400, true, Integer.MAX_VALUE, true).clear();
+            BTreeInvariants.check(bTree, expected, false);
+            assertEquals(101, bTree.deleteRange(Integer.MIN_VALUE, -401));
+            expected.subSet(Integer.MIN_VALUE, true, -401, true).clear();
+            BTreeInvariants.check(bTree, expected, false);
+            assertEquals(0, bTree.deleteRange(1000, 2000));
+            assertEquals(0, bTree.deleteRange(10, 9));
+            assertEquals(expected.size(), bTree.deleteRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+            expected.clear();
+            BTreeInvariants.check(bTree, expected, false);
+        }
+    }
+
+    /**
+     * Apply random operations to a BTree of random order and check it against a TreeSet after every round. With
+     * relaxed deletes, compact the BTree with a small budget now and then, and completely at the end.
+     * @param seed seed of the run.
+     * @param relaxed true to relax deletes.
+     */
+    static void applyRandomOperations(long seed, boolean relaxed) {
+        Random random = new Random(seed);
+        int order = 3 + random.nextInt(8);
+        int keyRange = 50 + random.nextInt(2000);
+        BTree bTree = new BTree(order);
+        bTree.setRelaxedDeletes(relaxed);
+        TreeSet<Integer> expected = new TreeSet<>();
+        String run = "seed " + seed + ", order " + order;
+        for(int round = 0; round < ROUNDS; ++round) {
+            int insertWeight = (round % 30 < 20) ? 6 : 2;
+            for(int i = random.nextInt(40); i >= 0; --i) {
+                int key = random.nextInt(keyRange) - keyRange / 2;
+                int operation = random.nextInt(insertWeight + 5);
+                if(operation < insertWeight) {
+                    assertEquals(expected.add(key), bTree.insertElement(key), run);
+                } else if(operation == insertWeight) {
+                    assertEquals(expected.remove(key), bTree.deleteElement(key), run);
+                } else if(operation == insertWeight + 1) {
+                    assertEquals(expected.pollFirst(), bTree.pollFirst(), run);
+                } else if(operation == insertWeight + 2) {
+                    assertEquals(expected.pollLast(), bTree.pollLast(), run);
+                } else if(operation == insertWeight + 3) {
+                    int upperBound = key + random.nextInt(keyRange / 4);
+                    NavigableSet<Integer> range = expected.subSet(key, true, upperBound, true);
+                    int size = range.size();
+                    assertEquals(size, bTree.deleteRange(key, upperBound), run);
+                    range.clear();
+                } else if(relaxed) {
+                    bTree.compact(random.nextInt(8));
+                }
+            }
+            BTreeInvariants.check(bTree, expected, relaxed);
+            assertEquals(new ArrayList<>(expected).subList(0, Math.min(10, expected.size())),
+                    bTree.getElementKeysInRange(Integer.MIN_VALUE, expected.isEmpty() ? 0 :
+                            new ArrayList<>(expected).get(Math.min(10, expected.size()) - 1)), run);
+        }
+        if(relaxed) {
+            bTree.compact(Integer.MAX_VALUE);
+            assertEquals(0, bTree.getPendingCompactions(), run);
+            BTreeInvariants.check(bTree, expected, false);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that binary snapshots keep the keys, the order and the shape of a BTree, that snapshots written by a
+ * ShardedBTree load into a ShardedBTree and into a valid BTree and vice versa, and that truncated snapshots are
+ * rejected.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class BTreeSnapshotTest {
+
+    @Test
+    void snapshotRoundTripKeepsKeysAndShape() throws IOException {
+        Random random = new Random(42);
+        for(int run = 0; run < 30; ++run) {
+            int order = 3 + random.nextInt(8);
+            BTree bTree = new BTree(order);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int i = random.nextInt(3000); i > 0; --i) {
+                int key = random.nextInt(5000);
+                bTree.insertElement(key);
+                expected.add(key);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            bTree.writeSnapshot(out);
+            BTree loaded = new BTree(5);
+            loaded.loadSnapshot(ByteBuffer.wrap(out.toByteArray()));
+            assertEquals(order, loaded.getOrder());
+            BTreeInvariants.check(loaded, expected, false);
+            assertEquals(bTree.getStatistics().getHeight(), loaded.getStatistics().getHeight());
+        }
+    }
+
+    @Test
+    void snapshotsMoveBetweenShardedTreesAndBTrees() throws IOException {
+        Random random = new Random(7);
+        for(int run = 0; run < 40; ++run) {
+            int order = 3 + random.nextInt(8);
+            ShardedBTree sharded = new ShardedBTree(order, 2 + random.nextInt(7));
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int i = random.nextInt(5000); i > 0; --i) {
+                int key = random.nextInt(100000) - 50000;
+                sharded.insertElement(key);
+                expected.add(key);
+            }
+            String seed = "run " + run;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            sharded.writeSnapshot(out);
+            BTree bTree = new BTree(5);
+            bTree.loadSnapshot(ByteBuffer.wrap(out.toByteArray()));
+            assertEquals(order, bTree.getOrder(), seed);
+            BTreeInvariants.check(bTree, expected, false);
+
+            ShardedBTree reloaded = new ShardedBTree(5, 1 + random.nextInt(8));
+            reloaded.loadSnapshot(ByteBuffer.wrap(out.toByteArray()));
+            assertEquals(order, reloaded.getOrder(), seed);
+            ShardedBTreeRandomizedTest.checkShardedTree(reloaded, expected, seed);
+
+            ByteArrayOutputStream bTreeOut = new ByteArrayOutputStream();
+            bTree.writeSnapshot(bTreeOut);
+            ShardedBTree fromBTree = new ShardedBTree(5, 3);
+            fromBTree.loadSnapshot(ByteBuffer.wrap(bTreeOut.toByteArray()));
+            ShardedBTreeRandomizedTest.checkShardedTree(fromBTree, expected, seed);
+        }
+    }
+
+    @Test
+    void truncatedSnapshotIsRejectedAndKeepsTree() throws IOException {
+        BTree bTree = new BTree(4);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for(int key = 0; key < 1000; ++key) {
+            bTree.insertElement(key);
+            expected.add(key);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bTree.writeSnapshot(out);
+        byte[] truncated = new byte[out.size() / 2];
+        System.arraycopy(out.toByteArray(), 0, truncated, 0, truncated.length);
+        BTree target = new BTree(4);
+        target.insertElement(-1);
+        assertThrows(IOException.class, () -> target.loadSnapshot(ByteBuffer.wrap(truncated)));
+        BTreeInvariants.check(target, new TreeSet<>(List.of(-1)), false);
+    }
+}
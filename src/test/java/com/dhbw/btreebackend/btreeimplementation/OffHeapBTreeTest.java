@@ -0,0 +1,186 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the OffHeapBTree with plain and packed leaves: random inserts, deletes, searches, range queries and deletes
+ * match a TreeSet, node records freed by deletes are reused by later inserts instead of growing the slabs, changing
+ * the order keeps the keys and builds the same shape as a BTree, and snapshots move between both engines.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class OffHeapBTreeTest {
+
+    @Test
+    void randomOperationsMatchTreeSet() {
+        for(int run = 0; run < 40; ++run) {
+            Random random = new Random(run);
+            boolean packedLeaves = run % 2 == 1;
+            OffHeapBTree tree = new OffHeapBTree(3 + random.nextInt(12), packedLeaves);
+            TreeSet<Integer> expected = new TreeSet<>();
+            // small ranges keep leaves in the narrow width classes, wide ranges need full 32-bit deltas
+            int keyRange = (run % 4 < 2) ? 200 + random.nextInt(5000) : Integer.MAX_VALUE;
+            String seed = "run " + run;
+            for(int operation = 0; operation < 5000; ++operation) {
+                int key = randomKey(random, keyRange);
+                int choice = random.nextInt(100);
+                if(choice < 50) {
+                    assertEquals(expected.add(key), tree.insertElement(key), seed);
+                } else if(choice < 80) {
+                    assertEquals(expected.remove(key), tree.deleteElement(key), seed);
+                } else if(choice < 90) {
+                    assertEquals(expected.contains(key), tree.searchElement(key).isFound(), seed);
+                } else if(choice < 93) {
+                    assertEquals(expected.pollFirst(), tree.pollFirst(), seed);
+                } else if(choice < 96) {
+                    assertEquals(expected.pollLast(), tree.pollLast(), seed);
+                } else {
+                    int upperBound = (int) Math.min(Integer.MAX_VALUE, (long) key + random.nextInt(keyRange / 50 + 1));
+                    ArrayList<Integer> inRange = new ArrayList<>(expected.subSet(key, true, upperBound, true));
+                    assertEquals(inRange, tree.getElementKeysInRange(key, upperBound), seed);
+                    if(random.nextBoolean()) {
+                        assertEquals(inRange.size(), tree.deleteRange(key, upperBound), seed);
+                        expected.removeAll(inRange);
+                    }
+                }
+            }
+            checkTree(tree, expected, seed);
+        }
+    }
+
+    @Test
+    void freedRecordsAreReused() {
+        for(boolean packedLeaves : new boolean[] {false, true}) {
+            OffHeapBTree tree = new OffHeapBTree(6, packedLeaves);
+            int[] keys = new Random(3).ints(20000, -1000000, 1000000).distinct().toArray();
+            for(int key : keys) {
+                tree.insertElement(key);
+            }
+            int nodes = tree.getNumberOfNodes();
+            long allocatedBytes = tree.getAllocatedBytes();
+
+            for(int key : keys) {
+                tree.deleteElement(key);
+            }
+            assertEquals(0, tree.getNumberOfKeys());
+            assertEquals(0, tree.getNumberOfNodes());
+            assertEquals(allocatedBytes, tree.getAllocatedBytes());
+
+            for(int round = 0; round < 3; ++round) {
+                for(int key : keys) {
+                    tree.insertElement(key);
+                }
+                assertEquals(nodes, tree.getNumberOfNodes());
+                assertEquals(allocatedBytes, tree.getAllocatedBytes(), "round " + round);
+                assertEquals(keys.length, tree.deleteRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                assertEquals(0, tree.getNumberOfNodes());
+            }
+            assertEquals(allocatedBytes, tree.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    void orderChangesKeepKeysAndMatchBTreeShape() {
+        Random random = new Random(11);
+        for(boolean packedLeaves : new boolean[] {false, true}) {
+            OffHeapBTree tree = new OffHeapBTree(3, packedLeaves);
+            BTree bTree = new BTree(3);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int order = 3; order <= 12; ++order) {
+                tree.setOrder(order);
+                bTree.setOrder(order);
+                assertEquals(order, tree.getOrder());
+                checkTree(tree, expected, "order " + order);
+                assertSameShape(bTree.getStatistics(), tree.getStatistics(), "order " + order);
+                for(int i = 0; i < 2000; ++i) {
+                    int key = random.nextInt(20000) - 10000;
+                    if(random.nextInt(3) > 0) {
+                        assertEquals(expected.add(key), tree.insertElement(key));
+                        bTree.insertElement(key);
+                    } else {
+                        assertEquals(expected.remove(key), tree.deleteElement(key));
+                        bTree.deleteElement(key);
+                    }
+                }
+                assertSameShape(bTree.getStatistics(), tree.getStatistics(), "order " + order);
+            }
+            tree.clear();
+            assertEquals(5, tree.getOrder());
+            checkTree(tree, new TreeSet<>(), "cleared");
+        }
+    }
+
+    @Test
+    void snapshotsMoveBetweenOffHeapBTreesAndBTrees() throws IOException {
+        Random random = new Random(5);
+        for(int run = 0; run < 20; ++run) {
+            int order = 3 + random.nextInt(8);
+            OffHeapBTree tree = new OffHeapBTree(order, run % 2 == 1);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int i = random.nextInt(5000); i > 0; --i) {
+                int key = random.nextInt();
+                tree.insertElement(key);
+                expected.add(key);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            tree.writeSnapshot(out);
+            BTree bTree = new BTree(5);
+            bTree.loadSnapshot(ByteBuffer.wrap(out.toByteArray()));
+            assertEquals(order, bTree.getOrder());
+            BTreeInvariants.check(bTree, expected, false);
+
+            ByteArrayOutputStream bTreeOut = new ByteArrayOutputStream();
+            bTree.writeSnapshot(bTreeOut);
+            OffHeapBTree loaded = new OffHeapBTree(5, run % 2 == 0);
+            loaded.loadSnapshot(ByteBuffer.wrap(bTreeOut.toByteArray()));
+            assertEquals(order, loaded.getOrder());
+            checkTree(loaded, expected, "run " + run);
+        }
+    }
+
+    /**
+     * Compare all keys, the streamed keys, the smallest and greatest key and the statistics with the expected keys.
+     * @param tree the tree to check.
+     * @param expected the keys the tree must hold.
+     * @param seed description of the run for failure messages.
+     */
+    private static void checkTree(OffHeapBTree tree, TreeSet<Integer> expected, String seed) {
+        assertEquals(new ArrayList<>(expected), tree.getAllElementKeysOrderedAscending(), seed);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), tree.keys().toArray(), seed);
+        assertEquals(expected.stream().mapToLong(Integer::longValue).sum(), tree.keys().parallel().asLongStream().sum(),
+                seed);
+        assertEquals(expected.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                tree.keys().parallel().mapToObj(String::valueOf).collect(Collectors.joining(",")), seed);
+        assertEquals(expected.isEmpty() ? null : expected.first(), tree.first(), seed);
+        assertEquals(expected.isEmpty() ? null : expected.last(), tree.last(), seed);
+        assertEquals(expected.size(), tree.getNumberOfKeys(), seed);
+        BTreeStatistics statistics = tree.getStatistics();
+        assertEquals(expected.size(), statistics.getNumberOfKeys(), seed);
+        assertEquals(tree.getHeight(), statistics.getHeight(), seed);
+        assertEquals(tree.getNumberOfNodes(), statistics.getNumberOfNodes(), seed);
+    }
+
+    private static void assertSameShape(BTreeStatistics expected, BTreeStatistics actual, String seed) {
+        assertEquals(expected.getHeight(), actual.getHeight(), seed);
+        for(int level = 0; level < expected.getHeight(); ++level) {
+            assertEquals(expected.getNodesOnLevel(level), actual.getNodesOnLevel(level), seed + ", level " + level);
+            assertEquals(expected.getKeysOnLevel(level), actual.getKeysOnLevel(level), seed + ", level " + level);
+        }
+    }
+
+    private static int randomKey(Random random, int keyRange) {
+        return (keyRange == Integer.MAX_VALUE) ? random.nextInt() : random.nextInt(keyRange) - keyRange / 2;
+    }
+}
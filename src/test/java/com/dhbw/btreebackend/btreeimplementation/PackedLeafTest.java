@@ -0,0 +1,170 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that packed leaves of the OffHeapBTree return exactly the keys stored in them: negative keys and keys
+ * crossing zero, deltas needing all 32 bits, and full leaves whose span is at the limit of each width class, which
+ * must be stored in that class and not in the next wider one.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class PackedLeafTest {
+    private static final int[] WIDTHS = {4, 8, 16, 32};
+    private static final int PACKED_HEADER_FIELDS = 3;
+
+    @Test
+    void negativeKeysRoundTrip() {
+        Random random = new Random(17);
+        int[][] ranges = {{-5000, -1}, {-2500, 2500}, {Integer.MIN_VALUE, Integer.MIN_VALUE + 5000},
+                {Integer.MIN_VALUE, Integer.MIN_VALUE + (1 << 20)}, {-(1 << 30), -(1 << 29)}};
+        for(int order = 3; order <= 16; ++order) {
+            for(int[] range : ranges) {
+                OffHeapBTree packed = new OffHeapBTree(order, true);
+                OffHeapBTree plain = new OffHeapBTree(order, false);
+                TreeSet<Integer> expected = new TreeSet<>();
+                String seed = "order " + order + ", keys from " + range[0];
+                for(int i = 0; i < 3000; ++i) {
+                    int key = range[0] + (int) (random.nextDouble() * ((long) range[1] - range[0]));
+                    if(random.nextInt(4) > 0) {
+                        assertEquals(expected.add(key), packed.insertElement(key), seed);
+                        plain.insertElement(key);
+                    } else {
+                        assertEquals(expected.remove(key), packed.deleteElement(key), seed);
+                        plain.deleteElement(key);
+                    }
+                }
+                checkKeys(packed, expected, seed);
+                assertEquals(plain.getAllElementKeysOrderedAscending(), packed.getAllElementKeysOrderedAscending());
+                assertEquals(plain.getHeight(), packed.getHeight(), seed);
+                assertEquals(plain.getNumberOfNodes(), packed.getNumberOfNodes(), seed);
+            }
+        }
+    }
+
+    @Test
+    void fullWidthDeltasRoundTrip() {
+        Random random = new Random(23);
+        for(int order = 3; order <= 16; ++order) {
+            OffHeapBTree packed = new OffHeapBTree(order, true);
+            TreeSet<Integer> expected = new TreeSet<>();
+            int[] extremes = {Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, -1, 0,
+                    1};
+            for(int key : extremes) {
+                packed.insertElement(key);
+                expected.add(key);
+            }
+            String seed = "order " + order;
+            checkKeys(packed, expected, seed);
+            for(int i = 0; i < 5000; ++i) {
+                int key = random.nextInt();
+                if(random.nextInt(3) > 0) {
+                    assertEquals(expected.add(key), packed.insertElement(key), seed);
+                } else if(!expected.isEmpty()) {
+                    // delete contained keys, so leaves also narrow down again
+                    Integer existing = expected.ceiling(key);
+                    existing = (existing != null) ? existing : expected.first();
+                    assertEquals(expected.remove(existing), packed.deleteElement(existing), seed);
+                }
+            }
+            checkKeys(packed, expected, seed);
+            for(int key : extremes) {
+                assertTrue(!expected.contains(key) || packed.searchElement(key).isFound(), seed + ", key " + key);
+            }
+        }
+    }
+
+    @Test
+    void fullLeafAtLimitOfEachWidthIsStoredInThatWidth() {
+        for(int order = 3; order <= 16; ++order) {
+            int elementsMax = order - 1;
+            for(int widthClass = 0; widthClass < WIDTHS.length; ++widthClass) {
+                long span = (1L << WIDTHS[widthClass]) - 1;
+                // leave room for the wider leaf of span + 1 below the greatest int
+                long greatestBase = Integer.MAX_VALUE - span - ((widthClass + 1 < WIDTHS.length) ? 1 : 0);
+                for(long base : new long[] {Integer.MIN_VALUE, (Integer.MIN_VALUE + greatestBase) / 2, greatestBase}) {
+                    String seed = "order " + order + ", width " + WIDTHS[widthClass] + ", base " + base;
+                    int[] keys = leafKeys(base, span, elementsMax);
+                    OffHeapBTree packed = fillRootLeaf(order, keys);
+                    assertEquals(1, packed.getHeight(), seed);
+                    assertEquals(recordBytes(widthClass, elementsMax), packed.getUsedBytes(), seed);
+                    checkKeys(packed, toSet(keys), seed);
+
+                    if(widthClass + 1 < WIDTHS.length) {
+                        int[] wider = leafKeys(base, span + 1, elementsMax);
+                        OffHeapBTree widerLeaf = fillRootLeaf(order, wider);
+                        assertEquals(recordBytes(widthClass + 1, elementsMax), widerLeaf.getUsedBytes(), seed);
+                        checkKeys(widerLeaf, toSet(wider), seed);
+
+                        widerLeaf.deleteElement(wider[wider.length - 1]);
+                        widerLeaf.insertElement(keys[keys.length - 1]);
+                        assertEquals(recordBytes(widthClass, elementsMax), widerLeaf.getUsedBytes(), seed);
+                        checkKeys(widerLeaf, toSet(keys), seed);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create keys starting at base whose greatest key is base + span, all others directly following base.
+     * @param base the smallest key.
+     * @param span difference between the greatest and the smallest key.
+     * @param count number of keys.
+     * @return the keys ordered ascending.
+     */
+    private static int[] leafKeys(long base, long span, int count) {
+        int[] keys = new int[count];
+        for(int i = 0; i < count - 1; ++i) {
+            keys[i] = (int) (base + i);
+        }
+        keys[count - 1] = (int) (base + span);
+        return keys;
+    }
+
+    private static OffHeapBTree fillRootLeaf(int order, int[] keys) {
+        OffHeapBTree packed = new OffHeapBTree(order, true);
+        for(int i = keys.length - 1; i >= 0; --i) {
+            packed.insertElement(keys[i]);
+        }
+        return packed;
+    }
+
+    /**
+     * Size of a packed leaf record: count, leaf flag and base followed by one delta per key plus the spare slot.
+     * @param widthClass index into WIDTHS.
+     * @param elementsMax maximum number of keys of a node.
+     * @return record size in bytes.
+     */
+    private static long recordBytes(int widthClass, int elementsMax) {
+        return (PACKED_HEADER_FIELDS + ((elementsMax + 1) * WIDTHS[widthClass] + 31) / 32) * Integer.BYTES;
+    }
+
+    private static TreeSet<Integer> toSet(int[] keys) {
+        TreeSet<Integer> set = new TreeSet<>();
+        for(int key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    private static void checkKeys(OffHeapBTree tree, TreeSet<Integer> expected, String seed) {
+        assertEquals(new ArrayList<>(expected), tree.getAllElementKeysOrderedAscending(), seed);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), tree.keys().toArray(), seed);
+        for(int key : expected) {
+            assertTrue(tree.searchElement(key).isFound(), seed + ", key " + key);
+            if(key != Integer.MAX_VALUE && !expected.contains(key + 1)) {
+                assertTrue(!tree.searchElement(key + 1).isFound(), seed + ", key " + (key + 1));
+            }
+        }
+    }
+}
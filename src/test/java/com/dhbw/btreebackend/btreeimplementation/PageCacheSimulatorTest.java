@@ -0,0 +1,181 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator.Operation;
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator.OperationStatistics;
+import com.dhbw.btreebackend.btreeimplementation.PageCacheSimulator.Policy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the hits, misses and write-backs of the PageCacheSimulator for every policy: a short sequence where LRU and
+ * CLOCK evict different pages, a scan that evicts the hot pages from LRU and CLOCK but not from TWO_Q, write-backs of
+ * dirty pages, cold misses only if all pages fit, and that accesses recorded concurrently by many threads in the
+ * striped buffers are all counted.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class PageCacheSimulatorTest {
+
+    @Test
+    void shortSequenceHitsAndMissesPerPolicy() {
+        // 4 evicts the least recently used 2 from LRU, but 1 from CLOCK and the oldest page 1 of A1in from TWO_Q
+        int[] pages = {1, 2, 3, 1, 4, 2};
+        int[][] expectedHitsAndMisses = {{1, 5}, {2, 4}, {2, 4}};
+        for(Policy policy : Policy.values()) {
+            PageCacheSimulator pageCache = new PageCacheSimulator(3, policy);
+            accessAll(pageCache, pages, false, Operation.SEARCH);
+            OperationStatistics statistics = pageCache.getStatistics(Operation.SEARCH);
+            assertEquals(pages.length, statistics.getAccesses(), policy.name());
+            assertEquals(expectedHitsAndMisses[policy.ordinal()][0], statistics.getHits(), policy.name());
+            assertEquals(expectedHitsAndMisses[policy.ordinal()][1], statistics.getMisses(), policy.name());
+            assertEquals(0, statistics.getWriteBacks(), policy.name());
+            assertEquals(3, pageCache.getResidentPages(), policy.name());
+        }
+    }
+
+    @Test
+    void scanEvictsHotPagesExceptFromTwoQueues() {
+        int[] hotPages = {1, 2, 3, 4};
+        int[] fillers = {11, 12, 13, 14, 15, 16};
+        int[] scan = new int[100];
+        for(int i = 0; i < scan.length; ++i) {
+            scan[i] = 1000 + i;
+        }
+        for(Policy policy : Policy.values()) {
+            PageCacheSimulator pageCache = new PageCacheSimulator(8, policy);
+            // for TWO_Q the fillers push the hot pages into A1out, so accessing them again moves them into Am
+            accessAll(pageCache, hotPages, false, Operation.SEARCH);
+            accessAll(pageCache, fillers, false, Operation.SEARCH);
+            accessAll(pageCache, hotPages, false, Operation.SEARCH);
+            accessAll(pageCache, scan, false, Operation.SEARCH);
+            pageCache.resetStatistics();
+            assertEquals(8, pageCache.getResidentPages(), policy.name());
+
+            accessAll(pageCache, hotPages, false, Operation.SEARCH);
+            OperationStatistics statistics = pageCache.getStatistics(Operation.SEARCH);
+            assertEquals(hotPages.length, statistics.getAccesses(), policy.name());
+            assertEquals((policy == Policy.TWO_Q) ? hotPages.length : 0, statistics.getHits(), policy.name());
+        }
+    }
+
+    @Test
+    void dirtyPagesAreWrittenBackWhenEvicted() {
+        for(Policy policy : Policy.values()) {
+            PageCacheSimulator pageCache = new PageCacheSimulator(1, policy);
+            pageCache.access(1, true, Operation.INSERT);
+            pageCache.access(2, false, Operation.SEARCH);
+            pageCache.access(2, true, Operation.DELETE);
+            pageCache.access(3, false, Operation.SEARCH);
+            pageCache.access(1, false, Operation.SEARCH);
+
+            OperationStatistics search = pageCache.getStatistics(Operation.SEARCH);
+            assertEquals(3, search.getAccesses(), policy.name());
+            assertEquals(3, search.getMisses(), policy.name());
+            // 2 evicts the dirty 1, 3 evicts 2, made dirty by the delete, 1 evicts the clean 3
+            assertEquals(2, search.getWriteBacks(), policy.name());
+            assertEquals(1, pageCache.getStatistics(Operation.DELETE).getHits(), policy.name());
+            OperationStatistics total = pageCache.getTotalStatistics();
+            assertEquals(5, total.getAccesses(), policy.name());
+            assertEquals(1, total.getHits(), policy.name());
+            assertEquals(4, total.getMisses(), policy.name());
+            assertEquals(6, total.getModeledIo(), policy.name());
+        }
+    }
+
+    @Test
+    void onlyColdMissesIfAllPagesFit() {
+        Random random = new Random(7);
+        int[] pages = random.ints(5000, 0, 50).toArray();
+        for(Policy policy : Policy.values()) {
+            PageCacheSimulator pageCache = new PageCacheSimulator(64, policy);
+            accessAll(pageCache, pages, random.nextBoolean(), Operation.SEARCH);
+            OperationStatistics statistics = pageCache.getStatistics(Operation.SEARCH);
+            long distinctPages = Arrays.stream(pages).distinct().count();
+            assertEquals(distinctPages, statistics.getMisses(), policy.name());
+            assertEquals(pages.length - distinctPages, statistics.getHits(), policy.name());
+            assertEquals(distinctPages, pageCache.getResidentPages(), policy.name());
+
+            pageCache.invalidate();
+            assertEquals(0, pageCache.getResidentPages(), policy.name());
+            pageCache.access(pages[0], false, Operation.SEARCH);
+            assertEquals(distinctPages + 1, pageCache.getStatistics(Operation.SEARCH).getMisses(), policy.name());
+        }
+    }
+
+    @Test
+    void concurrentAccessesAreAllCounted() throws InterruptedException {
+        int threads = 8;
+        int accessesPerThread = 20 * PageCacheSimulator.STRIPE_CAPACITY + 17;
+        for(Policy policy : Policy.values()) {
+            PageCacheSimulator pageCache = new PageCacheSimulator(100, policy);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for(int t = 0; t < threads; ++t) {
+                Random random = new Random(t);
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for(int i = 0; i < accessesPerThread; ++i) {
+                        pageCache.countOperation(Operation.SEARCH);
+                        pageCache.access(random.nextInt(300), random.nextInt(10) == 0, Operation.SEARCH);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for(Thread worker : workers) {
+                worker.join();
+            }
+
+            OperationStatistics statistics = pageCache.getStatistics(Operation.SEARCH);
+            long expectedAccesses = (long) threads * accessesPerThread;
+            assertEquals(expectedAccesses, statistics.getOperations(), policy.name());
+            assertEquals(expectedAccesses, statistics.getAccesses(), policy.name());
+            assertEquals(expectedAccesses, statistics.getHits() + statistics.getMisses(), policy.name());
+            assertTrue(statistics.getMisses() >= 300 - 100, policy.name());
+            assertEquals(100, pageCache.getResidentPages(), policy.name());
+        }
+    }
+
+    @Test
+    void bTreeRecordsOneAccessPerVisitedNode() {
+        BTree bTree = new BTree(4);
+        for(int key = 0; key < 1000; ++key) {
+            bTree.insertElement(key);
+        }
+        PageCacheSimulator pageCache = new PageCacheSimulator(1000, Policy.LRU);
+        bTree.setPageCache(pageCache);
+        int height = bTree.getStatistics().getHeight();
+        for(int round = 0; round < 2; ++round) {
+            for(int key = 0; key < 1000; ++key) {
+                bTree.searchElement(key);
+            }
+        }
+        OperationStatistics statistics = pageCache.getStatistics(Operation.SEARCH);
+        assertEquals(2000, statistics.getOperations());
+        assertTrue(statistics.getAccesses() <= 2000L * height);
+        // all nodes fit, so only the first visit of every node misses
+        assertEquals(bTree.getStatistics().getNumberOfNodes(), statistics.getMisses());
+        assertEquals(0, pageCache.getStatistics(Operation.INSERT).getOperations());
+    }
+
+    private static void accessAll(PageCacheSimulator pageCache, int[] pages, boolean write, Operation operation) {
+        for(int page : pages) {
+            pageCache.access(page, write, operation);
+        }
+    }
+}
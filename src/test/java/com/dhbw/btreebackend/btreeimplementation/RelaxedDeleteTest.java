@@ -0,0 +1,92 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks relaxed deletes of a BTree: random operations with relaxed deletes and partial compaction match a TreeSet,
+ * searches stay correct while leaves are underfull, and compaction brings the height back down to that of a balanced
+ * BTree.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class RelaxedDeleteTest {
+
+    @Test
+    void relaxedDeletesMatchTreeSetAndCompact() {
+        for(int run = 0; run < 60; ++run) {
+            BTreeRandomizedTest.applyRandomOperations(1000 + run, true);
+        }
+    }
+
+    @Test
+    void searchIsCorrectWhileLeavesAreUnderfull() {
+        for(int order = 5; order <= 11; ++order) {
+            Random random = new Random(order);
+            BTree bTree = new BTree(order);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int key = 0; key < 5000; ++key) {
+                bTree.insertElement(key);
+                expected.add(key);
+            }
+            bTree.setRelaxedDeletes(true);
+            for(int i = 0; i < 4000; ++i) {
+                int key = random.nextInt(5000);
+                assertEquals(expected.remove(key), bTree.deleteElement(key));
+            }
+            assertTrue(bTree.getPendingCompactions() > 0, "order " + order);
+            BTreeInvariants.check(bTree, expected, true);
+
+            int[] keys = new int[5020];
+            for(int i = 0; i < keys.length; ++i) {
+                keys[i] = i - 10;
+                assertEquals(expected.contains(keys[i]), bTree.searchElement(keys[i]).isFound(), "key " + keys[i]);
+            }
+            BTreeSearchResult[] results = bTree.searchElements(keys).getResults();
+            for(int i = 0; i < keys.length; ++i) {
+                assertEquals(expected.contains(keys[i]), results[i].isFound(), "batch key " + keys[i]);
+            }
+        }
+    }
+
+    @Test
+    void heightAfterCompactIsThatOfABalancedTree() {
+        for(int order = 5; order <= 11; ++order) {
+            Random random = new Random(100 + order);
+            BTree bTree = new BTree(order);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int i = 0; i < 20000; ++i) {
+                int key = random.nextInt(1000000);
+                bTree.insertElement(key);
+                expected.add(key);
+            }
+            bTree.setRelaxedDeletes(true);
+            for(int i = 0; i < 40000; ++i) {
+                int key = random.nextInt(1000000);
+                assertEquals(expected.remove(key), bTree.deleteElement(key));
+            }
+            for(Integer key = expected.first(); key != null; key = expected.higher(key)) {
+                if(random.nextInt(10) < 9) {
+                    bTree.deleteElement(key);
+                    expected.remove(key);
+                }
+            }
+            assertTrue(bTree.getPendingCompactions() > 0, "order " + order);
+            BTreeInvariants.check(bTree, expected, true);
+
+            bTree.compact(Integer.MAX_VALUE);
+            assertEquals(0, bTree.getPendingCompactions());
+            BTreeInvariants.check(bTree, expected, false);
+            int height = bTree.getStatistics().getHeight();
+            int minimumChildren = (order + 1) / 2;
+            int maximumHeight = 1 + (int) Math.floor(Math.log((expected.size() + 1) / 2.0) / Math.log(minimumChildren));
+            assertTrue(height <= maximumHeight, "order " + order + ": height " + height + " > " + maximumHeight);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Applies random inserts, deletes, polls and range deletes to ShardedBTrees and compares them with a TreeSet. Keys are
+ * drawn from a skewed distribution, so the shards are rebalanced now and then.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class ShardedBTreeRandomizedTest {
+    private static final int RUNS = 40;
+
+    @Test
+    void shardedTreeMatchesTreeSet() {
+        for(int run = 0; run < RUNS; ++run) {
+            Random random = new Random(run);
+            int numberOfShards = 2 + random.nextInt(7);
+            ShardedBTree bTree = new ShardedBTree(3 + random.nextInt(6), numberOfShards);
+            TreeSet<Integer> expected = new TreeSet<>();
+            String seed = "seed " + run;
+            for(int round = 0; round < 100; ++round) {
+                for(int i = random.nextInt(100); i >= 0; --i) {
+                    int key = (round < 50) ? random.nextInt(1 << (4 + round / 4)) : random.nextInt(20000) - 10000;
+                    int operation = random.nextInt(10);
+                    if(operation < 6) {
+                        assertEquals(expected.add(key), bTree.insertElement(key), seed);
+                    } else if(operation < 8) {
+                        assertEquals(expected.remove(key), bTree.deleteElement(key), seed);
+                    } else if(operation == 8) {
+                        assertEquals(expected.pollFirst(), bTree.pollFirst(), seed);
+                    } else {
+                        int upperBound = key + random.nextInt(500);
+                        NavigableSet<Integer> range = expected.subSet(key, true, upperBound, true);
+                        assertEquals(range.size(), bTree.deleteRange(key, upperBound), seed);
+                        range.clear();
+                    }
+                }
+                checkShardedTree(bTree, expected, seed);
+            }
+        }
+    }
+
+    /**
+     * Compare the keys, the statistics and the shard sizes of a ShardedBTree with the expected keys.
+     * @param bTree the ShardedBTree.
+     * @param expected the keys it must hold.
+     * @param seed description of the run for failure messages.
+     */
+    static void checkShardedTree(ShardedBTree bTree, TreeSet<Integer> expected, String seed) {
+        assertEquals(new ArrayList<>(expected), bTree.getAllElementKeysOrderedAscending(), seed);
+        assertEquals(expected.size(), bTree.keys().count(), seed);
+        assertEquals(expected.size(), bTree.getStatistics().getNumberOfKeys(), seed);
+        long keysInShards = 0;
+        for(long shardSize : bTree.getShardSizes()) {
+            keysInShards += shardSize;
+        }
+        assertEquals(expected.size(), keysInShards, seed);
+        assertEquals(expected.isEmpty() ? null : expected.first(), bTree.first(), seed);
+        assertEquals(expected.isEmpty() ? null : expected.last(), bTree.last(), seed);
+        if(!expected.isEmpty()) {
+            int lowerBound = expected.first() + (expected.last() - expected.first()) / 3;
+            int upperBound = lowerBound + (expected.last() - expected.first()) / 3;
+            assertEquals(new ArrayList<>(expected.subSet(lowerBound, true, upperBound, true)),
+                    bTree.getElementKeysInRange(lowerBound, upperBound), seed);
+        }
+    }
+}
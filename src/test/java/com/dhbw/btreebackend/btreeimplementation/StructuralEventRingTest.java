@@ -0,0 +1,186 @@
+package com.dhbw.btreebackend.btreeimplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the StructuralEventRing: the capacity is rounded up to a power of two, once the ring wrapped around the
+ * oldest events are overwritten and a reader behind them skips to the oldest event still kept, a reader continues
+ * where it stopped, concurrent writers and a concurrent reader never see a record being written, and a BTree publishes
+ * its splits and root changes.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class StructuralEventRingTest {
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new StructuralEventRing(1).getCapacity());
+        assertEquals(8, new StructuralEventRing(5).getCapacity());
+        assertEquals(8, new StructuralEventRing(8).getCapacity());
+        assertEquals(StructuralEventRing.MAX_CAPACITY, new StructuralEventRing(StructuralEventRing.MAX_CAPACITY)
+                .getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new StructuralEventRing(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StructuralEventRing(StructuralEventRing.MAX_CAPACITY + 1));
+    }
+
+    @Test
+    void readerBehindWrapAroundSkipsOverwrittenEvents() {
+        StructuralEventRing ring = new StructuralEventRing(8);
+        List<long[]> events = new ArrayList<>();
+        assertEquals(0, ring.read(0, 100, recordTo(events)));
+        assertTrue(events.isEmpty());
+
+        publishKeys(ring, 0, 5);
+        assertEquals(5, ring.read(0, 100, recordTo(events)));
+        assertSequences(events, 0, 5);
+
+        publishKeys(ring, 5, 20);
+        events.clear();
+        // events 5 to 11 were overwritten, the reader continues with the oldest event kept
+        assertEquals(20, ring.read(5, 100, recordTo(events)));
+        assertSequences(events, 12, 20);
+        events.clear();
+        assertEquals(20, ring.read(20, 100, recordTo(events)));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void readerContinuesWhereItStopped() {
+        StructuralEventRing ring = new StructuralEventRing(16);
+        publishKeys(ring, 0, 40);
+        List<long[]> events = new ArrayList<>();
+        long sequence = 0;
+        for(int call = 0; call < 10 && sequence < ring.getNextSequence(); ++call) {
+            sequence = ring.read(sequence, 3, recordTo(events));
+        }
+        assertEquals(40, sequence);
+        assertSequences(events, 24, 40);
+    }
+
+    @Test
+    void concurrentWritersAndReaderSeeWholeRecords() throws InterruptedException {
+        StructuralEventRing ring = new StructuralEventRing(64);
+        int writers = 4;
+        int eventsPerWriter = 200000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for(int writer = 0; writer < writers; ++writer) {
+            int firstKey = writer * eventsPerWriter;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                publishKeys(ring, firstKey, firstKey + eventsPerWriter);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        List<String> errors = new ArrayList<>();
+        long[] lastSequence = {-1};
+        StructuralEventListener checker = (sequence, timeNanos, type, level, most, least, key, numberOfElements) -> {
+            // every field is derived from the key, so a record mixing two events is detected
+            if(sequence <= lastSequence[0] || level != key % 1000 || type != typeOf(key)) {
+                errors.add("event " + sequence + " with key " + key + ", level " + level + ", type " + type);
+            }
+            lastSequence[0] = sequence;
+        };
+        Thread reader = new Thread(() -> {
+            long sequence = 0;
+            while(writing.get()) {
+                sequence = ring.read(sequence, 50, checker);
+            }
+        });
+        reader.start();
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        assertTrue(errors.isEmpty(), () -> errors.subList(0, Math.min(5, errors.size())).toString());
+        long published = (long) writers * eventsPerWriter;
+        assertEquals(published, ring.getNextSequence());
+        // the newest writer of a record never drops its event, so the last capacity events are all kept
+        List<long[]> events = new ArrayList<>();
+        assertEquals(published, ring.read(0, Integer.MAX_VALUE, recordTo(events)));
+        assertSequences(events, published - ring.getCapacity(), published);
+    }
+
+    @Test
+    void bTreePublishesSplitsAndRootChanges() {
+        BTree bTree = new BTree(3);
+        StructuralEventRing ring = new StructuralEventRing(1024);
+        bTree.setStructuralEventRing(ring);
+        for(int key = 0; key < 100; ++key) {
+            bTree.insertElement(key);
+        }
+        Set<StructuralEventRing.Type> types = EnumSet.noneOf(StructuralEventRing.Type.class);
+        int[] greatestRootHeight = {0};
+        long next = ring.read(0, Integer.MAX_VALUE, (sequence, timeNanos, type, level, most, least, key, size) -> {
+            types.add(type);
+            if(type == StructuralEventRing.Type.ROOT_CHANGE) {
+                greatestRootHeight[0] = Math.max(greatestRootHeight[0], level);
+            }
+        });
+        assertEquals(ring.getNextSequence(), next);
+        assertTrue(types.contains(StructuralEventRing.Type.SPLIT), types.toString());
+        assertTrue(types.contains(StructuralEventRing.Type.ROOT_CHANGE), types.toString());
+        assertEquals(bTree.getStatistics().getHeight(), greatestRootHeight[0]);
+    }
+
+    /**
+     * Publish one event per key, whose type and level are derived from the key, without a node.
+     * @param ring the ring.
+     * @param fromKey the first key.
+     * @param toKey the key after the last one.
+     */
+    private static void publishKeys(StructuralEventRing ring, int fromKey, int toKey) {
+        for(int key = fromKey; key < toKey; ++key) {
+            ring.publish(typeOf(key), key % 1000, null, key);
+        }
+    }
+
+    private static StructuralEventRing.Type typeOf(int key) {
+        return StructuralEventRing.Type.values()[key % StructuralEventRing.Type.values().length];
+    }
+
+    private static StructuralEventListener recordTo(List<long[]> events) {
+        return (sequence, timeNanos, type, level, most, least, key, numberOfElements) ->
+                events.add(new long[] {sequence, key, level, type.ordinal()});
+    }
+
+    /**
+     * Check that the events are those with the sequence numbers from 'from' to 'to', in order, and that the type and
+     * level of each match its key as published by publishKeys.
+     * @param events the events read, as sequence number, key, level and type.
+     * @param from the first sequence number.
+     * @param to the sequence number after the last one.
+     */
+    private static void assertSequences(List<long[]> events, long from, long to) {
+        assertEquals(to - from, events.size());
+        for(int i = 0; i < events.size(); ++i) {
+            long[] event = events.get(i);
+            assertEquals(from + i, event[0]);
+            assertEquals(event[1] % 1000, event[2]);
+            assertEquals(typeOf((int) event[1]).ordinal(), event[3]);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.dhbw.btreebackend.json;
+
+import com.dhbw.btreebackend.btreeimplementation.AdaptiveRadixTree;
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OffHeapBTree;
+import com.dhbw.btreebackend.btreeimplementation.ShardedBTree;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a response written by BTreeToColumnar and decoded by ColumnarTreeDecoder equals the same response written
+ * as JSON by BTreeToJson: empty trees, trees of every order after the steps of a request sharing most of their nodes,
+ * negative and extreme keys, and all types of attributes. Also checks that only BTrees with a single root are captured.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class BTreeToColumnarTest {
+    private static final String TREE_LIST_KEY = "Trees";
+
+    @Test
+    void decodedColumnarResponseEqualsJsonResponse() throws IOException {
+        Random random = new Random(48);
+        for(int order = 3; order <= 10; ++order) {
+            BTree bTree = new BTree(order);
+            List<BTreeColumns> trees = new ArrayList<>();
+            trees.add(BTreeColumns.capture(bTree));
+            for(int step = 0; step < 30; ++step) {
+                for(int i = random.nextInt(40); i > 0; --i) {
+                    int key = (random.nextInt(10) == 0) ? random.nextInt() : random.nextInt(2000) - 1000;
+                    if(random.nextInt(4) > 0) {
+                        bTree.insertElement(key);
+                    } else {
+                        bTree.deleteElement(key);
+                    }
+                }
+                trees.add(BTreeColumns.capture(bTree));
+            }
+            bTree.insertElement(Integer.MIN_VALUE);
+            bTree.insertElement(Integer.MAX_VALUE);
+            trees.add(BTreeColumns.capture(bTree));
+
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("Result", null);
+            attributes.put("Costs", -order);
+            attributes.put("Keys", Arrays.asList(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE));
+            attributes.put("Empty", new ArrayList<Integer>());
+            assertSameResponse(attributes, trees, "order " + order);
+        }
+    }
+
+    @Test
+    void emptyResponsesRoundTrip() throws IOException {
+        assertSameResponse(new LinkedHashMap<>(), new ArrayList<>(), "no trees");
+        List<BTreeColumns> emptyTree = new ArrayList<>();
+        emptyTree.add(BTreeColumns.capture(new BTree(5)));
+        assertSameResponse(new LinkedHashMap<>(), emptyTree, "empty tree");
+    }
+
+    @Test
+    void sharedNodesAreWrittenOnce() throws IOException {
+        BTree bTree = new BTree(4);
+        for(int key = 0; key < 2000; ++key) {
+            bTree.insertElement(key);
+        }
+        List<BTreeColumns> oneTree = new ArrayList<>();
+        oneTree.add(BTreeColumns.capture(bTree));
+        List<BTreeColumns> sameTreeTwice = new ArrayList<>(oneTree);
+        sameTreeTwice.add(oneTree.get(0));
+        long once = BTreeToColumnar.writeTreeListResponse(new LinkedHashMap<>(), oneTree, new ByteArrayOutputStream());
+        long twice = BTreeToColumnar.writeTreeListResponse(new LinkedHashMap<>(), sameTreeTwice,
+                new ByteArrayOutputStream());
+        // the second tree adds its columns, but no UUIDs
+        assertTrue(twice - once < 16L * oneTree.get(0).getNumberOfNodes(), once + " and " + twice + " bytes");
+    }
+
+    @Test
+    void notAColumnarResponseIsRejected() {
+        byte[] json = "{\"Trees\":\"[]\"}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> ColumnarTreeDecoder.decode(new ByteArrayInputStream(json)));
+        byte[] truncated = Arrays.copyOf(BTreeToColumnar.MAGIC, BTreeToColumnar.MAGIC.length + 1);
+        truncated[BTreeToColumnar.MAGIC.length] = (byte) 0x80;
+        assertThrows(IOException.class, () -> ColumnarTreeDecoder.decode(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void onlyBTreesWithSingleRootAreCaptured() {
+        BTree bTree = new BTree(5);
+        assertSame(bTree, BTreeColumns.getSingleTree(bTree));
+        assertNull(BTreeColumns.getSingleTree(new ShardedBTree(5, 4)));
+        assertNull(BTreeColumns.getSingleTree(new AdaptiveRadixTree(5)));
+        assertNull(BTreeColumns.getSingleTree(new OffHeapBTree(5)));
+    }
+
+    /**
+     * Write the response in both formats and compare the decoded binary response with the parsed JSON response. The
+     * lists of trees are strings in both, so they are parsed and compared as JSON arrays.
+     * @param attributes the attributes of the response.
+     * @param trees the trees of the response.
+     * @param seed description of the response for failure messages.
+     * @throws IOException if writing fails.
+     */
+    private static void assertSameResponse(Map<String, Object> attributes, List<BTreeColumns> trees, String seed)
+            throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        long jsonBytes = BTreeToJson.writeTreeListResponse(attributes, TREE_LIST_KEY, trees, json);
+        assertEquals(json.size(), jsonBytes, seed);
+        ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        long columnarBytes = BTreeToColumnar.writeTreeListResponse(attributes, trees, columnar);
+        assertEquals(columnar.size(), columnarBytes, seed);
+        assertArrayEquals(BTreeToColumnar.MAGIC, Arrays.copyOf(columnar.toByteArray(), BTreeToColumnar.MAGIC.length));
+
+        JsonObject expected = parseObject(json.toString(StandardCharsets.UTF_8));
+        JsonObject decoded = ColumnarTreeDecoder.decode(new ByteArrayInputStream(columnar.toByteArray()));
+        assertEquals(expected.keySet(), decoded.keySet(), seed);
+        for(String key : expected.keySet()) {
+            if(!key.equals(TREE_LIST_KEY)) {
+                assertEquals(expected.get(key), decoded.get(key), seed + ", attribute " + key);
+            }
+        }
+        assertEquals(parseArray(expected.getString(TREE_LIST_KEY)), parseArray(decoded.getString(TREE_LIST_KEY)),
+                seed);
+        if(!trees.isEmpty() && trees.get(0).getNumberOfNodes() > 0) {
+            assertTrue(columnarBytes < jsonBytes, seed);
+        }
+    }
+
+    private static JsonObject parseObject(String json) {
+        try(JsonReader reader = Json.createReader(new StringReader(json))) {
+            return reader.readObject();
+        }
+    }
+
+    private static JsonArray parseArray(String json) {
+        try(JsonReader reader = Json.createReader(new StringReader(json))) {
+            return reader.readArray();
+        }
+    }
+}
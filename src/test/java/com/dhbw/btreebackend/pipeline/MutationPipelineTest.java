@@ -0,0 +1,133 @@
+package com.dhbw.btreebackend.pipeline;
+
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.BTreeInvariants;
+import com.dhbw.btreebackend.btreeimplementation.ShardedBTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that coalesced batches of the MutationPipeline give every mutation the same result as applying all mutations
+ * one after another. The writer is held by a task waiting on a latch while the mutations are enqueued, so they are
+ * drained and coalesced as a single batch. The expected results are computed by applying the same mutations to a
+ * TreeSet in queue order.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class MutationPipelineTest {
+
+    @Test
+    void coalescedBatchesMatchSequentialApplication() throws InterruptedException {
+        for(int run = 0; run < 20; ++run) {
+            BTree bTree = new BTree(3 + run % 6);
+            TreeSet<Integer> expected = applyRandomBatches(bTree, new Random(run));
+            BTreeInvariants.check(bTree, expected, false);
+        }
+    }
+
+    @Test
+    void coalescedBatchesOfShardedTreeMatchSequentialApplication() throws InterruptedException {
+        for(int run = 0; run < 20; ++run) {
+            ShardedBTree bTree = new ShardedBTree(3 + run % 6, 2 + run % 7);
+            TreeSet<Integer> expected = applyRandomBatches(bTree, new Random(100 + run));
+            assertEquals(new ArrayList<>(expected), bTree.getAllElementKeysOrderedAscending());
+            assertEquals(expected.size(), bTree.getStatistics().getNumberOfKeys());
+        }
+    }
+
+    @Test
+    void failingKeyOnlyFailsItsMutation() throws InterruptedException {
+        BTree bTree = new BTree(5) {
+            @Override
+            public boolean insertElement(int elementKey) {
+                if(elementKey == 50) {
+                    throw new IllegalStateException("Key 50 rejected");
+                }
+                return super.insertElement(elementKey);
+            }
+        };
+        MutationPipeline pipeline = new MutationPipeline(bTree);
+        pipeline.start();
+        CountDownLatch latch = holdWriter(pipeline);
+        CompletableFuture<MutationPipeline.MutationResult<Void>> first = pipeline.insert(new int[] {10, 60, 20});
+        CompletableFuture<MutationPipeline.MutationResult<Void>> failing = pipeline.insert(new int[] {40, 50, 70});
+        CompletableFuture<MutationPipeline.MutationResult<Void>> last = pipeline.insert(new int[] {30, 80, 10});
+        latch.countDown();
+        assertEquals(Arrays.asList(10, 60, 20), first.join().getAppliedKeys());
+        CompletionException exception = assertThrows(CompletionException.class, failing::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertEquals(Arrays.asList(30, 80), last.join().getAppliedKeys());
+        assertEquals(Arrays.asList(10, 20, 30, 40, 60, 80), bTree.getAllElementKeysOrderedAscending());
+        pipeline.stop();
+    }
+
+    /**
+     * Enqueue rounds of random inserts and deletes as single batches and compare the applied keys of every mutation
+     * with those of a TreeSet the mutations are applied to in queue order.
+     * @param bTree the tree to mutate through a new pipeline.
+     * @param random source of the keys.
+     * @return the keys the tree must hold afterwards.
+     * @throws InterruptedException if interrupted while stopping the pipeline.
+     */
+    private static TreeSet<Integer> applyRandomBatches(BTree bTree, Random random) throws InterruptedException {
+        MutationPipeline pipeline = new MutationPipeline(bTree);
+        pipeline.start();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for(int round = 0; round < 15; ++round) {
+            int keyRange = 100 + random.nextInt(5000);
+            List<CompletableFuture<MutationPipeline.MutationResult<Void>>> futures = new ArrayList<>();
+            List<List<Integer>> expectedAppliedKeys = new ArrayList<>();
+            CountDownLatch latch = holdWriter(pipeline);
+            for(int mutation = random.nextInt(200); mutation >= 0; --mutation) {
+                boolean insert = random.nextInt(3) > 0;
+                int[] keys = new int[1 + random.nextInt(30)];
+                List<Integer> appliedKeys = new ArrayList<>();
+                for(int i = 0; i < keys.length; ++i) {
+                    keys[i] = random.nextInt(keyRange) - keyRange / 2;
+                    if(insert ? expected.add(keys[i]) : expected.remove(keys[i])) {
+                        appliedKeys.add(keys[i]);
+                    }
+                }
+                expectedAppliedKeys.add(appliedKeys);
+                futures.add(insert ? pipeline.insert(keys) : pipeline.delete(keys));
+            }
+            latch.countDown();
+            for(int i = 0; i < futures.size(); ++i) {
+                assertEquals(expectedAppliedKeys.get(i), futures.get(i).join().getAppliedKeys(), "mutation " + i);
+            }
+        }
+        pipeline.stop();
+        return expected;
+    }
+
+    /**
+     * Block the writer of the pipeline until the returned latch is counted down.
+     * @param pipeline the pipeline.
+     * @return the latch releasing the writer.
+     */
+    private static CountDownLatch holdWriter(MutationPipeline pipeline) {
+        CountDownLatch latch = new CountDownLatch(1);
+        pipeline.execute(() -> {
+            try {
+                latch.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        return latch;
+    }
+}
@@ -0,0 +1,188 @@
+package com.dhbw.btreebackend.replication;
+
+import com.dhbw.btreebackend.btreeimplementation.AdaptiveRadixTree;
+import com.dhbw.btreebackend.btreeimplementation.BTree;
+import com.dhbw.btreebackend.btreeimplementation.OffHeapBTree;
+import com.dhbw.btreebackend.btreeimplementation.OrderedIntIndex;
+import com.dhbw.btreebackend.pipeline.MutationPipeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a ReplicationLeader and a ReplicationFollower on localhost and checks that the follower's tree holds the same
+ * keys and order as the leader's: after the initial binary snapshot, after batches of inserts, deletes, range deletes,
+ * order changes and clears, and after a snapshot loaded into the leader, which makes the follower reconnect and load a
+ * new snapshot. The follower uses another engine than the leader, as snapshots are exchanged between engines.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class ReplicationRoundTripTest {
+    private static final long TIMEOUT_MILLIS = 15000;
+
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @AfterEach
+    void stopAll() {
+        for(int i = this.cleanup.size() - 1; i >= 0; --i) {
+            this.cleanup.get(i).run();
+        }
+    }
+
+    @Test
+    void followerReceivesSnapshotAndBatches() throws IOException {
+        BTree leaderTree = new BTree(7);
+        Random random = new Random(29);
+        for(int i = 0; i < 20000; ++i) {
+            leaderTree.insertElement(random.nextInt(1000000) - 500000);
+        }
+        MutationPipeline leaderPipeline = startPipeline(leaderTree);
+        ReplicationLeader leader = startLeader(leaderTree, leaderPipeline);
+        AdaptiveRadixTree followerTree = new AdaptiveRadixTree(5);
+        MutationPipeline followerPipeline = startPipeline(followerTree);
+        ReplicationFollower follower = startFollower(followerTree, followerPipeline, leader.getPort());
+
+        awaitInSync(leader, follower, 1);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+
+        for(int round = 0; round < 20; ++round) {
+            int[] keys = random.ints(1 + random.nextInt(500), -600000, 600000).toArray();
+            if(random.nextInt(3) > 0) {
+                leaderPipeline.insert(keys).join();
+            } else {
+                leaderPipeline.delete(keys).join();
+            }
+            if(round % 5 == 4) {
+                int lowerBound = random.nextInt(1000000) - 500000;
+                leaderPipeline.execute(() -> leaderTree.deleteRange(lowerBound, lowerBound + 20000)).join();
+            }
+            if(round == 10) {
+                leaderPipeline.execute(() -> {
+                    leaderTree.setOrder(4);
+                    return null;
+                }).join();
+            }
+        }
+        awaitInSync(leader, follower, 1);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+        assertEquals(4, followerTree.getOrder());
+
+        leaderPipeline.execute(() -> {
+            leaderTree.clear();
+            return null;
+        }).join();
+        leaderPipeline.insert(new int[] {3, 1, 2}).join();
+        awaitInSync(leader, follower, 1);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+        assertEquals(1, follower.getLoadedSnapshots());
+    }
+
+    @Test
+    void snapshotLoadedIntoLeaderIsReplicatedAsNewSnapshot() throws IOException {
+        OffHeapBTree leaderTree = new OffHeapBTree(5);
+        MutationPipeline leaderPipeline = startPipeline(leaderTree);
+        ReplicationLeader leader = startLeader(leaderTree, leaderPipeline);
+        BTree followerTree = new BTree(9);
+        MutationPipeline followerPipeline = startPipeline(followerTree);
+        ReplicationFollower follower = startFollower(followerTree, followerPipeline, leader.getPort());
+
+        awaitInSync(leader, follower, 1);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+        leaderPipeline.insert(new Random(31).ints(5000, 0, 100000).toArray()).join();
+        awaitInSync(leader, follower, 1);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+
+        BTree source = new BTree(6);
+        for(int key = -3000; key < 3000; key += 3) {
+            source.insertElement(key);
+        }
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        source.writeSnapshot(snapshot);
+        leaderPipeline.execute(() -> {
+            try {
+                leaderTree.loadSnapshot(ByteBuffer.wrap(snapshot.toByteArray()));
+            } catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        }).join();
+
+        awaitInSync(leader, follower, 2);
+        assertSameContent(leaderTree, leaderPipeline, followerTree, followerPipeline);
+        assertEquals(6, followerTree.getOrder());
+        assertEquals(source.getAllElementKeysOrderedAscending(),
+                followerPipeline.read(followerTree::getAllElementKeysOrderedAscending));
+    }
+
+    private MutationPipeline startPipeline(OrderedIntIndex tree) {
+        MutationPipeline pipeline = new MutationPipeline(tree);
+        pipeline.start();
+        this.cleanup.add(() -> {
+            try {
+                pipeline.stop();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return pipeline;
+    }
+
+    private ReplicationLeader startLeader(OrderedIntIndex tree, MutationPipeline pipeline) throws IOException {
+        ReplicationLeader leader = new ReplicationLeader(tree, pipeline, 0);
+        leader.start();
+        this.cleanup.add(leader::stop);
+        return leader;
+    }
+
+    private ReplicationFollower startFollower(OrderedIntIndex tree, MutationPipeline pipeline, int leaderPort) {
+        ReplicationFollower follower = new ReplicationFollower(tree, pipeline, "localhost", leaderPort);
+        follower.start();
+        this.cleanup.add(follower::stop);
+        return follower;
+    }
+
+    /**
+     * Wait until the follower has loaded the given number of snapshots and applied every operation numbered by the
+     * leader.
+     * @param leader the leader.
+     * @param follower the follower.
+     * @param snapshots the number of snapshots the follower must have loaded.
+     */
+    private static void awaitInSync(ReplicationLeader leader, ReplicationFollower follower, int snapshots) {
+        await(() -> follower.getLoadedSnapshots() >= snapshots
+                && follower.getAppliedSequence() == leader.getSequence(),
+                () -> "follower at sequence " + follower.getAppliedSequence() + ", leader at " + leader.getSequence());
+    }
+
+    private static void await(BooleanSupplier condition, Supplier<String> message) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            try {
+                Thread.sleep(10);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void assertSameContent(OrderedIntIndex leaderTree, MutationPipeline leaderPipeline,
+                                          OrderedIntIndex followerTree, MutationPipeline followerPipeline) {
+        assertEquals(leaderPipeline.read(leaderTree::getAllElementKeysOrderedAscending),
+                followerPipeline.read(followerTree::getAllElementKeysOrderedAscending));
+        assertEquals(leaderPipeline.read(leaderTree::getOrder), followerPipeline.read(followerTree::getOrder));
+    }
+}
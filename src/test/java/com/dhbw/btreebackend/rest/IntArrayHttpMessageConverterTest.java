@@ -0,0 +1,127 @@
+package com.dhbw.btreebackend.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the IntArrayHttpMessageConverter: the exact bytes of both encodings, round trips of extreme, small and random
+ * keys through bodies larger than the read buffer, bodies arriving in small pieces or with a wrong content length,
+ * rejected malformed bodies, and that only int arrays are handled.
+ *
+ * @author Julian Stein
+ * @version 1.0
+ */
+class IntArrayHttpMessageConverterTest {
+    private static final MediaType[] ENCODINGS = {MediaType.APPLICATION_OCTET_STREAM,
+            IntArrayHttpMessageConverter.VARINT};
+
+    private final IntArrayHttpMessageConverter converter = new IntArrayHttpMessageConverter();
+
+    @Test
+    void encodingsHaveTheDocumentedBytes() throws IOException {
+        assertArrayEquals(new byte[] {1, 0, 0, 0, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x78, 0x56, 0x34,
+                        0x12}, write(new int[] {1, -2, 0x12345678}, MediaType.APPLICATION_OCTET_STREAM));
+        // zigzag: 0, -1, 1, -2, 63, -64 take one byte, 64 becomes 128 and takes two, the extremes take five
+        assertArrayEquals(new byte[] {0, 1, 2, 3, 126, 127, (byte) 0x80, 1,
+                        (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F,
+                        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+                write(new int[] {0, -1, 1, -2, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE},
+                        IntArrayHttpMessageConverter.VARINT));
+    }
+
+    @Test
+    void keysRoundTripInBothEncodings() throws IOException {
+        Random random = new Random(41);
+        int[][] keyArrays = {new int[0], {0}, {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE},
+                IntStream.range(-100000, 100000).toArray(), random.ints(50000).toArray(),
+                random.ints(30000, -300, 300).toArray()};
+        for(MediaType encoding : ENCODINGS) {
+            for(int[] keys : keyArrays) {
+                byte[] body = write(keys, encoding);
+                assertArrayEquals(keys, read(new ByteArrayInputStream(body), body.length, encoding),
+                        encoding.toString());
+                // unknown and too large content lengths only change the initial capacity
+                assertArrayEquals(keys, read(new ByteArrayInputStream(body), -1, encoding), encoding.toString());
+                assertArrayEquals(keys, read(new ByteArrayInputStream(body), 8L * body.length + 100, encoding),
+                        encoding.toString());
+                assertArrayEquals(keys, read(new TricklingInputStream(body, random), body.length, encoding),
+                        encoding.toString());
+            }
+        }
+    }
+
+    @Test
+    void smallKeysTakeFewerBytesAsVarints() throws IOException {
+        int[] keys = new Random(43).ints(10000, -64, 64).toArray();
+        assertEquals(keys.length, write(keys, IntArrayHttpMessageConverter.VARINT).length);
+        assertEquals(4 * keys.length, write(keys, MediaType.APPLICATION_OCTET_STREAM).length);
+    }
+
+    @Test
+    void malformedBodiesAreRejected() {
+        assertThrows(HttpMessageNotReadableException.class, () -> read(new ByteArrayInputStream(new byte[] {1, 0, 0, 0,
+                2, 0}), 6, MediaType.APPLICATION_OCTET_STREAM));
+        assertThrows(HttpMessageNotReadableException.class, () -> read(new ByteArrayInputStream(new byte[] {4,
+                (byte) 0x80}), 2, IntArrayHttpMessageConverter.VARINT));
+        assertThrows(HttpMessageNotReadableException.class, () -> read(new ByteArrayInputStream(new byte[] {
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01}), 6,
+                IntArrayHttpMessageConverter.VARINT));
+    }
+
+    @Test
+    void onlyIntArraysAreHandled() {
+        for(MediaType encoding : ENCODINGS) {
+            assertTrue(this.converter.canRead(int[].class, encoding));
+            assertTrue(this.converter.canWrite(int[].class, encoding));
+            assertFalse(this.converter.canRead(byte[].class, encoding));
+            assertFalse(this.converter.canWrite(long[].class, encoding));
+        }
+        assertFalse(this.converter.canRead(int[].class, MediaType.APPLICATION_JSON));
+    }
+
+    private byte[] write(int[] keys, MediaType encoding) throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        this.converter.write(keys, encoding, outputMessage);
+        return outputMessage.getBodyAsBytes();
+    }
+
+    private int[] read(InputStream body, long contentLength, MediaType encoding) throws IOException {
+        MockHttpInputMessage inputMessage = new MockHttpInputMessage(body);
+        inputMessage.getHeaders().setContentType(encoding);
+        inputMessage.getHeaders().setContentLength(contentLength);
+        return this.converter.read(int[].class, inputMessage);
+    }
+
+    /**
+     * An input stream returning at most a few bytes per read, so keys are split between reads like on a slow
+     * connection.
+     */
+    private static final class TricklingInputStream extends ByteArrayInputStream {
+        private final Random random;
+
+        TricklingInputStream(byte[] bytes, Random random) {
+            super(bytes);
+            this.random = random;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1 + this.random.nextInt(7)));
+        }
+    }
+}